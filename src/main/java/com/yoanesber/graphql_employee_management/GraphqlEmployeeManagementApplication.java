@@ -1,13 +1,25 @@
 package com.yoanesber.graphql_employee_management;
 
+import java.util.Arrays;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import com.yoanesber.graphql_employee_management.loader.EmployeesDumpLoaderRunner;
+
 @SpringBootApplication
 public class GraphqlEmployeeManagementApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(GraphqlEmployeeManagementApplication.class, args);
+		SpringApplication application = new SpringApplication(GraphqlEmployeeManagementApplication.class);
+
+		// Bulk loader mode (--app.loader.dump-dir=<dir>): no web server, exit once the dump files are loaded
+		if (Arrays.stream(args).anyMatch(arg -> arg.startsWith("--" + EmployeesDumpLoaderRunner.DUMP_DIR_PROPERTY + "="))) {
+			application.setWebApplicationType(WebApplicationType.NONE);
+			System.exit(SpringApplication.exit(application.run(args)));
+		}
+
+		application.run(args);
 	}
 
 }
@@ -0,0 +1,53 @@
+package com.yoanesber.graphql_employee_management.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.yoanesber.graphql_employee_management.datasource.InstrumentedDataSource;
+
+/**
+ * This class configures the connection pool instrumentation.
+ * HikariCP publishes its own metrics (hikaricp.connections.active/idle/pending, acquire and usage times) through
+ * Spring Boot; the acquire and usage times are published as histograms here, so that percentiles can be computed.
+ * The pool is also wrapped in an InstrumentedDataSource, which records the same times per GraphQL operation.
+ */
+
+@Configuration
+public class DataSourceMetricsConfig {
+    @Bean
+    public MeterFilter hikariHistogramMeterFilter() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (id.getName().equals("hikaricp.connections.acquire") || id.getName().equals("hikaricp.connections.usage")) {
+                    return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .build()
+                        .merge(config);
+                }
+                return config;
+            }
+        };
+    }
+
+    @Bean
+    public static BeanPostProcessor instrumentedDataSourcePostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // Wrap the pool (the registry is resolved on first use, as it may not exist yet)
+                if (bean instanceof HikariDataSource dataSource) {
+                    return new InstrumentedDataSource(dataSource, meterRegistry);
+                }
+                return bean;
+            }
+        };
+    }
+}
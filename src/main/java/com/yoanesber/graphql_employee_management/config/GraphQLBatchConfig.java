@@ -0,0 +1,34 @@
+package com.yoanesber.graphql_employee_management.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.webmvc.GraphQlHttpHandler;
+
+import com.yoanesber.graphql_employee_management.handler.BatchGraphQlHttpHandler;
+
+/**
+ * This class replaces the GraphQlHttpHandler of Spring Boot with BatchGraphQlHttpHandler, which also accepts batches
+ * of operations. The default GraphQL route of Spring Boot is kept, and uses this handler for its HTTP requests.
+ */
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "app.graphql.batch.enabled", havingValue = "true", matchIfMissing = true)
+public class GraphQLBatchConfig {
+    @Bean
+    public GraphQlHttpHandler graphQlHttpHandler(WebGraphQlHandler webGraphQlHandler, ObjectMapper objectMapper,
+        MeterRegistry meterRegistry,
+        @Value("${app.graphql.batch.max-operations:20}") int maxOperations,
+        @Value("${app.graphql.batch.max-concurrency:8}") int maxConcurrency,
+        @Value("${app.graphql.batch.threads:16}") int threads,
+        @Value("${app.graphql.batch.queue-capacity:200}") int queueCapacity) {
+        return new BatchGraphQlHttpHandler(webGraphQlHandler, objectMapper, meterRegistry, maxOperations, maxConcurrency,
+            threads, queueCapacity);
+    }
+}
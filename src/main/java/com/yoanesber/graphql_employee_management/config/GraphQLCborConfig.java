@@ -0,0 +1,44 @@
+package com.yoanesber.graphql_employee_management.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.graphql.GraphQlProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.function.RequestPredicates;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.RouterFunctions;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import com.yoanesber.graphql_employee_management.handler.CborGraphQlHttpHandler;
+
+/**
+ * This class routes the GraphQL requests that accept application/cbor to CborGraphQlHttpHandler.
+ * The route is ordered before the default GraphQL route of Spring Boot, so a client accepting both CBOR and JSON
+ * gets CBOR; the default route keeps serving all other requests.
+ */
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "app.graphql.cbor.enabled", havingValue = "true", matchIfMissing = true)
+public class GraphQLCborConfig {
+    @Bean
+    @Order(-1)
+    public RouterFunction<ServerResponse> graphQlCborRouterFunction(WebGraphQlHandler webGraphQlHandler,
+        ObjectMapper objectMapper, GraphQlProperties graphQlProperties,
+        @Value("${app.graphql.cbor.string-refs:false}") boolean stringRefs) {
+        CborGraphQlHttpHandler handler = new CborGraphQlHttpHandler(webGraphQlHandler, objectMapper, stringRefs);
+
+        return RouterFunctions.route()
+            .POST(graphQlProperties.getPath(),
+                RequestPredicates.contentType(MediaType.APPLICATION_JSON)
+                    .and(request -> CborGraphQlHttpHandler.accepts(request.headers().asHttpHeaders())),
+                handler::handleRequest)
+            .build();
+    }
+}
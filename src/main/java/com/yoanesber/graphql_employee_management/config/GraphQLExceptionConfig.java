@@ -1,25 +1,62 @@
 package com.yoanesber.graphql_employee_management.config;
 
+import graphql.ErrorClassification;
 import graphql.ErrorType;
 import graphql.GraphQLError;
 import graphql.GraphqlErrorBuilder;
+import graphql.execution.ResultPath;
 import graphql.schema.DataFetchingEnvironment;
 import jakarta.validation.ConstraintViolationException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.graphql.execution.DataFetcherExceptionResolverAdapter;
 
+import com.yoanesber.graphql_employee_management.exception.ConflictException;
+import com.yoanesber.graphql_employee_management.exception.DomainException;
+import com.yoanesber.graphql_employee_management.exception.ErrorCode;
+import com.yoanesber.graphql_employee_management.exception.NotFoundException;
+import com.yoanesber.graphql_employee_management.exception.ValidationException;
+
 /*
  * This class is responsible for handling exceptions that occur during GraphQL data fetching.
  * It customizes the error messages returned to the client based on the type of exception.
  * It also provides a way to handle validation errors using Jakarta Bean Validation (JSR 380).
+ * The expected errors of the application (DomainException) are mapped by type to an error classification
+ * (NOT_FOUND, CONFLICT, BAD_REQUEST), with their error code and details in the extensions, so that clients
+ * can tell them apart without parsing messages.
+ * The controllers do not catch anything: every exception of a data fetcher is mapped here, and only the unexpected
+ * ones (not a DomainException) are logged as errors.
  */
 
 @Configuration
 public class GraphQLExceptionConfig extends DataFetcherExceptionResolverAdapter {
+    private static final ErrorClassification CONFLICT = ErrorClassification.errorClassification("CONFLICT");
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
     @Override
     protected GraphQLError resolveToSingleError(Throwable ex, DataFetchingEnvironment env) {
+        // If it's an expected error of the application (not found, conflict, validation)
+        if (ex instanceof DomainException domainEx) {
+            return domainError(domainEx, env);
+        }
+
+        // If it's a concurrent update detected by optimistic locking
+        if (ex instanceof OptimisticLockingFailureException) {
+            return GraphqlErrorBuilder.newError(env)
+                    .message("The record has been modified by another request. Please reload it and try again.")
+                    .errorType(CONFLICT)
+                    .extensions(Map.of("code", ErrorCode.CONCURRENT_MODIFICATION.name()))
+                    .path(env.getExecutionStepInfo().getPath())
+                    .build();
+        }
+
         // If it's a validation failure by bean validation (javax/jakarta.validation)
         if (ex instanceof ConstraintViolationException cve) {
             StringBuilder sb = new StringBuilder("Validation error(s): ");
@@ -40,6 +77,7 @@ public class GraphQLExceptionConfig extends DataFetcherExceptionResolverAdapter
 
         // If it's an runtime exception (e.g., null pointer, etc.)
         if (ex instanceof RuntimeException runtimeEx) {
+            logger.error("Error fetching {}: {}", env.getExecutionStepInfo().getPath(), runtimeEx.getMessage(), runtimeEx);
             return GraphqlErrorBuilder.newError(env)
                     .message(runtimeEx.getMessage())
                     .errorType(ErrorType.DataFetchingException)
@@ -47,15 +85,6 @@ public class GraphQLExceptionConfig extends DataFetcherExceptionResolverAdapter
                     .build();
         }
 
-        // If it's an illegal argument exception (e.g., invalid argument, etc.)
-        if (ex instanceof IllegalArgumentException illegalArgEx) {
-            return GraphqlErrorBuilder.newError(env)
-                    .message(illegalArgEx.getMessage())
-                    .errorType(ErrorType.InvalidSyntax)
-                    .path(env.getExecutionStepInfo().getPath())
-                    .build();
-        }
-
         // If it's a GraphQL error (e.g., invalid query, etc.)
         if (ex instanceof graphql.GraphQLError) {
             return GraphqlErrorBuilder.newError(env)
@@ -65,21 +94,12 @@ public class GraphQLExceptionConfig extends DataFetcherExceptionResolverAdapter
                     .build();
         }
 
-        // If it's a generic GraphQL validation error
-        if (ex.getMessage() != null && ex.getMessage().contains("Validation error")) {
-            return GraphqlErrorBuilder.newError(env)
-                    .message("The input is invalid. Please check required fields and data types.")
-                    .errorType(ErrorType.ExecutionAborted)
-                    .path(env.getExecutionStepInfo().getPath())
-                    .build();
-        }
-
         return null; // fallback to default handling
     }
 
     @Override
     protected List<GraphQLError> resolveToMultipleErrors(Throwable ex, DataFetchingEnvironment env) {
-        // If it's a validation failure by bean validation (javax/jakarta.validation)
+        // If it's a validation failure by bean validation (javax/jakarta.validation), one error per violation
         if (ex instanceof ConstraintViolationException validationEx) {
             return validationEx.getConstraintViolations()
                     .stream()
@@ -91,42 +111,40 @@ public class GraphQLExceptionConfig extends DataFetcherExceptionResolverAdapter
                     .collect(Collectors.toList());
         }
 
-        // If it's an runtime exception (e.g., null pointer, etc.)
-        if (ex instanceof RuntimeException runtimeEx) {
-            return List.of(GraphqlErrorBuilder.newError(env)
-                    .message(runtimeEx.getMessage())
-                    .errorType(ErrorType.DataFetchingException)
-                    .path(env.getExecutionStepInfo().getPath())
-                    .build());
-        }
+        // Otherwise a single error
+        GraphQLError error = resolveToSingleError(ex, env);
+        return error != null ? List.of(error) : null;
+    }
 
-        // If it's an illegal argument exception (e.g., invalid argument, etc.)
-        if (ex instanceof IllegalArgumentException illegalArgEx) {
-            return List.of(GraphqlErrorBuilder.newError(env)
-                    .message(illegalArgEx.getMessage())
-                    .errorType(ErrorType.InvalidSyntax)
-                    .path(env.getExecutionStepInfo().getPath())
-                    .build());
-        }
+    // Build the error of an expected error of the application, with its code and details in the extensions
+    private GraphQLError domainError(DomainException ex, DataFetchingEnvironment env) {
+        return domainError(ex, env, env.getExecutionStepInfo().getPath());
+    }
 
-        // If it's a GraphQL error (e.g., invalid query, etc.)
-        if (ex instanceof graphql.GraphQLError) {
-            return List.of(GraphqlErrorBuilder.newError(env)
-                    .message(ex.getMessage())
-                    .errorType(ErrorType.InvalidSyntax)
-                    .path(env.getExecutionStepInfo().getPath())
-                    .build());
-        }
+    // Same, at a given path (e.g. an element of a list field that is reported without failing the whole field)
+    public static GraphQLError domainError(DomainException ex, DataFetchingEnvironment env, ResultPath path) {
+        Map<String, Object> extensions = new LinkedHashMap<>();
+        extensions.put("code", ex.getCode().name());
+        extensions.putAll(ex.getExtensions());
 
-        // If it's a generic GraphQL validation error
-        if (ex.getMessage() != null && ex.getMessage().contains("Validation error")) {
-            return List.of(GraphqlErrorBuilder.newError(env)
-                    .message("The input is invalid. Please check required fields and data types.")
-                    .errorType(ErrorType.ExecutionAborted)
-                    .path(env.getExecutionStepInfo().getPath())
-                    .build());
+        return GraphqlErrorBuilder.newError(env)
+                .message(ex.getMessage())
+                .errorType(classification(ex))
+                .extensions(extensions)
+                .path(path)
+                .build();
+    }
+
+    private static ErrorClassification classification(DomainException ex) {
+        if (ex instanceof NotFoundException) {
+            return org.springframework.graphql.execution.ErrorType.NOT_FOUND;
+        }
+        if (ex instanceof ConflictException) {
+            return CONFLICT;
+        }
+        if (ex instanceof ValidationException) {
+            return org.springframework.graphql.execution.ErrorType.BAD_REQUEST;
         }
-        
-        return null;
+        return org.springframework.graphql.execution.ErrorType.INTERNAL_ERROR;
     }
 }
@@ -0,0 +1,39 @@
+package com.yoanesber.graphql_employee_management.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.graphql.GraphQlProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.function.RequestPredicates;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.RouterFunctions;
+import org.springframework.web.servlet.function.ServerResponse;
+
+import com.yoanesber.graphql_employee_management.handler.MultipartGraphQlHttpHandler;
+
+/**
+ * This class routes the GraphQL requests that accept multipart/mixed to MultipartGraphQlHttpHandler.
+ * The route is ordered before the default GraphQL route of Spring Boot, which keeps serving all other requests.
+ */
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class GraphQLIncrementalDeliveryConfig {
+    @Bean
+    @Order(0)
+    public RouterFunction<ServerResponse> graphQlMultipartRouterFunction(WebGraphQlHandler webGraphQlHandler,
+        ObjectMapper objectMapper, GraphQlProperties graphQlProperties) {
+        MultipartGraphQlHttpHandler handler = new MultipartGraphQlHttpHandler(webGraphQlHandler, objectMapper);
+
+        return RouterFunctions.route()
+            .POST(graphQlProperties.getPath(),
+                RequestPredicates.contentType(MediaType.APPLICATION_JSON)
+                    .and(request -> MultipartGraphQlHttpHandler.accepts(request.headers().asHttpHeaders())),
+                handler::handleRequest)
+            .build();
+    }
+}
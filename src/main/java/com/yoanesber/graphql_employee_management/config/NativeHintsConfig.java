@@ -0,0 +1,50 @@
+package com.yoanesber.graphql_employee_management.config;
+
+import java.sql.Connection;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ * This class registers the runtime hints needed by a GraalVM native image (mvn -Pnative native:compile).
+ * At AOT processing time, the classes of the entity and dto packages are registered for reflection:
+ * Hibernate instantiates the entities, and GraphQL binds the input DTOs and reads the output DTOs
+ * through their (Lombok-generated) constructors, getters and setters, which only exist as plain methods after compilation.
+ * The GraphQL schema files and the JDK proxy used by InstrumentedDataSource are registered as well.
+ */
+
+@Configuration
+@ImportRuntimeHints(NativeHintsConfig.EmployeeManagementRuntimeHints.class)
+public class NativeHintsConfig {
+
+    static class EmployeeManagementRuntimeHints implements RuntimeHintsRegistrar {
+
+        private static final String BASE_PACKAGE = "com.yoanesber.graphql_employee_management";
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            // Entities and DTOs (constructors, accessors and fields)
+            ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+            scanner.addIncludeFilter((metadataReader, metadataReaderFactory) -> true);
+            for (String subPackage : new String[] {"entity", "dto"}) {
+                for (BeanDefinition candidate : scanner.findCandidateComponents(BASE_PACKAGE + "." + subPackage)) {
+                    hints.reflection().registerType(TypeReference.of(candidate.getBeanClassName()),
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                        MemberCategory.INVOKE_PUBLIC_METHODS,
+                        MemberCategory.DECLARED_FIELDS);
+                }
+            }
+
+            // GraphQL schema files
+            hints.resources().registerPattern("graphql/*.graphqls");
+
+            // Connection proxy of InstrumentedDataSource
+            hints.proxies().registerJdkProxy(Connection.class);
+        }
+    }
+}
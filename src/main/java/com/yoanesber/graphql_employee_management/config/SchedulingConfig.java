@@ -0,0 +1,13 @@
+package com.yoanesber.graphql_employee_management.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * SchedulingConfig enables Spring's @Scheduled support, used by background jobs such as the outbox relay.
+ */
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,28 +1,39 @@
 package com.yoanesber.graphql_employee_management.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import com.yoanesber.graphql_employee_management.handler.ApiKeyAuthFilter;
+import com.yoanesber.graphql_employee_management.handler.IdempotencyKeyFilter;
 
 /**
  * This class is responsible for configuring security settings for the application.
  * It uses Spring Security to manage authentication and authorization for the GraphQL endpoint.
  * The ApiKeyAuthFilter is used to validate API keys for incoming requests.
+ * The actuator endpoints other than health require a known API key: some of them expose operation details
+ * (slowoperations) or change state (DELETE /actuator/slowoperations). Requests without one get 401.
+ * The IdempotencyKeyFilter runs right after it, so that only authenticated requests reach the idempotency store.
  */
 
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @EnableMethodSecurity
 public class SecurityConfig {
     private final ApiKeyAuthFilter apiKeyAuthFilter;
 
-    public SecurityConfig(ApiKeyAuthFilter apiKeyAuthFilter) {
+    private final IdempotencyKeyFilter idempotencyKeyFilter;
+
+    public SecurityConfig(ApiKeyAuthFilter apiKeyAuthFilter, IdempotencyKeyFilter idempotencyKeyFilter) {
         this.apiKeyAuthFilter = apiKeyAuthFilter;
+        this.idempotencyKeyFilter = idempotencyKeyFilter;
     }
 
     @Bean
@@ -34,8 +45,13 @@ public class SecurityConfig {
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS)) // Set the session creation policy to stateless (no sessions)
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/graphql").permitAll()
+                .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                .requestMatchers("/actuator/**").authenticated()
                 .anyRequest().permitAll())
-            .addFilterBefore(apiKeyAuthFilter, UsernamePasswordAuthenticationFilter.class); // Add the ApiKeyAuthFilter before the UsernamePasswordAuthenticationFilter
+            .exceptionHandling(exceptions -> exceptions
+                .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED))) // 401 instead of a login page
+            .addFilterBefore(apiKeyAuthFilter, UsernamePasswordAuthenticationFilter.class) // Add the ApiKeyAuthFilter before the UsernamePasswordAuthenticationFilter
+            .addFilterAfter(idempotencyKeyFilter, ApiKeyAuthFilter.class); // Add the IdempotencyKeyFilter after the ApiKeyAuthFilter
     
         return http.build();
     }
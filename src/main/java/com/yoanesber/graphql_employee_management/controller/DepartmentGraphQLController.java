@@ -1,36 +1,71 @@
 package com.yoanesber.graphql_employee_management.controller;
 
+import graphql.GraphQLContext;
+import graphql.execution.DataFetcherResult;
+import graphql.schema.DataFetchingEnvironment;
 import jakarta.validation.Valid;
+import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import org.dataloader.DataLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.LocalContextValue;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.execution.BatchLoaderRegistry;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
+import reactor.core.publisher.Mono;
 
+import com.yoanesber.graphql_employee_management.dto.DepartmentAsOfDTO;
 import com.yoanesber.graphql_employee_management.dto.DepartmentDTO;
 import com.yoanesber.graphql_employee_management.dto.DepartmentCreateDTO;
 import com.yoanesber.graphql_employee_management.dto.DepartmentUpdateDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeDTO;
+import com.yoanesber.graphql_employee_management.exception.ErrorCode;
+import com.yoanesber.graphql_employee_management.exception.ValidationException;
 import com.yoanesber.graphql_employee_management.service.DepartmentService;
+import com.yoanesber.graphql_employee_management.service.EmployeeService;
 
 /**
  * This class is responsible for handling GraphQL requests related to Department entities.
  * It uses Spring GraphQL to map GraphQL queries and mutations to Java methods.
  * The methods are annotated with @QueryMapping and @MutationMapping to indicate their purpose.
+ * The asOf argument of the queries is passed down as local context, so the employees of a department
+ * (and their departments, salaries and titles) are the ones effective on that date.
+ * The employees of the departments go through a DataLoader keyed by department and date, so all departments of a
+ * response requested on the same date are loaded together instead of with one query per department.
  * The input DTOs are validated using Jakarta Bean Validation (JSR 380).
  */
 
 @Controller
 @Validated // Validate the input DTOs using Jakarta Bean Validation (JSR 380)
 public class DepartmentGraphQLController {
+    private static final String AS_OF = "asOf";
+
+    private static final String DEPARTMENT_EMPLOYEES_LOADER = "departmentEmployees";
+
     private final DepartmentService departmentService;
 
+    private final EmployeeService employeeService;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    public DepartmentGraphQLController(DepartmentService departmentService) {
+    public DepartmentGraphQLController(DepartmentService departmentService, EmployeeService employeeService,
+        BatchLoaderRegistry batchLoaderRegistry) {
         this.departmentService = departmentService;
+        this.employeeService = employeeService;
+
+        // Register the DataLoader of the employees of the departments
+        batchLoaderRegistry.<DepartmentAsOfDTO, List<EmployeeDTO>>forName(DEPARTMENT_EMPLOYEES_LOADER)
+            .registerMappedBatchLoader((keys, env) -> Mono.fromCallable(() -> loadEmployees(keys)));
     }
 
     @MutationMapping
@@ -38,45 +73,30 @@ public class DepartmentGraphQLController {
         // Check if the input is null
         if (departmentCreateDTO == null) {
             logger.error("DepartmentCreateDTO is null");
-            throw new IllegalArgumentException("DepartmentCreateDTO cannot be null");
+            throw new ValidationException(ErrorCode.INVALID_ARGUMENT, "DepartmentCreateDTO cannot be null");
         } 
 
-        try {
-            // Save and return department
-            return departmentService.saveDepartment(departmentCreateDTO);
-        } catch (Exception e) {
-            logger.error("Error saving department: {}", e.getMessage());
-            throw new RuntimeException(e.getMessage());
-        }
+        // Save and return department
+        return departmentService.saveDepartment(departmentCreateDTO);
     }
 
     @QueryMapping
-    public List<DepartmentDTO> getAllDepartments() {
-        try {
-            // Get all departments
-            return departmentService.getAllDepartments();
-        } catch (Exception e) {
-            logger.error("Error fetching all departments: {}", e.getMessage());
-            throw new RuntimeException(e.getMessage());
-        }
+    public DataFetcherResult<List<DepartmentDTO>> getAllDepartments(@Argument LocalDate asOf) {
+        // Get all departments
+        return withAsOf(departmentService.getAllDepartments(), asOf);
     }
 
     @QueryMapping
-    public DepartmentDTO getDepartmentById(@Argument String id) {
+    public DataFetcherResult<DepartmentDTO> getDepartmentById(@Argument String id, @Argument LocalDate asOf) {
         // Check if the input is null
         if (id.isBlank()) {
             logger.error("Department ID is blank");
-            throw new IllegalArgumentException("Department ID cannot be blank");
+            throw new ValidationException(ErrorCode.INVALID_ARGUMENT, "Department ID cannot be blank");
         }
 
-        try {
-            // Get department by id
-            id = id.toLowerCase();
-            return departmentService.getDepartmentById(id);
-        } catch (Exception e) {
-            logger.error("Error fetching department by id: {}", e.getMessage());
-            throw new RuntimeException(e.getMessage());
-        }
+        // Get department by id
+        id = id.toLowerCase();
+        return withAsOf(departmentService.getDepartmentById(id), asOf);
     }
 
     @MutationMapping
@@ -84,17 +104,12 @@ public class DepartmentGraphQLController {
         // Check if the input is null
         if (id.isBlank() || departmentUpdateDTO == null) {
             logger.error("Department ID or DepartmentUpdateDTO is null");
-            throw new IllegalArgumentException("Department ID and DepartmentUpdateDTO cannot be null");
+            throw new ValidationException(ErrorCode.INVALID_ARGUMENT, "Department ID and DepartmentUpdateDTO cannot be null");
         }
 
-        try {
-            // Update department
-            id = id.toLowerCase();
-            return departmentService.updateDepartment(id, departmentUpdateDTO);
-        } catch (Exception e) {
-            logger.error("Error updating department: {}", e.getMessage());
-            throw new RuntimeException(e.getMessage());
-        }
+        // Update department
+        id = id.toLowerCase();
+        return departmentService.updateDepartment(id, departmentUpdateDTO);
     }
 
     @MutationMapping
@@ -102,17 +117,44 @@ public class DepartmentGraphQLController {
         // Check if the input is null
         if (id.isBlank()) {
             logger.error("Department ID is blank");
-            throw new IllegalArgumentException("Department ID cannot be blank");
+            throw new ValidationException(ErrorCode.INVALID_ARGUMENT, "Department ID cannot be blank");
         }
         
-        try {
-            
-            // Delete department
-            id = id.toLowerCase();
-            return departmentService.deleteDepartment(id);
-        } catch (Exception e) {
-            logger.error("Error deleting department: {}", e.getMessage());
-            throw new RuntimeException(e.getMessage());
+        // Delete department
+        id = id.toLowerCase();
+        return departmentService.deleteDepartment(id);
+    }
+
+    @SchemaMapping(typeName = "DepartmentDTO")
+    public CompletableFuture<List<EmployeeDTO>> employees(DepartmentDTO department,
+        @LocalContextValue(name = AS_OF, required = false) LocalDate asOf, DataFetchingEnvironment env) {
+        // Queue the department on the employees loader, for the requested date (today if none); the departments
+        // of the same date are loaded together
+        DataLoader<DepartmentAsOfDTO, List<EmployeeDTO>> loader = env.getDataLoader(DEPARTMENT_EMPLOYEES_LOADER);
+        return loader.load(new DepartmentAsOfDTO(department.getId(), asOf != null ? asOf : LocalDate.now()));
+    }
+
+    // Load the employees of a batch of departments with one call per distinct date
+    private Map<DepartmentAsOfDTO, List<EmployeeDTO>> loadEmployees(Set<DepartmentAsOfDTO> keys) {
+        Map<DepartmentAsOfDTO, List<EmployeeDTO>> result = new HashMap<>();
+        keys.stream()
+            .collect(Collectors.groupingBy(DepartmentAsOfDTO::getAsOf))
+            .forEach((asOf, dateKeys) -> {
+                Map<String, List<EmployeeDTO>> employees = employeeService.getEmployeesByDepartmentIds(
+                    dateKeys.stream().map(DepartmentAsOfDTO::getDepartmentId).distinct().toList(), asOf);
+                dateKeys.forEach(key -> result.put(key, employees.getOrDefault(key.getDepartmentId(), List.of())));
+            });
+
+        return result;
+    }
+
+    // Wrap a query result so that the asOf date is visible to the nested fields as local context
+    private <T> DataFetcherResult<T> withAsOf(T data, LocalDate asOf) {
+        DataFetcherResult.Builder<T> result = DataFetcherResult.<T>newResult().data(data);
+        if (asOf != null) {
+            result.localContext(GraphQLContext.newContext().of(AS_OF, asOf).build());
         }
+
+        return result.build();
     }
 }
@@ -1,36 +1,151 @@
 package com.yoanesber.graphql_employee_management.controller;
 
+import graphql.GraphQLContext;
+import graphql.GraphQLError;
+import graphql.execution.DataFetcherResult;
+import graphql.execution.ResultPath;
+import graphql.schema.DataFetchingEnvironment;
 import jakarta.validation.Valid;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.dataloader.DataLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
+import org.springframework.graphql.data.method.annotation.LocalContextValue;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.execution.BatchLoaderRegistry;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.annotation.Validated;
+import reactor.core.publisher.Mono;
 
+import com.yoanesber.graphql_employee_management.config.GraphQLExceptionConfig;
+import com.yoanesber.graphql_employee_management.dto.DepartmentEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeChangePageDTO;
 import com.yoanesber.graphql_employee_management.dto.EmployeeCreateDTO;
 import com.yoanesber.graphql_employee_management.dto.EmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeHistoryRangeDTO;
 import com.yoanesber.graphql_employee_management.dto.EmployeeUpdateDTO;
+import com.yoanesber.graphql_employee_management.dto.SalaryEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.TitleEmployeeDTO;
+import com.yoanesber.graphql_employee_management.exception.ErrorCode;
+import com.yoanesber.graphql_employee_management.exception.NotFoundException;
+import com.yoanesber.graphql_employee_management.exception.ValidationException;
+import com.yoanesber.graphql_employee_management.service.DepartmentEmployeeService;
+import com.yoanesber.graphql_employee_management.service.EmployeeArchiveService;
 import com.yoanesber.graphql_employee_management.service.EmployeeService;
+import com.yoanesber.graphql_employee_management.service.SalaryEmployeeService;
+import com.yoanesber.graphql_employee_management.service.TitleEmployeeService;
 
 /**
  * This class is responsible for handling GraphQL requests related to Employee entities.
  * It uses Spring GraphQL to map GraphQL queries and mutations to Java methods.
  * The methods are annotated with @QueryMapping and @MutationMapping to indicate their purpose.
+ * The related entities of EmployeeDTO are resolved in batches (@BatchMapping or DataLoaders), so each relation
+ * is loaded with a single query for all employees of a response instead of one query per employee.
+ * The salaries and titles fields accept from/to/last arguments; they go through DataLoaders keyed by
+ * employee and range, so all employees requesting the same range share one range query.
+ * The employees themselves are loaded by id through a DataLoader as well, so getEmployeeById (also under several
+ * aliases) and getEmployeesByIds in one request are resolved with a single IN query.
+ * The asOf argument of the queries is passed down as local context, restricting the departments,
+ * salaries and titles of the returned employees to the rows effective on that date.
+ * The archived employees (inactive employees moved to the archive tier) are only read when a query has
+ * includeArchived: true; their fields are then resolved from the archive tables, by the same DataLoaders and batches.
+ * employeesChangedSince returns the changes of the employees page by page (at most MAX_CHANGES_PAGE_SIZE), so sync
+ * jobs only read what changed since their last cursor.
  * The input DTOs are validated using Jakarta Bean Validation (JSR 380).
  */
 
 @Controller
 @Validated // Validate the input DTOs using Jakarta Bean Validation (JSR 380)
 public class EmployeeGraphQLController {
+    private static final String AS_OF = "asOf";
+
+    private static final String DEPARTMENT_HISTORY_LOADER = "departmentHistory";
+
+    private static final String SALARY_HISTORY_LOADER = "salaryHistory";
+
+    private static final String TITLE_HISTORY_LOADER = "titleHistory";
+
+    private static final String EMPLOYEE_LOADER = "employeeById";
+
+    private static final String EMPLOYEE_WITH_ARCHIVE_LOADER = "employeeByIdWithArchive";
+
+    private static final int MAX_CHANGES_PAGE_SIZE = 1000;
+
     private final EmployeeService employeeService;
 
+    private final DepartmentEmployeeService departmentEmployeeService;
+
+    private final SalaryEmployeeService salaryEmployeeService;
+
+    private final TitleEmployeeService titleEmployeeService;
+
+    private final EmployeeArchiveService employeeArchiveService;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
-    public EmployeeGraphQLController(EmployeeService employeeService) {
+    public EmployeeGraphQLController(EmployeeService employeeService,
+        DepartmentEmployeeService departmentEmployeeService, SalaryEmployeeService salaryEmployeeService,
+        TitleEmployeeService titleEmployeeService, EmployeeArchiveService employeeArchiveService,
+        BatchLoaderRegistry batchLoaderRegistry) {
         this.employeeService = employeeService;
+        this.departmentEmployeeService = departmentEmployeeService;
+        this.salaryEmployeeService = salaryEmployeeService;
+        this.titleEmployeeService = titleEmployeeService;
+        this.employeeArchiveService = employeeArchiveService;
+
+        // Register the DataLoader of the employees by id (ids that do not exist resolve to null)
+        batchLoaderRegistry.<Long, EmployeeDTO>forName(EMPLOYEE_LOADER)
+            .registerMappedBatchLoader((ids, env) -> Mono.fromCallable(() -> this.employeeService.getEmployeesByIds(ids)));
+
+        // Register the DataLoader of the employees by id that also reads the archive, for the ids missing from the hot tables
+        batchLoaderRegistry.<Long, EmployeeDTO>forName(EMPLOYEE_WITH_ARCHIVE_LOADER)
+            .registerMappedBatchLoader((ids, env) -> Mono.fromCallable(() -> {
+                Map<Long, EmployeeDTO> employees = new HashMap<>(this.employeeService.getEmployeesByIds(ids));
+                employees.putAll(this.employeeArchiveService.getArchivedEmployeesByIds(ids.stream()
+                    .filter(id -> !employees.containsKey(id))
+                    .toList()));
+                return employees;
+            }));
+
+        // Register the DataLoaders of the history fields (a range is either a point in time or from/to/last,
+        // and the histories of the archived employees are read from the archive)
+        batchLoaderRegistry.<EmployeeHistoryRangeDTO, List<DepartmentEmployeeDTO>>forName(DEPARTMENT_HISTORY_LOADER)
+            .registerMappedBatchLoader((keys, env) -> Mono.fromCallable(() -> loadHistory(keys,
+                (employeeIds, range) -> range.isArchived()
+                    ? this.employeeArchiveService.getArchivedDepartmentsByEmployeeIds(employeeIds, range)
+                    : range.getAsOf() != null
+                    ? this.departmentEmployeeService.getDepartmentsByEmployeeIdsAsOf(employeeIds, range.getAsOf())
+                    : this.departmentEmployeeService.getDepartmentsByEmployeeIds(employeeIds))));
+        batchLoaderRegistry.<EmployeeHistoryRangeDTO, List<SalaryEmployeeDTO>>forName(SALARY_HISTORY_LOADER)
+            .registerMappedBatchLoader((keys, env) -> Mono.fromCallable(() -> loadHistory(keys,
+                (employeeIds, range) -> range.isArchived()
+                    ? this.employeeArchiveService.getArchivedSalariesByEmployeeIds(employeeIds, range)
+                    : range.getAsOf() != null
+                    ? this.salaryEmployeeService.getSalariesByEmployeeIdsAsOf(employeeIds, range.getAsOf())
+                    : this.salaryEmployeeService.getSalariesByEmployeeIds(employeeIds,
+                        range.getFrom(), range.getTo(), range.getLast()))));
+        batchLoaderRegistry.<EmployeeHistoryRangeDTO, List<TitleEmployeeDTO>>forName(TITLE_HISTORY_LOADER)
+            .registerMappedBatchLoader((keys, env) -> Mono.fromCallable(() -> loadHistory(keys,
+                (employeeIds, range) -> range.isArchived()
+                    ? this.employeeArchiveService.getArchivedTitlesByEmployeeIds(employeeIds, range)
+                    : range.getAsOf() != null
+                    ? this.titleEmployeeService.getTitlesByEmployeeIdsAsOf(employeeIds, range.getAsOf())
+                    : this.titleEmployeeService.getTitlesByEmployeeIds(employeeIds,
+                        range.getFrom(), range.getTo(), range.getLast()))));
     }
 
     @MutationMapping
@@ -38,44 +153,85 @@ public class EmployeeGraphQLController {
         // Check if the input is null
         if (employeeCreateDTO == null) {
             logger.error("EmployeeCreateDTO is null");
-            throw new IllegalArgumentException("EmployeeCreateDTO cannot be null");
+            throw new ValidationException(ErrorCode.INVALID_ARGUMENT, "EmployeeCreateDTO cannot be null");
         }
 
-        try {
-            // Save and return employee
-            return employeeService.saveEmployee(employeeCreateDTO);
-        } catch (Exception e) {
-            logger.error("Error saving employee: {}", e.getMessage());
-            throw new RuntimeException(e.getMessage());
-        }
+        // Save and return employee
+        return employeeService.saveEmployee(employeeCreateDTO);
     }
 
     @QueryMapping
-    public List<EmployeeDTO> getAllEmployees() {
-        try {
-            // Get all employees
-            return employeeService.getAllEmployees();
-        } catch (Exception e) {
-            logger.error("Error fetching all employees: {}", e.getMessage());
-            throw new RuntimeException(e.getMessage());
+    public DataFetcherResult<List<EmployeeDTO>> getAllEmployees(@Argument LocalDate asOf, @Argument Boolean includeArchived) {
+        // Get all employees
+        List<EmployeeDTO> employees = employeeService.getAllEmployees();
+
+        // Add the archived employees, in the order of the ids
+        if (Boolean.TRUE.equals(includeArchived)) {
+            employees = new ArrayList<>(employees);
+            employees.addAll(employeeArchiveService.getAllArchivedEmployees());
+            employees.sort(Comparator.comparing(EmployeeDTO::getId));
         }
+
+        return withAsOf(employees, asOf);
     }
 
     @QueryMapping
-    public EmployeeDTO getEmployeeById(@Argument Long id) {
+    public CompletableFuture<DataFetcherResult<EmployeeDTO>> getEmployeeById(@Argument Long id, @Argument LocalDate asOf,
+        @Argument Boolean includeArchived, DataFetchingEnvironment env) {
         // Check if the id is null
         if (id == null) {
             logger.error("Employee ID is null");
-            throw new IllegalArgumentException("Employee ID cannot be null");
+            throw new ValidationException(ErrorCode.INVALID_ARGUMENT, "Employee ID cannot be null");
         } 
 
-        try {
-            // Get employee by id
-            return employeeService.getEmployeeById(id);
-        } catch (Exception e) {
-            logger.error("Error fetching employee by id: {}", e.getMessage());
-            throw new RuntimeException(e.getMessage());
+        // Queue the id on the employee loader; the ids of the whole request are loaded together
+        DataLoader<Long, EmployeeDTO> loader = env.getDataLoader(employeeLoader(includeArchived));
+        return loader.load(id).thenApply(employee -> {
+            if (employee == null) {
+                return DataFetcherResult.<EmployeeDTO>newResult()
+                    .error(employeeNotFound(id, env, env.getExecutionStepInfo().getPath()))
+                    .build();
+            }
+            return withAsOf(employee, asOf);
+        });
+    }
+
+    @QueryMapping
+    public CompletableFuture<DataFetcherResult<List<EmployeeDTO>>> getEmployeesByIds(@Argument List<Long> ids,
+        @Argument LocalDate asOf, @Argument Boolean includeArchived, DataFetchingEnvironment env) {
+        // Check if the ids are null
+        if (ids == null || ids.contains(null)) {
+            logger.error("Employee IDs are null");
+            throw new ValidationException(ErrorCode.INVALID_ARGUMENT, "Employee IDs cannot be null");
+        }
+
+        // Queue the ids on the employee loader; the employees are returned in the order of the ids
+        DataLoader<Long, EmployeeDTO> loader = env.getDataLoader(employeeLoader(includeArchived));
+        return loader.loadMany(ids).thenApply(employees -> {
+            // Ids that do not exist resolve to null, with a NOT_FOUND error at their index
+            List<GraphQLError> errors = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                if (employees.get(i) == null) {
+                    errors.add(employeeNotFound(ids.get(i), env, env.getExecutionStepInfo().getPath().segment(i)));
+                }
+            }
+
+            DataFetcherResult<List<EmployeeDTO>> result = withAsOf(employees, asOf);
+            return errors.isEmpty() ? result : result.transform(builder -> builder.errors(errors));
+        });
+    }
+
+    @QueryMapping
+    public EmployeeChangePageDTO employeesChangedSince(@Argument String cursor, @Argument Integer first) {
+        // Check the page size
+        if (first == null || first <= 0 || first > MAX_CHANGES_PAGE_SIZE) {
+            logger.error("Invalid first argument: {}", first);
+            throw new ValidationException(ErrorCode.INVALID_ARGUMENT,
+                "First must be between 1 and " + MAX_CHANGES_PAGE_SIZE);
         }
+
+        // Get the next changes
+        return employeeService.getEmployeesChangedSince(cursor, first);
     }
 
     @MutationMapping
@@ -83,16 +239,11 @@ public class EmployeeGraphQLController {
         // Check if the id and employee are null
         if (id == null || employeeUpdateDTO == null) {
             logger.error("Employee ID or EmployeeUpdateDTO is null");
-            throw new IllegalArgumentException("Employee ID and EmployeeUpdateDTO cannot be null");
+            throw new ValidationException(ErrorCode.INVALID_ARGUMENT, "Employee ID and EmployeeUpdateDTO cannot be null");
         }
 
-        try {
-            // Update employee
-            return employeeService.updateEmployee(id, employeeUpdateDTO);
-        } catch (Exception e) {
-            logger.error("Error updating employee: {}", e.getMessage());
-            throw new RuntimeException(e.getMessage());
-        }
+        // Update employee
+        return employeeService.updateEmployee(id, employeeUpdateDTO);
     }
 
     @MutationMapping
@@ -100,15 +251,146 @@ public class EmployeeGraphQLController {
         // Check if the id is null
         if (id == null) {
             logger.error("Employee ID is null");
-            throw new IllegalArgumentException("Employee ID cannot be null");
+            throw new ValidationException(ErrorCode.INVALID_ARGUMENT, "Employee ID cannot be null");
+        }
+
+        // Delete employee
+        return employeeService.deleteEmployee(id);
+    }
+
+    @SchemaMapping(typeName = "EmployeeDTO")
+    public CompletableFuture<List<DepartmentEmployeeDTO>> departments(EmployeeDTO employee,
+        @LocalContextValue(name = AS_OF, required = false) LocalDate asOf, DataFetchingEnvironment env) {
+        // Queue the employee on the department history loader
+        DataLoader<EmployeeHistoryRangeDTO, List<DepartmentEmployeeDTO>> loader = env.getDataLoader(DEPARTMENT_HISTORY_LOADER);
+        return loader.load(new EmployeeHistoryRangeDTO(employee.getId(), null, null, null, asOf, isArchived(employee)));
+    }
+
+    @SchemaMapping(typeName = "EmployeeDTO")
+    public CompletableFuture<List<SalaryEmployeeDTO>> salaries(EmployeeDTO employee, @Argument LocalDate from,
+        @Argument LocalDate to, @Argument Integer last, @LocalContextValue(name = AS_OF, required = false) LocalDate asOf,
+        DataFetchingEnvironment env) {
+        // Queue the employee on the salary history loader; equal ranges are loaded together
+        DataLoader<EmployeeHistoryRangeDTO, List<SalaryEmployeeDTO>> loader = env.getDataLoader(SALARY_HISTORY_LOADER);
+        return loader.load(historyRange(employee, from, to, last, asOf));
+    }
+
+    @SchemaMapping(typeName = "EmployeeDTO")
+    public CompletableFuture<List<TitleEmployeeDTO>> titles(EmployeeDTO employee, @Argument LocalDate from,
+        @Argument LocalDate to, @Argument Integer last, @LocalContextValue(name = AS_OF, required = false) LocalDate asOf,
+        DataFetchingEnvironment env) {
+        // Queue the employee on the title history loader; equal ranges are loaded together
+        DataLoader<EmployeeHistoryRangeDTO, List<TitleEmployeeDTO>> loader = env.getDataLoader(TITLE_HISTORY_LOADER);
+        return loader.load(historyRange(employee, from, to, last, asOf));
+    }
+
+    @BatchMapping(typeName = "EmployeeDTO")
+    public Map<EmployeeDTO, DepartmentEmployeeDTO> currentDepartment(List<EmployeeDTO> employees) {
+        // Get the open-ended department row of all employees in one query (and of the archived ones in another)
+        Map<Long, DepartmentEmployeeDTO> departments = new HashMap<>(departmentEmployeeService
+            .getCurrentDepartmentsByEmployeeIds(employeeIds(employees, false)));
+        departments.putAll(employeeArchiveService.getCurrentArchivedDepartmentsByEmployeeIds(employeeIds(employees, true)));
+
+        // Employees without an open-ended row are left out of the map and resolve to null
+        return employees.stream()
+            .filter(employee -> departments.containsKey(employee.getId()))
+            .collect(Collectors.toMap(Function.identity(), employee -> departments.get(employee.getId()), (a, b) -> a));
+    }
+
+    @BatchMapping(typeName = "EmployeeDTO")
+    public Map<EmployeeDTO, SalaryEmployeeDTO> currentSalary(List<EmployeeDTO> employees) {
+        // Get the open-ended salary row of all employees in one query (and of the archived ones in another)
+        Map<Long, SalaryEmployeeDTO> salaries = new HashMap<>(salaryEmployeeService
+            .getCurrentSalariesByEmployeeIds(employeeIds(employees, false)));
+        salaries.putAll(employeeArchiveService.getCurrentArchivedSalariesByEmployeeIds(employeeIds(employees, true)));
+
+        // Employees without an open-ended row are left out of the map and resolve to null
+        return employees.stream()
+            .filter(employee -> salaries.containsKey(employee.getId()))
+            .collect(Collectors.toMap(Function.identity(), employee -> salaries.get(employee.getId()), (a, b) -> a));
+    }
+
+    @BatchMapping(typeName = "EmployeeDTO")
+    public Map<EmployeeDTO, TitleEmployeeDTO> currentTitle(List<EmployeeDTO> employees) {
+        // Get the open-ended title row of all employees in one query (and of the archived ones in another)
+        Map<Long, TitleEmployeeDTO> titles = new HashMap<>(titleEmployeeService
+            .getCurrentTitlesByEmployeeIds(employeeIds(employees, false)));
+        titles.putAll(employeeArchiveService.getCurrentArchivedTitlesByEmployeeIds(employeeIds(employees, true)));
+
+        // Employees without an open-ended row are left out of the map and resolve to null
+        return employees.stream()
+            .filter(employee -> titles.containsKey(employee.getId()))
+            .collect(Collectors.toMap(Function.identity(), employee -> titles.get(employee.getId()), (a, b) -> a));
+    }
+
+    // Wrap a query result so that the asOf date is visible to the nested fields as local context
+    private <T> DataFetcherResult<T> withAsOf(T data, LocalDate asOf) {
+        DataFetcherResult.Builder<T> result = DataFetcherResult.<T>newResult().data(data);
+        if (asOf != null) {
+            result.localContext(GraphQLContext.newContext().of(AS_OF, asOf).build());
         }
 
-        try {
-            // Delete employee
-            return employeeService.deleteEmployee(id);
-        } catch (Exception e) {
-            logger.error("Error deleting employee: {}", e.getMessage());
-            throw new RuntimeException(e.getMessage());
+        return result.build();
+    }
+
+    // Get the name of the employee loader that reads the hot tables, and the archive if requested
+    private static String employeeLoader(Boolean includeArchived) {
+        return Boolean.TRUE.equals(includeArchived) ? EMPLOYEE_WITH_ARCHIVE_LOADER : EMPLOYEE_LOADER;
+    }
+
+    private static boolean isArchived(EmployeeDTO employee) {
+        return Boolean.TRUE.equals(employee.getArchived());
+    }
+
+    private GraphQLError employeeNotFound(Long id, DataFetchingEnvironment env, ResultPath path) {
+        return GraphQLExceptionConfig.domainError(
+            new NotFoundException(ErrorCode.EMPLOYEE_NOT_FOUND, "Employee with id " + id + " does not exist"), env, path);
+    }
+
+    // Collect the distinct ids of the archived or not archived employees of a batch
+    private List<Long> employeeIds(List<EmployeeDTO> employees, boolean archived) {
+        return employees.stream().filter(employee -> isArchived(employee) == archived)
+            .map(EmployeeDTO::getId).distinct().toList();
+    }
+
+    // Validate the history arguments of an employee field and build the DataLoader key
+    private EmployeeHistoryRangeDTO historyRange(EmployeeDTO employee, LocalDate from, LocalDate to, Integer last,
+        LocalDate asOf) {
+        if (last != null && last <= 0) {
+            logger.error("Invalid last argument: {}", last);
+            throw new ValidationException(ErrorCode.INVALID_ARGUMENT, "Last must be greater than zero");
+        }
+
+        if (asOf != null && (from != null || to != null || last != null)) {
+            logger.error("History arguments inside a query with asOf: {} - {}, last {}", from, to, last);
+            throw new ValidationException(ErrorCode.INVALID_ARGUMENT,
+                "From, to and last cannot be combined with the asOf argument of the query");
+        }
+
+        if (from != null && to != null && from.isAfter(to)) {
+            logger.error("Invalid date range: {} - {}", from, to);
+            throw new ValidationException(ErrorCode.INVALID_ARGUMENT, "From date cannot be after to date");
         }
+
+        return new EmployeeHistoryRangeDTO(employee.getId(), from, to, last, asOf, isArchived(employee));
+    }
+
+    // Load the history of a batch of keys with one query per distinct range
+    private <V> Map<EmployeeHistoryRangeDTO, List<V>> loadHistory(Set<EmployeeHistoryRangeDTO> keys,
+        BiFunction<List<Long>, EmployeeHistoryRangeDTO, Map<Long, List<V>>> loader) {
+        // Group the keys by range and tier (ignoring the employee id)
+        Map<EmployeeHistoryRangeDTO, List<EmployeeHistoryRangeDTO>> keysByRange = keys.stream()
+            .collect(Collectors.groupingBy(key -> new EmployeeHistoryRangeDTO(null, key.getFrom(), key.getTo(), key.getLast(),
+                key.getAsOf(), key.isArchived())));
+
+        // Load each range for all of its employees and map the rows back to the keys
+        Map<EmployeeHistoryRangeDTO, List<V>> result = new HashMap<>();
+        keysByRange.forEach((range, rangeKeys) -> {
+            Map<Long, List<V>> history = loader.apply(
+                rangeKeys.stream().map(EmployeeHistoryRangeDTO::getEmployeeId).distinct().toList(), range);
+            rangeKeys.forEach(key -> result.put(key, history.getOrDefault(key.getEmployeeId(), List.of())));
+        });
+
+        return result;
     }
 }
@@ -0,0 +1,95 @@
+package com.yoanesber.graphql_employee_management.datasource;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+ * AdaptivePoolSizer periodically resizes the HikariCP pool within [min-size, max-size],
+ * using the acquire wait and usage time measured by InstrumentedDataSource (see GradientPoolSizeLimiter).
+ * It is disabled by default (app.datasource.adaptive-pool.enabled=false), in which case the pool keeps its fixed size.
+ * The minimum idle connections are set to min-size, so that connections above the current need are retired
+ * by HikariCP after its idle timeout.
+ */
+
+@Component
+@ConditionalOnProperty(name = "app.datasource.adaptive-pool.enabled", havingValue = "true")
+public class AdaptivePoolSizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+
+    private final InstrumentedDataSource instrumentedDataSource;
+
+    private final HikariDataSource hikariDataSource;
+
+    private final GradientPoolSizeLimiter limiter;
+
+    private final AtomicInteger poolSize = new AtomicInteger();
+
+    private InstrumentedDataSource.Totals previousTotals;
+
+    private long previousNanos;
+
+    public AdaptivePoolSizer(DataSource dataSource, MeterRegistry meterRegistry,
+        @Value("${app.datasource.adaptive-pool.min-size:2}") int minSize,
+        @Value("${app.datasource.adaptive-pool.max-size:20}") int maxSize,
+        @Value("${app.datasource.adaptive-pool.wait-threshold:0.1}") double waitThreshold) {
+        try {
+            this.instrumentedDataSource = dataSource.unwrap(InstrumentedDataSource.class);
+            this.hikariDataSource = dataSource.unwrap(HikariDataSource.class);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Adaptive pool sizing requires an instrumented HikariCP data source: " + e.getMessage());
+        }
+        this.limiter = new GradientPoolSizeLimiter(minSize, maxSize, waitThreshold);
+        this.previousTotals = instrumentedDataSource.getTotals();
+        this.previousNanos = System.nanoTime();
+
+        // Start from the configured size, within bounds
+        HikariConfigMXBean config = hikariDataSource.getHikariConfigMXBean();
+        poolSize.set(Math.max(minSize, Math.min(maxSize, config.getMaximumPoolSize())));
+        config.setMinimumIdle(minSize);
+        config.setMaximumPoolSize(poolSize.get());
+        meterRegistry.gauge("db.pool.adaptive.size", poolSize);
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.adaptive-pool.interval:PT5S}")
+    public void resize() {
+        // The pool is started on the first connection
+        HikariPoolMXBean pool = hikariDataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return;
+        }
+
+        // Observe the last interval
+        InstrumentedDataSource.Totals totals = instrumentedDataSource.getTotals();
+        long now = System.nanoTime();
+        GradientPoolSizeLimiter.Sample sample = new GradientPoolSizeLimiter.Sample(
+            totals.acquisitions() - previousTotals.acquisitions(),
+            totals.acquireNanos() - previousTotals.acquireNanos(),
+            totals.usageNanos() - previousTotals.usageNanos(),
+            pool.getThreadsAwaitingConnection(),
+            now - previousNanos);
+        previousTotals = totals;
+        previousNanos = now;
+
+        // Resize the pool
+        int currentSize = poolSize.get();
+        int nextSize = limiter.nextSize(currentSize, sample);
+        if (nextSize != currentSize) {
+            hikariDataSource.getHikariConfigMXBean().setMaximumPoolSize(nextSize);
+            poolSize.set(nextSize);
+            logger.info("Connection pool resized from {} to {} (acquisitions: {}, threads awaiting: {})",
+                currentSize, nextSize, sample.acquisitions(), sample.threadsAwaiting());
+        }
+    }
+}
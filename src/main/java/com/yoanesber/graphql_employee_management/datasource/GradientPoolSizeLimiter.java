@@ -0,0 +1,78 @@
+package com.yoanesber.graphql_employee_management.datasource;
+
+import org.springframework.util.Assert;
+
+/*
+ * This class computes the size of the connection pool from what was observed during the last interval.
+ *
+ * - Little's law gives the number of connections actually needed: (connections in use) = (acquisition rate) x (usage time),
+ *   i.e. the total usage time of the interval divided by its duration.
+ * - When callers had to wait for a connection (acquire wait above a fraction of the usage time, or threads still waiting),
+ *   the pool grows by sqrt(size), scaled by a latency gradient: (baseline usage time) / (current usage time).
+ *   While the database keeps its latency the gradient is 1 and the pool grows; when more connections only make
+ *   every query slower (the database is saturated) the gradient drops and the pool shrinks instead.
+ * - Without waits, the pool shrinks by at most one connection per interval, down to the Little's law estimate plus headroom.
+ *
+ * The baseline usage time is the lowest observed one, drifting up slowly so that a lasting change of the workload is adopted.
+ * This class is not thread-safe; it is meant to be called by a single scheduler.
+ */
+
+public class GradientPoolSizeLimiter {
+
+    private static final double MIN_GRADIENT = 0.5;
+
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private static final double HEADROOM = 1.25;
+
+    private final int minSize;
+
+    private final int maxSize;
+
+    private final double waitThreshold;
+
+    private double baselineUsageNanos = Double.NaN;
+
+    // What was observed during one interval
+    public record Sample(long acquisitions, long acquireNanos, long usageNanos, int threadsAwaiting, long intervalNanos) {
+    }
+
+    public GradientPoolSizeLimiter(int minSize, int maxSize, double waitThreshold) {
+        Assert.isTrue(minSize > 0, "Minimum pool size must be greater than 0");
+        Assert.isTrue(maxSize >= minSize, "Maximum pool size must be greater than or equal to the minimum pool size");
+        Assert.isTrue(waitThreshold > 0, "Wait threshold must be greater than 0");
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.waitThreshold = waitThreshold;
+    }
+
+    public int nextSize(int currentSize, Sample sample) {
+        // Nothing was executed: release one connection
+        if (sample.acquisitions() == 0 || sample.intervalNanos() <= 0) {
+            return clamp(currentSize - 1);
+        }
+
+        double usage = (double) sample.usageNanos() / sample.acquisitions();
+        double wait = (double) sample.acquireNanos() / sample.acquisitions();
+
+        // Track the baseline (lowest) usage time
+        baselineUsageNanos = Double.isNaN(baselineUsageNanos)
+            ? usage
+            : Math.min(usage, baselineUsageNanos * (1 + BASELINE_DRIFT));
+
+        // Callers waited for connections: grow, unless queries are getting slower with more connections
+        if (sample.threadsAwaiting() > 0 || wait > waitThreshold * usage) {
+            double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, baselineUsageNanos / usage));
+            return clamp((int) Math.round(currentSize * gradient + Math.sqrt(currentSize)));
+        }
+
+        // No waits: shrink towards the number of connections in use (Little's law) plus headroom
+        double inUse = (double) sample.usageNanos() / sample.intervalNanos();
+        int needed = (int) Math.ceil(inUse * HEADROOM);
+        return clamp(Math.min(currentSize, Math.max(currentSize - 1, needed)));
+    }
+
+    private int clamp(int size) {
+        return Math.max(minSize, Math.min(maxSize, size));
+    }
+}
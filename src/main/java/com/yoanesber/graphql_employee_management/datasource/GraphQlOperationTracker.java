@@ -0,0 +1,68 @@
+package com.yoanesber.graphql_employee_management.datasource;
+
+import graphql.ExecutionResult;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.language.Field;
+import graphql.language.OperationDefinition;
+import org.springframework.stereotype.Component;
+
+/*
+ * This instrumentation keeps the GraphQL operation being executed on the current thread,
+ * so that InstrumentedDataSource can tag connection metrics with it.
+ * The operation is named after its type and first root field (e.g. "query getEmployeeById"), which is bounded
+ * by the schema, unlike client-chosen operation names.
+ * Data fetchers and batch loaders run synchronously on the request thread, so the operation is set from the start
+ * of the execution until it is dispatched; connections used outside GraphQL are reported as "none".
+ */
+
+@Component
+public class GraphQlOperationTracker extends SimplePerformantInstrumentation {
+
+    private static final String NONE = "none";
+
+    private static final ThreadLocal<String> CURRENT_OPERATION = new ThreadLocal<>();
+
+    // Get the GraphQL operation executed on the current thread
+    public static String currentOperation() {
+        String operation = CURRENT_OPERATION.get();
+        return operation != null ? operation : NONE;
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters,
+        InstrumentationState state) {
+        String previous = CURRENT_OPERATION.get();
+        CURRENT_OPERATION.set(operationName(parameters.getExecutionContext().getOperationDefinition()));
+
+        return new InstrumentationContext<>() {
+            @Override
+            public void onDispatched() {
+                // Restore the previous operation on the thread that started the execution
+                if (previous == null) {
+                    CURRENT_OPERATION.remove();
+                } else {
+                    CURRENT_OPERATION.set(previous);
+                }
+            }
+
+            @Override
+            public void onCompleted(ExecutionResult result, Throwable t) {
+            }
+        };
+    }
+
+    // Name an operation after its type and first root field
+    public static String operationName(OperationDefinition operationDefinition) {
+        String type = operationDefinition.getOperation().name().toLowerCase();
+
+        // Use the first root field as the name of the operation
+        return operationDefinition.getSelectionSet().getSelections().stream()
+            .filter(Field.class::isInstance)
+            .map(selection -> type + " " + ((Field) selection).getName())
+            .findFirst()
+            .orElse(type);
+    }
+}
@@ -0,0 +1,122 @@
+package com.yoanesber.graphql_employee_management.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/*
+ * This DataSource wraps the connection pool to measure, per GraphQL operation (see GraphQlOperationTracker):
+ * - db.connection.acquire: time spent waiting for a connection
+ * - db.connection.usage: time a connection is held, from acquisition until it is closed (returned to the pool)
+ * It also keeps cumulative totals, read by AdaptivePoolSizer to size the pool, and counts the statements prepared
+ * on each thread, read by SlowOperationRecorder.
+ */
+
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    // Statements prepared on each thread (a single counter per thread, never reset)
+    private static final ThreadLocal<long[]> STATEMENTS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final Map<String, Timer> acquireTimers = new ConcurrentHashMap<>();
+
+    private final Map<String, Timer> usageTimers = new ConcurrentHashMap<>();
+
+    private final LongAdder acquisitions = new LongAdder();
+
+    private final LongAdder acquireNanos = new LongAdder();
+
+    private final LongAdder usageNanos = new LongAdder();
+
+    // Cumulative totals since the start of the application
+    public record Totals(long acquisitions, long acquireNanos, long usageNanos) {
+    }
+
+    public InstrumentedDataSource(DataSource targetDataSource, ObjectProvider<MeterRegistry> meterRegistry) {
+        super(targetDataSource);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        return instrument(super.getConnection(), start);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        return instrument(super.getConnection(username, password), start);
+    }
+
+    // Get the number of statements prepared on the current thread so far
+    public static long statementCount() {
+        return STATEMENTS.get()[0];
+    }
+
+    public Totals getTotals() {
+        return new Totals(acquisitions.sum(), acquireNanos.sum(), usageNanos.sum());
+    }
+
+    private Connection instrument(Connection connection, long start) {
+        long acquired = System.nanoTime();
+        String operation = GraphQlOperationTracker.currentOperation();
+
+        // Record the acquisition
+        acquisitions.increment();
+        acquireNanos.add(acquired - start);
+        timer(acquireTimers, "db.connection.acquire", "Time spent waiting for a database connection", operation)
+            .record(acquired - start, TimeUnit.NANOSECONDS);
+
+        // Record the usage when the connection is returned to the pool (only once, close may be called again)
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+                // Compare connections by proxy identity, as callers only see the proxy
+                if ("equals".equals(method.getName()) && method.getParameterCount() == 1) {
+                    return proxy == args[0];
+                }
+                if ("hashCode".equals(method.getName()) && method.getParameterCount() == 0) {
+                    return System.identityHashCode(proxy);
+                }
+
+                // Count the statements (prepareStatement, prepareCall, createStatement)
+                if (method.getName().startsWith("prepare") || "createStatement".equals(method.getName())) {
+                    STATEMENTS.get()[0]++;
+                }
+
+                if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                    long used = System.nanoTime() - acquired;
+                    usageNanos.add(used);
+                    timer(usageTimers, "db.connection.usage", "Time a database connection is held", operation)
+                        .record(used, TimeUnit.NANOSECONDS);
+                }
+
+                try {
+                    return method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+            });
+    }
+
+    private Timer timer(Map<String, Timer> timers, String name, String description, String operation) {
+        return timers.computeIfAbsent(operation, key -> Timer.builder(name)
+            .description(description)
+            .tag("operation", key)
+            .publishPercentileHistogram()
+            .register(meterRegistry.getObject()));
+    }
+}
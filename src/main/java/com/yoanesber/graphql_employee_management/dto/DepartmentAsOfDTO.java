@@ -0,0 +1,27 @@
+package com.yoanesber.graphql_employee_management.dto;
+
+import java.time.LocalDate;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/*
+ * DepartmentAsOfDTO is a Data Transfer Object (DTO) identifying the employees of a department on a date
+ * (the asOf argument of the enclosing query, or today).
+ * It is used as the DataLoader key of DepartmentDTO.employees, so the departments requested on the same date
+ * are loaded together.
+ * The class uses Lombok annotations to reduce boilerplate code for getters, setters, equals and hashCode.
+ */
+
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor // Helps create DTO objects easily (useful when building DataLoader keys).
+public class DepartmentAsOfDTO {
+    private String departmentId;
+
+    private LocalDate asOf;
+}
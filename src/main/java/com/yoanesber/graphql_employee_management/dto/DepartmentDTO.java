@@ -29,6 +29,7 @@ public class DepartmentDTO {
     private OffsetDateTime createdDate;
     private Long updatedBy;
     private OffsetDateTime updatedDate;
+    private Long version;
 
     // Constructor to convert from Department entity to DepartmentDTO
     // This constructor is useful when you want to create a DTO from an existing entity.
@@ -40,5 +41,6 @@ public class DepartmentDTO {
         this.createdDate = department.getCreatedDate();
         this.updatedBy = department.getUpdatedBy();
         this.updatedDate = department.getUpdatedDate();
+        this.version = department.getVersion();
     }
 }
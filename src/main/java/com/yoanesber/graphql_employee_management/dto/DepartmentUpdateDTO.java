@@ -29,4 +29,7 @@ public class DepartmentUpdateDTO {
 
     @NotNull(message = "Department Updated By cannot be null")
     private Long updatedBy;
+
+    // Version the update is based on; when set, the update fails with a conflict if the department has changed since
+    private Long version;
 }
@@ -0,0 +1,33 @@
+package com.yoanesber.graphql_employee_management.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/*
+ * EmployeeChangeDTO is a Data Transfer Object (DTO) for a change of the employee feed (employeesChangedSince):
+ * the employee as of the change, or a tombstone (deleted, without employee) when the employee was deleted or moved to
+ * the archive tier; the kind of the change tells which.
+ * The cursor is the position of the change in the feed; the next page starts after it.
+ */
+
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor // Helps create DTO objects easily (useful when building the pages of the feed).
+public class EmployeeChangeDTO {
+    private String cursor;
+    private Long employeeId;
+    private Boolean deleted;
+    private Kind kind;
+    private EmployeeDTO employee;
+
+    public enum Kind {
+        UPDATED,
+        DELETED,
+        ARCHIVED
+    }
+}
@@ -0,0 +1,25 @@
+package com.yoanesber.graphql_employee_management.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/*
+ * EmployeeChangePageDTO is a Data Transfer Object (DTO) for a page of the employee feed (employeesChangedSince).
+ * endCursor is the cursor to pass for the next page: the cursor of the last change, or the given cursor when there
+ * is no change yet. hasMore tells whether more changes are available right away.
+ */
+
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor // Helps create DTO objects easily (useful when building the pages of the feed).
+public class EmployeeChangePageDTO {
+    private List<EmployeeChangeDTO> changes;
+    private String endCursor;
+    private Boolean hasMore;
+}
@@ -2,21 +2,23 @@ package com.yoanesber.graphql_employee_management.dto;
 
 import java.sql.Date;
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import com.yoanesber.graphql_employee_management.entity.ArchivedEmployee;
 import com.yoanesber.graphql_employee_management.entity.Employee;
 
 /*
  * EmployeeDTO is a Data Transfer Object (DTO) used for transferring employee data between layers.
- * It contains fields that represent the employee's attributes, along with related entities (departments, salaries, titles).
+ * It contains fields that represent the employee's attributes.
+ * The related entities (departments, salaries, titles) are not copied here; they are resolved by batched
+ * field resolvers in EmployeeGraphQLController, so they are only loaded when the client selects them.
  * The class also includes constructors for converting from the Employee entity to the DTO and vice versa.
+ * An employee read from the archive tier (includeArchived: true) is marked as archived, so its fields are resolved
+ * from the archive tables.
  */
 
 @Data
@@ -36,9 +38,8 @@ public class EmployeeDTO {
     private OffsetDateTime createdDate;
     private Long updatedBy;
     private OffsetDateTime updatedDate;
-    private List<DepartmentEmployeeDTO> departments = new ArrayList<>();
-    private List<SalaryEmployeeDTO> salaries = new ArrayList<>();
-    private List<TitleEmployeeDTO> titles = new ArrayList<>();
+    private Long version;
+    private Boolean archived;
 
     // Constructor to convert from Employee entity to EmployeeDTO
     // This constructor is useful when you want to create a DTO from an existing entity.
@@ -54,8 +55,24 @@ public class EmployeeDTO {
         this.createdDate = employee.getCreatedDate();
         this.updatedBy = employee.getUpdatedBy();
         this.updatedDate = employee.getUpdatedDate();
-        this.departments = employee.getDepartments().stream().map(DepartmentEmployeeDTO::new).collect(Collectors.toList());
-        this.salaries = employee.getSalaries().stream().map(SalaryEmployeeDTO::new).collect(Collectors.toList());
-        this.titles = employee.getTitles().stream().map(TitleEmployeeDTO::new).collect(Collectors.toList());
+        this.version = employee.getVersion();
+        this.archived = false;
+    }
+
+    // Constructor to convert from ArchivedEmployee entity to EmployeeDTO
+    public EmployeeDTO(ArchivedEmployee employee) {
+        this.id = employee.getId();
+        this.birthDate = employee.getBirthDate();
+        this.firstName = employee.getFirstName();
+        this.lastName = employee.getLastName();
+        this.gender = employee.getGender();
+        this.hireDate = employee.getHireDate();
+        this.activeStatus = employee.getActiveStatus();
+        this.createdBy = employee.getCreatedBy();
+        this.createdDate = employee.getCreatedDate();
+        this.updatedBy = employee.getUpdatedBy();
+        this.updatedDate = employee.getUpdatedDate();
+        this.version = employee.getVersion();
+        this.archived = true;
     }
 }
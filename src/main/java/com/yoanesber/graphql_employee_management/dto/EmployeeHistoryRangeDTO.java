@@ -0,0 +1,54 @@
+package com.yoanesber.graphql_employee_management.dto;
+
+import java.time.LocalDate;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/*
+ * EmployeeHistoryRangeDTO is a Data Transfer Object (DTO) describing which part of an employee's history
+ * (departments, salaries or titles) is requested by the from/to/last arguments of the corresponding GraphQL fields,
+ * or by the asOf argument of the enclosing query, and whether the employee is read from the archive tier.
+ * It is used as the DataLoader key, so equal ranges of different employees are loaded with a single query.
+ * The class uses Lombok annotations to reduce boilerplate code for getters, setters, equals and hashCode.
+ */
+
+@Data
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor // Helps create DTO objects easily (useful when building DataLoader keys).
+public class EmployeeHistoryRangeDTO {
+    // Bounds used in place of a missing from/to argument, so the query stays a single bounded range scan
+    private static final LocalDate MIN_FROM_DATE = LocalDate.of(1900, 1, 1);
+    private static final LocalDate MAX_FROM_DATE = LocalDate.of(9999, 12, 31);
+
+    private Long employeeId;
+
+    // Inclusive lower bound on the from date of the history rows (null means unbounded)
+    private LocalDate from;
+
+    // Inclusive upper bound on the from date of the history rows (null means unbounded)
+    private LocalDate to;
+
+    // Only keep the latest rows of the range (null means all rows)
+    private Integer last;
+
+    // Only keep the rows effective on this date (null means no point-in-time restriction)
+    private LocalDate asOf;
+
+    // Read the history from the archive tables (the employee is archived)
+    private boolean archived;
+
+    // Get the lower bound to use for a from argument (the earliest supported date if missing)
+    public static LocalDate lowerBound(LocalDate from) {
+        return from != null ? from : MIN_FROM_DATE;
+    }
+
+    // Get the upper bound to use for a to argument (the latest supported date if missing)
+    public static LocalDate upperBound(LocalDate to) {
+        return to != null ? to : MAX_FROM_DATE;
+    }
+}
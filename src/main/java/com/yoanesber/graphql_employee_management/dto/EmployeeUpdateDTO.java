@@ -3,7 +3,6 @@ package com.yoanesber.graphql_employee_management.dto;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.NotBlank;
 import java.sql.Date;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
@@ -47,11 +46,14 @@ public class EmployeeUpdateDTO {
     @NotNull(message = "Updated By cannot be null")
     private Long updatedBy;
 
+    // Version the update is based on; when set, the update fails with a conflict if the employee has changed since
+    private Long version;
+
     // List of related entities (departments, salaries, titles) to be updated
-    // These lists are initialized to avoid NullPointerException when adding new items.
-    private List<DepartmentEmployeeDTO> departments = new ArrayList<>();
-    private List<SalaryEmployeeDTO> salaries = new ArrayList<>();
-    private List<TitleEmployeeDTO> titles = new ArrayList<>();
+    // A list left out of the update (null) keeps the current history of the employee; a list replaces it.
+    private List<DepartmentEmployeeDTO> departments;
+    private List<SalaryEmployeeDTO> salaries;
+    private List<TitleEmployeeDTO> titles;
 
     // Constructor to convert from Employee entity to EmployeeUpdateDTO
     // This constructor is useful when you want to create a DTO from an existing entity.
@@ -63,6 +65,7 @@ public class EmployeeUpdateDTO {
         this.hireDate = employee.getHireDate();
         this.activeStatus = employee.getActiveStatus();
         this.updatedBy = employee.getUpdatedBy();
+        this.version = employee.getVersion();
         this.departments = employee.getDepartments().stream().map(DepartmentEmployeeDTO::new).collect(Collectors.toList());
         this.salaries = employee.getSalaries().stream().map(SalaryEmployeeDTO::new).collect(Collectors.toList());
         this.titles = employee.getTitles().stream().map(TitleEmployeeDTO::new).collect(Collectors.toList());
@@ -0,0 +1,69 @@
+package com.yoanesber.graphql_employee_management.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.sql.Date;
+import java.time.OffsetDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Immutable;
+
+/*
+ * ArchivedEmployee is an employee moved to the archive tier (see V5__create_employee_archive.sql).
+ * The rows are written by archive_inactive_employees only, so the entity is read-only; the archived histories are read
+ * with the native queries of ArchivedEmployeeRepository.
+ */
+
+@Data
+@Getter
+@Setter
+@NoArgsConstructor  // Mandatory for JPA (Hibernate needs a no-arg constructor to create objects).
+@AllArgsConstructor // Useful for creating objects manually
+@Entity // Indicates that this class is an entity and is mapped to a database table
+@Immutable // Never updated by Hibernate
+@Table(name = "employee_archive") // name of the table in the database
+public class ArchivedEmployee {
+    @Id
+    private Long id;
+
+    @Column(name = "birth_date", nullable = false)
+    private Date birthDate;
+
+    @Column(name = "first_name", nullable = false, length = 20)
+    private String firstName;
+
+    @Column(name = "last_name", length = 20)
+    private String lastName;
+
+    @Column(name = "gender", nullable = false, length = 1)
+    private String gender;
+
+    @Column(name = "hire_date", nullable = false)
+    private Date hireDate;
+
+    @Column(name = "active", nullable = false)
+    private Boolean activeStatus;
+
+    @Column(name = "created_by", nullable = false)
+    private Long createdBy;
+
+    @Column(name = "created_date", nullable = false)
+    private OffsetDateTime createdDate;
+
+    @Column(name = "updated_by", nullable = false)
+    private Long updatedBy;
+
+    @Column(name = "updated_date", nullable = false)
+    private OffsetDateTime updatedDate;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @Column(name = "archived_date", nullable = false)
+    private OffsetDateTime archivedDate;
+}
@@ -6,6 +6,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -48,6 +49,10 @@ public class Department {
     @Column(name = "updated_date")
     private OffsetDateTime updatedDate;
 
+    @Version // Optimistic locking: incremented on every update, an update based on a stale version fails
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @OneToMany(mappedBy = "department", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<DepartmentEmployee> departmentEmployees = new ArrayList<>();
 
@@ -59,5 +64,6 @@ public class Department {
         this.createdDate = departmentDTO.getCreatedDate();
         this.updatedBy = departmentDTO.getUpdatedBy();
         this.updatedDate = departmentDTO.getUpdatedDate();
+        this.version = departmentDTO.getVersion();
     }
 }
@@ -8,6 +8,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import java.sql.Date;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
@@ -60,6 +61,10 @@ public class Employee {
     @Column(name = "updated_date", nullable = false)
     private OffsetDateTime updatedDate;
 
+    @Version // Optimistic locking: incremented on every update, an update based on a stale version fails
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @OneToMany(mappedBy = "employee", cascade = CascadeType.ALL, orphanRemoval = true)
     // mappedBy is the name of the field in the other entity that maps this relationship
     // cascade = CascadeType.ALL means that if an Employee is deleted, all related DepartmentEmployee, SalaryEmployee, and TitleEmployee will also be deleted
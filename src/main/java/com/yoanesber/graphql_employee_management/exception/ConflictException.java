@@ -0,0 +1,12 @@
+package com.yoanesber.graphql_employee_management.exception;
+
+/*
+ * This exception is thrown when a mutation conflicts with the current state of an entity
+ * (e.g. it already exists, or it has been modified since it was read).
+ */
+
+public class ConflictException extends DomainException {
+    public ConflictException(ErrorCode code, String message) {
+        super(code, message);
+    }
+}
@@ -0,0 +1,27 @@
+package com.yoanesber.graphql_employee_management.exception;
+
+import java.util.Map;
+import lombok.Getter;
+
+/*
+ * Base class of the expected errors of the application (not found, conflict, validation).
+ * These exceptions are stackless: they describe an outcome for the client, not a bug, so capturing a stack trace
+ * (the most expensive part of throwing an exception) and logging it would only cost CPU on hot error paths,
+ * e.g. lookups of unknown ids. GraphQLExceptionConfig maps each subclass to an error classification and returns
+ * the code and extensions to the client.
+ */
+
+@Getter
+public abstract class DomainException extends RuntimeException {
+    private final ErrorCode code;
+
+    protected DomainException(ErrorCode code, String message) {
+        super(message, null, false, false); // no suppressed exceptions, no stack trace
+        this.code = code;
+    }
+
+    // Additional details returned in the extensions of the GraphQL error
+    public Map<String, Object> getExtensions() {
+        return Map.of();
+    }
+}
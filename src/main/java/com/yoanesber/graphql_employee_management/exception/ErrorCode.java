@@ -0,0 +1,16 @@
+package com.yoanesber.graphql_employee_management.exception;
+
+/*
+ * Error codes returned to the client in the "code" extension of a GraphQL error.
+ * Clients should rely on the code rather than on the message, which is meant for humans.
+ */
+
+public enum ErrorCode {
+    EMPLOYEE_NOT_FOUND,
+    DEPARTMENT_NOT_FOUND,
+    DEPARTMENT_ALREADY_EXISTS,
+    VERSION_CONFLICT,
+    CONCURRENT_MODIFICATION,
+    INVALID_ARGUMENT,
+    SERVER_BUSY
+}
@@ -0,0 +1,11 @@
+package com.yoanesber.graphql_employee_management.exception;
+
+/*
+ * This exception is thrown when a requested entity does not exist.
+ */
+
+public class NotFoundException extends DomainException {
+    public NotFoundException(ErrorCode code, String message) {
+        super(code, message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.yoanesber.graphql_employee_management.exception;
+
+/*
+ * This exception is thrown when the arguments of a request are invalid.
+ */
+
+public class ValidationException extends DomainException {
+    public ValidationException(ErrorCode code, String message) {
+        super(code, message);
+    }
+}
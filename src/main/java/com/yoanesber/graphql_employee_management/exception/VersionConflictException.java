@@ -0,0 +1,38 @@
+package com.yoanesber.graphql_employee_management.exception;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.Getter;
+
+/*
+ * This exception is thrown when a mutation is based on a stale version of an entity.
+ * It carries the expected version sent by the client and the actual version found in the database,
+ * so that GraphQLExceptionConfig can return them to the client as a typed conflict error.
+ */
+
+@Getter
+public class VersionConflictException extends ConflictException {
+    private final String entityName;
+    private final Object entityId;
+    private final Long expectedVersion;
+    private final Long actualVersion;
+
+    public VersionConflictException(String entityName, Object entityId, Long expectedVersion, Long actualVersion) {
+        super(ErrorCode.VERSION_CONFLICT, entityName + " with id " + entityId + " has been modified (expected version "
+            + expectedVersion + ", actual version " + actualVersion + ")");
+        this.entityName = entityName;
+        this.entityId = entityId;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    @Override
+    public Map<String, Object> getExtensions() {
+        Map<String, Object> extensions = new LinkedHashMap<>();
+        extensions.put("entity", entityName);
+        extensions.put("id", String.valueOf(entityId));
+        extensions.put("expectedVersion", expectedVersion);
+        extensions.put("actualVersion", actualVersion);
+        return extensions;
+    }
+}
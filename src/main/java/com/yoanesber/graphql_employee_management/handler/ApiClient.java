@@ -0,0 +1,106 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * This class is a client identified by an API key, with its limits and usage:
+ * - a token bucket of requestsPerSecond with a burst (no rate limit when requestsPerSecond is 0)
+ * - a cap of maxConcurrent requests in progress (no cap when 0)
+ * - the api.requests counters (tagged with the client name and outcome) and the api.requests.in.flight gauge
+ * The ApiKeyRegistry keeps the same instance across reloads as long as its definition does not change.
+ */
+
+class ApiClient {
+
+    // Definition of a client, as found in the API keys file
+    record Definition(String name, String key, Double requestsPerSecond, Integer burst, Integer maxConcurrent) {
+    }
+
+    private final Definition definition;
+
+    private final TokenBucket tokenBucket;
+
+    private final int maxConcurrent;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Counter allowed;
+
+    private final Counter rateLimited;
+
+    private final Counter concurrencyLimited;
+
+    private final Gauge inFlightGauge;
+
+    ApiClient(Definition definition, MeterRegistry meterRegistry) {
+        this.definition = definition;
+        this.tokenBucket = definition.requestsPerSecond() > 0
+            ? new TokenBucket(definition.requestsPerSecond(), definition.burst()) : null;
+        this.maxConcurrent = definition.maxConcurrent();
+        this.allowed = counter(meterRegistry, "allowed");
+        this.rateLimited = counter(meterRegistry, "rate_limited");
+        this.concurrencyLimited = counter(meterRegistry, "concurrency_limited");
+        this.inFlightGauge = Gauge.builder("api.requests.in.flight", inFlight, AtomicInteger::get)
+            .description("Number of GraphQL requests in progress per API client")
+            .tag("client", definition.name())
+            .register(meterRegistry);
+    }
+
+    private Counter counter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("api.requests")
+            .description("Number of GraphQL requests per API client and outcome")
+            .tag("client", definition.name())
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+
+    Definition getDefinition() {
+        return definition;
+    }
+
+    String getName() {
+        return definition.name();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    // Start a request if the client is under its concurrency cap
+    boolean tryEnter() {
+        while (true) {
+            int current = inFlight.get();
+            if (maxConcurrent > 0 && current >= maxConcurrent) {
+                concurrencyLimited.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Take a token for a started request: 0 if allowed, otherwise the nanos until the next token
+    long tryConsume() {
+        long waitNanos = tokenBucket != null ? tokenBucket.tryConsume() : 0;
+        if (waitNanos > 0) {
+            rateLimited.increment();
+        } else {
+            allowed.increment();
+        }
+        return waitNanos;
+    }
+
+    // End a started request
+    void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    // Remove the gauge of a client that was removed or redefined (the counters are kept, as they are cumulative)
+    void close(MeterRegistry meterRegistry) {
+        meterRegistry.remove(inFlightGauge);
+    }
+}
@@ -1,46 +1,142 @@
 package com.yoanesber.graphql_employee_management.handler;
 
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import org.springframework.beans.factory.annotation.Value;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 /*
  * This class is responsible for filtering incoming HTTP requests to check for a valid API key.
- * It ensures that only requests with the correct API key can access the GraphQL endpoint.
+ * It ensures that only requests with a known API key (see ApiKeyRegistry) can access the GraphQL endpoint.
  * If the API key is missing or invalid, it returns a 401 Unauthorized response.
+ * The client of a known key is also authenticated in the security context, which SecurityConfig requires for the
+ * actuator endpoints (without the limits below).
+ * It then enforces the limits of the client, before the request is read or parsed:
+ * - when the client already has maxConcurrent requests in progress, it returns 429 with Retry-After: 1
+ * - when the token bucket of the client is empty, it returns 429 with Retry-After set to the seconds until the next token
+ * GraphQL requests complete asynchronously, so a request stays in progress until its async processing completes.
+ * The name of the client is set as a request attribute (CLIENT_NAME_ATTRIBUTE), for the filters that follow.
  */
 
 @Component
 public class ApiKeyAuthFilter extends OncePerRequestFilter {
 
-    @Value("${app.api.key}")
-    private String apiKey;
+    static final String CLIENT_NAME_ATTRIBUTE = ApiKeyAuthFilter.class.getName() + ".CLIENT_NAME";
+
+    private final ApiKeyRegistry apiKeyRegistry;
+
+    public ApiKeyAuthFilter(ApiKeyRegistry apiKeyRegistry) {
+        this.apiKeyRegistry = apiKeyRegistry;
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
-                
-        String requestApiKey = request.getHeader("X-API-KEY");
-
-        if ("/graphql".equals(request.getRequestURI())) {
-            if (requestApiKey == null || !requestApiKey.equals(apiKey)) {
-                response.setStatus(HttpStatus.UNAUTHORIZED.value());
-                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
-                response.getWriter().write("{\"error\": \"Unauthorized: Invalid or missing API key\"}");
-                return;
+
+        // Actuator endpoints: authenticate a known API key, and leave the authorization to SecurityConfig
+        if (request.getRequestURI().startsWith("/actuator/")) {
+            ApiClient client = apiKeyRegistry.getClient(request.getHeader("X-API-KEY"));
+            if (client != null) {
+                authenticate(client);
             }
+            filterChain.doFilter(request, response);
+            return;
         }
+
         // Allow other endpoints to be accessed without API key
-        // You can add more logic here if needed for other endpoints
+        if (!"/graphql".equals(request.getRequestURI())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        ApiClient client = apiKeyRegistry.getClient(request.getHeader("X-API-KEY"));
+        if (client == null) {
+            writeError(response, HttpStatus.UNAUTHORIZED, "Unauthorized: Invalid or missing API key");
+            return;
+        }
+
+        // Check the concurrency cap, then take a token
+        if (!client.tryEnter()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            writeError(response, HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests: too many concurrent requests");
+            return;
+        }
+        long waitNanos = client.tryConsume();
+        if (waitNanos > 0) {
+            client.exit();
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+            writeError(response, HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests: rate limit exceeded");
+            return;
+        }
+
+        request.setAttribute(CLIENT_NAME_ATTRIBUTE, client.getName());
+        authenticate(client);
 
-        filterChain.doFilter(request, response);
+        AtomicBoolean exited = new AtomicBoolean();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // End the request when its async processing completes (the async dispatch does not run this filter)
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        exit(client, exited);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                        exit(client, exited);
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                        exit(client, exited);
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                exit(client, exited);
+            }
+        }
+    }
+
+    // Authenticate the client for the rest of the request (the security context is not kept across requests)
+    private static void authenticate(ApiClient client) {
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(client.getName(), null,
+            List.of(new SimpleGrantedAuthority("ROLE_API_CLIENT"))));
+        SecurityContextHolder.setContext(context);
+    }
+
+    // End a request only once (an async request may both time out and complete)
+    private static void exit(ApiClient client, AtomicBoolean exited) {
+        if (exited.compareAndSet(false, true)) {
+            client.exit();
+        }
+    }
 
+    private static void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\": \"" + message + "\"}");
     }
 }
@@ -0,0 +1,146 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/*
+ * This class holds the API clients allowed to call the GraphQL endpoint, looked up by API key on every request.
+ * The clients are:
+ * - "default", with the key app.api.key (if set)
+ * - the clients of the JSON file app.api.keys-file (if set): a list of {name, key, requestsPerSecond, burst, maxConcurrent},
+ *   where the limits are optional and default to app.api.rate-limit.* (unlimited by default)
+ * The file is checked every app.api.keys-reload-interval and reloaded when it was modified. A client whose definition
+ * did not change keeps its instance, and so its token bucket and requests in progress. An invalid file is rejected
+ * at startup, and ignored (keeping the current clients) on reload.
+ */
+
+@Component
+public class ApiKeyRegistry {
+
+    private static final String DEFAULT_CLIENT = "default";
+
+    private final ObjectMapper objectMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    private final String defaultKey;
+
+    private final Path keysFile;
+
+    private final double defaultRequestsPerSecond;
+
+    private final int defaultBurst;
+
+    private final int defaultMaxConcurrent;
+
+    // Clients by API key, replaced as a whole on reload
+    private volatile Map<String, ApiClient> clients = Map.of();
+
+    private FileTime keysFileModified;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public ApiKeyRegistry(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+        @Value("${app.api.key:}") String defaultKey,
+        @Value("${app.api.keys-file:}") String keysFile,
+        @Value("${app.api.rate-limit.requests-per-second:0}") double defaultRequestsPerSecond,
+        @Value("${app.api.rate-limit.burst:100}") int defaultBurst,
+        @Value("${app.api.rate-limit.max-concurrent:0}") int defaultMaxConcurrent) throws IOException {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.defaultKey = defaultKey;
+        this.keysFile = keysFile.isBlank() ? null : Path.of(keysFile);
+        this.defaultRequestsPerSecond = defaultRequestsPerSecond;
+        this.defaultBurst = defaultBurst;
+        this.defaultMaxConcurrent = defaultMaxConcurrent;
+        load();
+    }
+
+    // Get the client of an API key, or null if the key is unknown
+    ApiClient getClient(String apiKey) {
+        return apiKey != null ? clients.get(apiKey) : null;
+    }
+
+    @Scheduled(fixedDelayString = "${app.api.keys-reload-interval:PT30S}")
+    public synchronized void reloadIfModified() {
+        if (keysFile == null) {
+            return;
+        }
+
+        try {
+            if (!Files.getLastModifiedTime(keysFile).equals(keysFileModified)) {
+                load();
+                logger.info("Reloaded {} API clients from {}", clients.size(), keysFile);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Error reloading the API keys file {}, keeping the current clients: {}", keysFile, e.getMessage());
+        }
+    }
+
+    private synchronized void load() throws IOException {
+        List<ApiClient.Definition> definitions = new ArrayList<>();
+        if (!defaultKey.isBlank()) {
+            definitions.add(withDefaults(new ApiClient.Definition(DEFAULT_CLIENT, defaultKey, null, null, null)));
+        }
+        if (keysFile != null) {
+            FileTime modified = Files.getLastModifiedTime(keysFile);
+            List<ApiClient.Definition> fileDefinitions = objectMapper.readValue(keysFile.toFile(),
+                new TypeReference<List<ApiClient.Definition>>() { });
+            fileDefinitions.forEach(definition -> definitions.add(withDefaults(definition)));
+            keysFileModified = modified;
+        }
+
+        // Check the definitions before replacing any client
+        Set<String> names = new HashSet<>();
+        Set<String> keys = new HashSet<>();
+        for (ApiClient.Definition definition : definitions) {
+            if (definition.name() == null || definition.name().isBlank() || definition.key() == null || definition.key().isBlank()) {
+                throw new IllegalArgumentException("Every API client must have a name and a key");
+            }
+            if (!names.add(definition.name()) || !keys.add(definition.key())) {
+                throw new IllegalArgumentException("Duplicate API client name or key: " + definition.name());
+            }
+        }
+
+        // Keep the clients whose definition did not change, remove the gauges of the others
+        Map<String, ApiClient> previous = clients;
+        Map<String, ApiClient> loaded = new HashMap<>();
+        Set<ApiClient> kept = new HashSet<>();
+        for (ApiClient.Definition definition : definitions) {
+            ApiClient existing = previous.get(definition.key());
+            if (existing != null && existing.getDefinition().equals(definition)) {
+                loaded.put(definition.key(), existing);
+                kept.add(existing);
+            }
+        }
+        previous.values().stream().filter(client -> !kept.contains(client)).forEach(client -> client.close(meterRegistry));
+        for (ApiClient.Definition definition : definitions) {
+            loaded.computeIfAbsent(definition.key(), key -> new ApiClient(definition, meterRegistry));
+        }
+
+        clients = Map.copyOf(loaded);
+    }
+
+    private ApiClient.Definition withDefaults(ApiClient.Definition definition) {
+        return new ApiClient.Definition(definition.name(), definition.key(),
+            definition.requestsPerSecond() != null ? definition.requestsPerSecond() : defaultRequestsPerSecond,
+            definition.burst() != null ? definition.burst() : defaultBurst,
+            definition.maxConcurrent() != null ? definition.maxConcurrent() : defaultMaxConcurrent);
+    }
+}
@@ -0,0 +1,175 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.ServletException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderRegistry;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.server.webmvc.GraphQlHttpHandler;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.MediaType;
+import org.springframework.util.AlternativeJdkIdGenerator;
+import org.springframework.util.IdGenerator;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ServerWebInputException;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+ * This class serves GraphQL requests over HTTP, and also accepts a batch of operations in one request: a JSON array
+ * of requests ({"query", "operationName", "variables"}) is answered with the JSON array of their results, in order.
+ * A batch goes once through the filters (API key, rate limit, idempotency) and is parsed once, then:
+ * - its operations are executed concurrently, at most maxConcurrency at a time, on the threads of a bounded lane
+ *   (see WorkloadLane); an operation that finds the lane full gets a SERVER_BUSY error in its result
+ * - its operations share their DataLoaders, so an employee or a history requested by several operations is loaded
+ *   once, and keys requested at the same time by different operations are loaded in the same batch
+ * The operations of a batch are independent: they run in no particular order, so a batch must not depend on the
+ * changes of a mutation of the same batch. They run on the lane threads, so the thread-locals of the request thread
+ * are not available to them (the locale is passed in their request). Other requests are served as usual by
+ * GraphQlHttpHandler.
+ *
+ * Metrics:
+ * - graphql.batch.operations: number of operations per batch
+ * - graphql.lane.*: the executions of the "batch" lane (see WorkloadLane)
+ */
+
+public class BatchGraphQlHttpHandler extends GraphQlHttpHandler implements AutoCloseable {
+
+    private static final TypeReference<List<Map<String, Object>>> OPERATIONS_TYPE = new TypeReference<>() {
+    };
+
+    private final WebGraphQlHandler graphQlHandler;
+
+    private final ObjectMapper objectMapper;
+
+    private final int maxOperations;
+
+    private final int maxConcurrency;
+
+    private final WorkloadLane lane;
+
+    private final DistributionSummary operations;
+
+    private final IdGenerator idGenerator = new AlternativeJdkIdGenerator();
+
+    public BatchGraphQlHttpHandler(WebGraphQlHandler graphQlHandler, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+        int maxOperations, int maxConcurrency, int threads, int queueCapacity) {
+        super(graphQlHandler);
+        this.graphQlHandler = graphQlHandler;
+        this.objectMapper = objectMapper;
+        this.maxOperations = maxOperations;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.lane = new WorkloadLane("batch", threads, queueCapacity, meterRegistry);
+        this.operations = DistributionSummary.builder("graphql.batch.operations")
+            .description("Number of GraphQL operations per batch request")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public ServerResponse handleRequest(ServerRequest request) throws ServletException {
+        byte[] body;
+        try {
+            body = request.body(byte[].class);
+        } catch (IOException e) {
+            throw new ServerWebInputException("Failed to read the request body", null, e);
+        }
+
+        // A single operation: the body is read again by GraphQlHttpHandler
+        if (!isBatch(body)) {
+            return super.handleRequest(ServerRequest.from(request).body(body).build());
+        }
+
+        List<Map<String, Object>> batch;
+        try {
+            batch = objectMapper.readValue(body, OPERATIONS_TYPE);
+        } catch (IOException e) {
+            throw new ServerWebInputException("Invalid batch of GraphQL operations", null, e);
+        }
+        if (batch.isEmpty() || batch.size() > maxOperations) {
+            throw new ServerWebInputException("A batch must contain 1 to " + maxOperations + " operations");
+        }
+        operations.record(batch.size());
+
+        // Build the requests of the operations, with DataLoaders shared by all of them
+        Map<String, DataLoader<?, ?>> dataLoaders = new ConcurrentHashMap<>();
+        List<WebGraphQlRequest> requests = new ArrayList<>(batch.size());
+        for (Map<String, Object> operation : batch) {
+            WebGraphQlRequest graphQlRequest = new WebGraphQlRequest(request.uri(), request.headers().asHttpHeaders(),
+                cookies(request), request.remoteAddress().orElse(null), request.attributes(), operation,
+                idGenerator.generateId().toString(), LocaleContextHolder.getLocale());
+            graphQlRequest.configureExecutionInput((input, builder) ->
+                builder.dataLoaderRegistry(new SharedDataLoaderRegistry(dataLoaders)).build());
+            requests.add(graphQlRequest);
+        }
+
+        // Execute them concurrently on the lane threads, and keep the results in the order of the operations
+        Mono<List<Map<String, Object>>> results = Flux.fromIterable(requests)
+            .flatMapSequential(this::execute, maxConcurrency)
+            .map(WebGraphQlResponse::toMap)
+            .collectList();
+
+        return ServerResponse.async(results.map(responses -> ServerResponse.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(responses)));
+    }
+
+    private Mono<WebGraphQlResponse> execute(WebGraphQlRequest graphQlRequest) {
+        Mono<WebGraphQlResponse> response = lane.execute(() -> graphQlHandler.handleRequest(graphQlRequest));
+        return response != null ? response : Mono.just(lane.busy(graphQlRequest));
+    }
+
+    // Check if a body is a JSON array (its first character other than a whitespace is '[')
+    private static boolean isBatch(byte[] body) {
+        for (byte b : body) {
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return b == '[';
+            }
+        }
+        return false;
+    }
+
+    private static MultiValueMap<String, HttpCookie> cookies(ServerRequest request) {
+        MultiValueMap<String, HttpCookie> cookies = new LinkedMultiValueMap<>();
+        request.cookies().forEach((name, values) ->
+            values.forEach(cookie -> cookies.add(name, new HttpCookie(name, cookie.getValue()))));
+        return cookies;
+    }
+
+    @Override
+    public void close() {
+        lane.close();
+    }
+
+    /*
+     * DataLoader registry of an operation of a batch: the DataLoaders registered for the operation are replaced
+     * with the ones registered for the first operation of the batch, so all the operations use the same DataLoaders.
+     * DataLoaders are thread-safe: each operation dispatches the keys queued by all of them.
+     */
+    private static final class SharedDataLoaderRegistry extends DataLoaderRegistry {
+
+        private final Map<String, DataLoader<?, ?>> batchDataLoaders;
+
+        private SharedDataLoaderRegistry(Map<String, DataLoader<?, ?>> batchDataLoaders) {
+            this.batchDataLoaders = batchDataLoaders;
+        }
+
+        @Override
+        public DataLoaderRegistry register(String key, DataLoader<?, ?> dataLoader) {
+            return super.register(key, batchDataLoaders.computeIfAbsent(key, name -> dataLoader));
+        }
+    }
+}
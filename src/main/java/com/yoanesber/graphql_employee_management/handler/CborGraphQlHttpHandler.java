@@ -0,0 +1,54 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.server.webmvc.AbstractGraphQlHttpHandler;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/*
+ * This class serves GraphQL requests over HTTP with a compact binary response: it handles the requests that
+ * explicitly accept "application/cbor" and writes the result ({"data", "errors", "extensions"}) in CBOR instead of
+ * JSON. Requests are still sent as JSON. Compared to JSON, CBOR writes numbers (Long ids, amounts, versions) in binary
+ * and strings with their length, so they are neither formatted nor escaped, and are read without scanning for quotes.
+ * With stringRefs, a string written before (field names, dates, titles...) is written again as a reference to its
+ * first occurrence (stringref tags 25 and 256), so the field names of a large list are only written once; clients need
+ * a decoder supporting stringref (e.g. Jackson 2.15 or later).
+ */
+
+public class CborGraphQlHttpHandler extends AbstractGraphQlHttpHandler {
+
+    private final ObjectMapper cborMapper;
+
+    public CborGraphQlHttpHandler(WebGraphQlHandler graphQlHandler, ObjectMapper objectMapper, boolean stringRefs) {
+        super(graphQlHandler, null);
+        CBORFactory cborFactory = CBORFactory.builder()
+            .configure(CBORGenerator.Feature.STRINGREF, stringRefs)
+            .build();
+        this.cborMapper = objectMapper.copyWith(cborFactory);
+    }
+
+    // Check if the client explicitly accepts application/cbor (a wildcard such as */* does not count)
+    public static boolean accepts(HttpHeaders headers) {
+        return headers.getAccept().stream()
+            .anyMatch(mediaType -> !mediaType.isWildcardType() && !mediaType.isWildcardSubtype()
+                && MediaType.APPLICATION_CBOR.isCompatibleWith(mediaType));
+    }
+
+    @Override
+    protected ServerResponse prepareResponse(ServerRequest request, Mono<WebGraphQlResponse> responseMono) {
+        return ServerResponse.async(responseMono.map(response -> ServerResponse.ok()
+            .headers(headers -> headers.putAll(response.getResponseHeaders()))
+            .contentType(MediaType.APPLICATION_CBOR)
+            .build((servletRequest, servletResponse) -> {
+                cborMapper.writeValue(servletResponse.getOutputStream(), response.toMap());
+                return null;
+            })));
+    }
+}
@@ -0,0 +1,388 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import graphql.language.Document;
+import graphql.language.OperationDefinition;
+import graphql.parser.Parser;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+/*
+ * This class is responsible for honoring the Idempotency-Key header on GraphQL mutations.
+ * The first request with a given key is executed and its serialized HTTP response is kept in an IdempotencyStore;
+ * retries with the same key get that response back without executing the mutation again, and duplicates that
+ * arrive while the first request is still running wait for its result instead of racing it.
+ * Keys are scoped by the API client authenticated by ApiKeyAuthFilter (requests without one are not handled), and
+ * reusing a key with a different request body is rejected with 422. When the store is full of requests still in
+ * flight, a new key is rejected with 503 rather than evicting one of them.
+ * Failed responses are not kept, so that a retry executes the mutation again: a 5xx status, or a GraphQL result
+ * (HTTP 200) with errors and either no data or an error that is not a client error. A client error (BAD_REQUEST,
+ * NOT_FOUND, a validation or syntax error...) gives the same result when executed again, so it is replayed; anything
+ * else (a CONFLICT from a concurrent update, an INTERNAL_ERROR from a transient database failure) may not.
+ */
+
+@Component
+public class IdempotencyKeyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final String PENDING_ATTRIBUTE = IdempotencyKeyFilter.class.getName() + ".PENDING";
+
+    private static final int MAX_RESERVE_ATTEMPTS = 3;
+
+    // Error classifications of the requests that fail the same way every time they are executed
+    private static final Set<String> CLIENT_ERROR_CLASSIFICATIONS = Set.of("BAD_REQUEST", "NOT_FOUND", "UNAUTHORIZED",
+        "FORBIDDEN", "ValidationError", "InvalidSyntax", "OperationNotSupported");
+
+    private final IdempotencyStore store;
+
+    private final ObjectMapper objectMapper;
+
+    // Reader of the responses written in CBOR (see CborGraphQlHttpHandler)
+    private final ObjectMapper cborMapper;
+
+    private final boolean enabled;
+
+    private final long waitTimeoutMillis;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    // The state of a leading request, kept across the dispatches of an asynchronous request
+    private record Pending(String key, IdempotencyStore.Entry entry) {
+    }
+
+    public IdempotencyKeyFilter(ObjectMapper objectMapper,
+        @Value("${app.idempotency.enabled:true}") boolean enabled,
+        @Value("${app.idempotency.max-entries:10000}") int maxEntries,
+        @Value("${app.idempotency.ttl:PT1H}") Duration ttl,
+        @Value("${app.idempotency.wait-timeout:PT30S}") Duration waitTimeout) {
+        this.objectMapper = objectMapper;
+        this.cborMapper = objectMapper.copyWith(new CBORFactory());
+        this.enabled = enabled;
+        this.store = new IdempotencyStore(maxEntries, ttl.toNanos());
+        this.waitTimeoutMillis = waitTimeout.toMillis();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"/graphql".equals(request.getRequestURI());
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // The GraphQL response is written on the async dispatch, which is when it has to be captured
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        // Second dispatch of an asynchronous leading request: let it complete, then keep its response
+        Pending pending = (Pending) request.getAttribute(PENDING_ATTRIBUTE);
+        if (pending != null) {
+            executeLeader(request, response, filterChain, pending);
+            return;
+        }
+
+        String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        String clientName = (String) request.getAttribute(ApiKeyAuthFilter.CLIENT_NAME_ATTRIBUTE);
+        if (idempotencyKey == null || idempotencyKey.isBlank() || clientName == null
+            || !HttpMethod.POST.matches(request.getMethod())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // Read the body once, so that it can be inspected here and read again by GraphQL
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        if (!isMutation(cachedRequest.getBody())) {
+            filterChain.doFilter(cachedRequest, response);
+            return;
+        }
+
+        String key = clientName + ":" + idempotencyKey;
+        String fingerprint = fingerprint(cachedRequest.getBody());
+
+        for (int attempt = 1; attempt <= MAX_RESERVE_ATTEMPTS; attempt++) {
+            IdempotencyStore.Reservation reservation = store.reserve(key, fingerprint);
+            if (reservation == null) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                writeError(response, HttpStatus.SERVICE_UNAVAILABLE, "Too many requests with an Idempotency-Key in progress");
+                return;
+            }
+            IdempotencyStore.Entry entry = reservation.entry();
+
+            // Check if the key is reused for a different request
+            if (!entry.getFingerprint().equals(fingerprint)) {
+                writeError(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key has already been used for a different request");
+                return;
+            }
+
+            // First request with this key: execute it
+            if (reservation.leader()) {
+                executeLeader(cachedRequest, new ContentCachingResponseWrapper(response), filterChain, new Pending(key, entry));
+                return;
+            }
+
+            // Duplicate: wait for the leader and replay its response
+            try {
+                IdempotencyStore.StoredResponse stored = entry.getResponse().get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+                replay(response, stored);
+                return;
+            } catch (ExecutionException e) {
+                // The leader failed and released the key: try to become the new leader
+                logger.debug("Leading request for idempotency key failed, retrying: {}", e.getMessage());
+            } catch (TimeoutException e) {
+                writeError(response, HttpStatus.CONFLICT, "A request with this Idempotency-Key is still in progress");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServletException("Interrupted while waiting for the idempotent request", e);
+            }
+        }
+
+        writeError(response, HttpStatus.CONFLICT, "The request with this Idempotency-Key could not be completed, please retry");
+    }
+
+    // Execute the leading request and keep its response once it is complete
+    private void executeLeader(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain,
+        Pending pending) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+        if (wrapper == null) {
+            wrapper = new ContentCachingResponseWrapper(response);
+        }
+
+        try {
+            filterChain.doFilter(request, wrapper);
+        } catch (ServletException | IOException | RuntimeException e) {
+            store.fail(pending.key(), pending.entry(), e);
+            throw e;
+        }
+
+        // The response is only written on the async dispatch
+        if (isAsyncStarted(request)) {
+            request.setAttribute(PENDING_ATTRIBUTE, pending);
+            return;
+        }
+
+        request.removeAttribute(PENDING_ATTRIBUTE);
+        int status = wrapper.getStatus();
+        if (status >= HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+            store.fail(pending.key(), pending.entry(), new IllegalStateException("Request failed with status " + status));
+        } else if (hasFailedResult(wrapper.getContentType(), wrapper.getContentAsByteArray())) {
+            store.fail(pending.key(), pending.entry(), new IllegalStateException("Request failed with GraphQL errors"));
+        } else {
+            store.complete(pending.entry(),
+                new IdempotencyStore.StoredResponse(status, wrapper.getContentType(), wrapper.getContentAsByteArray()));
+        }
+
+        wrapper.copyBodyToResponse();
+    }
+
+    // Check if the GraphQL result, or one of the results of a batch, failed: it has errors, and no data or an error
+    // that is not a client error (responses that are not JSON or CBOR, such as multipart, are left to their status)
+    private boolean hasFailedResult(String contentType, byte[] body) {
+        JsonNode payload;
+        try {
+            if (contentType != null && MediaType.APPLICATION_CBOR.isCompatibleWith(MediaType.parseMediaType(contentType))) {
+                payload = cborMapper.readTree(body);
+            } else if (contentType == null || MediaType.parseMediaType(contentType).getSubtype().endsWith("json")) {
+                payload = objectMapper.readTree(body);
+            } else {
+                return false;
+            }
+        } catch (Exception e) {
+            return false;
+        }
+
+        if (payload == null) {
+            return false;
+        }
+        if (payload.isArray()) {
+            for (JsonNode result : payload) {
+                if (isFailedResult(result)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return isFailedResult(payload);
+    }
+
+    private static boolean isFailedResult(JsonNode result) {
+        JsonNode errors = result.path("errors");
+        if (!errors.isArray() || errors.isEmpty()) {
+            return false;
+        }
+
+        // No data: missing, null, or only null fields (a failed mutation field resolves to null)
+        JsonNode data = result.path("data");
+        boolean noData = !data.isObject() || data.properties().stream().allMatch(field -> field.getValue().isNull());
+        if (noData) {
+            return true;
+        }
+
+        for (JsonNode error : errors) {
+            if (!CLIENT_ERROR_CLASSIFICATIONS.contains(error.path("extensions").path("classification").asText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Write a kept response for a retried or duplicate request
+    private void replay(HttpServletResponse response, IdempotencyStore.StoredResponse stored) throws IOException {
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+
+        response.setHeader(IDEMPOTENT_REPLAYED_HEADER, "true");
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(objectMapper.writeValueAsString(Map.of("error", message)));
+    }
+
+    // Check if the operation to execute, or one of the operations of a batch, is a mutation
+    // (invalid documents are left to GraphQL to report)
+    private boolean isMutation(byte[] body) {
+        try {
+            JsonNode payload = objectMapper.readTree(body);
+            if (payload.isArray()) {
+                for (JsonNode operation : payload) {
+                    if (isMutation(operation)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return isMutation(payload);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean isMutation(JsonNode payload) {
+        String query = payload.path("query").asText(null);
+        String operationName = payload.path("operationName").asText(null);
+        if (query == null) {
+            return false;
+        }
+
+        Document document = Parser.parse(query);
+        List<OperationDefinition> operations = document.getDefinitionsOfType(OperationDefinition.class);
+        return operations.stream()
+            .filter(operation -> operationName == null ? operations.size() == 1 : operationName.equals(operation.getName()))
+            .anyMatch(operation -> operation.getOperation() == OperationDefinition.Operation.MUTATION);
+    }
+
+    private String fingerprint(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Request whose body has been read into memory and can be read again
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    // The whole body is already in memory: it is available at once, and read once the listener
+                    // has consumed it (isReady is always true, so the listener reads it in one call)
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return input.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * This class keeps the responses of the requests sent with an Idempotency-Key header.
+ * Each key maps to an entry holding the fingerprint of the request body and a future completed with the
+ * serialized response once the first (leading) request has been executed. Duplicates that arrive while the
+ * leader is still running get the same entry and wait on its future instead of executing the mutation again.
+ * The store is bounded: entries expire after a fixed time to live and the oldest entries are evicted once
+ * the maximum number of entries is reached. An entry whose request is still in flight is never evicted, as a retry
+ * would then execute the mutation a second time next to it; when every entry is in flight, new keys are refused.
+ */
+
+class IdempotencyStore {
+
+    // The serialized HTTP response of an executed request
+    record StoredResponse(int status, String contentType, byte[] body) {
+    }
+
+    // The state of one idempotency key
+    static final class Entry {
+        private final String fingerprint;
+        private final long expiresAtNanos;
+        private final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+
+        private Entry(String fingerprint, long expiresAtNanos) {
+            this.fingerprint = fingerprint;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        String getFingerprint() {
+            return fingerprint;
+        }
+
+        CompletableFuture<StoredResponse> getResponse() {
+            return response;
+        }
+    }
+
+    // The entry of a key, and whether the caller created it (and must therefore execute the request)
+    record Reservation(Entry entry, boolean leader) {
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    private final int maxEntries;
+
+    private final long ttlNanos;
+
+    IdempotencyStore(int maxEntries, long ttlNanos) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttlNanos;
+    }
+
+    // Get the entry of a key, creating it if the key is new or its entry has expired; null when the store is full of
+    // requests in flight
+    synchronized Reservation reserve(String key, String fingerprint) {
+        long now = System.nanoTime();
+        purgeExpired(now);
+
+        Entry existing = entries.get(key);
+        if (existing != null) {
+            return new Reservation(existing, false);
+        }
+
+        // Evict the oldest completed entries to make room (waiters keep a reference to their entry)
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() >= maxEntries && iterator.hasNext()) {
+            if (iterator.next().getResponse().isDone()) {
+                iterator.remove();
+            }
+        }
+        if (entries.size() >= maxEntries) {
+            return null;
+        }
+
+        Entry created = new Entry(fingerprint, now + ttlNanos);
+        entries.put(key, created);
+        return new Reservation(created, true);
+    }
+
+    // Record the response of the leading request, releasing the waiting duplicates
+    void complete(Entry entry, StoredResponse response) {
+        entry.getResponse().complete(response);
+    }
+
+    // Forget a key whose execution failed, so that the next retry executes the request again
+    void fail(String key, Entry entry, Throwable cause) {
+        synchronized (this) {
+            entries.remove(key, entry);
+        }
+
+        entry.getResponse().completeExceptionally(cause);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    // Entries are kept in insertion order and share the same time to live, so the expired ones come first
+    // (the expired entries still in flight are kept until their request completes)
+    private void purgeExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.expiresAtNanos < 0) {
+                break;
+            }
+
+            if (entry.getResponse().isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import graphql.ExperimentalApi;
+import java.util.Map;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/*
+ * This interceptor enables graphql-java incremental delivery for the requests that accept multipart/mixed.
+ * Only those requests are served by MultipartGraphQlHttpHandler, which can write the deferred payloads;
+ * for plain JSON requests @defer is ignored and the deferred fields are returned in the single response.
+ */
+
+@Component
+public class IncrementalDeliveryInterceptor implements WebGraphQlInterceptor {
+
+    @Override
+    public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+        if (MultipartGraphQlHttpHandler.accepts(request.getHeaders())) {
+            request.configureExecutionInput((executionInput, builder) -> builder
+                .graphQLContext(Map.of(ExperimentalApi.ENABLE_INCREMENTAL_SUPPORT, true))
+                .build());
+        }
+
+        return chain.next(request);
+    }
+}
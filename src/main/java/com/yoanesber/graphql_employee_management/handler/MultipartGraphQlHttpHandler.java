@@ -0,0 +1,106 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.ExecutionResult;
+import graphql.incremental.IncrementalExecutionResult;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.server.webmvc.AbstractGraphQlHttpHandler;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+ * This class serves GraphQL requests over HTTP with incremental delivery (@defer).
+ * It handles the requests that explicitly accept "multipart/mixed" and writes the result as a multipart stream:
+ * the initial payload is flushed as soon as it is complete (e.g. the scalar fields of an employee),
+ * then every deferred fragment is written and flushed as its own part when its data fetchers complete.
+ * Requests without @defer get a single part, so a client accepting multipart/mixed can always use this handler.
+ * The parts are written to an asynchronous stream by a subscriber of the deferred payloads, so no servlet thread is
+ * held while the deferred fragments are fetched.
+ */
+
+public class MultipartGraphQlHttpHandler extends AbstractGraphQlHttpHandler {
+
+    private static final MediaType MULTIPART_MIXED = new MediaType("multipart", "mixed");
+
+    private static final MediaType RESPONSE_MEDIA_TYPE = MediaType.parseMediaType("multipart/mixed; boundary=\"-\"; deferSpec=20220824");
+
+    private static final byte[] PART_HEADER = "\r\n---\r\nContent-Type: application/json; charset=utf-8\r\n\r\n"
+        .getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] END_DELIMITER = "\r\n-----\r\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper;
+
+    public MultipartGraphQlHttpHandler(WebGraphQlHandler graphQlHandler, ObjectMapper objectMapper) {
+        super(graphQlHandler, null);
+        this.objectMapper = objectMapper;
+    }
+
+    // Check if the client explicitly accepts multipart/mixed (a wildcard such as */* does not count)
+    public static boolean accepts(HttpHeaders headers) {
+        return headers.getAccept().stream()
+            .anyMatch(mediaType -> !mediaType.isWildcardType() && !mediaType.isWildcardSubtype()
+                && MULTIPART_MIXED.isCompatibleWith(mediaType));
+    }
+
+    @Override
+    protected ServerResponse prepareResponse(ServerRequest request, Mono<WebGraphQlResponse> responseMono) {
+        return ServerResponse.async(responseMono.map(response -> ServerResponse.ok()
+            .headers(headers -> headers.putAll(response.getResponseHeaders()))
+            .contentType(RESPONSE_MEDIA_TYPE)
+            .stream(stream -> writeParts(response, stream))));
+    }
+
+    // Write the initial payload, then the deferred payloads in the order they complete
+    private void writeParts(WebGraphQlResponse response, ServerResponse.StreamBuilder stream) {
+        try {
+            writePart(response.toMap(), stream);
+        } catch (IOException e) {
+            stream.error(e);
+            return;
+        }
+
+        ExecutionResult executionResult = response.getExecutionResult();
+        if (!(executionResult instanceof IncrementalExecutionResult incrementalResult) || !incrementalResult.hasNext()) {
+            writeEnd(stream);
+            return;
+        }
+
+        // Stop fetching the deferred fragments if the client goes away or the request times out
+        Disposable subscription = Flux.from(incrementalResult.getIncrementalItemPublisher())
+            .concatMap(partialResult -> Mono.fromCallable(() -> {
+                writePart(partialResult.toSpecification(), stream);
+                return partialResult;
+            }))
+            .subscribe(null, stream::error, () -> writeEnd(stream));
+        stream.onError(error -> subscription.dispose());
+        stream.onTimeout(subscription::dispose);
+    }
+
+    private void writeEnd(ServerResponse.StreamBuilder stream) {
+        try {
+            stream.write(END_DELIMITER, RESPONSE_MEDIA_TYPE);
+            stream.complete();
+        } catch (IOException e) {
+            stream.error(e);
+        }
+    }
+
+    private void writePart(Map<String, Object> payload, ServerResponse.StreamBuilder stream) throws IOException {
+        ByteArrayOutputStream part = new ByteArrayOutputStream();
+        part.write(PART_HEADER);
+        part.write(objectMapper.writeValueAsBytes(payload));
+        stream.write(part.toByteArray(), RESPONSE_MEDIA_TYPE);
+        stream.flush();
+    }
+}
@@ -0,0 +1,40 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * This class is a lock-free token bucket: it holds up to burst tokens, refilled at requestsPerSecond.
+ * Instead of a token count and a refill timestamp, it keeps a single value, the time at which the bucket will be full
+ * again (the "theoretical arrival time" of the GCRA algorithm), updated with compare-and-set. Taking a token moves it
+ * one refill interval later; a request is allowed as long as that time stays within burst intervals from now.
+ */
+
+class TokenBucket {
+
+    private final long intervalNanos;
+
+    private final long capacityNanos;
+
+    private final AtomicLong fullAtNanos;
+
+    TokenBucket(double requestsPerSecond, int burst) {
+        this.intervalNanos = Math.max(1, (long) (1e9 / requestsPerSecond));
+        this.capacityNanos = intervalNanos * Math.max(1, burst);
+        this.fullAtNanos = new AtomicLong(System.nanoTime());
+    }
+
+    // Take a token: 0 if one was available, otherwise the nanos until the next one
+    long tryConsume() {
+        while (true) {
+            long now = System.nanoTime();
+            long fullAt = fullAtNanos.get();
+            long next = Math.max(fullAt, now) + intervalNanos;
+            if (next - now > capacityNanos) {
+                return next - now - capacityNanos;
+            }
+            if (fullAtNanos.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import graphql.ExecutionResult;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import com.yoanesber.graphql_employee_management.exception.ErrorCode;
+
+/*
+ * This class is a lane of GraphQL executions: a fixed number of threads, with a bounded number of executions
+ * waiting for one. An execution runs entirely on a lane thread (data fetchers included), so a lane never holds more
+ * database connections than it has threads. When the lane is full (all threads busy and queueCapacity executions
+ * waiting), further executions are rejected right away instead of queuing behind the others.
+ *
+ * Metrics (tagged with the lane name):
+ * - graphql.lane.active: executions running
+ * - graphql.lane.queued: executions waiting for a thread
+ * - graphql.lane.wait: time spent waiting for a thread
+ * - graphql.lane.rejected: executions rejected because the lane was full
+ */
+
+class WorkloadLane implements AutoCloseable {
+
+    private final String name;
+
+    private final Scheduler scheduler;
+
+    // Permits for the running and waiting executions
+    private final Semaphore permits;
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Timer wait;
+
+    private final Counter rejected;
+
+    WorkloadLane(String name, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+        this.name = name;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads),
+            new CustomizableThreadFactory("graphql-" + name + "-"));
+        this.scheduler = Schedulers.fromExecutorService(executor, "graphql-" + name);
+        this.permits = new Semaphore(Math.max(1, threads) + Math.max(0, queueCapacity));
+        Gauge.builder("graphql.lane.active", active, AtomicInteger::get)
+            .description("Number of GraphQL executions running in the lane")
+            .tag("lane", name)
+            .register(meterRegistry);
+        Gauge.builder("graphql.lane.queued", queued, AtomicInteger::get)
+            .description("Number of GraphQL executions waiting for a thread of the lane")
+            .tag("lane", name)
+            .register(meterRegistry);
+        this.wait = Timer.builder("graphql.lane.wait")
+            .description("Time GraphQL executions wait for a thread of the lane")
+            .tag("lane", name)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.rejected = Counter.builder("graphql.lane.rejected")
+            .description("Number of GraphQL executions rejected because the lane was full")
+            .tag("lane", name)
+            .register(meterRegistry);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    // Run an execution on a lane thread, or return null if the lane is full
+    <T> Mono<T> execute(Supplier<Mono<T>> execution) {
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            return null;
+        }
+
+        long queuedAt = System.nanoTime();
+        AtomicBoolean started = new AtomicBoolean();
+        queued.incrementAndGet();
+        return Mono.defer(() -> {
+                started.set(true);
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                wait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return execution.get();
+            })
+            .subscribeOn(scheduler)
+            .doFinally(signal -> {
+                // Cancelled before it started: it is still counted as queued
+                if (started.get()) {
+                    active.decrementAndGet();
+                } else {
+                    queued.decrementAndGet();
+                }
+                permits.release();
+            });
+    }
+
+    // The response of an execution rejected because the lane is full
+    WebGraphQlResponse busy(WebGraphQlRequest request) {
+        GraphQLError error = GraphqlErrorBuilder.newError()
+            .message("The server is busy with " + name + " operations. Please retry later.")
+            .errorType(ErrorType.INTERNAL_ERROR)
+            .extensions(Map.of("code", ErrorCode.SERVER_BUSY.name(), "lane", name))
+            .build();
+        ExecutionResult result = ExecutionResult.newExecutionResult().addError(error).build();
+        return new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(request.toExecutionInput(), result));
+    }
+
+    @Override
+    public void close() {
+        scheduler.dispose();
+    }
+}
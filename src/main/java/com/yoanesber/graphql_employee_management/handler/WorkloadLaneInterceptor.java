@@ -0,0 +1,180 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.FragmentSpread;
+import graphql.language.InlineFragment;
+import graphql.language.OperationDefinition;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import graphql.parser.Parser;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import com.yoanesber.graphql_employee_management.datasource.GraphQlOperationTracker;
+
+/*
+ * This interceptor runs each GraphQL operation in one of two lanes (see WorkloadLane), so that expensive operations
+ * can only use the threads and database connections of their own lane, and cheap lookups keep their latency.
+ * An operation is heavy when:
+ * - it selects one of the app.lanes.heavy-fields at any depth (e.g. getAllEmployees, or the employees of departments)
+ * - or its average duration (moving average of its recent executions) exceeds app.lanes.heavy-threshold
+ * Other operations run in the light lane. When the lane of an operation is full, the operation is rejected
+ * with a SERVER_BUSY error right away, without waiting.
+ * The classification of a document is kept (up to 1000 documents), so a document is only parsed here once.
+ */
+
+@Component
+@ConditionalOnProperty(name = "app.lanes.enabled", havingValue = "true", matchIfMissing = true)
+public class WorkloadLaneInterceptor implements WebGraphQlInterceptor, DisposableBean {
+
+    private static final int MAX_CLASSIFIED_DOCUMENTS = 1000;
+
+    // Weight of the last execution in the moving average of an operation
+    private static final double AVERAGE_WEIGHT = 0.2;
+
+    private final Set<String> heavyFields;
+
+    private final long heavyThresholdNanos;
+
+    private final WorkloadLane lightLane;
+
+    private final WorkloadLane heavyLane;
+
+    // Classification of the documents, by document and operation name
+    private final Map<String, Classification> classifications = new ConcurrentHashMap<>();
+
+    // Moving average duration of the operations, by operation name
+    private final Map<String, Double> averageNanos = new ConcurrentHashMap<>();
+
+    private record Classification(String operation, boolean heavyFields) {
+    }
+
+    public WorkloadLaneInterceptor(MeterRegistry meterRegistry,
+        @Value("${app.lanes.heavy-fields:getAllEmployees,employees}") List<String> heavyFields,
+        @Value("${app.lanes.heavy-threshold:PT0.25S}") Duration heavyThreshold,
+        @Value("${app.lanes.light.threads:16}") int lightThreads,
+        @Value("${app.lanes.light.queue-capacity:200}") int lightQueueCapacity,
+        @Value("${app.lanes.heavy.threads:4}") int heavyThreads,
+        @Value("${app.lanes.heavy.queue-capacity:20}") int heavyQueueCapacity) {
+        this.heavyFields = Set.copyOf(heavyFields);
+        this.heavyThresholdNanos = heavyThreshold.toNanos();
+        this.lightLane = new WorkloadLane("light", lightThreads, lightQueueCapacity, meterRegistry);
+        this.heavyLane = new WorkloadLane("heavy", heavyThreads, heavyQueueCapacity, meterRegistry);
+    }
+
+    @Override
+    public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+        Classification classification = classify(request);
+        if (classification == null) {
+            // Not a valid document: let GraphQL report the errors
+            return chain.next(request);
+        }
+
+        WorkloadLane lane = laneOf(classification);
+        Mono<WebGraphQlResponse> response = lane.execute(() -> {
+            long start = System.nanoTime();
+            return chain.next(request).doOnSuccess(result -> record(classification.operation(), System.nanoTime() - start));
+        });
+
+        // The lane is full
+        if (response == null) {
+            return Mono.just(lane.busy(request));
+        }
+        return response;
+    }
+
+    // Get the lane of an operation
+    private WorkloadLane laneOf(Classification classification) {
+        Double average = averageNanos.get(classification.operation());
+        boolean heavy = classification.heavyFields() || (average != null && average > heavyThresholdNanos);
+        return heavy ? heavyLane : lightLane;
+    }
+
+    // Record the duration of an execution in the moving average of its operation
+    private void record(String operation, long durationNanos) {
+        averageNanos.merge(operation, (double) durationNanos,
+            (average, duration) -> average + AVERAGE_WEIGHT * (duration - average));
+    }
+
+    private Classification classify(WebGraphQlRequest request) {
+        String key = request.getOperationName() + "\n" + request.getDocument();
+        Classification classification = classifications.get(key);
+        if (classification != null) {
+            return classification;
+        }
+
+        // Parse the document and find the operation to execute
+        Document document;
+        try {
+            document = Parser.parse(request.getDocument());
+        } catch (RuntimeException e) {
+            return null;
+        }
+        List<OperationDefinition> operations = document.getDefinitionsOfType(OperationDefinition.class);
+        OperationDefinition operation = operations.stream()
+            .filter(definition -> request.getOperationName() == null || request.getOperationName().equals(definition.getName()))
+            .findFirst()
+            .orElse(null);
+        if (operation == null) {
+            return null;
+        }
+
+        Map<String, FragmentDefinition> fragments = document.getDefinitionsOfType(FragmentDefinition.class).stream()
+            .collect(Collectors.toMap(FragmentDefinition::getName, fragment -> fragment, (first, second) -> first));
+        classification = new Classification(GraphQlOperationTracker.operationName(operation),
+            selectsHeavyField(operation.getSelectionSet(), fragments, new HashSet<>()));
+
+        // Keep a bounded number of documents
+        if (classifications.size() >= MAX_CLASSIFIED_DOCUMENTS) {
+            classifications.clear();
+        }
+        classifications.put(key, classification);
+        return classification;
+    }
+
+    // Whether a selection set selects one of the heavy fields, at any depth
+    private boolean selectsHeavyField(SelectionSet selectionSet, Map<String, FragmentDefinition> fragments, Set<String> visited) {
+        if (selectionSet == null) {
+            return false;
+        }
+        for (Selection<?> selection : selectionSet.getSelections()) {
+            if (selection instanceof Field field) {
+                if (heavyFields.contains(field.getName()) || selectsHeavyField(field.getSelectionSet(), fragments, visited)) {
+                    return true;
+                }
+            } else if (selection instanceof InlineFragment inlineFragment) {
+                if (selectsHeavyField(inlineFragment.getSelectionSet(), fragments, visited)) {
+                    return true;
+                }
+            } else if (selection instanceof FragmentSpread spread && visited.add(spread.getName())) {
+                FragmentDefinition fragment = fragments.get(spread.getName());
+                if (fragment != null && selectsHeavyField(fragment.getSelectionSet(), fragments, visited)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void destroy() {
+        lightLane.close();
+        heavyLane.close();
+    }
+}
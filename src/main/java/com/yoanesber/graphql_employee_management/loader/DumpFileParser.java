@@ -0,0 +1,174 @@
+package com.yoanesber.graphql_employee_management.loader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * DumpFileParser stream-parses a dump file of the employees sample database (load_employees.dump, load_salaries1.dump, ...).
+ * These files consist of MySQL statements of the form INSERT INTO `table` VALUES (...),(...),...; with one or more statements per file.
+ * The tuples are read one at a time through a fixed-size buffer, so a dump file is never held in memory as a whole.
+ * Quoted values support both the backslash escapes of mysqldump and doubled quotes; an unquoted NULL is returned as null.
+ * Every tuple must have the expected number of values.
+ */
+
+public class DumpFileParser {
+
+    private static final char[] VALUES_KEYWORD = "VALUES".toCharArray();
+
+    private final Reader reader;
+
+    private final int columnCount;
+
+    private final char[] buffer = new char[1 << 16];
+
+    private int position;
+
+    private int limit;
+
+    private final StringBuilder value = new StringBuilder();
+
+    @FunctionalInterface
+    public interface RowHandler<E extends Exception> {
+        void handle(String[] values) throws E;
+    }
+
+    public DumpFileParser(Reader reader, int columnCount) {
+        this.reader = reader;
+        this.columnCount = columnCount;
+    }
+
+    // Read all the rows of the dump in file order, and return the number of rows
+    public <E extends Exception> long parse(RowHandler<E> rowHandler) throws IOException, E {
+        List<String> row = new ArrayList<>();
+        long rows = 0;
+
+        while (skipToValues()) {
+            // Read the tuples of the statement, up to its terminating semicolon
+            int c;
+            while ((c = next()) != -1 && c != ';') {
+                if (c == '(') {
+                    readTuple(row);
+                    if (row.size() != columnCount) {
+                        throw new IOException("Expected " + columnCount + " values per tuple, found " + row.size()
+                            + " in tuple " + (rows + 1));
+                    }
+                    rowHandler.handle(row.toArray(String[]::new));
+                    row.clear();
+                    rows++;
+                } else if (c != ',' && !Character.isWhitespace(c)) {
+                    throw new IOException("Unexpected character '" + (char) c + "' between the tuples of an INSERT statement");
+                }
+            }
+        }
+
+        return rows;
+    }
+
+    // Skip to the end of the next VALUES keyword; false at the end of the file
+    private boolean skipToValues() throws IOException {
+        int matched = 0;
+        int c;
+        while ((c = next()) != -1) {
+            char upper = Character.toUpperCase((char) c);
+            if (upper == VALUES_KEYWORD[matched]) {
+                if (++matched == VALUES_KEYWORD.length) {
+                    return true;
+                }
+            } else {
+                matched = upper == VALUES_KEYWORD[0] ? 1 : 0;
+            }
+        }
+        return false;
+    }
+
+    // Read the values of a tuple, after its opening parenthesis
+    private void readTuple(List<String> row) throws IOException {
+        while (true) {
+            int c = skipWhitespace(next());
+            if (c == '\'') {
+                row.add(readQuoted());
+                c = next();
+            } else {
+                value.setLength(0);
+                while (c != ',' && c != ')' && c != -1) {
+                    value.append((char) c);
+                    c = next();
+                }
+                String unquoted = value.toString().trim();
+                row.add("NULL".equalsIgnoreCase(unquoted) ? null : unquoted);
+            }
+
+            c = skipWhitespace(c);
+            if (c == ')') {
+                return;
+            }
+            if (c != ',') {
+                throw c == -1 ? new EOFException("Unterminated tuple at the end of the dump")
+                    : new IOException("Unexpected character '" + (char) c + "' in a tuple");
+            }
+        }
+    }
+
+    // Read a quoted value, after its opening quote
+    private String readQuoted() throws IOException {
+        value.setLength(0);
+        while (true) {
+            int c = next();
+            if (c == -1) {
+                throw new EOFException("Unterminated string at the end of the dump");
+            }
+            if (c == '\\') {
+                int escaped = next();
+                switch (escaped) {
+                    case -1 -> throw new EOFException("Unterminated string at the end of the dump");
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case '0' -> value.append('\0');
+                    default -> value.append((char) escaped);
+                }
+            } else if (c == '\'') {
+                if (peek() != '\'') {
+                    return value.toString();
+                }
+                value.append((char) next());
+            } else {
+                value.append((char) c);
+            }
+        }
+    }
+
+    private int skipWhitespace(int c) throws IOException {
+        while (c != -1 && Character.isWhitespace(c)) {
+            c = next();
+        }
+        return c;
+    }
+
+    private int next() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,95 @@
+package com.yoanesber.graphql_employee_management.loader;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+ * DumpTable maps the dump files of the employees sample database to the tables of this schema.
+ * The columns of each dump are in the same order as the first columns of its table. Department and employee also have
+ * audit columns (AUDIT_COLUMNS), whose values are given by the loader.
+ * The phase follows the foreign keys: the tables of a phase only reference tables of earlier phases,
+ * so all the files of a phase can be loaded in parallel.
+ * load_dept_manager.dump has no matching table and is not loaded.
+ */
+
+public enum DumpTable {
+    DEPARTMENT(1, "load_departments.dump", "department",
+        List.of("id", "dept_name"), List.of("varchar", "varchar"), true),
+    EMPLOYEE(1, "load_employees.dump", "employee",
+        List.of("id", "birth_date", "first_name", "last_name", "gender", "hire_date"),
+        List.of("bigint", "date", "varchar", "varchar", "varchar", "date"), true),
+    DEPARTMENT_EMPLOYEE(2, "load_dept_emp.dump", "department_employee",
+        List.of("employee_id", "department_id", "from_date", "to_date"), List.of("bigint", "varchar", "date", "date"), false),
+    TITLE(2, "load_titles.dump", "title",
+        List.of("employee_id", "title", "from_date", "to_date"), List.of("bigint", "varchar", "date", "date"), false),
+    SALARY(2, "load_salaries*.dump", "salary",
+        List.of("employee_id", "amount", "from_date", "to_date"), List.of("bigint", "bigint", "date", "date"), false);
+
+    public static final List<String> AUDIT_COLUMNS = List.of("active", "created_by", "created_date", "updated_by", "updated_date", "version");
+
+    private static final List<String> AUDIT_TYPES = List.of("boolean", "bigint", "timestamp with time zone", "bigint",
+        "timestamp with time zone", "bigint");
+
+    private final int phase;
+
+    private final String fileGlob;
+
+    private final String tableName;
+
+    private final List<String> dumpColumns;
+
+    private final List<String> dumpTypes;
+
+    private final boolean audited;
+
+    DumpTable(int phase, String fileGlob, String tableName, List<String> dumpColumns, List<String> dumpTypes, boolean audited) {
+        this.phase = phase;
+        this.fileGlob = fileGlob;
+        this.tableName = tableName;
+        this.dumpColumns = dumpColumns;
+        this.dumpTypes = dumpTypes;
+        this.audited = audited;
+    }
+
+    public int getPhase() {
+        return phase;
+    }
+
+    public String getFileGlob() {
+        return fileGlob;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    // Number of values in a tuple of the dump
+    public int getDumpColumnCount() {
+        return dumpColumns.size();
+    }
+
+    // Columns of the table that are loaded, in the order of the values returned by toRow
+    public List<String> getColumns() {
+        return audited ? concat(dumpColumns, AUDIT_COLUMNS) : dumpColumns;
+    }
+
+    // SQL types of the loaded columns, used to cast the values of a multi-row INSERT
+    public List<String> getTypes() {
+        return audited ? concat(dumpTypes, AUDIT_TYPES) : dumpTypes;
+    }
+
+    // Values of the table row for a tuple of the dump, with the values of AUDIT_COLUMNS if the table has them
+    public String[] toRow(String[] tuple, String[] auditValues) {
+        if (!audited) {
+            return tuple;
+        }
+        String[] row = new String[tuple.length + auditValues.length];
+        System.arraycopy(tuple, 0, row, 0, tuple.length);
+        System.arraycopy(auditValues, 0, row, tuple.length, auditValues.length);
+        return row;
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        return Stream.concat(first.stream(), second.stream()).toList();
+    }
+}
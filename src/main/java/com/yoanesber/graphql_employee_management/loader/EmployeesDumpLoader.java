@@ -0,0 +1,362 @@
+package com.yoanesber.graphql_employee_management.loader;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+/*
+ * EmployeesDumpLoader loads the dump files of the employees sample database into an empty schema.
+ * The files are loaded phase by phase, in foreign key order (see DumpTable); within a phase, each file is streamed
+ * by DumpFileParser and loaded in parallel on its own connection and transaction:
+ * - on PostgreSQL with COPY ... FROM STDIN, fed in chunks as the file is parsed
+ * - on other databases with multi-row INSERT statements of app.loader.batch-size rows
+ * The number of rows loaded and the rows/s are logged every app.loader.progress-interval, and per table at the end.
+ * Files are committed one by one, so after a failure the files that were already loaded stay in the database.
+ */
+
+@Component
+public class EmployeesDumpLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmployeesDumpLoader.class);
+
+    // Size of the COPY chunks sent to the server
+    private static final int COPY_CHUNK_SIZE = 1 << 17;
+
+    private static final DateTimeFormatter AUDIT_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssxxx");
+
+    private final DataSource dataSource;
+
+    private final int batchSize;
+
+    private final int parallelism;
+
+    private final long createdBy;
+
+    private final Duration progressInterval;
+
+    public EmployeesDumpLoader(DataSource dataSource,
+        @Value("${app.loader.batch-size:1000}") int batchSize,
+        @Value("${app.loader.parallelism:5}") int parallelism,
+        @Value("${app.loader.created-by:0}") long createdBy,
+        @Value("${app.loader.progress-interval:PT5S}") Duration progressInterval) {
+        Assert.isTrue(batchSize > 0, "Batch size must be positive");
+        Assert.isTrue(parallelism > 0, "Parallelism must be positive");
+        this.dataSource = dataSource;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.createdBy = createdBy;
+        this.progressInterval = progressInterval;
+    }
+
+    // Load all the dump files of the directory, and return the number of rows loaded per table
+    public Map<DumpTable, Long> load(Path directory) throws IOException, SQLException, InterruptedException {
+        Assert.isTrue(Files.isDirectory(directory), "Dump directory " + directory + " does not exist");
+
+        // Find the files of every table before loading anything
+        Map<DumpTable, List<Path>> files = new EnumMap<>(DumpTable.class);
+        for (DumpTable table : DumpTable.values()) {
+            files.put(table, findFiles(directory, table));
+        }
+
+        // Audit values of the loaded departments and employees: active, created and updated by the loader, now
+        String loadedAt = OffsetDateTime.now().truncatedTo(ChronoUnit.SECONDS).format(AUDIT_TIMESTAMP_FORMAT);
+        String[] auditValues = {"true", String.valueOf(createdBy), loadedAt, String.valueOf(createdBy), loadedAt, "0"};
+
+        Map<DumpTable, LongAdder> counters = new EnumMap<>(DumpTable.class);
+        Arrays.stream(DumpTable.values()).forEach(table -> counters.put(table, new LongAdder()));
+
+        long startNanos = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> logProgress(counters, startNanos),
+            progressInterval.toMillis(), progressInterval.toMillis(), TimeUnit.MILLISECONDS);
+        try {
+            for (int phase : Arrays.stream(DumpTable.values()).mapToInt(DumpTable::getPhase).distinct().sorted().toArray()) {
+                // Load all the files of the phase in parallel, and wait for them before the next phase
+                List<Future<Long>> results = new ArrayList<>();
+                for (DumpTable table : DumpTable.values()) {
+                    if (table.getPhase() == phase) {
+                        for (Path file : files.get(table)) {
+                            results.add(executor.submit(() -> loadFile(table, file, auditValues, counters.get(table))));
+                        }
+                    }
+                }
+                for (Future<Long> result : results) {
+                    awaitFile(result);
+                }
+            }
+
+            restartEmployeeIdentity();
+        } finally {
+            reporter.shutdownNow();
+            executor.shutdownNow();
+        }
+
+        // Report the rows per table
+        Map<DumpTable, Long> rows = new EnumMap<>(DumpTable.class);
+        counters.forEach((table, counter) -> rows.put(table, counter.sum()));
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long total = rows.values().stream().mapToLong(Long::longValue).sum();
+        rows.forEach((table, count) -> logger.info("Loaded {} rows into {}", count, table.getTableName()));
+        logger.info("Loaded {} rows in {} s ({} rows/s)", total, String.format("%.1f", seconds), Math.round(total / seconds));
+
+        return rows;
+    }
+
+    private static List<Path> findFiles(Path directory, DumpTable table) throws IOException {
+        List<Path> found = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, table.getFileGlob())) {
+            stream.forEach(found::add);
+        }
+        if (found.isEmpty()) {
+            throw new IOException("No dump file " + table.getFileGlob() + " for table " + table.getTableName() + " in " + directory);
+        }
+        found.sort(null);
+        return found;
+    }
+
+    private static void awaitFile(Future<Long> result) throws IOException, SQLException, InterruptedException {
+        try {
+            result.get();
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case IOException cause -> throw cause;
+                case SQLException cause -> throw cause;
+                case RuntimeException cause -> throw cause;
+                default -> throw new IllegalStateException("Loading a dump file failed", e.getCause());
+            }
+        }
+    }
+
+    // Load one dump file in its own transaction
+    private long loadFile(DumpTable table, Path file, String[] auditValues, LongAdder counter) throws IOException, SQLException {
+        long startNanos = System.nanoTime();
+        long rows;
+        try (Connection connection = dataSource.getConnection();
+            Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            connection.setAutoCommit(false);
+            RowWriter writer = connection.isWrapperFor(PGConnection.class)
+                ? new CopyRowWriter(connection, table)
+                : new InsertRowWriter(connection, table, batchSize);
+            try {
+                rows = new DumpFileParser(reader, table.getDumpColumnCount()).parse(tuple -> {
+                    writer.write(table.toRow(tuple, auditValues));
+                    counter.increment();
+                });
+                writer.finish();
+                connection.commit();
+            } catch (IOException e) {
+                writer.abort();
+                connection.rollback();
+                throw new IOException(file.getFileName() + ": " + e.getMessage(), e);
+            } catch (SQLException | RuntimeException e) {
+                writer.abort();
+                connection.rollback();
+                throw e;
+            }
+        }
+
+        logger.info("Loaded {} ({} rows into {}) in {} ms", file.getFileName(), rows, table.getTableName(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return rows;
+    }
+
+    // Restart the identity of employee.id after the loaded ids, so that new employees get the next ones
+    private void restartEmployeeIdentity() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement()) {
+            long nextId;
+            try (ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM employee")) {
+                resultSet.next();
+                nextId = resultSet.getLong(1);
+            }
+            statement.execute("ALTER TABLE employee ALTER COLUMN id RESTART WITH " + nextId);
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+    }
+
+    private void logProgress(Map<DumpTable, LongAdder> counters, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long total = counters.values().stream().mapToLong(LongAdder::sum).sum();
+        String perTable = counters.entrySet().stream()
+            .filter(entry -> entry.getValue().sum() > 0)
+            .map(entry -> entry.getKey().getTableName() + "=" + entry.getValue().sum())
+            .collect(Collectors.joining(", "));
+        logger.info("Loading: {} rows in {} s ({} rows/s) [{}]", total, String.format("%.0f", seconds),
+            Math.round(total / seconds), perTable);
+    }
+
+    private interface RowWriter {
+        void write(String[] row) throws SQLException;
+
+        void finish() throws SQLException;
+
+        void abort() throws SQLException;
+    }
+
+    // COPY in text format: tab-separated values, \N for null, backslash escapes
+    private static class CopyRowWriter implements RowWriter {
+        private final CopyIn copyIn;
+
+        private final StringBuilder chunk = new StringBuilder(COPY_CHUNK_SIZE + 1024);
+
+        CopyRowWriter(Connection connection, DumpTable table) throws SQLException {
+            this.copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                "COPY " + table.getTableName() + " (" + String.join(", ", table.getColumns()) + ") FROM STDIN");
+        }
+
+        @Override
+        public void write(String[] row) throws SQLException {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    chunk.append('\t');
+                }
+                appendValue(row[i]);
+            }
+            chunk.append('\n');
+
+            if (chunk.length() >= COPY_CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        private void appendValue(String value) {
+            if (value == null) {
+                chunk.append("\\N");
+                return;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> chunk.append("\\\\");
+                    case '\t' -> chunk.append("\\t");
+                    case '\n' -> chunk.append("\\n");
+                    case '\r' -> chunk.append("\\r");
+                    default -> chunk.append(c);
+                }
+            }
+        }
+
+        private void flush() throws SQLException {
+            byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            chunk.setLength(0);
+        }
+
+        @Override
+        public void finish() throws SQLException {
+            flush();
+            copyIn.endCopy();
+        }
+
+        @Override
+        public void abort() throws SQLException {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    // Multi-row INSERT statements, with every value cast to the type of its column
+    private static class InsertRowWriter implements RowWriter {
+        private final Connection connection;
+
+        private final DumpTable table;
+
+        private final int batchSize;
+
+        private final PreparedStatement batchStatement;
+
+        private final List<String[]> pending;
+
+        InsertRowWriter(Connection connection, DumpTable table, int batchSize) throws SQLException {
+            this.connection = connection;
+            this.table = table;
+            this.batchSize = batchSize;
+            this.batchStatement = connection.prepareStatement(insertSql(table, batchSize));
+            this.pending = new ArrayList<>(batchSize);
+        }
+
+        private static String insertSql(DumpTable table, int rows) {
+            String tuple = table.getTypes().stream()
+                .map(type -> "CAST(? AS " + type + ")")
+                .collect(Collectors.joining(", ", "(", ")"));
+            return "INSERT INTO " + table.getTableName() + " (" + String.join(", ", table.getColumns()) + ") VALUES "
+                + String.join(", ", Collections.nCopies(rows, tuple));
+        }
+
+        @Override
+        public void write(String[] row) throws SQLException {
+            pending.add(row);
+            if (pending.size() == batchSize) {
+                execute(batchStatement);
+            }
+        }
+
+        private void execute(PreparedStatement statement) throws SQLException {
+            int index = 1;
+            for (String[] row : pending) {
+                for (String value : row) {
+                    statement.setString(index++, value);
+                }
+            }
+            statement.executeUpdate();
+            pending.clear();
+        }
+
+        @Override
+        public void finish() throws SQLException {
+            try {
+                if (!pending.isEmpty()) {
+                    try (PreparedStatement statement = connection.prepareStatement(insertSql(table, pending.size()))) {
+                        execute(statement);
+                    }
+                }
+            } finally {
+                batchStatement.close();
+            }
+        }
+
+        @Override
+        public void abort() throws SQLException {
+            batchStatement.close();
+        }
+    }
+}
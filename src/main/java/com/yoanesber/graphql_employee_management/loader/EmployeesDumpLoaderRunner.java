@@ -0,0 +1,36 @@
+package com.yoanesber.graphql_employee_management.loader;
+
+import java.nio.file.Path;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/*
+ * EmployeesDumpLoaderRunner loads the dump files of app.loader.dump-dir at startup (see EmployeesDumpLoader).
+ * Started with --app.loader.dump-dir=<dir>, GraphqlEmployeeManagementApplication runs without the web server
+ * and exits once the load is done, with a non-zero exit code if it failed.
+ */
+
+@Component
+@ConditionalOnProperty(name = EmployeesDumpLoaderRunner.DUMP_DIR_PROPERTY)
+public class EmployeesDumpLoaderRunner implements ApplicationRunner {
+
+    public static final String DUMP_DIR_PROPERTY = "app.loader.dump-dir";
+
+    private final EmployeesDumpLoader employeesDumpLoader;
+
+    private final Path dumpDir;
+
+    public EmployeesDumpLoaderRunner(EmployeesDumpLoader employeesDumpLoader,
+        @Value("${" + DUMP_DIR_PROPERTY + "}") Path dumpDir) {
+        this.employeesDumpLoader = employeesDumpLoader;
+        this.dumpDir = dumpDir;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        employeesDumpLoader.load(dumpDir);
+    }
+}
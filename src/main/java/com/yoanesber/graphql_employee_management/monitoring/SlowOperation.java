@@ -0,0 +1,29 @@
+package com.yoanesber.graphql_employee_management.monitoring;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A GraphQL operation recorded by SlowOperationRecorder, either because it exceeded the threshold (slow)
+ * or because it was sampled among the normal ones.
+ * The document is identified by a hash of its text, and the variables by their shape only (names and types,
+ * list sizes), never their values.
+ * The statements are those prepared on the thread of the operation; -1 if the operation completed on another thread.
+ */
+
+public record SlowOperation(
+    OffsetDateTime recordedAt,
+    String operation,
+    String documentHash,
+    Map<String, String> variables,
+    boolean slow,
+    double durationMillis,
+    long sqlStatements,
+    int errors,
+    List<FieldTiming> fields) {
+
+    // Timing of the non-trivial data fetchers of a field path (list indices removed), sorted by total time
+    public record FieldTiming(String path, long count, double totalMillis, double maxMillis) {
+    }
+}
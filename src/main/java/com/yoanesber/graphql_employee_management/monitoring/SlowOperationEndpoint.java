@@ -0,0 +1,37 @@
+package com.yoanesber.graphql_employee_management.monitoring;
+
+import java.util.List;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/*
+ * Actuator endpoint of the operations recorded by SlowOperationRecorder:
+ * GET /actuator/slowoperations lists them (most recent first), DELETE /actuator/slowoperations clears them.
+ * Like the other actuator endpoints, it has to be exposed (management.endpoints.web.exposure.include), and requires
+ * an API key (see SecurityConfig).
+ */
+
+@Component
+@Endpoint(id = "slowoperations")
+@ConditionalOnProperty(name = "app.slow-operations.enabled", havingValue = "true", matchIfMissing = true)
+public class SlowOperationEndpoint {
+
+    private final SlowOperationRecorder slowOperationRecorder;
+
+    public SlowOperationEndpoint(SlowOperationRecorder slowOperationRecorder) {
+        this.slowOperationRecorder = slowOperationRecorder;
+    }
+
+    @ReadOperation
+    public List<SlowOperation> slowOperations() {
+        return slowOperationRecorder.getOperations();
+    }
+
+    @DeleteOperation
+    public void clear() {
+        slowOperationRecorder.clear();
+    }
+}
@@ -0,0 +1,223 @@
+package com.yoanesber.graphql_employee_management.monitoring;
+
+import graphql.ExecutionResult;
+import graphql.execution.instrumentation.FieldFetchingInstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.yoanesber.graphql_employee_management.datasource.GraphQlOperationTracker;
+import com.yoanesber.graphql_employee_management.datasource.InstrumentedDataSource;
+
+/*
+ * SlowOperationRecorder records the GraphQL operations that take longer than app.slow-operations.threshold,
+ * plus a random sample (app.slow-operations.sample-rate) of the others, in a ring buffer of the last
+ * app.slow-operations.capacity operations, read through the slowoperations actuator endpoint.
+ * While an operation runs, only its non-trivial data fetchers (controllers and DataLoaders, not property reads)
+ * are timed, aggregated by field path, along with the number of SQL statements (see InstrumentedDataSource).
+ * The document hash and variable shapes are only computed for the operations that are recorded.
+ */
+
+@Component
+@ConditionalOnProperty(name = "app.slow-operations.enabled", havingValue = "true", matchIfMissing = true)
+public class SlowOperationRecorder extends SimplePerformantInstrumentation {
+
+    private final long thresholdNanos;
+
+    private final double sampleRate;
+
+    private final SlowOperation[] buffer;
+
+    private long recorded;
+
+    // Timings of an operation in progress
+    private static class Recording implements InstrumentationState {
+        private final long startNanos = System.nanoTime();
+
+        private final long startStatements = InstrumentedDataSource.statementCount();
+
+        private final Thread thread = Thread.currentThread();
+
+        // Count, total and max nanos of each field path
+        private final Map<String, long[]> fields = new ConcurrentHashMap<>();
+
+        private volatile String operation = "unknown";
+
+        private void recordField(String path, long nanos) {
+            long[] timing = fields.computeIfAbsent(path, key -> new long[3]);
+            synchronized (timing) {
+                timing[0]++;
+                timing[1] += nanos;
+                timing[2] = Math.max(timing[2], nanos);
+            }
+        }
+    }
+
+    public SlowOperationRecorder(@Value("${app.slow-operations.threshold:PT0.5S}") Duration threshold,
+        @Value("${app.slow-operations.sample-rate:0.01}") double sampleRate,
+        @Value("${app.slow-operations.capacity:100}") int capacity) {
+        Assert.isTrue(sampleRate >= 0 && sampleRate <= 1, "Sample rate must be between 0 and 1");
+        Assert.isTrue(capacity > 0, "Capacity must be positive");
+        this.thresholdNanos = threshold.toNanos();
+        this.sampleRate = sampleRate;
+        this.buffer = new SlowOperation[capacity];
+    }
+
+    // Get the recorded operations, the most recent first
+    public synchronized List<SlowOperation> getOperations() {
+        List<SlowOperation> operations = new ArrayList<>();
+        for (long i = recorded - 1; i >= Math.max(0, recorded - buffer.length); i--) {
+            operations.add(buffer[(int) (i % buffer.length)]);
+        }
+        return operations;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(buffer, null);
+        recorded = 0;
+    }
+
+    private synchronized void add(SlowOperation operation) {
+        buffer[(int) (recorded++ % buffer.length)] = operation;
+    }
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        return new Recording();
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters,
+        InstrumentationState state) {
+        ((Recording) state).operation = GraphQlOperationTracker.operationName(
+            parameters.getExecutionContext().getOperationDefinition());
+        return super.beginExecuteOperation(parameters, state);
+    }
+
+    @Override
+    public FieldFetchingInstrumentationContext beginFieldFetching(InstrumentationFieldFetchParameters parameters,
+        InstrumentationState state) {
+        // Property reads are not timed
+        if (parameters.isTrivialDataFetcher()) {
+            return FieldFetchingInstrumentationContext.NOOP;
+        }
+
+        Recording recording = (Recording) state;
+        long start = System.nanoTime();
+        return new FieldFetchingInstrumentationContext() {
+            @Override
+            public void onDispatched() {
+            }
+
+            @Override
+            public void onCompleted(Object result, Throwable t) {
+                // Completed when the value is available, so a DataLoader field includes its batch
+                recording.recordField(String.join("/", parameters.getExecutionStepInfo().getPath().getKeysOnly()),
+                    System.nanoTime() - start);
+            }
+        };
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecution(InstrumentationExecutionParameters parameters,
+        InstrumentationState state) {
+        Recording recording = (Recording) state;
+        return new InstrumentationContext<>() {
+            @Override
+            public void onDispatched() {
+            }
+
+            @Override
+            public void onCompleted(ExecutionResult result, Throwable t) {
+                complete(recording, parameters, result);
+            }
+        };
+    }
+
+    private void complete(Recording recording, InstrumentationExecutionParameters parameters, ExecutionResult result) {
+        long durationNanos = System.nanoTime() - recording.startNanos;
+        boolean slow = durationNanos >= thresholdNanos;
+
+        // Most operations are neither slow nor sampled, and are not recorded
+        if (!slow && (sampleRate == 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+
+        long statements = Thread.currentThread() == recording.thread
+            ? InstrumentedDataSource.statementCount() - recording.startStatements : -1;
+        List<SlowOperation.FieldTiming> fields = recording.fields.entrySet().stream()
+            .map(entry -> new SlowOperation.FieldTiming(entry.getKey(), entry.getValue()[0],
+                entry.getValue()[1] / 1e6, entry.getValue()[2] / 1e6))
+            .sorted(Comparator.comparingDouble(SlowOperation.FieldTiming::totalMillis).reversed())
+            .toList();
+
+        add(new SlowOperation(OffsetDateTime.now(), recording.operation, documentHash(parameters.getQuery()),
+            variableShapes(parameters.getVariables()), slow, durationNanos / 1e6, statements,
+            result != null ? result.getErrors().size() : 0, fields));
+    }
+
+    // Hash of the document text (first 64 bits of its SHA-256), to group the executions of a same document
+    private static String documentHash(String query) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(query.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, String> variableShapes(Map<String, Object> variables) {
+        Map<String, String> shapes = new LinkedHashMap<>();
+        if (variables != null) {
+            variables.forEach((name, value) -> shapes.put(name, shape(value)));
+        }
+        return shapes;
+    }
+
+    // Shape of a value without its content, e.g. "{id: String, tags: [String] x 3}"
+    static String shape(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof Map<?, ?> map) {
+            return map.entrySet().stream()
+                .map(entry -> entry.getKey() + ": " + shape(entry.getValue()))
+                .collect(Collectors.joining(", ", "{", "}"));
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.stream().map(SlowOperationRecorder::shape).distinct()
+                .collect(Collectors.joining(" | ", "[", "]")) + " x " + collection.size();
+        }
+        if (value instanceof Number) {
+            return "Number";
+        }
+        if (value instanceof Boolean) {
+            return "Boolean";
+        }
+        return "String";
+    }
+}
@@ -0,0 +1,95 @@
+package com.yoanesber.graphql_employee_management.repository;
+
+import java.sql.Date;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.yoanesber.graphql_employee_management.entity.ArchivedEmployee;
+
+@Repository
+public interface ArchivedEmployeeRepository extends JpaRepository<ArchivedEmployee, Long> {
+    // Move a batch of employees inactive since before the given date, with their histories, to the archive and return
+    // their ids (see archive_inactive_employees in V5__create_employee_archive.sql)
+    @Query(value = "SELECT archive_inactive_employees(:inactiveBefore, :batchSize)", nativeQuery = true)
+    List<Long> archiveInactiveEmployees(@Param("inactiveBefore") OffsetDateTime inactiveBefore,
+        @Param("batchSize") int batchSize);
+
+    // Get the archived department history of several employees, ordered by employee and from date
+    // The archived histories are read through the primary keys of the archive tables, which start with employee_id
+    @Query(value = "SELECT employee_id AS \"employeeId\", department_id AS \"departmentId\", from_date AS \"fromDate\", " +
+        "to_date AS \"toDate\" FROM department_employee_archive WHERE employee_id IN (:employeeIds) " +
+        "ORDER BY employee_id, from_date", nativeQuery = true)
+    List<ArchivedDepartment> findDepartmentsByEmployeeIds(@Param("employeeIds") Collection<Long> employeeIds);
+
+    // Get the archived salary history of several employees, ordered by employee and from date
+    @Query(value = "SELECT employee_id AS \"employeeId\", amount AS \"amount\", from_date AS \"fromDate\", " +
+        "to_date AS \"toDate\" FROM salary_archive WHERE employee_id IN (:employeeIds) " +
+        "ORDER BY employee_id, from_date", nativeQuery = true)
+    List<ArchivedSalary> findSalariesByEmployeeIds(@Param("employeeIds") Collection<Long> employeeIds);
+
+    // Get the archived title history of several employees, ordered by employee and from date
+    @Query(value = "SELECT employee_id AS \"employeeId\", title AS \"title\", from_date AS \"fromDate\", " +
+        "to_date AS \"toDate\" FROM title_archive WHERE employee_id IN (:employeeIds) " +
+        "ORDER BY employee_id, from_date", nativeQuery = true)
+    List<ArchivedTitle> findTitlesByEmployeeIds(@Param("employeeIds") Collection<Long> employeeIds);
+
+    // Get the size (tables, indexes and TOAST, partitions included) and the number of live rows of the hot and archive
+    // tables; the row counts are the statistics of the database, updated as the transactions end
+    // (a table is read with its partitions: the salary partitions are the only level of partitions)
+    @Query(value = "SELECT t.name AS \"tableName\", CAST(sum(pg_total_relation_size(p.relid)) AS bigint) AS \"bytes\", " +
+        "CAST(coalesce(sum(s.n_live_tup), 0) AS bigint) AS \"liveRows\" " +
+        "FROM unnest(ARRAY['employee', 'department_employee', 'salary', 'title', 'employee_archive', " +
+        "'department_employee_archive', 'salary_archive', 'title_archive']) AS t(name) " +
+        "CROSS JOIN LATERAL (SELECT to_regclass(t.name) AS relid " +
+        "UNION ALL SELECT inhrelid FROM pg_inherits WHERE inhparent = to_regclass(t.name)) p " +
+        "LEFT JOIN pg_stat_user_tables s ON s.relid = p.relid " +
+        "GROUP BY t.name", nativeQuery = true)
+    List<TableSize> findTableSizes();
+
+    // A row of an archived department history
+    interface ArchivedDepartment {
+        Long getEmployeeId();
+
+        String getDepartmentId();
+
+        Date getFromDate();
+
+        Date getToDate();
+    }
+
+    // A row of an archived salary history
+    interface ArchivedSalary {
+        Long getEmployeeId();
+
+        Long getAmount();
+
+        Date getFromDate();
+
+        Date getToDate();
+    }
+
+    // A row of an archived title history
+    interface ArchivedTitle {
+        Long getEmployeeId();
+
+        String getTitle();
+
+        Date getFromDate();
+
+        Date getToDate();
+    }
+
+    // The size of a hot or archive table
+    interface TableSize {
+        String getTableName();
+
+        Long getBytes();
+
+        Long getLiveRows();
+    }
+}
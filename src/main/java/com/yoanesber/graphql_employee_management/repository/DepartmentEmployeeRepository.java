@@ -1,6 +1,11 @@
 package com.yoanesber.graphql_employee_management.repository;
 
+import java.sql.Date;
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.yoanesber.graphql_employee_management.entity.DepartmentEmployee;
@@ -8,5 +13,24 @@ import com.yoanesber.graphql_employee_management.entity.DepartmentEmployeeId;
 
 @Repository
 public interface DepartmentEmployeeRepository extends JpaRepository<DepartmentEmployee, DepartmentEmployeeId> {
-    
+    // Get the department history of several employees, ordered by employee and from date
+    List<DepartmentEmployee> findByIdEmployeeIdInOrderByIdEmployeeIdAscFromDateAsc(Collection<Long> employeeIds);
+
+    // Get the department rows of several employees that are effective on the given date
+    // The period predicate matches the GiST index department_employee_period_idx on (employee_id, daterange(from_date, to_date))
+    @Query(value = "SELECT de.* FROM department_employee de " +
+        "WHERE de.employee_id IN (:employeeIds) AND daterange(de.from_date, de.to_date) @> CAST(:asOf AS date) " +
+        "ORDER BY de.employee_id, de.from_date", nativeQuery = true)
+    List<DepartmentEmployee> findByEmployeeIdsAsOf(@Param("employeeIds") Collection<Long> employeeIds, @Param("asOf") Date asOf);
+
+    // Get the current (open-ended) department of several employees
+    // The predicate on to_date is written as a literal so that it matches the partial index department_employee_current_idx
+    @Query(value = "SELECT DISTINCT ON (de.employee_id) de.* FROM department_employee de " +
+        "WHERE de.employee_id IN (:employeeIds) AND de.to_date = DATE '9999-01-01' " +
+        "ORDER BY de.employee_id, de.from_date DESC", nativeQuery = true)
+    List<DepartmentEmployee> findCurrentByEmployeeIds(@Param("employeeIds") Collection<Long> employeeIds);
+
+    // Get the ids of the employees who were ever in a department
+    @Query("SELECT DISTINCT de.id.employeeId FROM DepartmentEmployee de WHERE de.id.departmentId = :departmentId")
+    List<Long> findEmployeeIdsByDepartmentId(@Param("departmentId") String departmentId);
 }
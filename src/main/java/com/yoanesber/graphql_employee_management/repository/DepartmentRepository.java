@@ -1,11 +1,17 @@
 package com.yoanesber.graphql_employee_management.repository;
 
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.yoanesber.graphql_employee_management.entity.Department;
 
 @Repository
 public interface DepartmentRepository extends JpaRepository<Department, String> {
-
+    // Find which of the given department ids exist (one IN query, without loading the departments)
+    @Query("SELECT d.id FROM Department d WHERE d.id IN :ids")
+    List<String> findExistingIds(@Param("ids") Collection<String> ids);
 }
@@ -1,11 +1,64 @@
 package com.yoanesber.graphql_employee_management.repository;
 
+import java.sql.Date;
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.yoanesber.graphql_employee_management.entity.Employee;
 
 @Repository
 public interface EmployeeRepository extends JpaRepository<Employee, Long> {
-    
+    // Get the employees that belong to any of several departments on the given date
+    // The period predicate matches the GiST index department_employee_department_period_idx
+    // on (department_id, daterange(from_date, to_date))
+    @Query(value = "SELECT e.* FROM employee e WHERE e.id IN (SELECT de.employee_id FROM department_employee de " +
+        "WHERE de.department_id IN (:departmentIds) AND daterange(de.from_date, de.to_date) @> CAST(:asOf AS date)) " +
+        "ORDER BY e.id", nativeQuery = true)
+    List<Employee> findByDepartmentIdsAsOf(@Param("departmentIds") Collection<String> departmentIds, @Param("asOf") Date asOf);
+
+    // Get the department of each employee returned by findByDepartmentIdsAsOf, ordered by department and employee
+    @Query(value = "SELECT de.department_id AS \"departmentId\", de.employee_id AS \"employeeId\" FROM department_employee de " +
+        "WHERE de.department_id IN (:departmentIds) AND daterange(de.from_date, de.to_date) @> CAST(:asOf AS date) " +
+        "ORDER BY de.department_id, de.employee_id", nativeQuery = true)
+    List<DepartmentMember> findMembersByDepartmentIdsAsOf(@Param("departmentIds") Collection<String> departmentIds,
+        @Param("asOf") Date asOf);
+
+    // Get the changes of the employees (updates and tombstones) after a position (changeXid, employeeId), in the order
+    // of the positions (see V4__create_employee_change_feed.sql); the kind of a change is 'updated', or the kind of its
+    // tombstone, 'deleted' or 'archived' (see V6__record_archived_tombstones.sql)
+    // Only the changes of transactions older than the xmin of the snapshot (every transaction in progress) are returned:
+    // a transaction still in progress, or committed later, always gets a position after them
+    // Each branch reads the first rows of its index (employee_change_idx, employee_tombstone_change_idx)
+    @Query(value = "(SELECT e.change_xid AS \"changeXid\", e.id AS \"employeeId\", 'updated' AS \"kind\" FROM employee e " +
+        "WHERE (e.change_xid, e.id) > (:changeXid, :employeeId) " +
+        "AND e.change_xid < CAST(CAST(pg_snapshot_xmin(pg_current_snapshot()) AS text) AS bigint) " +
+        "ORDER BY e.change_xid, e.id LIMIT :limit) " +
+        "UNION ALL " +
+        "(SELECT t.change_xid, t.employee_id, t.kind FROM employee_tombstone t " +
+        "WHERE (t.change_xid, t.employee_id) > (:changeXid, :employeeId) " +
+        "AND t.change_xid < CAST(CAST(pg_snapshot_xmin(pg_current_snapshot()) AS text) AS bigint) " +
+        "ORDER BY t.change_xid, t.employee_id LIMIT :limit) " +
+        "ORDER BY \"changeXid\", \"employeeId\" LIMIT :limit", nativeQuery = true)
+    List<EmployeeChange> findChangesAfter(@Param("changeXid") long changeXid, @Param("employeeId") long employeeId,
+        @Param("limit") int limit);
+
+    // An employee of a department on a date
+    interface DepartmentMember {
+        String getDepartmentId();
+
+        Long getEmployeeId();
+    }
+
+    // A change of the employee feed
+    interface EmployeeChange {
+        Long getChangeXid();
+
+        Long getEmployeeId();
+
+        String getKind();
+    }
 }
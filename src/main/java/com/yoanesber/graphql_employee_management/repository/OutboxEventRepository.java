@@ -0,0 +1,17 @@
+package com.yoanesber.graphql_employee_management.repository;
+
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.yoanesber.graphql_employee_management.entity.OutboxEvent;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+    // Lock the oldest events that are not locked by another relay
+    // SKIP LOCKED lets several nodes drain the outbox concurrently, each one getting a different batch
+    @Query(value = "SELECT * FROM outbox_event ORDER BY id LIMIT :batchSize FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxEvent> lockNextBatch(@Param("batchSize") int batchSize);
+}
@@ -1,6 +1,11 @@
 package com.yoanesber.graphql_employee_management.repository;
 
+import java.sql.Date;
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.yoanesber.graphql_employee_management.entity.SalaryEmployee;
@@ -8,5 +13,33 @@ import com.yoanesber.graphql_employee_management.entity.SalaryEmployeeId;
 
 @Repository
 public interface SalaryEmployeeRepository extends JpaRepository<SalaryEmployee, SalaryEmployeeId> {
+    // Get the salary history of several employees, ordered by employee and from date
+    List<SalaryEmployee> findByIdEmployeeIdInOrderByIdEmployeeIdAscIdFromDateAsc(Collection<Long> employeeIds);
 
+    // Get the salary rows of several employees whose from date lies in [from, to]
+    // This is a range scan on the (employee_id, from_date) index
+    List<SalaryEmployee> findByIdEmployeeIdInAndIdFromDateBetweenOrderByIdEmployeeIdAscIdFromDateAsc(Collection<Long> employeeIds,
+        Date from, Date to);
+
+    // Get the latest salary rows (at most "last" per employee) of several employees whose from date lies in [from, to]
+    @Query(value = "SELECT employee_id, amount, from_date, to_date FROM (" +
+        "SELECT s.*, ROW_NUMBER() OVER (PARTITION BY s.employee_id ORDER BY s.from_date DESC) AS rn " +
+        "FROM salary s WHERE s.employee_id IN (:employeeIds) AND s.from_date BETWEEN :from AND :to) ranked " +
+        "WHERE ranked.rn <= :last ORDER BY employee_id, from_date", nativeQuery = true)
+    List<SalaryEmployee> findLastByEmployeeIdsAndFromDateBetween(@Param("employeeIds") Collection<Long> employeeIds,
+        @Param("from") Date from, @Param("to") Date to, @Param("last") int last);
+
+    // Get the salary rows of several employees that are effective on the given date
+    // The period predicate matches the GiST index salary_period_idx on (employee_id, daterange(from_date, to_date))
+    @Query(value = "SELECT s.* FROM salary s " +
+        "WHERE s.employee_id IN (:employeeIds) AND daterange(s.from_date, s.to_date) @> CAST(:asOf AS date) " +
+        "ORDER BY s.employee_id, s.from_date", nativeQuery = true)
+    List<SalaryEmployee> findByEmployeeIdsAsOf(@Param("employeeIds") Collection<Long> employeeIds, @Param("asOf") Date asOf);
+
+    // Get the current (open-ended) salary of several employees
+    // The predicate on to_date is written as a literal so that it matches the partial index salary_current_idx
+    @Query(value = "SELECT DISTINCT ON (s.employee_id) s.* FROM salary s " +
+        "WHERE s.employee_id IN (:employeeIds) AND s.to_date = DATE '9999-01-01' " +
+        "ORDER BY s.employee_id, s.from_date DESC", nativeQuery = true)
+    List<SalaryEmployee> findCurrentByEmployeeIds(@Param("employeeIds") Collection<Long> employeeIds);
 }
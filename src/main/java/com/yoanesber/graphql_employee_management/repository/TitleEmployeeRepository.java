@@ -1,6 +1,11 @@
 package com.yoanesber.graphql_employee_management.repository;
 
+import java.sql.Date;
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.yoanesber.graphql_employee_management.entity.TitleEmployee;
@@ -8,5 +13,33 @@ import com.yoanesber.graphql_employee_management.entity.TitleEmployeeId;
 
 @Repository
 public interface TitleEmployeeRepository extends JpaRepository<TitleEmployee, TitleEmployeeId> {
+    // Get the title history of several employees, ordered by employee and from date
+    List<TitleEmployee> findByIdEmployeeIdInOrderByIdEmployeeIdAscIdFromDateAsc(Collection<Long> employeeIds);
 
+    // Get the title rows of several employees whose from date lies in [from, to]
+    // This is a range scan on the (employee_id, from_date) index
+    List<TitleEmployee> findByIdEmployeeIdInAndIdFromDateBetweenOrderByIdEmployeeIdAscIdFromDateAsc(Collection<Long> employeeIds,
+        Date from, Date to);
+
+    // Get the latest title rows (at most "last" per employee) of several employees whose from date lies in [from, to]
+    @Query(value = "SELECT employee_id, title, from_date, to_date FROM (" +
+        "SELECT t.*, ROW_NUMBER() OVER (PARTITION BY t.employee_id ORDER BY t.from_date DESC) AS rn " +
+        "FROM title t WHERE t.employee_id IN (:employeeIds) AND t.from_date BETWEEN :from AND :to) ranked " +
+        "WHERE ranked.rn <= :last ORDER BY employee_id, from_date", nativeQuery = true)
+    List<TitleEmployee> findLastByEmployeeIdsAndFromDateBetween(@Param("employeeIds") Collection<Long> employeeIds,
+        @Param("from") Date from, @Param("to") Date to, @Param("last") int last);
+
+    // Get the title rows of several employees that are effective on the given date
+    // The period predicate matches the GiST index title_period_idx on (employee_id, daterange(from_date, to_date))
+    @Query(value = "SELECT t.* FROM title t " +
+        "WHERE t.employee_id IN (:employeeIds) AND daterange(t.from_date, t.to_date) @> CAST(:asOf AS date) " +
+        "ORDER BY t.employee_id, t.from_date", nativeQuery = true)
+    List<TitleEmployee> findByEmployeeIdsAsOf(@Param("employeeIds") Collection<Long> employeeIds, @Param("asOf") Date asOf);
+
+    // Get the current (open-ended) title of several employees
+    // The predicate on to_date is written as a literal so that it matches the partial index title_current_idx
+    @Query(value = "SELECT DISTINCT ON (t.employee_id) t.* FROM title t " +
+        "WHERE t.employee_id IN (:employeeIds) AND (t.to_date IS NULL OR t.to_date = DATE '9999-01-01') " +
+        "ORDER BY t.employee_id, t.from_date DESC", nativeQuery = true)
+    List<TitleEmployee> findCurrentByEmployeeIds(@Param("employeeIds") Collection<Long> employeeIds);
 }
@@ -0,0 +1,11 @@
+package com.yoanesber.graphql_employee_management.service;
+
+import java.util.Set;
+
+public interface CacheInvalidationListener {
+    // Evict keys from the local cache
+    void evict(Set<String> keys);
+
+    // Evict every entry from the local cache (invalidations may have been missed)
+    void clear();
+}
@@ -0,0 +1,22 @@
+package com.yoanesber.graphql_employee_management.service;
+
+import java.util.Collection;
+
+public interface CacheInvalidationService {
+    // Caches of the entities changed by the mutations
+    String EMPLOYEE_CACHE = "employee";
+
+    String DEPARTMENT_CACHE = "department";
+
+    // Invalidate a key of a cache on every node, once the current transaction commits
+    void invalidate(String cacheName, String key);
+
+    // Register a local cache to evict on the invalidations of a cache name
+    void addListener(String cacheName, CacheInvalidationListener listener);
+
+    // Apply the invalidation messages received from the other nodes
+    void receive(Collection<String> payloads);
+
+    // Clear every local cache, after invalidations may have been missed
+    void flush();
+}
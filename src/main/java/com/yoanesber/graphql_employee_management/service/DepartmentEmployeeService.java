@@ -1,8 +1,26 @@
 package com.yoanesber.graphql_employee_management.service;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.yoanesber.graphql_employee_management.dto.DepartmentEmployeeDTO;
 import com.yoanesber.graphql_employee_management.entity.DepartmentEmployee;
 
 public interface DepartmentEmployeeService {
     // Save department employee
     DepartmentEmployee saveDepartmentEmployee(DepartmentEmployee departmentEmployee);
+
+    // Get department history grouped by employee id
+    Map<Long, List<DepartmentEmployeeDTO>> getDepartmentsByEmployeeIds(Collection<Long> employeeIds);
+
+    // Get the department rows effective on a date grouped by employee id
+    Map<Long, List<DepartmentEmployeeDTO>> getDepartmentsByEmployeeIdsAsOf(Collection<Long> employeeIds, LocalDate asOf);
+
+    // Get current department grouped by employee id
+    Map<Long, DepartmentEmployeeDTO> getCurrentDepartmentsByEmployeeIds(Collection<Long> employeeIds);
+
+    // Get the ids of the employees who were ever in a department
+    List<Long> getEmployeeIdsByDepartmentId(String departmentId);
 }
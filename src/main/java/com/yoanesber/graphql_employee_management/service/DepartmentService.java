@@ -1,10 +1,13 @@
 package com.yoanesber.graphql_employee_management.service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.yoanesber.graphql_employee_management.dto.DepartmentCreateDTO;
 import com.yoanesber.graphql_employee_management.dto.DepartmentDTO;
 import com.yoanesber.graphql_employee_management.dto.DepartmentUpdateDTO;
+import com.yoanesber.graphql_employee_management.entity.Department;
 
 public interface DepartmentService {
     // Save department
@@ -21,4 +24,7 @@ public interface DepartmentService {
 
     // Delete department
     Boolean deleteDepartment(String id);
+
+    // Check that all departments exist (one query) and get references to them, by id
+    Map<String, Department> getDepartmentReferences(Collection<String> ids);
 }
@@ -0,0 +1,47 @@
+package com.yoanesber.graphql_employee_management.service;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.yoanesber.graphql_employee_management.dto.DepartmentEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeHistoryRangeDTO;
+import com.yoanesber.graphql_employee_management.dto.SalaryEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.TitleEmployeeDTO;
+import com.yoanesber.graphql_employee_management.repository.ArchivedEmployeeRepository.TableSize;
+
+public interface EmployeeArchiveService {
+    // Move a batch of employees inactive since before the given date, with their histories, to the archive
+    // and return their ids
+    List<Long> archiveBatch(OffsetDateTime inactiveBefore, int batchSize);
+
+    // Get all archived employees
+    List<EmployeeDTO> getAllArchivedEmployees();
+
+    // Get the archived employees of the given ids with one query, by id (ids that are not archived are left out)
+    Map<Long, EmployeeDTO> getArchivedEmployeesByIds(Collection<Long> ids);
+
+    // Get the archived department history grouped by employee id, restricted to a range (only asOf applies)
+    Map<Long, List<DepartmentEmployeeDTO>> getArchivedDepartmentsByEmployeeIds(Collection<Long> employeeIds,
+        EmployeeHistoryRangeDTO range);
+
+    // Get the archived salary history grouped by employee id, restricted to a range
+    Map<Long, List<SalaryEmployeeDTO>> getArchivedSalariesByEmployeeIds(Collection<Long> employeeIds,
+        EmployeeHistoryRangeDTO range);
+
+    // Get the archived title history grouped by employee id, restricted to a range
+    Map<Long, List<TitleEmployeeDTO>> getArchivedTitlesByEmployeeIds(Collection<Long> employeeIds,
+        EmployeeHistoryRangeDTO range);
+
+    // Get the current archived department, salary and title grouped by employee id
+    Map<Long, DepartmentEmployeeDTO> getCurrentArchivedDepartmentsByEmployeeIds(Collection<Long> employeeIds);
+
+    Map<Long, SalaryEmployeeDTO> getCurrentArchivedSalariesByEmployeeIds(Collection<Long> employeeIds);
+
+    Map<Long, TitleEmployeeDTO> getCurrentArchivedTitlesByEmployeeIds(Collection<Long> employeeIds);
+
+    // Get the size of the hot and archive tables
+    List<TableSize> getTableSizes();
+}
@@ -1,7 +1,11 @@
 package com.yoanesber.graphql_employee_management.service;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
+import com.yoanesber.graphql_employee_management.dto.EmployeeChangePageDTO;
 import com.yoanesber.graphql_employee_management.dto.EmployeeCreateDTO;
 import com.yoanesber.graphql_employee_management.dto.EmployeeDTO;
 import com.yoanesber.graphql_employee_management.dto.EmployeeUpdateDTO;
@@ -16,6 +20,16 @@ public interface EmployeeService {
     // Get employee by id
     EmployeeDTO getEmployeeById(Long id);
 
+    // Get the employees of the given ids with one query, by id (ids that do not exist are left out)
+    Map<Long, EmployeeDTO> getEmployeesByIds(Collection<Long> ids);
+
+    // Get the employees of several departments on a date with two queries, by department id (ordered by employee id;
+    // departments without employees are left out)
+    Map<String, List<EmployeeDTO>> getEmployeesByDepartmentIds(Collection<String> departmentIds, LocalDate asOf);
+
+    // Get the next changes of the employees (updated or deleted) after a cursor of the feed (null: from the start)
+    EmployeeChangePageDTO getEmployeesChangedSince(String cursor, int first);
+
     // Update employee
     EmployeeDTO updateEmployee(Long id, EmployeeUpdateDTO employeeUpdateDTO);
 
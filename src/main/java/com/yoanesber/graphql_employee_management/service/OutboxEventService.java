@@ -0,0 +1,13 @@
+package com.yoanesber.graphql_employee_management.service;
+
+import java.util.List;
+
+import com.yoanesber.graphql_employee_management.entity.OutboxEvent;
+
+public interface OutboxEventService {
+    // Record a change event in the transaction of the change
+    void publish(String aggregateType, String aggregateId, String eventType, Object payload);
+
+    // Send the next batch of events to the sink and remove them from the outbox
+    List<OutboxEvent> relayBatch(int batchSize);
+}
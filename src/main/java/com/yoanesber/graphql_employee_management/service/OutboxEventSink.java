@@ -0,0 +1,10 @@
+package com.yoanesber.graphql_employee_management.service;
+
+import java.util.List;
+
+import com.yoanesber.graphql_employee_management.entity.OutboxEvent;
+
+public interface OutboxEventSink {
+    // Deliver a batch of events (throwing keeps them in the outbox for the next run)
+    void send(List<OutboxEvent> events);
+}
@@ -1,8 +1,23 @@
 package com.yoanesber.graphql_employee_management.service;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.yoanesber.graphql_employee_management.dto.SalaryEmployeeDTO;
 import com.yoanesber.graphql_employee_management.entity.SalaryEmployee;
 
 public interface SalaryEmployeeService {
     // Save salary employee
     SalaryEmployee saveSalaryEmployee(SalaryEmployee salaryEmployee);
+
+    // Get salary history grouped by employee id, optionally restricted to a from date range and the last rows
+    Map<Long, List<SalaryEmployeeDTO>> getSalariesByEmployeeIds(Collection<Long> employeeIds, LocalDate from, LocalDate to, Integer last);
+
+    // Get the salary rows effective on a date grouped by employee id
+    Map<Long, List<SalaryEmployeeDTO>> getSalariesByEmployeeIdsAsOf(Collection<Long> employeeIds, LocalDate asOf);
+
+    // Get current salary grouped by employee id
+    Map<Long, SalaryEmployeeDTO> getCurrentSalariesByEmployeeIds(Collection<Long> employeeIds);
 }
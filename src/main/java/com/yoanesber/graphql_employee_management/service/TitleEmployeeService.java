@@ -1,8 +1,23 @@
 package com.yoanesber.graphql_employee_management.service;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.yoanesber.graphql_employee_management.dto.TitleEmployeeDTO;
 import com.yoanesber.graphql_employee_management.entity.TitleEmployee;
 
 public interface TitleEmployeeService {
     // Save title employee
     TitleEmployee saveTitleEmployee(TitleEmployee titleEmployee);
+
+    // Get title history grouped by employee id, optionally restricted to a from date range and the last rows
+    Map<Long, List<TitleEmployeeDTO>> getTitlesByEmployeeIds(Collection<Long> employeeIds, LocalDate from, LocalDate to, Integer last);
+
+    // Get the title rows effective on a date grouped by employee id
+    Map<Long, List<TitleEmployeeDTO>> getTitlesByEmployeeIdsAsOf(Collection<Long> employeeIds, LocalDate asOf);
+
+    // Get current title grouped by employee id
+    Map<Long, TitleEmployeeDTO> getCurrentTitlesByEmployeeIds(Collection<Long> employeeIds);
 }
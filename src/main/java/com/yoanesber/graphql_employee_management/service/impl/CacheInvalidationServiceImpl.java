@@ -0,0 +1,222 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationListener;
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationService;
+
+/**
+ * CacheInvalidationServiceImpl is an implementation of the CacheInvalidationService interface.
+ * The keys invalidated during a transaction are collected, and sent to the other nodes with NOTIFY just before
+ * the commit: PostgreSQL only delivers the notifications of committed transactions, in commit order.
+ * The local caches are evicted after the commit, so a node reads its own writes without waiting for its notification.
+ *
+ * A message is a text of at most 8000 bytes (the NOTIFY limit): the id of the sending node, then one "cache:key"
+ * per line. A transaction that invalidates more than max-keys keys of a cache sends "cache:*" (clear the cache) instead.
+ * Messages are received by CacheInvalidationSubscriber; the messages of this node are skipped.
+ * On other databases than PostgreSQL, the invalidations are only local.
+ *
+ * Metrics:
+ * - cache.invalidation.sent: number of NOTIFY messages sent
+ * - cache.invalidation.received: number of keys invalidated by the other nodes
+ * - cache.invalidation.flushes: number of times every local cache was cleared
+ */
+
+@Service
+public class CacheInvalidationServiceImpl implements CacheInvalidationService {
+
+    private static final String ALL_KEYS = "*";
+
+    // Maximum size of a NOTIFY payload in bytes (8000), minus a margin
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final boolean notify;
+
+    private final String channel;
+
+    private final int maxKeys;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+
+    private final Map<String, List<CacheInvalidationListener>> listeners = new ConcurrentHashMap<>();
+
+    private final Counter sent;
+
+    private final Counter received;
+
+    private final Counter flushes;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public CacheInvalidationServiceImpl(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+        @Value("${spring.datasource.url:}") String datasourceUrl,
+        @Value("${app.cache.invalidation.enabled:true}") boolean enabled,
+        @Value("${app.cache.invalidation.channel:cache_invalidation}") String channel,
+        @Value("${app.cache.invalidation.max-keys:100}") int maxKeys) {
+        Assert.isTrue(channel.matches("[a-z_][a-z0-9_]*"), "Channel must be a lowercase identifier");
+        Assert.isTrue(maxKeys > 0, "Max keys must be positive");
+        this.jdbcTemplate = jdbcTemplate;
+        this.notify = enabled && datasourceUrl.startsWith("jdbc:postgresql:");
+        this.channel = channel;
+        this.maxKeys = maxKeys;
+        this.sent = Counter.builder("cache.invalidation.sent")
+            .description("Number of cache invalidation messages sent to the other nodes")
+            .register(meterRegistry);
+        this.received = Counter.builder("cache.invalidation.received")
+            .description("Number of cache keys invalidated by the other nodes")
+            .register(meterRegistry);
+        this.flushes = Counter.builder("cache.invalidation.flushes")
+            .description("Number of times every local cache was cleared")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void invalidate(String cacheName, String key) {
+        Assert.hasText(cacheName, "Cache name cannot be null or empty");
+        Assert.hasText(key, "Key cannot be null or empty");
+        Assert.isTrue(cacheName.indexOf(':') < 0 && cacheName.indexOf('\n') < 0 && key.indexOf('\n') < 0 && !ALL_KEYS.equals(key),
+            "Invalid cache name or key");
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Cache invalidations must be made in the transaction of the change");
+        }
+
+        // Collect the keys of the transaction, sent once when it commits
+        @SuppressWarnings("unchecked")
+        Map<String, Set<String>> pending = (Map<String, Set<String>>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<String, Set<String>> keys = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, keys);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    if (notify) {
+                        send(keys);
+                    }
+                }
+
+                @Override
+                public void afterCommit() {
+                    dispatch(keys);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CacheInvalidationServiceImpl.this);
+                }
+            });
+            pending = keys;
+        }
+        pending.computeIfAbsent(cacheName, name -> new LinkedHashSet<>()).add(key);
+    }
+
+    @Override
+    public void addListener(String cacheName, CacheInvalidationListener listener) {
+        Assert.hasText(cacheName, "Cache name cannot be null or empty");
+        Assert.notNull(listener, "Listener cannot be null");
+        listeners.computeIfAbsent(cacheName, name -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    @Override
+    public void receive(Collection<String> payloads) {
+        // Coalesce the keys of all the messages (a same key is often invalidated by consecutive transactions)
+        Map<String, Set<String>> keys = new LinkedHashMap<>();
+        for (String payload : payloads) {
+            String[] lines = payload.split("\n");
+            if (lines[0].equals(nodeId)) {
+                continue;
+            }
+            for (int i = 1; i < lines.length; i++) {
+                int separator = lines[i].indexOf(':');
+                if (separator > 0) {
+                    keys.computeIfAbsent(lines[i].substring(0, separator), name -> new LinkedHashSet<>())
+                        .add(lines[i].substring(separator + 1));
+                }
+            }
+        }
+
+        received.increment(keys.values().stream().mapToInt(Set::size).sum());
+        dispatch(keys);
+    }
+
+    @Override
+    public void flush() {
+        flushes.increment();
+        listeners.values().forEach(cacheListeners -> cacheListeners.forEach(listener -> {
+            try {
+                listener.clear();
+            } catch (RuntimeException e) {
+                logger.error("Error clearing a cache: {}", e.getMessage());
+            }
+        }));
+    }
+
+    // Send the keys of a transaction on the channel, in as few messages as possible
+    private void send(Map<String, Set<String>> keys) {
+        for (String payload : encode(nodeId, keys, maxKeys)) {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", resultSet -> null, channel, payload);
+            sent.increment();
+        }
+    }
+
+    // Evict the keys from the local caches
+    private void dispatch(Map<String, Set<String>> keys) {
+        keys.forEach((cacheName, cacheKeys) -> listeners.getOrDefault(cacheName, List.of()).forEach(listener -> {
+            try {
+                if (cacheKeys.contains(ALL_KEYS)) {
+                    listener.clear();
+                } else {
+                    listener.evict(cacheKeys);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Error evicting from cache {}: {}", cacheName, e.getMessage());
+            }
+        }));
+    }
+
+    // Encode keys into messages of at most MAX_PAYLOAD_BYTES, replacing the keys of a cache by * beyond maxKeys
+    static List<String> encode(String nodeId, Map<String, Set<String>> keys, int maxKeys) {
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder(nodeId);
+        int payloadBytes = payload.length();
+        for (Map.Entry<String, Set<String>> entry : keys.entrySet()) {
+            Collection<String> cacheKeys = entry.getValue().size() > maxKeys ? List.of(ALL_KEYS) : entry.getValue();
+            for (String key : cacheKeys) {
+                String line = "\n" + entry.getKey() + ":" + key;
+                int lineBytes = line.getBytes(StandardCharsets.UTF_8).length;
+                if (payloadBytes + lineBytes > MAX_PAYLOAD_BYTES) {
+                    payloads.add(payload.toString());
+                    payload = new StringBuilder(nodeId);
+                    payloadBytes = payload.length();
+                }
+                payload.append(line);
+                payloadBytes += lineBytes;
+            }
+        }
+        if (payload.length() > nodeId.length()) {
+            payloads.add(payload.toString());
+        }
+        return payloads;
+    }
+}
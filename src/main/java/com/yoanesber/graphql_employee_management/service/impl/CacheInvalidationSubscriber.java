@@ -0,0 +1,176 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationService;
+
+/**
+ * CacheInvalidationSubscriber receives the cache invalidations of the other nodes (see CacheInvalidationServiceImpl).
+ * It runs LISTEN on a dedicated connection, opened outside the pool as it is held for the lifetime of the application,
+ * and hands the pending notifications to the CacheInvalidationService in batches, which coalesces their keys.
+ *
+ * Notifications sent while a node is not listening are lost. So every local cache is cleared when the connection is lost,
+ * and again once it is re-established (the caches may have been refilled with stale entries in between).
+ * It reconnects with an exponential backoff, and checks an idle connection every validation-interval,
+ * so that a silently dropped connection is detected.
+ * Only PostgreSQL supports LISTEN/NOTIFY: on other databases, the subscriber does not start.
+ */
+
+@Component
+@ConditionalOnProperty(name = "app.cache.invalidation.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheInvalidationSubscriber implements SmartLifecycle {
+
+    private final CacheInvalidationService cacheInvalidationService;
+
+    private final String url;
+
+    private final String username;
+
+    private final String password;
+
+    private final String channel;
+
+    private final Duration validationInterval;
+
+    private final Duration maxBackoff;
+
+    private volatile boolean running;
+
+    private volatile boolean listening;
+
+    private Thread thread;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public CacheInvalidationSubscriber(CacheInvalidationService cacheInvalidationService,
+        @Value("${spring.datasource.url:}") String url,
+        @Value("${spring.datasource.username:}") String username,
+        @Value("${spring.datasource.password:}") String password,
+        @Value("${app.cache.invalidation.channel:cache_invalidation}") String channel,
+        @Value("${app.cache.invalidation.validation-interval:PT30S}") Duration validationInterval,
+        @Value("${app.cache.invalidation.max-backoff:PT30S}") Duration maxBackoff) {
+        this.cacheInvalidationService = cacheInvalidationService;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.channel = channel;
+        this.validationInterval = validationInterval;
+        this.maxBackoff = maxBackoff;
+    }
+
+    // Whether the subscriber is listening (invalidations of the other nodes are applied)
+    public boolean isListening() {
+        return listening;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!url.startsWith("jdbc:postgresql:")) {
+            logger.info("Cache invalidations are only local: LISTEN/NOTIFY requires PostgreSQL");
+            return;
+        }
+
+        running = true;
+        thread = new Thread(this::listen, "cache-invalidation-subscriber");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        long backoffMillis = 100;
+        boolean gap = false;
+
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                listening = true;
+                backoffMillis = 100;
+                logger.info("Listening to cache invalidations on channel {}", channel);
+
+                // Invalidations sent while not listening were missed
+                if (gap) {
+                    cacheInvalidationService.flush();
+                }
+                gap = true;
+
+                receive(connection);
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+
+                // Clear the caches right away when the connection is lost, as invalidations are being missed
+                if (listening) {
+                    listening = false;
+                    cacheInvalidationService.flush();
+                }
+                logger.warn("Cache invalidation connection failed, reconnecting in {} ms: {}", backoffMillis, e.getMessage());
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, maxBackoff.toMillis());
+            } finally {
+                if (!running) {
+                    listening = false;
+                }
+            }
+        }
+    }
+
+    // Receive the notifications until the connection fails or the subscriber stops
+    private void receive(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long lastActivity = System.nanoTime();
+
+        while (running) {
+            // Wait for the next notifications, and get all the pending ones at once
+            PGNotification[] notifications = pgConnection.getNotifications(1000);
+            if (notifications != null && notifications.length > 0) {
+                List<String> payloads = new ArrayList<>(notifications.length);
+                for (PGNotification notification : notifications) {
+                    payloads.add(notification.getParameter());
+                }
+                cacheInvalidationService.receive(payloads);
+                lastActivity = System.nanoTime();
+            } else if (System.nanoTime() - lastActivity > validationInterval.toNanos()) {
+                // Check that an idle connection is still alive
+                if (!connection.isValid(5)) {
+                    throw new SQLException("Cache invalidation connection is no longer valid");
+                }
+                lastActivity = System.nanoTime();
+            }
+        }
+    }
+}
@@ -1,12 +1,21 @@
 package com.yoanesber.graphql_employee_management.service.impl;
 
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
+import com.yoanesber.graphql_employee_management.dto.DepartmentEmployeeDTO;
 import com.yoanesber.graphql_employee_management.entity.DepartmentEmployee;
 import com.yoanesber.graphql_employee_management.repository.DepartmentEmployeeRepository;
 import com.yoanesber.graphql_employee_management.service.DepartmentEmployeeService;
+import com.yoanesber.graphql_employee_management.service.impl.EmployeeProfileCache.EmployeeProfile;
 
 /*
  * DepartmentEmployeeServiceImpl is an implementation of the DepartmentEmployeeService interface.
@@ -14,6 +23,7 @@ import com.yoanesber.graphql_employee_management.service.DepartmentEmployeeServi
  * The class is annotated with @Service, indicating that it's a service layer component in the Spring context.
  * It uses the DepartmentEmployeeRepository to perform CRUD operations on department employee records.
  * The saveDepartmentEmployee method is annotated with @Transactional, ensuring that the operation is performed within a transaction.
+ * The full histories of the employees cached by EmployeeProfileCache are served from the cache.
  */
 
 @Service
@@ -21,8 +31,11 @@ public class DepartmentEmployeeServiceImpl implements DepartmentEmployeeService
 
     private final DepartmentEmployeeRepository departmentEmployeeRepository;
 
-    public DepartmentEmployeeServiceImpl(DepartmentEmployeeRepository departmentEmployeeRepository) {
+    private final EmployeeProfileCache employeeProfileCache;
+
+    public DepartmentEmployeeServiceImpl(DepartmentEmployeeRepository departmentEmployeeRepository, EmployeeProfileCache employeeProfileCache) {
         this.departmentEmployeeRepository = departmentEmployeeRepository;
+        this.employeeProfileCache = employeeProfileCache;
     }
 
     @Override
@@ -32,4 +45,62 @@ public class DepartmentEmployeeServiceImpl implements DepartmentEmployeeService
 
         return departmentEmployeeRepository.save(departmentEmployee);
     }
+
+    @Override
+    public Map<Long, List<DepartmentEmployeeDTO>> getDepartmentsByEmployeeIds(Collection<Long> employeeIds) {
+        Assert.notNull(employeeIds, "Employee ids cannot be null");
+
+        // Nothing to load
+        if (employeeIds.isEmpty()) {
+            return Map.of();
+        }
+
+        // Use the histories of the cached employee profiles, and load the history of the other employees in one query
+        return employeeProfileCache.getHistories(employeeIds, EmployeeProfile::departments,
+            missingIds -> departmentEmployeeRepository.findByIdEmployeeIdInOrderByIdEmployeeIdAscFromDateAsc(missingIds)
+                .stream()
+                .collect(Collectors.groupingBy(departmentEmployee -> departmentEmployee.getId().getEmployeeId(),
+                    LinkedHashMap::new,
+                    Collectors.mapping(DepartmentEmployeeDTO::new, Collectors.toList()))));
+    }
+
+    @Override
+    public Map<Long, List<DepartmentEmployeeDTO>> getDepartmentsByEmployeeIdsAsOf(Collection<Long> employeeIds, LocalDate asOf) {
+        Assert.notNull(employeeIds, "Employee ids cannot be null");
+        Assert.notNull(asOf, "As of date cannot be null");
+
+        // Nothing to load
+        if (employeeIds.isEmpty()) {
+            return Map.of();
+        }
+
+        // Load the rows whose period contains the date and group them by employee id
+        return departmentEmployeeRepository.findByEmployeeIdsAsOf(employeeIds, Date.valueOf(asOf))
+            .stream()
+            .collect(Collectors.groupingBy(departmentEmployee -> departmentEmployee.getId().getEmployeeId(),
+                LinkedHashMap::new,
+                Collectors.mapping(DepartmentEmployeeDTO::new, Collectors.toList())));
+    }
+
+    @Override
+    public Map<Long, DepartmentEmployeeDTO> getCurrentDepartmentsByEmployeeIds(Collection<Long> employeeIds) {
+        Assert.notNull(employeeIds, "Employee ids cannot be null");
+
+        // Nothing to load
+        if (employeeIds.isEmpty()) {
+            return Map.of();
+        }
+
+        // Load the open-ended row of all employees in one query (at most one row per employee)
+        return departmentEmployeeRepository.findCurrentByEmployeeIds(employeeIds)
+            .stream()
+            .collect(Collectors.toMap(departmentEmployee -> departmentEmployee.getId().getEmployeeId(), DepartmentEmployeeDTO::new));
+    }
+
+    @Override
+    public List<Long> getEmployeeIdsByDepartmentId(String departmentId) {
+        Assert.hasText(departmentId, "Department id cannot be null or empty");
+
+        return departmentEmployeeRepository.findEmployeeIdsByDepartmentId(departmentId);
+    }
 }
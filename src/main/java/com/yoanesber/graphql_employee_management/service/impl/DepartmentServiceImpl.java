@@ -1,7 +1,14 @@
 package com.yoanesber.graphql_employee_management.service.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -11,8 +18,16 @@ import com.yoanesber.graphql_employee_management.dto.DepartmentDTO;
 import com.yoanesber.graphql_employee_management.dto.DepartmentCreateDTO;
 import com.yoanesber.graphql_employee_management.dto.DepartmentUpdateDTO;
 import com.yoanesber.graphql_employee_management.entity.Department;
+import com.yoanesber.graphql_employee_management.exception.ConflictException;
+import com.yoanesber.graphql_employee_management.exception.ErrorCode;
+import com.yoanesber.graphql_employee_management.exception.NotFoundException;
+import com.yoanesber.graphql_employee_management.exception.VersionConflictException;
 import com.yoanesber.graphql_employee_management.repository.DepartmentRepository;
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationListener;
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationService;
+import com.yoanesber.graphql_employee_management.service.DepartmentEmployeeService;
 import com.yoanesber.graphql_employee_management.service.DepartmentService;
+import com.yoanesber.graphql_employee_management.service.OutboxEventService;
 
 /**
  * DepartmentServiceImpl is an implementation of the DepartmentService interface.
@@ -20,15 +35,56 @@ import com.yoanesber.graphql_employee_management.service.DepartmentService;
  * The class is annotated with @Service, indicating that it's a service layer component in the Spring context.
  * It uses the DepartmentRepository to perform CRUD operations on department records.
  * The saveDepartment method is annotated with @Transactional, ensuring that the operation is performed within a transaction.
+ * The updateDepartment method runs through OptimisticRetryTemplate, which owns its transaction and can retry it
+ * when a concurrent update of the same department is detected through its version.
+ * Every mutation also records a Department event in the outbox, in the same transaction as the change,
+ * and invalidates the department in the caches of every node once the transaction commits. Deleting a department
+ * also deletes its history rows, so it invalidates the cached profiles of the employees who were in it as well.
+ * Concurrent getAllDepartments calls share a single query through SingleFlight; any invalidation of the
+ * department cache makes later calls start a new query.
  */
 
 @Service
 public class DepartmentServiceImpl implements DepartmentService {
-    
+
+    // Key of the read of all the departments
+    private static final String ALL_DEPARTMENTS = "*";
+
     private final DepartmentRepository departmentRepository;
 
-    public DepartmentServiceImpl(DepartmentRepository departmentRepository) {
+    private final OptimisticRetryTemplate optimisticRetryTemplate;
+
+    private final OutboxEventService outboxEventService;
+
+    private final CacheInvalidationService cacheInvalidationService;
+
+    private final DepartmentEmployeeService departmentEmployeeService;
+
+    // Read of all the departments in progress
+    private final SingleFlight<String, List<DepartmentDTO>> allDepartmentsFlight;
+
+    public DepartmentServiceImpl(DepartmentRepository departmentRepository, OptimisticRetryTemplate optimisticRetryTemplate,
+        OutboxEventService outboxEventService, CacheInvalidationService cacheInvalidationService,
+        DepartmentEmployeeService departmentEmployeeService, MeterRegistry meterRegistry) {
         this.departmentRepository = departmentRepository;
+        this.optimisticRetryTemplate = optimisticRetryTemplate;
+        this.outboxEventService = outboxEventService;
+        this.cacheInvalidationService = cacheInvalidationService;
+        this.departmentEmployeeService = departmentEmployeeService;
+        this.allDepartmentsFlight = new SingleFlight<>("departments", meterRegistry);
+
+        // Any change of a department changes the list of all departments
+        cacheInvalidationService.addListener(CacheInvalidationService.DEPARTMENT_CACHE, new CacheInvalidationListener() {
+            @Override
+            public void evict(Set<String> keys) {
+                allDepartmentsFlight.clear();
+            }
+
+            @Override
+            public void clear() {
+                allDepartmentsFlight.clear();
+            }
+        });
     }
 
     @Override
@@ -42,7 +98,7 @@ public class DepartmentServiceImpl implements DepartmentService {
 
         // Check if department exists
         if (existingDepartment != null) {
-            throw new IllegalArgumentException("Department with id " + departmentCreateDTO.getId() + " already exists");
+            throw new ConflictException(ErrorCode.DEPARTMENT_ALREADY_EXISTS, "Department with id " + departmentCreateDTO.getId() + " already exists");
         } 
         
         // Prepare department entity
@@ -55,22 +111,29 @@ public class DepartmentServiceImpl implements DepartmentService {
         department.setUpdatedBy((Long)departmentCreateDTO.getCreatedBy());
         department.setUpdatedDate(OffsetDateTime.now());
 
-        // Save and return department
-        return new DepartmentDTO(departmentRepository.save(department));
+        // Save department
+        DepartmentDTO departmentDTO = new DepartmentDTO(departmentRepository.save(department));
+
+        // Record the change event & return department
+        outboxEventService.publish("Department", departmentDTO.getId(), "CREATED", departmentDTO);
+        cacheInvalidationService.invalidate(CacheInvalidationService.DEPARTMENT_CACHE, departmentDTO.getId());
+        return departmentDTO;
     }
 
     @Override
     public List<DepartmentDTO> getAllDepartments() {
-        // Get all departments sorted by id in ascending order
-        List<Department> departments = departmentRepository.findAll(Sort.by(Sort.Direction.ASC, "id"));
-
-        // Check if departments exist
-        if (departments == null || departments.isEmpty()) {
-            return List.of();
-        }
-
-        // Return departments
-        return departments.stream().map(DepartmentDTO::new).toList();
+        // Get all departments sorted by id in ascending order (or wait for a concurrent read of them)
+        return allDepartmentsFlight.execute(ALL_DEPARTMENTS, keys -> {
+            List<Department> departments = departmentRepository.findAll(Sort.by(Sort.Direction.ASC, "id"));
+
+            // Check if departments exist
+            if (departments == null || departments.isEmpty()) {
+                return Map.of(ALL_DEPARTMENTS, List.of());
+            }
+
+            // Return departments
+            return Map.of(ALL_DEPARTMENTS, departments.stream().map(DepartmentDTO::new).toList());
+        });
     }
 
     @Override
@@ -83,7 +146,7 @@ public class DepartmentServiceImpl implements DepartmentService {
 
         // Check if department exists
         if (department == null) {
-            throw new IllegalArgumentException("Department with id " + id + " does not exist");
+            throw new NotFoundException(ErrorCode.DEPARTMENT_NOT_FOUND, "Department with id " + id + " does not exist");
         }
 
         // Return department
@@ -91,19 +154,30 @@ public class DepartmentServiceImpl implements DepartmentService {
     }
 
     @Override
-    @Transactional
     public DepartmentDTO updateDepartment(String id, DepartmentUpdateDTO departmentUpdateDTO) {
         Assert.hasText(id, "Department id cannot be null or empty");
         Assert.notNull(departmentUpdateDTO, "Department cannot be null");
 
+        // Only retry on concurrent updates when the client did not ask for a specific version
+        return optimisticRetryTemplate.execute(departmentUpdateDTO.getVersion() == null,
+            () -> applyDepartmentUpdate(id, departmentUpdateDTO));
+    }
+
+    // Apply an update to the latest version of the department (runs inside the transaction of the retry template)
+    private DepartmentDTO applyDepartmentUpdate(String id, DepartmentUpdateDTO departmentUpdateDTO) {
         // Get existing department
         Department existingDepartment = departmentRepository.findById(id)
             .orElse(null);
 
         // Check if department exists
         if (existingDepartment == null) {
-            throw new IllegalArgumentException("Department with id " + id + " does not exist");
+            throw new NotFoundException(ErrorCode.DEPARTMENT_NOT_FOUND, "Department with id " + id + " does not exist");
         } 
+
+        // Check if the update is based on the current version
+        if (departmentUpdateDTO.getVersion() != null && !departmentUpdateDTO.getVersion().equals(existingDepartment.getVersion())) {
+            throw new VersionConflictException("Department", id, departmentUpdateDTO.getVersion(), existingDepartment.getVersion());
+        }
         
         // Update department
         existingDepartment.setDeptName(departmentUpdateDTO.getDeptName());
@@ -111,8 +185,13 @@ public class DepartmentServiceImpl implements DepartmentService {
         existingDepartment.setUpdatedBy((Long)departmentUpdateDTO.getUpdatedBy());
         existingDepartment.setUpdatedDate(OffsetDateTime.now());
 
-        // Save department
-        return new DepartmentDTO(departmentRepository.save(existingDepartment));
+        // Save department (flushed, so that a concurrent update fails here and the new version is returned)
+        DepartmentDTO departmentDTO = new DepartmentDTO(departmentRepository.saveAndFlush(existingDepartment));
+
+        // Record the change event & return department
+        outboxEventService.publish("Department", id, "UPDATED", departmentDTO);
+        cacheInvalidationService.invalidate(CacheInvalidationService.DEPARTMENT_CACHE, id);
+        return departmentDTO;
     }
 
     @Override
@@ -126,12 +205,46 @@ public class DepartmentServiceImpl implements DepartmentService {
 
         // Check if department exists
         if (existingDepartment == null) {
-            throw new IllegalArgumentException("Department with id " + id + " does not exist");
+            throw new NotFoundException(ErrorCode.DEPARTMENT_NOT_FOUND, "Department with id " + id + " does not exist");
         }
 
-        // Delete department
+        // Get the employees whose department history loses the rows of the department
+        List<Long> employeeIds = departmentEmployeeService.getEmployeeIdsByDepartmentId(id);
+
+        // Delete department (and its history rows)
         departmentRepository.deleteById(id);
 
+        // Record the change event
+        outboxEventService.publish("Department", id, "DELETED", Map.of("id", id));
+        cacheInvalidationService.invalidate(CacheInvalidationService.DEPARTMENT_CACHE, id);
+        employeeIds.forEach(employeeId ->
+            cacheInvalidationService.invalidate(CacheInvalidationService.EMPLOYEE_CACHE, String.valueOf(employeeId)));
+
         return true;
     }
+
+    @Override
+    public Map<String, Department> getDepartmentReferences(Collection<String> ids) {
+        Assert.notNull(ids, "Department ids cannot be null");
+        ids.forEach(id -> Assert.hasText(id, "Department id cannot be null or empty"));
+
+        Set<String> distinctIds = new LinkedHashSet<>(ids);
+        if (distinctIds.isEmpty()) {
+            return Map.of();
+        }
+
+        // Check that all departments exist with a single query
+        Set<String> existingIds = new HashSet<>(departmentRepository.findExistingIds(distinctIds));
+        distinctIds.forEach(id -> {
+            if (!existingIds.contains(id)) {
+                throw new NotFoundException(ErrorCode.DEPARTMENT_NOT_FOUND, "Department with id " + id + " does not exist");
+            }
+        });
+
+        // Get references to the departments (attached to the current persistence context, not loaded)
+        Map<String, Department> departments = new LinkedHashMap<>();
+        distinctIds.forEach(id -> departments.put(id, departmentRepository.getReferenceById(id)));
+
+        return departments;
+    }
 }
@@ -0,0 +1,241 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+
+import com.yoanesber.graphql_employee_management.dto.DepartmentEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeHistoryRangeDTO;
+import com.yoanesber.graphql_employee_management.dto.SalaryEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.TitleEmployeeDTO;
+import com.yoanesber.graphql_employee_management.entity.ArchivedEmployee;
+import com.yoanesber.graphql_employee_management.repository.ArchivedEmployeeRepository;
+import com.yoanesber.graphql_employee_management.repository.ArchivedEmployeeRepository.ArchivedDepartment;
+import com.yoanesber.graphql_employee_management.repository.ArchivedEmployeeRepository.ArchivedSalary;
+import com.yoanesber.graphql_employee_management.repository.ArchivedEmployeeRepository.ArchivedTitle;
+import com.yoanesber.graphql_employee_management.repository.ArchivedEmployeeRepository.TableSize;
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationService;
+import com.yoanesber.graphql_employee_management.service.EmployeeArchiveService;
+import com.yoanesber.graphql_employee_management.service.OutboxEventService;
+
+/*
+ * EmployeeArchiveServiceImpl is an implementation of the EmployeeArchiveService interface.
+ * archiveBatch moves a batch of inactive employees to the archive tier in one transaction (archive_inactive_employees),
+ * records an ARCHIVED Employee event for each of them in the outbox, and invalidates them in the caches of every node,
+ * as the archived employees are no longer returned by the reads of the hot tables.
+ * The reads of the archive are only used by the queries with includeArchived: true. An archived history is small and
+ * never changes, so it is loaded whole with one query per history, and the from/to/last/asOf ranges and the current
+ * rows are picked from it here instead of with a query per range.
+ * The queries of the archive are timed by employee.archive.read, tagged with the table read (employee,
+ * department_employee, salary, title), so the cost of includeArchived can be followed on its own.
+ */
+
+@Service
+public class EmployeeArchiveServiceImpl implements EmployeeArchiveService {
+
+    // to_date of the open-ended (current) history rows
+    private static final LocalDate OPEN_ENDED = LocalDate.of(9999, 1, 1);
+
+    private final ArchivedEmployeeRepository archivedEmployeeRepository;
+
+    private final OutboxEventService outboxEventService;
+
+    private final CacheInvalidationService cacheInvalidationService;
+
+    private final Timer employeeReads;
+
+    private final Timer departmentReads;
+
+    private final Timer salaryReads;
+
+    private final Timer titleReads;
+
+    public EmployeeArchiveServiceImpl(ArchivedEmployeeRepository archivedEmployeeRepository,
+        OutboxEventService outboxEventService, CacheInvalidationService cacheInvalidationService,
+        MeterRegistry meterRegistry) {
+        this.archivedEmployeeRepository = archivedEmployeeRepository;
+        this.outboxEventService = outboxEventService;
+        this.cacheInvalidationService = cacheInvalidationService;
+        this.employeeReads = readTimer("employee", meterRegistry);
+        this.departmentReads = readTimer("department_employee", meterRegistry);
+        this.salaryReads = readTimer("salary", meterRegistry);
+        this.titleReads = readTimer("title", meterRegistry);
+    }
+
+    private static Timer readTimer(String table, MeterRegistry meterRegistry) {
+        return Timer.builder("employee.archive.read")
+            .description("Time to read the archive tables, for the queries with includeArchived")
+            .tag("table", table)
+            .register(meterRegistry);
+    }
+
+    @Override
+    @Transactional
+    public List<Long> archiveBatch(OffsetDateTime inactiveBefore, int batchSize) {
+        Assert.notNull(inactiveBefore, "Inactive before date cannot be null");
+        Assert.isTrue(batchSize > 0, "Batch size must be greater than 0");
+
+        // Move the batch to the archive
+        List<Long> ids = archivedEmployeeRepository.archiveInactiveEmployees(inactiveBefore, batchSize);
+
+        // Record the change events
+        ids.forEach(id -> {
+            outboxEventService.publish("Employee", String.valueOf(id), "ARCHIVED", Map.of("id", id));
+            cacheInvalidationService.invalidate(CacheInvalidationService.EMPLOYEE_CACHE, String.valueOf(id));
+        });
+
+        return ids;
+    }
+
+    @Override
+    public List<EmployeeDTO> getAllArchivedEmployees() {
+        // Get all archived employees sorted by id in ascending order
+        return employeeReads.record(() -> archivedEmployeeRepository.findAll(Sort.by(Sort.Direction.ASC, "id")))
+            .stream()
+            .map(EmployeeDTO::new)
+            .toList();
+    }
+
+    @Override
+    public Map<Long, EmployeeDTO> getArchivedEmployeesByIds(Collection<Long> ids) {
+        Assert.notNull(ids, "Employee ids cannot be null");
+
+        // Nothing to load
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+
+        // Get the archived employees with a single IN query (ids that are not archived are left out)
+        return employeeReads.record(() -> archivedEmployeeRepository.findAllById(ids))
+            .stream()
+            .collect(Collectors.toMap(ArchivedEmployee::getId, EmployeeDTO::new));
+    }
+
+    @Override
+    public Map<Long, List<DepartmentEmployeeDTO>> getArchivedDepartmentsByEmployeeIds(Collection<Long> employeeIds,
+        EmployeeHistoryRangeDTO range) {
+        Assert.notNull(employeeIds, "Employee ids cannot be null");
+        Assert.notNull(range, "Range cannot be null");
+
+        // Nothing to load
+        if (employeeIds.isEmpty()) {
+            return Map.of();
+        }
+
+        // The department history has no from/to/last arguments: only a point-in-time range restricts it
+        EmployeeHistoryRangeDTO asOf = new EmployeeHistoryRangeDTO(null, null, null, null, range.getAsOf(), true);
+        return groupInRange(departmentReads.record(() -> archivedEmployeeRepository.findDepartmentsByEmployeeIds(employeeIds)), asOf,
+            ArchivedDepartment::getEmployeeId, ArchivedDepartment::getFromDate, ArchivedDepartment::getToDate,
+            row -> new DepartmentEmployeeDTO(row.getDepartmentId(), row.getFromDate(), row.getToDate()));
+    }
+
+    @Override
+    public Map<Long, List<SalaryEmployeeDTO>> getArchivedSalariesByEmployeeIds(Collection<Long> employeeIds,
+        EmployeeHistoryRangeDTO range) {
+        Assert.notNull(employeeIds, "Employee ids cannot be null");
+        Assert.notNull(range, "Range cannot be null");
+
+        // Nothing to load
+        if (employeeIds.isEmpty()) {
+            return Map.of();
+        }
+
+        return groupInRange(salaryReads.record(() -> archivedEmployeeRepository.findSalariesByEmployeeIds(employeeIds)), range,
+            ArchivedSalary::getEmployeeId, ArchivedSalary::getFromDate, ArchivedSalary::getToDate,
+            row -> new SalaryEmployeeDTO(row.getFromDate(), row.getAmount(), row.getToDate()));
+    }
+
+    @Override
+    public Map<Long, List<TitleEmployeeDTO>> getArchivedTitlesByEmployeeIds(Collection<Long> employeeIds,
+        EmployeeHistoryRangeDTO range) {
+        Assert.notNull(employeeIds, "Employee ids cannot be null");
+        Assert.notNull(range, "Range cannot be null");
+
+        // Nothing to load
+        if (employeeIds.isEmpty()) {
+            return Map.of();
+        }
+
+        return groupInRange(titleReads.record(() -> archivedEmployeeRepository.findTitlesByEmployeeIds(employeeIds)), range,
+            ArchivedTitle::getEmployeeId, ArchivedTitle::getFromDate, ArchivedTitle::getToDate,
+            row -> new TitleEmployeeDTO(row.getTitle(), row.getFromDate(), row.getToDate()));
+    }
+
+    @Override
+    public Map<Long, DepartmentEmployeeDTO> getCurrentArchivedDepartmentsByEmployeeIds(Collection<Long> employeeIds) {
+        return current(getArchivedDepartmentsByEmployeeIds(employeeIds, new EmployeeHistoryRangeDTO()),
+            DepartmentEmployeeDTO::getToDate);
+    }
+
+    @Override
+    public Map<Long, SalaryEmployeeDTO> getCurrentArchivedSalariesByEmployeeIds(Collection<Long> employeeIds) {
+        return current(getArchivedSalariesByEmployeeIds(employeeIds, new EmployeeHistoryRangeDTO()),
+            SalaryEmployeeDTO::getToDate);
+    }
+
+    @Override
+    public Map<Long, TitleEmployeeDTO> getCurrentArchivedTitlesByEmployeeIds(Collection<Long> employeeIds) {
+        return current(getArchivedTitlesByEmployeeIds(employeeIds, new EmployeeHistoryRangeDTO()),
+            TitleEmployeeDTO::getToDate);
+    }
+
+    @Override
+    public List<TableSize> getTableSizes() {
+        return archivedEmployeeRepository.findTableSizes();
+    }
+
+    // Group the rows of a history (ordered by employee and from date) by employee id, keeping the rows of the range:
+    // the rows effective on asOf, or the rows whose from date lies in [from, to], only the latest "last" ones
+    private static <T, V> Map<Long, List<V>> groupInRange(List<T> rows, EmployeeHistoryRangeDTO range,
+        Function<T, Long> employeeId, Function<T, Date> fromDate, Function<T, Date> toDate, Function<T, V> toDTO) {
+        Map<Long, List<V>> history = new LinkedHashMap<>();
+        for (T row : rows) {
+            LocalDate from = fromDate.apply(row).toLocalDate();
+            boolean inRange;
+            if (range.getAsOf() != null) {
+                // [from_date, to_date) contains asOf (a missing to_date is open-ended)
+                inRange = !from.isAfter(range.getAsOf())
+                    && (toDate.apply(row) == null || range.getAsOf().isBefore(toDate.apply(row).toLocalDate()));
+            } else {
+                inRange = !from.isBefore(EmployeeHistoryRangeDTO.lowerBound(range.getFrom()))
+                    && !from.isAfter(EmployeeHistoryRangeDTO.upperBound(range.getTo()));
+            }
+
+            if (inRange) {
+                history.computeIfAbsent(employeeId.apply(row), id -> new ArrayList<>()).add(toDTO.apply(row));
+            }
+        }
+
+        // Only keep the latest rows of each employee
+        if (range.getAsOf() == null && range.getLast() != null) {
+            history.replaceAll((id, employeeRows) -> employeeRows.size() <= range.getLast() ? employeeRows
+                : List.copyOf(employeeRows.subList(employeeRows.size() - range.getLast(), employeeRows.size())));
+        }
+
+        return history;
+    }
+
+    // Pick the latest open-ended row (no to date, or 9999-01-01) of each history, as the current row
+    private static <V> Map<Long, V> current(Map<Long, List<V>> histories, Function<V, Date> toDate) {
+        Map<Long, V> current = new LinkedHashMap<>();
+        histories.forEach((id, rows) -> rows.stream()
+            .filter(row -> toDate.apply(row) == null || OPEN_ENDED.equals(toDate.apply(row).toLocalDate()))
+            .reduce((first, second) -> second)
+            .ifPresent(row -> current.put(id, row)));
+        return current;
+    }
+}
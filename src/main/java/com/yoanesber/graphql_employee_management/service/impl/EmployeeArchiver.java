@@ -0,0 +1,149 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.graphql_employee_management.repository.ArchivedEmployeeRepository.TableSize;
+import com.yoanesber.graphql_employee_management.service.EmployeeArchiveService;
+
+/**
+ * EmployeeArchiver periodically moves the employees that have been inactive for inactive-for, with their histories,
+ * from the hot tables to the archive tables (see V5__create_employee_archive.sql).
+ * Each run archives up to max-batches-per-run batches of batch-size employees, each in its own transaction, and stops
+ * early when a batch comes back short. Several instances can run at the same time: SKIP LOCKED gives every archiver a
+ * disjoint batch.
+ * After each run, the size of the hot and archive tables is read again, so the effect of the archive on the hot tables
+ * can be followed. The reads of the archive tables are timed by EmployeeArchiveServiceImpl (employee.archive.read).
+ *
+ * Metrics:
+ * - employee.archive.employees: number of employees archived
+ * - employee.archive.batch: time to archive a batch
+ * - employee.archive.failures: number of batches that failed and were rolled back
+ * - employee.archive.table.bytes: size of each table (tables, indexes and TOAST), tagged with table and tier (hot, archive)
+ * - employee.archive.table.rows: number of live rows of each table, tagged with table and tier
+ */
+
+@Component
+@ConditionalOnProperty(name = "app.archive.enabled", havingValue = "true")
+public class EmployeeArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmployeeArchiver.class);
+
+    private static final String ARCHIVE_SUFFIX = "_archive";
+
+    private final EmployeeArchiveService employeeArchiveService;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Duration inactiveFor;
+
+    private final int batchSize;
+
+    private final int maxBatchesPerRun;
+
+    private final Counter archivedEmployees;
+
+    private final Timer batchTime;
+
+    private final Counter failures;
+
+    // Last size and number of rows of each table, by table name
+    private final Map<String, AtomicLong> tableBytes = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicLong> tableRows = new ConcurrentHashMap<>();
+
+    public EmployeeArchiver(EmployeeArchiveService employeeArchiveService, MeterRegistry meterRegistry,
+        @Value("${app.archive.inactive-for:P30D}") Duration inactiveFor,
+        @Value("${app.archive.batch-size:500}") int batchSize,
+        @Value("${app.archive.max-batches-per-run:100}") int maxBatchesPerRun) {
+        this.employeeArchiveService = employeeArchiveService;
+        this.meterRegistry = meterRegistry;
+        this.inactiveFor = inactiveFor;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.archivedEmployees = Counter.builder("employee.archive.employees")
+            .description("Number of inactive employees moved to the archive")
+            .register(meterRegistry);
+        this.batchTime = Timer.builder("employee.archive.batch")
+            .description("Time to move a batch of employees to the archive")
+            .register(meterRegistry);
+        this.failures = Counter.builder("employee.archive.failures")
+            .description("Number of archive batches that failed")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.archive.interval:PT1H}", initialDelayString = "${app.archive.initial-delay:PT1M}")
+    public void archive() {
+        // The employees inactive since before the start of the run
+        OffsetDateTime inactiveBefore = OffsetDateTime.now().minus(inactiveFor);
+        try {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                List<Long> ids;
+                try {
+                    Timer.Sample sample = Timer.start(meterRegistry);
+                    ids = employeeArchiveService.archiveBatch(inactiveBefore, batchSize);
+                    sample.stop(batchTime);
+                } catch (Exception e) {
+                    // The batch was rolled back and stays in the hot tables for the next run
+                    failures.increment();
+                    logger.error("Error archiving employees: {}", e.getMessage());
+                    return;
+                }
+
+                archivedEmployees.increment(ids.size());
+
+                // Stop when there is nothing left to archive
+                if (ids.size() < batchSize) {
+                    return;
+                }
+            }
+        } finally {
+            refreshTableSizes();
+        }
+    }
+
+    // Read the size of the tables and update their gauges (registered the first time a table is seen)
+    private void refreshTableSizes() {
+        List<TableSize> sizes;
+        try {
+            sizes = employeeArchiveService.getTableSizes();
+        } catch (Exception e) {
+            logger.error("Error reading the size of the archive tables: {}", e.getMessage());
+            return;
+        }
+
+        for (TableSize size : sizes) {
+            gauge(tableBytes, "employee.archive.table.bytes", "Size of the table, its indexes and TOAST", size.getTableName())
+                .set(size.getBytes());
+            gauge(tableRows, "employee.archive.table.rows", "Number of live rows of the table", size.getTableName())
+                .set(size.getLiveRows());
+        }
+    }
+
+    private AtomicLong gauge(Map<String, AtomicLong> values, String name, String description, String tableName) {
+        return values.computeIfAbsent(tableName, table -> {
+            AtomicLong value = new AtomicLong();
+            boolean archive = table.endsWith(ARCHIVE_SUFFIX);
+            Gauge.builder(name, value, AtomicLong::get)
+                .description(description)
+                .tag("table", archive ? table.substring(0, table.length() - ARCHIVE_SUFFIX.length()) : table)
+                .tag("tier", archive ? "archive" : "hot")
+                .register(meterRegistry);
+            return value;
+        });
+    }
+}
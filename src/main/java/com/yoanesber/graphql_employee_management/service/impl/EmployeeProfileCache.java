@@ -0,0 +1,122 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.yoanesber.graphql_employee_management.dto.DepartmentEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.SalaryEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.TitleEmployeeDTO;
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationService;
+
+/*
+ * EmployeeProfileCache is the near cache of the employees read by id: each entry is the profile of an employee,
+ * i.e. the employee with its full department, salary and title histories, weighing 1 plus its number of history rows.
+ * The reads by id go through getAll, which loads and stores the missing profiles; the reads of the full histories
+ * use the profiles already cached (getHistories), without counting as reads of the cache.
+ * Entries are evicted by the employee invalidations of every node (see CacheInvalidationService), and the cache is
+ * bypassed inside transactions, so a transaction reads its own changes.
+ */
+
+@Component
+public class EmployeeProfileCache {
+
+    // An employee with its full histories (the histories are null when the cache is disabled: they are not loaded)
+    public record EmployeeProfile(EmployeeDTO employee, List<DepartmentEmployeeDTO> departments,
+        List<SalaryEmployeeDTO> salaries, List<TitleEmployeeDTO> titles) {
+
+        long weight() {
+            return 1L + departments.size() + salaries.size() + titles.size();
+        }
+    }
+
+    private final NearCache<Long, EmployeeProfile> cache;
+
+    public EmployeeProfileCache(CacheInvalidationService cacheInvalidationService, MeterRegistry meterRegistry,
+        @Value("${app.cache.employee.enabled:true}") boolean enabled,
+        @Value("${app.cache.employee.max-weight:100000}") long maxWeight) {
+        this.cache = enabled ? new NearCache<>(CacheInvalidationService.EMPLOYEE_CACHE, maxWeight, Long::valueOf, meterRegistry) : null;
+        if (enabled) {
+            cacheInvalidationService.addListener(CacheInvalidationService.EMPLOYEE_CACHE, cache);
+        }
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    // Get the profiles of employees, loading the ones that are not cached (ids that do not exist are left out)
+    public Map<Long, EmployeeProfile> getAll(Collection<Long> ids, Function<Set<Long>, Map<Long, EmployeeProfile>> loader) {
+        if (!usable()) {
+            return loader.apply(new LinkedHashSet<>(ids));
+        }
+
+        Map<Long, EmployeeProfile> profiles = new HashMap<>();
+        Set<Long> missingIds = new LinkedHashSet<>();
+        for (Long id : ids) {
+            EmployeeProfile profile = cache.get(id);
+            if (profile != null) {
+                profiles.put(id, profile);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        if (missingIds.isEmpty()) {
+            return profiles;
+        }
+
+        // Load the missing profiles and store them, unless an employee was invalidated meanwhile
+        long stamp = cache.stamp();
+        Map<Long, EmployeeProfile> loaded = loader.apply(missingIds);
+        loaded.forEach((id, profile) -> cache.put(id, profile, profile.weight(), stamp));
+        profiles.putAll(loaded);
+        return profiles;
+    }
+
+    // Get a full history of employees: from their cached profiles, and loaded for the other employees
+    public <V> Map<Long, List<V>> getHistories(Collection<Long> ids, Function<EmployeeProfile, List<V>> history,
+        Function<Collection<Long>, Map<Long, List<V>>> loader) {
+        Map<Long, EmployeeProfile> profiles = getAllPresent(ids);
+        if (profiles.isEmpty()) {
+            return loader.apply(ids);
+        }
+
+        Map<Long, List<V>> histories = new LinkedHashMap<>();
+        profiles.forEach((id, profile) -> histories.put(id, history.apply(profile)));
+        List<Long> missingIds = ids.stream().filter(id -> !profiles.containsKey(id)).distinct().toList();
+        if (!missingIds.isEmpty()) {
+            histories.putAll(loader.apply(missingIds));
+        }
+        return histories;
+    }
+
+    // Get the cached profiles of employees, without loading the others
+    private Map<Long, EmployeeProfile> getAllPresent(Collection<Long> ids) {
+        if (!usable()) {
+            return Map.of();
+        }
+
+        Map<Long, EmployeeProfile> profiles = new HashMap<>();
+        for (Long id : ids) {
+            EmployeeProfile profile = cache.peek(id);
+            if (profile != null) {
+                profiles.put(id, profile);
+            }
+        }
+        return profiles;
+    }
+
+    private boolean usable() {
+        return cache != null && !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+}
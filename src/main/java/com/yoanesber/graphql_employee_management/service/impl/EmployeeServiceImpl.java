@@ -1,26 +1,55 @@
 package com.yoanesber.graphql_employee_management.service.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
+import com.yoanesber.graphql_employee_management.dto.DepartmentEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeChangeDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeChangePageDTO;
 import com.yoanesber.graphql_employee_management.dto.EmployeeCreateDTO;
 import com.yoanesber.graphql_employee_management.dto.EmployeeDTO;
 import com.yoanesber.graphql_employee_management.dto.EmployeeUpdateDTO;
+import com.yoanesber.graphql_employee_management.dto.SalaryEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.TitleEmployeeDTO;
 import com.yoanesber.graphql_employee_management.entity.Department;
 import com.yoanesber.graphql_employee_management.entity.DepartmentEmployee;
 import com.yoanesber.graphql_employee_management.entity.Employee;
 import com.yoanesber.graphql_employee_management.entity.SalaryEmployee;
 import com.yoanesber.graphql_employee_management.entity.TitleEmployee;
+import com.yoanesber.graphql_employee_management.exception.ErrorCode;
+import com.yoanesber.graphql_employee_management.exception.NotFoundException;
+import com.yoanesber.graphql_employee_management.exception.ValidationException;
+import com.yoanesber.graphql_employee_management.exception.VersionConflictException;
 import com.yoanesber.graphql_employee_management.repository.EmployeeRepository;
+import com.yoanesber.graphql_employee_management.repository.EmployeeRepository.DepartmentMember;
+import com.yoanesber.graphql_employee_management.repository.EmployeeRepository.EmployeeChange;
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationService;
 import com.yoanesber.graphql_employee_management.service.DepartmentService;
 import com.yoanesber.graphql_employee_management.service.DepartmentEmployeeService;
 import com.yoanesber.graphql_employee_management.service.EmployeeService;
+import com.yoanesber.graphql_employee_management.service.OutboxEventService;
 import com.yoanesber.graphql_employee_management.service.SalaryEmployeeService;
 import com.yoanesber.graphql_employee_management.service.TitleEmployeeService;
+import com.yoanesber.graphql_employee_management.service.impl.EmployeeProfileCache.EmployeeProfile;
 
 /*
  * EmployeeServiceImpl is an implementation of the EmployeeService interface.
@@ -28,6 +57,16 @@ import com.yoanesber.graphql_employee_management.service.TitleEmployeeService;
  * The class is annotated with @Service, indicating that it's a service layer component in the Spring context.
  * It uses the EmployeeRepository to perform CRUD operations on employee records.
  * The saveEmployee method is annotated with @Transactional, ensuring that the operation is performed within a transaction.
+ * The updateEmployee method runs through OptimisticRetryTemplate, which owns its transaction and can retry it
+ * when a concurrent update of the same employee is detected through its version. An update only writes the fields
+ * it supplies (the histories and the last name it leaves out are kept), in a single flush.
+ * Every mutation also records an Employee event in the outbox, in the same transaction as the change,
+ * and invalidates the employee in the caches of every node once the transaction commits.
+ * The reads by id (getEmployeeById, getEmployeesByIds) go through EmployeeProfileCache, and the employees it misses
+ * are loaded with their histories. Concurrent reads of the same missing employees share a single load through
+ * SingleFlight; the invalidations of the employee cache make later reads start a new load.
+ * getEmployeesChangedSince pages through the change feed of the employees (see EmployeeRepository.findChangesAfter):
+ * the cursor is the opaque encoding of the position of the last change returned.
  */
 
 @Service
@@ -43,14 +82,34 @@ public class EmployeeServiceImpl implements EmployeeService {
 
     private final TitleEmployeeService titleEmployeeService;
 
+    private final OptimisticRetryTemplate optimisticRetryTemplate;
+
+    private final OutboxEventService outboxEventService;
+
+    private final CacheInvalidationService cacheInvalidationService;
+
+    private final EmployeeProfileCache employeeProfileCache;
+
+    // Loads of employee profiles in progress, by id
+    private final SingleFlight<Long, EmployeeProfile> employeeFlights;
+
     public EmployeeServiceImpl(EmployeeRepository employeeRepository,
         DepartmentService departmentService, DepartmentEmployeeService departmentEmployeeService,
-        SalaryEmployeeService salaryEmployeeService, TitleEmployeeService titleEmployeeService) {
+        SalaryEmployeeService salaryEmployeeService, TitleEmployeeService titleEmployeeService,
+        OptimisticRetryTemplate optimisticRetryTemplate, OutboxEventService outboxEventService,
+        CacheInvalidationService cacheInvalidationService, EmployeeProfileCache employeeProfileCache,
+        MeterRegistry meterRegistry) {
         this.employeeRepository = employeeRepository;
         this.departmentService = departmentService;
         this.departmentEmployeeService = departmentEmployeeService;
         this.salaryEmployeeService = salaryEmployeeService;
         this.titleEmployeeService = titleEmployeeService;
+        this.optimisticRetryTemplate = optimisticRetryTemplate;
+        this.outboxEventService = outboxEventService;
+        this.cacheInvalidationService = cacheInvalidationService;
+        this.employeeProfileCache = employeeProfileCache;
+        this.employeeFlights = new SingleFlight<>(CacheInvalidationService.EMPLOYEE_CACHE, meterRegistry);
+        cacheInvalidationService.addListener(CacheInvalidationService.EMPLOYEE_CACHE, employeeFlights);
     }
 
     @Override
@@ -74,21 +133,22 @@ public class EmployeeServiceImpl implements EmployeeService {
         // Save the employee to get the ID
         Employee savedEmployee = employeeRepository.save(employee);
         
+        // Check all departments with one query and get references to them
+        Map<String, Department> deptEntities = departmentService.getDepartmentReferences(employeeCreateDTO.getDepartments()
+            .stream().map(DepartmentEmployeeDTO::getDepartmentId).toList());
+
         // Prepare & save the departments
         employeeCreateDTO.getDepartments().forEach(department -> {
-            // Get the department entity
-            Department deptEntity = new Department(departmentService
-                .getDepartmentById(department.getDepartmentId()));
-
             // Create the department employee
-            DepartmentEmployee departmentEmployee = new DepartmentEmployee(savedEmployee, deptEntity);
+            DepartmentEmployee departmentEmployee = new DepartmentEmployee(savedEmployee,
+                deptEntities.get(department.getDepartmentId()));
             
             // Set the from and to dates
             departmentEmployee.setFromDate(department.getFromDate());
             departmentEmployee.setToDate(department.getToDate());
 
-            // Save the department employee
-            departmentEmployeeService.saveDepartmentEmployee(departmentEmployee);
+            // Save the department employee & add it to the list
+            savedEmployee.getDepartments().add(departmentEmployeeService.saveDepartmentEmployee(departmentEmployee));
         });
         
         // Prepare & save the salaries
@@ -100,8 +160,8 @@ public class EmployeeServiceImpl implements EmployeeService {
             salaryEmployee.setAmount((Long)salary.getAmount());
             salaryEmployee.setToDate(salary.getToDate());
 
-            // Save the salary employee
-            salaryEmployeeService.saveSalaryEmployee(salaryEmployee);
+            // Save the salary employee & add it to the list
+            savedEmployee.getSalaries().add(salaryEmployeeService.saveSalaryEmployee(salaryEmployee));
         });
         
         // Prepare & save the titles
@@ -112,11 +172,16 @@ public class EmployeeServiceImpl implements EmployeeService {
             // Set the to date
             titleEmployee.setToDate(title.getToDate());
 
-            // Save the title employee
-            titleEmployeeService.saveTitleEmployee(titleEmployee);
+            // Save the title employee & add it to the list
+            savedEmployee.getTitles().add(titleEmployeeService.saveTitleEmployee(titleEmployee));
         });
 
-        return new EmployeeDTO(savedEmployee);
+        // Record the change event
+        EmployeeDTO employeeDTO = new EmployeeDTO(savedEmployee);
+        outboxEventService.publish("Employee", String.valueOf(savedEmployee.getId()), "CREATED", employeeDTO);
+        cacheInvalidationService.invalidate(CacheInvalidationService.EMPLOYEE_CACHE, String.valueOf(savedEmployee.getId()));
+
+        return employeeDTO;
     }
 
     @Override
@@ -138,94 +203,252 @@ public class EmployeeServiceImpl implements EmployeeService {
         Assert.notNull(id, "Employee id cannot be null");
 
         // Get the employee by id
-        Employee employee = employeeRepository.findById(id)
-            .orElse(null);
+        EmployeeProfile profile = getProfiles(List.of(id)).get(id);
 
         // Check if the employee exists
-        if (employee == null) {
-            throw new IllegalArgumentException("Employee with id " + id + " does not exist");
+        if (profile == null) {
+            throw new NotFoundException(ErrorCode.EMPLOYEE_NOT_FOUND, "Employee with id " + id + " does not exist");
         }
 
         // Return the employee
-        return new EmployeeDTO(employee);
+        return profile.employee();
+    }
+
+    @Override
+    public Map<Long, EmployeeDTO> getEmployeesByIds(Collection<Long> ids) {
+        Assert.notNull(ids, "Employee ids cannot be null");
+        ids.forEach(id -> Assert.notNull(id, "Employee id cannot be null"));
+
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+
+        // Get the employees (ids that do not exist are left out)
+        return getProfiles(ids).values().stream()
+            .collect(Collectors.toMap(profile -> profile.employee().getId(), EmployeeProfile::employee));
+    }
+
+    // Get the profiles of employees from the near cache; the missing ones are loaded together, except those
+    // already being loaded by concurrent requests
+    private Map<Long, EmployeeProfile> getProfiles(Collection<Long> ids) {
+        return employeeProfileCache.getAll(ids, missingIds -> employeeFlights.executeAll(missingIds, this::loadProfiles));
+    }
+
+    // Load employees with a single IN query, and their histories with one query per history when they are cached
+    private Map<Long, EmployeeProfile> loadProfiles(Set<Long> ids) {
+        Map<Long, EmployeeDTO> employees = employeeRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Employee::getId, EmployeeDTO::new));
+        if (employees.isEmpty() || !employeeProfileCache.isEnabled()) {
+            return employees.values().stream()
+                .collect(Collectors.toMap(EmployeeDTO::getId, employee -> new EmployeeProfile(employee, null, null, null)));
+        }
+
+        Map<Long, List<DepartmentEmployeeDTO>> departments = departmentEmployeeService.getDepartmentsByEmployeeIds(employees.keySet());
+        Map<Long, List<SalaryEmployeeDTO>> salaries = salaryEmployeeService.getSalariesByEmployeeIds(employees.keySet(), null, null, null);
+        Map<Long, List<TitleEmployeeDTO>> titles = titleEmployeeService.getTitlesByEmployeeIds(employees.keySet(), null, null, null);
+        return employees.values().stream()
+            .collect(Collectors.toMap(EmployeeDTO::getId, employee -> new EmployeeProfile(employee,
+                departments.getOrDefault(employee.getId(), List.of()),
+                salaries.getOrDefault(employee.getId(), List.of()),
+                titles.getOrDefault(employee.getId(), List.of()))));
+    }
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Map<String, List<EmployeeDTO>> getEmployeesByDepartmentIds(Collection<String> departmentIds, LocalDate asOf) {
+        Assert.notNull(departmentIds, "Department ids cannot be null");
+        Assert.notNull(asOf, "As of date cannot be null");
+
+        // Nothing to load
+        if (departmentIds.isEmpty()) {
+            return Map.of();
+        }
+
+        // Get the employees of all the departments whose department period contains the date with one query,
+        // and their departments with another (the snapshot is shared by both queries)
+        Date date = Date.valueOf(asOf);
+        Map<Long, EmployeeDTO> employees = employeeRepository.findByDepartmentIdsAsOf(departmentIds, date)
+            .stream()
+            .collect(Collectors.toMap(Employee::getId, EmployeeDTO::new));
+
+        Map<String, List<EmployeeDTO>> departments = new LinkedHashMap<>();
+        for (DepartmentMember member : employeeRepository.findMembersByDepartmentIdsAsOf(departmentIds, date)) {
+            departments.computeIfAbsent(member.getDepartmentId(), id -> new ArrayList<>())
+                .add(employees.get(member.getEmployeeId()));
+        }
+
+        return departments;
+    }
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public EmployeeChangePageDTO getEmployeesChangedSince(String cursor, int first) {
+        Assert.isTrue(first > 0, "Page size must be greater than 0");
+
+        // Get one more change than requested, to know if there are more (the snapshot is shared by both queries,
+        // so the employees are loaded as of their change)
+        long[] position = decodeCursor(cursor);
+        List<EmployeeChange> changes = employeeRepository.findChangesAfter(position[0], position[1], first + 1);
+        boolean hasMore = changes.size() > first;
+        if (hasMore) {
+            changes = changes.subList(0, first);
+        }
+
+        // Load the changed employees with one IN query (the tombstones, deleted or archived, have no employee)
+        Map<Long, EmployeeDTO> employees = employeeRepository.findAllById(changes.stream()
+                .filter(change -> kindOf(change) == EmployeeChangeDTO.Kind.UPDATED)
+                .map(EmployeeChange::getEmployeeId)
+                .toList())
+            .stream()
+            .collect(Collectors.toMap(Employee::getId, EmployeeDTO::new));
+
+        List<EmployeeChangeDTO> page = changes.stream()
+            .map(change -> {
+                EmployeeChangeDTO.Kind kind = kindOf(change);
+                boolean tombstone = kind != EmployeeChangeDTO.Kind.UPDATED;
+                return new EmployeeChangeDTO(encodeCursor(change.getChangeXid(), change.getEmployeeId()),
+                    change.getEmployeeId(), tombstone, kind, tombstone ? null : employees.get(change.getEmployeeId()));
+            })
+            .toList();
+        String endCursor = page.isEmpty() ? cursor : page.get(page.size() - 1).getCursor();
+        return new EmployeeChangePageDTO(page, endCursor, hasMore);
+    }
+
+    // The kind of a change of the feed ('updated', 'deleted' or 'archived')
+    private static EmployeeChangeDTO.Kind kindOf(EmployeeChange change) {
+        return EmployeeChangeDTO.Kind.valueOf(change.getKind().toUpperCase(Locale.ROOT));
+    }
+
+    // Encode the position of a change as an opaque cursor
+    private static String encodeCursor(long changeXid, long employeeId) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((changeXid + ":" + employeeId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Decode a cursor into the position of its change (null is the start of the feed)
+    private static long[] decodeCursor(String cursor) {
+        if (cursor == null) {
+            return new long[] {0, 0};
+        }
+
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split(":");
+            if (position.length == 2) {
+                return new long[] {Long.parseLong(position[0]), Long.parseLong(position[1])};
+            }
+        } catch (IllegalArgumentException e) {
+            // Not Base64 or not numbers (NumberFormatException is an IllegalArgumentException)
+        }
+        throw new ValidationException(ErrorCode.INVALID_ARGUMENT, "Invalid cursor: " + cursor);
     }
 
     @Override
-    @Transactional
     public EmployeeDTO updateEmployee(Long id, EmployeeUpdateDTO employeeUpdateDTO) {
         Assert.notNull(id, "Employee id cannot be null");
         Assert.notNull(employeeUpdateDTO, "Employee cannot be null");
 
+        // Only retry on concurrent updates when the client did not ask for a specific version
+        return optimisticRetryTemplate.execute(employeeUpdateDTO.getVersion() == null,
+            () -> applyEmployeeUpdate(id, employeeUpdateDTO));
+    }
+
+    // Apply an update to the latest version of the employee (runs inside the transaction of the retry template)
+    private EmployeeDTO applyEmployeeUpdate(Long id, EmployeeUpdateDTO employeeUpdateDTO) {
         // Get the existing employee
         Employee existingEmployee = employeeRepository.findById(id)
             .orElse(null);
         
         // Check if the employee exists
         if (existingEmployee == null) {
-            throw new IllegalArgumentException("Employee with id " + id + " does not exist");
+            throw new NotFoundException(ErrorCode.EMPLOYEE_NOT_FOUND, "Employee with id " + id + " does not exist");
         } 
+
+        // Check if the update is based on the current version
+        if (employeeUpdateDTO.getVersion() != null && !employeeUpdateDTO.getVersion().equals(existingEmployee.getVersion())) {
+            throw new VersionConflictException("Employee", id, employeeUpdateDTO.getVersion(), existingEmployee.getVersion());
+        }
         
-        // Update the employee
+        // Update the fields supplied by the client; a retry re-applies them over a concurrent change of the others
         existingEmployee.setBirthDate(employeeUpdateDTO.getBirthDate());
         existingEmployee.setFirstName(employeeUpdateDTO.getFirstName());
-        existingEmployee.setLastName(employeeUpdateDTO.getLastName());
+        if (employeeUpdateDTO.getLastName() != null) {
+            existingEmployee.setLastName(employeeUpdateDTO.getLastName());
+        }
         existingEmployee.setGender(employeeUpdateDTO.getGender());
         existingEmployee.setHireDate(employeeUpdateDTO.getHireDate());
         existingEmployee.setActiveStatus(null != employeeUpdateDTO.getActiveStatus() ? employeeUpdateDTO.getActiveStatus() : existingEmployee.getActiveStatus());
         existingEmployee.setUpdatedBy((Long)employeeUpdateDTO.getUpdatedBy());
         existingEmployee.setUpdatedDate(OffsetDateTime.now());
 
-        // Remove all childs associated with the employee
-        existingEmployee.getDepartments().clear();
-        existingEmployee.getSalaries().clear();
-        existingEmployee.getTitles().clear();
-
-        // Prepare the departments
-        employeeUpdateDTO.getDepartments().forEach(department -> {
-            // Get the department entity
-            Department deptEntity = new Department(departmentService
-                .getDepartmentById(department.getDepartmentId()));
-
-            // Create the department employee
-            DepartmentEmployee departmentEmployee = new DepartmentEmployee(existingEmployee, deptEntity);
-            
-            // Set the from and to dates
-            departmentEmployee.setFromDate(department.getFromDate());
-            departmentEmployee.setToDate(department.getToDate());
-
-            // Add the department employee to the list
-            existingEmployee.getDepartments().add(departmentEmployee);
-        });
-
-        // Prepare the salaries
-        employeeUpdateDTO.getSalaries().forEach(salary -> {
-            // Create the salary employee
-            SalaryEmployee salaryEmployee = new SalaryEmployee(existingEmployee, salary.getFromDate());
-
-            // Set the amount and to date
-            salaryEmployee.setAmount((Long)salary.getAmount());
-            salaryEmployee.setToDate(salary.getToDate());
+        // Replace the departments, if supplied
+        if (employeeUpdateDTO.getDepartments() != null) {
+            // Check all departments with one query and get references to them
+            Map<String, Department> deptEntities = departmentService.getDepartmentReferences(employeeUpdateDTO.getDepartments()
+                .stream().map(DepartmentEmployeeDTO::getDepartmentId).toList());
+
+            List<DepartmentEmployee> departments = employeeUpdateDTO.getDepartments().stream().map(department -> {
+                // Create the department employee with its from and to dates
+                DepartmentEmployee departmentEmployee = new DepartmentEmployee(existingEmployee,
+                    deptEntities.get(department.getDepartmentId()));
+                departmentEmployee.setFromDate(department.getFromDate());
+                departmentEmployee.setToDate(department.getToDate());
+                return departmentEmployee;
+            }).toList();
+            replaceHistory(existingEmployee.getDepartments(), departments, DepartmentEmployee::getId, (row, update) -> {
+                row.setFromDate(update.getFromDate());
+                row.setToDate(update.getToDate());
+            });
+        }
 
-            // Add the salary employee to the list
-            existingEmployee.getSalaries().add(salaryEmployee);
-        });
+        // Replace the salaries, if supplied
+        if (employeeUpdateDTO.getSalaries() != null) {
+            List<SalaryEmployee> salaries = employeeUpdateDTO.getSalaries().stream().map(salary -> {
+                // Create the salary employee with its amount and to date
+                SalaryEmployee salaryEmployee = new SalaryEmployee(existingEmployee, salary.getFromDate());
+                salaryEmployee.setAmount((Long)salary.getAmount());
+                salaryEmployee.setToDate(salary.getToDate());
+                return salaryEmployee;
+            }).toList();
+            replaceHistory(existingEmployee.getSalaries(), salaries, SalaryEmployee::getId, (row, update) -> {
+                row.setAmount(update.getAmount());
+                row.setToDate(update.getToDate());
+            });
+        }
 
-        // Prepare the titles
-        employeeUpdateDTO.getTitles().forEach(title -> {
-            // Create the title employee
-            TitleEmployee titleEmployee = new TitleEmployee(existingEmployee, title.getTitle(), title.getFromDate());
+        // Replace the titles, if supplied
+        if (employeeUpdateDTO.getTitles() != null) {
+            List<TitleEmployee> titles = employeeUpdateDTO.getTitles().stream().map(title -> {
+                // Create the title employee with its to date
+                TitleEmployee titleEmployee = new TitleEmployee(existingEmployee, title.getTitle(), title.getFromDate());
+                titleEmployee.setToDate(title.getToDate());
+                return titleEmployee;
+            }).toList();
+            replaceHistory(existingEmployee.getTitles(), titles, TitleEmployee::getId,
+                (row, update) -> row.setToDate(update.getToDate()));
+        }
 
-            // Set the to date
-            titleEmployee.setToDate(title.getToDate());
+        // Save the employee (flushed, so that a concurrent update fails here and the new version is returned)
+        EmployeeDTO employeeDTO = new EmployeeDTO(employeeRepository.saveAndFlush(existingEmployee));
 
-            // Add the title employee to the list
-            existingEmployee.getTitles().add(titleEmployee);
-        });
+        // Record the change event & return the employee
+        outboxEventService.publish("Employee", String.valueOf(id), "UPDATED", employeeDTO);
+        cacheInvalidationService.invalidate(CacheInvalidationService.EMPLOYEE_CACHE, String.valueOf(id));
+        return employeeDTO;
+    }
 
-        // Save & return the employee
-        return new EmployeeDTO(employeeRepository.save(existingEmployee));
+    // Replace the rows of a history with those of an update: the rows whose key is kept are updated in place and the
+    // others removed or added, so no row is deleted and inserted again with the same key, and the employee is written
+    // in a single flush (one version increment per update)
+    private static <T, K> void replaceHistory(List<T> history, List<T> rows, Function<T, K> keyOf,
+        BiConsumer<T, T> update) {
+        Map<K, T> rowsByKey = new LinkedHashMap<>();
+        rows.forEach(row -> rowsByKey.put(keyOf.apply(row), row));
+
+        history.removeIf(row -> !rowsByKey.containsKey(keyOf.apply(row)));
+        history.forEach(row -> update.accept(row, rowsByKey.remove(keyOf.apply(row))));
+        history.addAll(rowsByKey.values());
     }
-    
+
     @Override
     @Transactional
     public Boolean deleteEmployee(Long id) {
@@ -237,12 +460,16 @@ public class EmployeeServiceImpl implements EmployeeService {
 
         // Check if the employee exists
         if (employee == null) {
-            throw new IllegalArgumentException("Employee with id " + id + " does not exist");
+            throw new NotFoundException(ErrorCode.EMPLOYEE_NOT_FOUND, "Employee with id " + id + " does not exist");
         }
 
         // Delete the employee
         employeeRepository.deleteById(id);
 
+        // Record the change event
+        outboxEventService.publish("Employee", String.valueOf(id), "DELETED", Map.of("id", id));
+        cacheInvalidationService.invalidate(CacheInvalidationService.EMPLOYEE_CACHE, String.valueOf(id));
+
         // Return true
         return true;
     }
@@ -0,0 +1,57 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.graphql_employee_management.entity.OutboxEvent;
+import com.yoanesber.graphql_employee_management.service.OutboxEventSink;
+
+/**
+ * FileOutboxEventSink appends relayed events to a local file, one JSON document per line.
+ * It is the default sink (app.outbox.sink.type=file) and stands in for a message broker.
+ * A batch is written with a single append, so a failed write leaves the batch in the outbox.
+ */
+
+@Component
+@ConditionalOnProperty(name = "app.outbox.sink.type", havingValue = "file", matchIfMissing = true)
+public class FileOutboxEventSink implements OutboxEventSink {
+
+    private final Path path;
+
+    private final ObjectMapper objectMapper;
+
+    public FileOutboxEventSink(@Value("${app.outbox.sink.file:outbox-events.jsonl}") String path, ObjectMapper objectMapper) {
+        this.path = Path.of(path);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public synchronized void send(List<OutboxEvent> events) {
+        // Render the batch as JSON lines
+        StringBuilder lines = new StringBuilder();
+        for (OutboxEvent event : events) {
+            try {
+                lines.append(objectMapper.writeValueAsString(event)).append('\n');
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Unable to serialize outbox event " + event.getId() + ": " + e.getMessage());
+            }
+        }
+
+        // Append the batch to the file
+        try {
+            Files.writeString(path, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write outbox events to " + path, e);
+        }
+    }
+}
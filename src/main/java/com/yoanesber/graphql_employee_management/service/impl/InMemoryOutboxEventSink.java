@@ -0,0 +1,30 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.graphql_employee_management.entity.OutboxEvent;
+import com.yoanesber.graphql_employee_management.service.OutboxEventSink;
+
+/**
+ * InMemoryOutboxEventSink keeps relayed events in memory (app.outbox.sink.type=memory).
+ * It is meant for tests and local runs, where the events can be inspected through getEvents.
+ */
+
+@Component
+@ConditionalOnProperty(name = "app.outbox.sink.type", havingValue = "memory")
+public class InMemoryOutboxEventSink implements OutboxEventSink {
+
+    private final List<OutboxEvent> events = new ArrayList<>();
+
+    @Override
+    public synchronized void send(List<OutboxEvent> batch) {
+        events.addAll(batch);
+    }
+
+    public synchronized List<OutboxEvent> getEvents() {
+        return List.copyOf(events);
+    }
+}
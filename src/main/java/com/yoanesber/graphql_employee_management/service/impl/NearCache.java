@@ -0,0 +1,399 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.springframework.util.Assert;
+
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationListener;
+
+/*
+ * NearCache is a bounded in-memory cache with a W-TinyLFU policy, bounded by the total weight of its entries.
+ * - New entries go to a small LRU window (1% of the weight), where recent entries survive short bursts.
+ * - The entries leaving the window compete to enter the main space (SLRU: probation, then protected once read
+ *   again): a candidate only replaces the LRU victims of the main space if it was read more often than each of
+ *   them, and none is evicted otherwise. Frequencies are estimated with a count-min sketch (4 hashes, counters up
+ *   to 15) that also counts the misses, and is halved after 10 reads per unit of weight, so old popularity fades.
+ *   One-off reads (e.g. a scan of ids) therefore do not evict the entries that are read repeatedly.
+ * - Reads are lock-free; the policy is updated under a lock when it is free, and skipped otherwise
+ *   (a lost update only makes the frequencies slightly less accurate).
+ * - Invalidations (see CacheInvalidationService) remove the keys. A value loaded while an invalidation happened may
+ *   be stale, so put only stores it when no invalidation happened since the stamp taken before loading it.
+ *
+ * Metrics (tagged with the cache name):
+ * - cache.gets: reads, tagged with result hit or miss
+ * - cache.hit.ratio: hits out of all reads since startup
+ * - cache.puts: entries stored
+ * - cache.evictions: entries evicted, or not admitted, because of the weight bound
+ * - cache.size and cache.weight: number of entries and their total weight
+ */
+
+class NearCache<K, V> implements CacheInvalidationListener {
+
+    // Segments of the policy
+    private enum Segment { WINDOW, PROBATION, PROTECTED }
+
+    private static final class Node<K, V> {
+        private final K key;
+
+        private final V value;
+
+        private final long weight;
+
+        private Segment segment = Segment.WINDOW;
+
+        private Node(K key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private final Map<K, Node<K, V>> data = new ConcurrentHashMap<>();
+
+    private final Function<String, K> keyParser;
+
+    private final long windowMaxWeight;
+
+    private final long mainMaxWeight;
+
+    private final long protectedMaxWeight;
+
+    // Entries of each segment, from the least to the most recently used (guarded by the lock)
+    private final LinkedHashMap<K, Node<K, V>> window = new LinkedHashMap<>();
+
+    private final LinkedHashMap<K, Node<K, V>> probation = new LinkedHashMap<>();
+
+    private final LinkedHashMap<K, Node<K, V>> protectedSegment = new LinkedHashMap<>();
+
+    private long windowWeight;
+
+    private long probationWeight;
+
+    private long protectedWeight;
+
+    private final FrequencySketch sketch;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Number of invalidations (written under the lock)
+    private volatile long invalidations;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter puts;
+
+    private final Counter evictions;
+
+    NearCache(String name, long maximumWeight, Function<String, K> keyParser, MeterRegistry meterRegistry) {
+        Assert.isTrue(maximumWeight >= 2, "Maximum weight must be at least 2");
+        this.keyParser = keyParser;
+        this.windowMaxWeight = Math.max(1, maximumWeight / 100);
+        this.mainMaxWeight = maximumWeight - windowMaxWeight;
+        this.protectedMaxWeight = mainMaxWeight * 8 / 10;
+        this.sketch = new FrequencySketch(maximumWeight);
+
+        this.hits = Counter.builder("cache.gets").tag("cache", name).tag("result", "hit")
+            .description("Number of cache reads that found an entry")
+            .register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", name).tag("result", "miss")
+            .description("Number of cache reads that found no entry")
+            .register(meterRegistry);
+        this.puts = Counter.builder("cache.puts").tag("cache", name)
+            .description("Number of entries stored in the cache")
+            .register(meterRegistry);
+        this.evictions = Counter.builder("cache.evictions").tag("cache", name)
+            .description("Number of entries evicted or not admitted because of the weight bound")
+            .register(meterRegistry);
+        Gauge.builder("cache.hit.ratio", this, cache -> cache.hitRatio()).tag("cache", name)
+            .description("Ratio of the cache reads that found an entry")
+            .register(meterRegistry);
+        Gauge.builder("cache.size", data, Map::size).tag("cache", name)
+            .description("Number of entries in the cache")
+            .register(meterRegistry);
+        Gauge.builder("cache.weight", this, cache -> cache.weight()).tag("cache", name)
+            .description("Total weight of the entries in the cache")
+            .register(meterRegistry);
+    }
+
+    // Get the value of a key, or null
+    V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+
+        // Record the read in the policy, unless another thread is updating it
+        if (lock.tryLock()) {
+            try {
+                sketch.increment(key);
+                if (node != null && data.get(key) == node) {
+                    onRead(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node != null ? node.value : null;
+    }
+
+    // Get the value of a key without recording a read, or null
+    V peek(K key) {
+        Node<K, V> node = data.get(key);
+        return node != null ? node.value : null;
+    }
+
+    // Stamp to take before loading a value to put
+    long stamp() {
+        return invalidations;
+    }
+
+    // Store a value loaded after the stamp was taken, unless a key was invalidated since (the value may be stale)
+    void put(K key, V value, long weight, long stamp) {
+        Assert.isTrue(weight > 0, "Weight must be positive");
+        lock.lock();
+        try {
+            if (stamp != invalidations) {
+                return;
+            }
+            Node<K, V> existing = data.get(key);
+            if (existing != null && existing.value == value) {
+                // Already stored (the callers sharing a load all store its result)
+                return;
+            }
+            if (existing != null) {
+                remove(existing);
+            }
+
+            // Too heavy to ever be admitted
+            if (weight > mainMaxWeight) {
+                evictions.increment();
+                return;
+            }
+
+            Node<K, V> node = new Node<>(key, value, weight);
+            data.put(key, node);
+            window.put(key, node);
+            windowWeight += weight;
+            puts.increment();
+            evictFromWindow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void evict(Set<String> keys) {
+        lock.lock();
+        try {
+            invalidations++;
+            for (String key : keys) {
+                Node<K, V> node = data.get(keyParser.apply(key));
+                if (node != null) {
+                    remove(node);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            invalidations++;
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+            windowWeight = 0;
+            probationWeight = 0;
+            protectedWeight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Total weight of the entries
+    long weight() {
+        lock.lock();
+        try {
+            return windowWeight + probationWeight + protectedWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double hitRatio() {
+        double reads = hits.count() + misses.count();
+        return reads == 0 ? 0 : hits.count() / reads;
+    }
+
+    // Move a read entry to the most recently used position; entries of probation read again become protected
+    private void onRead(Node<K, V> node) {
+        switch (node.segment) {
+            case WINDOW -> {
+                window.remove(node.key);
+                window.put(node.key, node);
+            }
+            case PROBATION -> {
+                probation.remove(node.key);
+                probationWeight -= node.weight;
+                node.segment = Segment.PROTECTED;
+                protectedSegment.put(node.key, node);
+                protectedWeight += node.weight;
+
+                // Demote the least recently used protected entries beyond the protected weight
+                while (protectedWeight > protectedMaxWeight) {
+                    Node<K, V> demoted = first(protectedSegment);
+                    protectedSegment.remove(demoted.key);
+                    protectedWeight -= demoted.weight;
+                    demoted.segment = Segment.PROBATION;
+                    probation.put(demoted.key, demoted);
+                    probationWeight += demoted.weight;
+                }
+            }
+            case PROTECTED -> {
+                protectedSegment.remove(node.key);
+                protectedSegment.put(node.key, node);
+            }
+        }
+    }
+
+    // Move the least recently used entries beyond the window weight to the main space, if they are admitted
+    private void evictFromWindow() {
+        while (windowWeight > windowMaxWeight) {
+            Node<K, V> candidate = first(window);
+            window.remove(candidate.key);
+            windowWeight -= candidate.weight;
+
+            if (admit(candidate)) {
+                candidate.segment = Segment.PROBATION;
+                probation.put(candidate.key, candidate);
+                probationWeight += candidate.weight;
+            } else {
+                data.remove(candidate.key);
+                evictions.increment();
+            }
+        }
+    }
+
+    // Make room in the main space for a candidate if it is more frequent than each of the victims it would evict
+    private boolean admit(Node<K, V> candidate) {
+        int candidateFrequency = sketch.frequency(candidate.key);
+
+        // Collect the least recently used entries of probation, then of protected, until the candidate fits
+        List<Node<K, V>> victims = new ArrayList<>();
+        long excess = probationWeight + protectedWeight + candidate.weight - mainMaxWeight;
+        Iterator<Node<K, V>> iterator = Stream.concat(probation.values().stream(),
+            protectedSegment.values().stream()).iterator();
+        while (excess > 0) {
+            Node<K, V> victim = iterator.next();
+            if (candidateFrequency <= sketch.frequency(victim.key)) {
+                return false;
+            }
+            victims.add(victim);
+            excess -= victim.weight;
+        }
+
+        // Admitted: only now evict the victims
+        for (Node<K, V> victim : victims) {
+            remove(victim);
+            evictions.increment();
+        }
+        return true;
+    }
+
+    private void remove(Node<K, V> node) {
+        data.remove(node.key);
+        switch (node.segment) {
+            case WINDOW -> {
+                window.remove(node.key);
+                windowWeight -= node.weight;
+            }
+            case PROBATION -> {
+                probation.remove(node.key);
+                probationWeight -= node.weight;
+            }
+            case PROTECTED -> {
+                protectedSegment.remove(node.key);
+                protectedWeight -= node.weight;
+            }
+        }
+    }
+
+    private static <K, V> Node<K, V> first(LinkedHashMap<K, Node<K, V>> segment) {
+        Iterator<Node<K, V>> iterator = segment.values().iterator();
+        return iterator.next();
+    }
+
+    /*
+     * Count-min sketch of the read frequencies: 4 rows of counters saturating at 15, indexed by 4 hashes of the key.
+     * The estimate of a key is its smallest counter. All counters are halved after sampleSize increments.
+     */
+    private static final class FrequencySketch {
+
+        private static final int[] SEEDS = {0x97cb3127, 0xb3aac1c5, 0x8a4f1da3, 0xd6e8feb9};
+
+        private final byte[] counters;
+
+        private final int mask;
+
+        private final long sampleSize;
+
+        private long increments;
+
+        private FrequencySketch(long maximumWeight) {
+            int width = Integer.highestOneBit((int) Math.min(Math.max(maximumWeight, 16), 1 << 24) - 1) << 1;
+            this.counters = new byte[width * SEEDS.length];
+            this.mask = width - 1;
+            this.sampleSize = 10 * maximumWeight;
+        }
+
+        private int index(Object key, int row) {
+            int hash = key.hashCode() * SEEDS[row];
+            hash ^= hash >>> 17;
+            hash *= 0xed5ad4bb;
+            hash ^= hash >>> 11;
+            return row * (mask + 1) + (hash & mask);
+        }
+
+        private void increment(Object key) {
+            for (int row = 0; row < SEEDS.length; row++) {
+                int index = index(key, row);
+                if (counters[index] < 15) {
+                    counters[index]++;
+                }
+            }
+            if (++increments >= sampleSize) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>= 1;
+                }
+                increments /= 2;
+            }
+        }
+
+        private int frequency(Object key) {
+            int frequency = Integer.MAX_VALUE;
+            for (int row = 0; row < SEEDS.length; row++) {
+                frequency = Math.min(frequency, counters[index(key, row)]);
+            }
+            return frequency;
+        }
+    }
+}
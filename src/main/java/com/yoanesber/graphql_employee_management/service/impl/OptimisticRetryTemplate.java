@@ -0,0 +1,79 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/*
+ * OptimisticRetryTemplate runs a unit of work in its own transaction and, when the retry mode is enabled,
+ * re-runs it from scratch if the commit fails because another transaction updated the same versioned row.
+ * Each attempt re-reads the entity, so the work is applied on top of the latest committed version instead of
+ * failing on it. The work is re-applied as it is, not merged: an update that replaces the whole entity (as
+ * updateEmployee and updateDepartment do) still overwrites the concurrent update it conflicted with, so the last
+ * writer wins, with a version that counts every update. The number of attempts is bounded and attempts are spaced by a small randomized backoff.
+ * Callers only allow retries when the client did not send an expected version: a stale expected version is
+ * a genuine conflict that must be reported, not merged.
+ */
+
+@Component
+public class OptimisticRetryTemplate {
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final int maxAttempts;
+
+    private final long backoffMillis;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public OptimisticRetryTemplate(PlatformTransactionManager transactionManager,
+        @Value("${app.concurrency.optimistic-retry.enabled:false}") boolean enabled,
+        @Value("${app.concurrency.optimistic-retry.max-attempts:3}") int maxAttempts,
+        @Value("${app.concurrency.optimistic-retry.backoff-ms:10}") long backoffMillis) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = Math.max(0, backoffMillis);
+    }
+
+    public <T> T execute(boolean retryable, Supplier<T> work) {
+        int attempt = 0;
+        while (true) {
+            attempt++;
+            try {
+                // Each attempt runs (and commits) in a new transaction
+                return transactionTemplate.execute(status -> work.get());
+            } catch (OptimisticLockingFailureException e) {
+                // Give up if retries are not allowed or the attempts are exhausted
+                if (!enabled || !retryable || attempt >= maxAttempts) {
+                    throw e;
+                }
+
+                logger.debug("Optimistic lock failure on attempt {}, retrying: {}", attempt, e.getMessage());
+                backoff(attempt);
+            }
+        }
+    }
+
+    // Sleep a random time that grows with the attempt, so that competing writers do not retry in lockstep
+    private void backoff(int attempt) {
+        if (backoffMillis == 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(backoffMillis * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+
+import com.yoanesber.graphql_employee_management.entity.OutboxEvent;
+import com.yoanesber.graphql_employee_management.repository.OutboxEventRepository;
+import com.yoanesber.graphql_employee_management.service.OutboxEventService;
+import com.yoanesber.graphql_employee_management.service.OutboxEventSink;
+
+/**
+ * OutboxEventServiceImpl is an implementation of the OutboxEventService interface.
+ * Change events are written to the outbox_event table by publish, which must join the transaction of the change,
+ * so an event exists if and only if the change it describes was committed.
+ * relayBatch locks the oldest events with FOR UPDATE SKIP LOCKED, hands them to the OutboxEventSink and deletes them
+ * in the same transaction; if the sink fails, the transaction rolls back and the events are sent again on the next run.
+ */
+
+@Service
+public class OutboxEventServiceImpl implements OutboxEventService {
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final OutboxEventSink outboxEventSink;
+
+    private final ObjectMapper objectMapper;
+
+    public OutboxEventServiceImpl(OutboxEventRepository outboxEventRepository, OutboxEventSink outboxEventSink,
+        ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxEventSink = outboxEventSink;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(String aggregateType, String aggregateId, String eventType, Object payload) {
+        Assert.hasText(aggregateType, "Aggregate type cannot be null or empty");
+        Assert.hasText(aggregateId, "Aggregate id cannot be null or empty");
+        Assert.hasText(eventType, "Event type cannot be null or empty");
+
+        // Serialize the payload
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Unable to serialize " + aggregateType + " event payload: " + e.getMessage());
+        }
+
+        // Save the event (committed or rolled back together with the change)
+        outboxEventRepository.save(new OutboxEvent(null, aggregateType, aggregateId, eventType, json, OffsetDateTime.now()));
+    }
+
+    @Override
+    @Transactional
+    public List<OutboxEvent> relayBatch(int batchSize) {
+        Assert.isTrue(batchSize > 0, "Batch size must be greater than 0");
+
+        // Lock the next batch (events locked by another relay are skipped)
+        List<OutboxEvent> events = outboxEventRepository.lockNextBatch(batchSize);
+        if (events.isEmpty()) {
+            return List.of();
+        }
+
+        // Deliver the batch, then remove it from the outbox with a single statement
+        outboxEventSink.send(events);
+        outboxEventRepository.deleteAllByIdInBatch(events.stream().map(OutboxEvent::getId).toList());
+
+        return events;
+    }
+}
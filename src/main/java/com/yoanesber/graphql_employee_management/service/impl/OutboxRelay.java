@@ -0,0 +1,106 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.yoanesber.graphql_employee_management.entity.OutboxEvent;
+import com.yoanesber.graphql_employee_management.service.OutboxEventService;
+
+/**
+ * OutboxRelay periodically drains the outbox_event table to the configured OutboxEventSink.
+ * Each run relays up to max-batches-per-run batches of batch-size events, each in its own transaction,
+ * and stops early when a batch comes back short (the outbox is drained).
+ * Several instances can run at the same time: FOR UPDATE SKIP LOCKED gives every relay a disjoint batch.
+ *
+ * Metrics:
+ * - outbox.relay.events: number of events relayed (throughput)
+ * - outbox.relay.batch.size: size of each relayed batch
+ * - outbox.relay.lag: time between an event being written and being relayed
+ * - outbox.relay.failures: number of batches that failed and were left in the outbox
+ * - outbox.relay.last.lag: lag of the newest relayed event, in milliseconds
+ */
+
+@Component
+@ConditionalOnProperty(name = "app.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventService outboxEventService;
+
+    private final int batchSize;
+
+    private final int maxBatchesPerRun;
+
+    private final Counter relayedEvents;
+
+    private final DistributionSummary batchSizes;
+
+    private final Timer lag;
+
+    private final Counter failures;
+
+    private final AtomicLong lastLagMillis = new AtomicLong();
+
+    public OutboxRelay(OutboxEventService outboxEventService, MeterRegistry meterRegistry,
+        @Value("${app.outbox.relay.batch-size:100}") int batchSize,
+        @Value("${app.outbox.relay.max-batches-per-run:10}") int maxBatchesPerRun) {
+        this.outboxEventService = outboxEventService;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.relayedEvents = Counter.builder("outbox.relay.events")
+            .description("Number of outbox events relayed to the sink")
+            .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("outbox.relay.batch.size")
+            .description("Number of events in each relayed batch")
+            .register(meterRegistry);
+        this.lag = Timer.builder("outbox.relay.lag")
+            .description("Time between an outbox event being written and being relayed")
+            .register(meterRegistry);
+        this.failures = Counter.builder("outbox.relay.failures")
+            .description("Number of outbox batches that could not be relayed")
+            .register(meterRegistry);
+        meterRegistry.gauge("outbox.relay.last.lag", lastLagMillis);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay.interval:PT1S}")
+    public void relay() {
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            List<OutboxEvent> events;
+            try {
+                events = outboxEventService.relayBatch(batchSize);
+            } catch (Exception e) {
+                // The batch was rolled back and stays in the outbox for the next run
+                failures.increment();
+                logger.error("Error relaying outbox events: {}", e.getMessage());
+                return;
+            }
+
+            // Record the metrics of the batch
+            if (!events.isEmpty()) {
+                OffsetDateTime now = OffsetDateTime.now();
+                relayedEvents.increment(events.size());
+                batchSizes.record(events.size());
+                events.forEach(event -> lag.record(Duration.between(event.getCreatedDate(), now)));
+                lastLagMillis.set(Duration.between(events.get(events.size() - 1).getCreatedDate(), now).toMillis());
+            }
+
+            // Stop when the outbox is drained
+            if (events.size() < batchSize) {
+                return;
+            }
+        }
+    }
+}
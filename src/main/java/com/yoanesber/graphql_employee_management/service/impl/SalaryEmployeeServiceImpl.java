@@ -1,12 +1,22 @@
 package com.yoanesber.graphql_employee_management.service.impl;
 
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
+import com.yoanesber.graphql_employee_management.dto.EmployeeHistoryRangeDTO;
+import com.yoanesber.graphql_employee_management.dto.SalaryEmployeeDTO;
 import com.yoanesber.graphql_employee_management.entity.SalaryEmployee;
 import com.yoanesber.graphql_employee_management.repository.SalaryEmployeeRepository;
 import com.yoanesber.graphql_employee_management.service.SalaryEmployeeService;
+import com.yoanesber.graphql_employee_management.service.impl.EmployeeProfileCache.EmployeeProfile;
 
 /**
  * SalaryEmployeeServiceImpl is an implementation of the SalaryEmployeeService interface.
@@ -14,6 +24,7 @@ import com.yoanesber.graphql_employee_management.service.SalaryEmployeeService;
  * The class is annotated with @Service, indicating that it's a service layer component in the Spring context.
  * It uses the SalaryEmployeeRepository to perform CRUD operations on salary employee records.
  * The saveSalaryEmployee method is annotated with @Transactional, ensuring that the operation is performed within a transaction.
+ * The full histories of the employees cached by EmployeeProfileCache are served from the cache.
  */
 
 @Service
@@ -21,8 +32,11 @@ public class SalaryEmployeeServiceImpl implements SalaryEmployeeService {
 
     private final SalaryEmployeeRepository salaryEmployeeRepository;
 
-    public SalaryEmployeeServiceImpl(SalaryEmployeeRepository salaryEmployeeRepository) {
+    private final EmployeeProfileCache employeeProfileCache;
+
+    public SalaryEmployeeServiceImpl(SalaryEmployeeRepository salaryEmployeeRepository, EmployeeProfileCache employeeProfileCache) {
         this.salaryEmployeeRepository = salaryEmployeeRepository;
+        this.employeeProfileCache = employeeProfileCache;
     }
 
     @Override
@@ -32,4 +46,75 @@ public class SalaryEmployeeServiceImpl implements SalaryEmployeeService {
 
         return salaryEmployeeRepository.save(salaryEmployee);
     }
+
+    @Override
+    public Map<Long, List<SalaryEmployeeDTO>> getSalariesByEmployeeIds(Collection<Long> employeeIds, LocalDate from, LocalDate to, Integer last) {
+        Assert.notNull(employeeIds, "Employee ids cannot be null");
+        Assert.isTrue(last == null || last > 0, "Last must be greater than zero");
+        Assert.isTrue(from == null || to == null || !from.isAfter(to), "From date cannot be after to date");
+
+        // Nothing to load
+        if (employeeIds.isEmpty()) {
+            return Map.of();
+        }
+
+        // Use the full histories of the cached employee profiles, and load the history of the other employees
+        if (from == null && to == null && last == null) {
+            return employeeProfileCache.getHistories(employeeIds, EmployeeProfile::salaries,
+                missingIds -> groupByEmployeeId(salaryEmployeeRepository.findByIdEmployeeIdInOrderByIdEmployeeIdAscIdFromDateAsc(missingIds)));
+        }
+
+        // Pick the narrowest query for the requested range, so the filtering happens in the database
+        List<SalaryEmployee> salaryEmployees;
+        if (last == null) {
+            salaryEmployees = salaryEmployeeRepository.findByIdEmployeeIdInAndIdFromDateBetweenOrderByIdEmployeeIdAscIdFromDateAsc(employeeIds,
+                Date.valueOf(EmployeeHistoryRangeDTO.lowerBound(from)), Date.valueOf(EmployeeHistoryRangeDTO.upperBound(to)));
+        } else {
+            salaryEmployees = salaryEmployeeRepository.findLastByEmployeeIdsAndFromDateBetween(employeeIds,
+                Date.valueOf(EmployeeHistoryRangeDTO.lowerBound(from)), Date.valueOf(EmployeeHistoryRangeDTO.upperBound(to)), last);
+        }
+
+        // Group the history by employee id
+        return groupByEmployeeId(salaryEmployees);
+    }
+
+    private static Map<Long, List<SalaryEmployeeDTO>> groupByEmployeeId(List<SalaryEmployee> salaryEmployees) {
+        return salaryEmployees.stream()
+            .collect(Collectors.groupingBy(salaryEmployee -> salaryEmployee.getId().getEmployeeId(),
+                LinkedHashMap::new,
+                Collectors.mapping(SalaryEmployeeDTO::new, Collectors.toList())));
+    }
+
+    @Override
+    public Map<Long, List<SalaryEmployeeDTO>> getSalariesByEmployeeIdsAsOf(Collection<Long> employeeIds, LocalDate asOf) {
+        Assert.notNull(employeeIds, "Employee ids cannot be null");
+        Assert.notNull(asOf, "As of date cannot be null");
+
+        // Nothing to load
+        if (employeeIds.isEmpty()) {
+            return Map.of();
+        }
+
+        // Load the rows whose period contains the date and group them by employee id
+        return salaryEmployeeRepository.findByEmployeeIdsAsOf(employeeIds, Date.valueOf(asOf))
+            .stream()
+            .collect(Collectors.groupingBy(salaryEmployee -> salaryEmployee.getId().getEmployeeId(),
+                LinkedHashMap::new,
+                Collectors.mapping(SalaryEmployeeDTO::new, Collectors.toList())));
+    }
+
+    @Override
+    public Map<Long, SalaryEmployeeDTO> getCurrentSalariesByEmployeeIds(Collection<Long> employeeIds) {
+        Assert.notNull(employeeIds, "Employee ids cannot be null");
+
+        // Nothing to load
+        if (employeeIds.isEmpty()) {
+            return Map.of();
+        }
+
+        // Load the open-ended row of all employees in one query (at most one row per employee)
+        return salaryEmployeeRepository.findCurrentByEmployeeIds(employeeIds)
+            .stream()
+            .collect(Collectors.toMap(salaryEmployee -> salaryEmployee.getId().getEmployeeId(), SalaryEmployeeDTO::new));
+    }
 }
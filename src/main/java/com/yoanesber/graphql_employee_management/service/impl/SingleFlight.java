@@ -0,0 +1,143 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationListener;
+
+/*
+ * SingleFlight coalesces concurrent identical reads: while a key is being loaded (a flight), other callers of the
+ * same key wait for that load and share its result instead of querying the database again. A batch of keys joins
+ * the flights already in progress and loads the other keys itself, in one call of the loader.
+ * - Nothing is kept once a flight completes: this only merges reads that overlap in time, it is not a cache.
+ * - When the loader fails, the failure is only returned to the caller that ran it. The callers that were waiting
+ *   load the keys again (coalesced among themselves), once; a second failure is returned to them.
+ * - When a key is invalidated (see CacheInvalidationService), its flight is forgotten: callers that arrive after the
+ *   commit of a mutation start a new load, so they never get a result read before the commit. Callers that joined
+ *   before the commit get the result of the flight, which was read concurrently with the mutation.
+ * - Callers inside a transaction load the keys themselves, so that they read their own uncommitted changes.
+ * The results are shared between callers, so they must not be modified.
+ *
+ * Metrics (tagged with the name of the flights):
+ * - singleflight.loads: number of keys loaded by their caller
+ * - singleflight.shared: number of keys that got the result of another caller's load
+ */
+
+class SingleFlight<K, V> implements CacheInvalidationListener {
+
+    // Flights in progress, by key
+    private final Map<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+    private final Counter loads;
+
+    private final Counter shared;
+
+    SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.loads = Counter.builder("singleflight.loads")
+            .description("Number of keys loaded by their caller")
+            .tag("name", name)
+            .register(meterRegistry);
+        this.shared = Counter.builder("singleflight.shared")
+            .description("Number of keys that got the result of a concurrent load")
+            .tag("name", name)
+            .register(meterRegistry);
+    }
+
+    // Load a key, or wait for its load in progress (null when the loader returns nothing for the key)
+    V execute(K key, Function<Set<K>, Map<K, V>> loader) {
+        return executeAll(Set.of(key), loader).get(key);
+    }
+
+    // Load keys, joining the loads in progress; the keys missing from the result were not found by the loader
+    Map<K, V> executeAll(Collection<K> keys, Function<Set<K>, Map<K, V>> loader) {
+        Set<K> distinctKeys = new LinkedHashSet<>(keys);
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return loader.apply(distinctKeys);
+        }
+        return executeAll(distinctKeys, loader, true);
+    }
+
+    private Map<K, V> executeAll(Set<K> keys, Function<Set<K>, Map<K, V>> loader, boolean retry) {
+        // Start a flight for each key that has none, join the others
+        Map<K, CompletableFuture<V>> owned = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> joined = new LinkedHashMap<>();
+        for (K key : keys) {
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                owned.put(key, flight);
+            } else {
+                joined.put(key, existing);
+            }
+        }
+        loads.increment(owned.size());
+        shared.increment(joined.size());
+
+        // Load the owned keys first, so that callers waiting for each other's keys cannot deadlock
+        Map<K, V> result = new HashMap<>();
+        if (!owned.isEmpty()) {
+            Map<K, V> loaded;
+            try {
+                loaded = loader.apply(owned.keySet());
+            } catch (RuntimeException | Error e) {
+                // Remove the flights before failing them, so that the waiting callers load again instead of joining them
+                owned.forEach(flights::remove);
+                owned.values().forEach(flight -> flight.completeExceptionally(e));
+                throw e;
+            }
+            owned.forEach(flights::remove);
+            owned.forEach((key, flight) -> {
+                V value = loaded.get(key);
+                if (value != null) {
+                    result.put(key, value);
+                }
+                flight.complete(value);
+            });
+        }
+
+        // Wait for the flights of the other callers
+        Set<K> failed = new LinkedHashSet<>();
+        for (Map.Entry<K, CompletableFuture<V>> entry : joined.entrySet()) {
+            try {
+                V value = entry.getValue().join();
+                if (value != null) {
+                    result.put(entry.getKey(), value);
+                }
+            } catch (CompletionException e) {
+                if (!retry) {
+                    throw e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+                failed.add(entry.getKey());
+            }
+        }
+
+        // Load the keys of the failed flights again
+        if (!failed.isEmpty()) {
+            result.putAll(executeAll(failed, loader, false));
+        }
+        return result;
+    }
+
+    // Forget the flights of the invalidated keys, so that the next callers load them again
+    @Override
+    public void evict(Set<String> keys) {
+        flights.keySet().removeIf(key -> keys.contains(String.valueOf(key)));
+    }
+
+    // Forget every flight
+    @Override
+    public void clear() {
+        flights.clear();
+    }
+}
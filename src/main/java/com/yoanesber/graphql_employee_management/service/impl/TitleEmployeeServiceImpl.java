@@ -1,12 +1,22 @@
 package com.yoanesber.graphql_employee_management.service.impl;
 
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
+import com.yoanesber.graphql_employee_management.dto.EmployeeHistoryRangeDTO;
+import com.yoanesber.graphql_employee_management.dto.TitleEmployeeDTO;
 import com.yoanesber.graphql_employee_management.entity.TitleEmployee;
 import com.yoanesber.graphql_employee_management.repository.TitleEmployeeRepository;
 import com.yoanesber.graphql_employee_management.service.TitleEmployeeService;
+import com.yoanesber.graphql_employee_management.service.impl.EmployeeProfileCache.EmployeeProfile;
 
 /**
  * TitleEmployeeServiceImpl is an implementation of the TitleEmployeeService interface.
@@ -14,6 +24,7 @@ import com.yoanesber.graphql_employee_management.service.TitleEmployeeService;
  * The class is annotated with @Service, indicating that it's a service layer component in the Spring context.
  * It uses the TitleEmployeeRepository to perform CRUD operations on title employee records.
  * The saveTitleEmployee method is annotated with @Transactional, ensuring that the operation is performed within a transaction.
+ * The full histories of the employees cached by EmployeeProfileCache are served from the cache.
  */
 
 @Service
@@ -21,8 +32,11 @@ public class TitleEmployeeServiceImpl implements TitleEmployeeService {
     
     private final TitleEmployeeRepository titleEmployeeRepository;
 
-    public TitleEmployeeServiceImpl(TitleEmployeeRepository titleEmployeeRepository) {
+    private final EmployeeProfileCache employeeProfileCache;
+
+    public TitleEmployeeServiceImpl(TitleEmployeeRepository titleEmployeeRepository, EmployeeProfileCache employeeProfileCache) {
         this.titleEmployeeRepository = titleEmployeeRepository;
+        this.employeeProfileCache = employeeProfileCache;
     }
 
     @Override
@@ -32,4 +46,75 @@ public class TitleEmployeeServiceImpl implements TitleEmployeeService {
 
         return titleEmployeeRepository.save(titleEmployee);
     }
+
+    @Override
+    public Map<Long, List<TitleEmployeeDTO>> getTitlesByEmployeeIds(Collection<Long> employeeIds, LocalDate from, LocalDate to, Integer last) {
+        Assert.notNull(employeeIds, "Employee ids cannot be null");
+        Assert.isTrue(last == null || last > 0, "Last must be greater than zero");
+        Assert.isTrue(from == null || to == null || !from.isAfter(to), "From date cannot be after to date");
+
+        // Nothing to load
+        if (employeeIds.isEmpty()) {
+            return Map.of();
+        }
+
+        // Use the full histories of the cached employee profiles, and load the history of the other employees
+        if (from == null && to == null && last == null) {
+            return employeeProfileCache.getHistories(employeeIds, EmployeeProfile::titles,
+                missingIds -> groupByEmployeeId(titleEmployeeRepository.findByIdEmployeeIdInOrderByIdEmployeeIdAscIdFromDateAsc(missingIds)));
+        }
+
+        // Pick the narrowest query for the requested range, so the filtering happens in the database
+        List<TitleEmployee> titleEmployees;
+        if (last == null) {
+            titleEmployees = titleEmployeeRepository.findByIdEmployeeIdInAndIdFromDateBetweenOrderByIdEmployeeIdAscIdFromDateAsc(employeeIds,
+                Date.valueOf(EmployeeHistoryRangeDTO.lowerBound(from)), Date.valueOf(EmployeeHistoryRangeDTO.upperBound(to)));
+        } else {
+            titleEmployees = titleEmployeeRepository.findLastByEmployeeIdsAndFromDateBetween(employeeIds,
+                Date.valueOf(EmployeeHistoryRangeDTO.lowerBound(from)), Date.valueOf(EmployeeHistoryRangeDTO.upperBound(to)), last);
+        }
+
+        // Group the history by employee id
+        return groupByEmployeeId(titleEmployees);
+    }
+
+    private static Map<Long, List<TitleEmployeeDTO>> groupByEmployeeId(List<TitleEmployee> titleEmployees) {
+        return titleEmployees.stream()
+            .collect(Collectors.groupingBy(titleEmployee -> titleEmployee.getId().getEmployeeId(),
+                LinkedHashMap::new,
+                Collectors.mapping(TitleEmployeeDTO::new, Collectors.toList())));
+    }
+
+    @Override
+    public Map<Long, List<TitleEmployeeDTO>> getTitlesByEmployeeIdsAsOf(Collection<Long> employeeIds, LocalDate asOf) {
+        Assert.notNull(employeeIds, "Employee ids cannot be null");
+        Assert.notNull(asOf, "As of date cannot be null");
+
+        // Nothing to load
+        if (employeeIds.isEmpty()) {
+            return Map.of();
+        }
+
+        // Load the rows whose period contains the date and group them by employee id
+        return titleEmployeeRepository.findByEmployeeIdsAsOf(employeeIds, Date.valueOf(asOf))
+            .stream()
+            .collect(Collectors.groupingBy(titleEmployee -> titleEmployee.getId().getEmployeeId(),
+                LinkedHashMap::new,
+                Collectors.mapping(TitleEmployeeDTO::new, Collectors.toList())));
+    }
+
+    @Override
+    public Map<Long, TitleEmployeeDTO> getCurrentTitlesByEmployeeIds(Collection<Long> employeeIds) {
+        Assert.notNull(employeeIds, "Employee ids cannot be null");
+
+        // Nothing to load
+        if (employeeIds.isEmpty()) {
+            return Map.of();
+        }
+
+        // Load the open-ended row of all employees in one query (at most one row per employee)
+        return titleEmployeeRepository.findCurrentByEmployeeIds(employeeIds)
+            .stream()
+            .collect(Collectors.toMap(titleEmployee -> titleEmployee.getId().getEmployeeId(), TitleEmployeeDTO::new));
+    }
 }
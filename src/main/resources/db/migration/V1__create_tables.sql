@@ -0,0 +1,74 @@
+-- Tables of the entities (see the entity package), created in the schema Flyway migrates (spring.flyway.schemas)
+
+-- table employee
+CREATE TABLE employee (
+    id bigint NOT NULL GENERATED BY DEFAULT AS IDENTITY,
+    birth_date date NOT NULL,
+    first_name character varying(20) NOT NULL,
+    last_name character varying(20),
+    gender character varying(1) NOT NULL,
+    hire_date date NOT NULL,
+    active boolean DEFAULT false NOT NULL,
+    created_by bigint NOT NULL,
+    created_date timestamp with time zone DEFAULT now() NOT NULL,
+    updated_by bigint NOT NULL,
+    updated_date timestamp with time zone DEFAULT now() NOT NULL,
+    version bigint DEFAULT 0 NOT NULL,
+    CONSTRAINT employee_pkey PRIMARY KEY (id)
+);
+
+-- table department
+CREATE TABLE department (
+    id character varying(4) NOT NULL,
+    dept_name character varying(40) NOT NULL,
+    active boolean NOT NULL,
+    created_by bigint NOT NULL,
+    created_date timestamp with time zone DEFAULT now() NOT NULL,
+    updated_by bigint NOT NULL,
+    updated_date timestamp with time zone DEFAULT now() NOT NULL,
+    version bigint DEFAULT 0 NOT NULL,
+    CONSTRAINT department_pkey PRIMARY KEY (id)
+);
+
+-- table department_employee
+CREATE TABLE department_employee (
+    employee_id bigint NOT NULL,
+    department_id character varying(4) NOT NULL,
+    from_date date NOT NULL,
+    to_date date NOT NULL,
+    CONSTRAINT department_employee_pkey PRIMARY KEY (employee_id, department_id),
+    CONSTRAINT department_employee_fkey1 FOREIGN KEY (employee_id) REFERENCES employee(id) ON UPDATE RESTRICT ON DELETE CASCADE,
+    CONSTRAINT department_employee_fkey2 FOREIGN KEY (department_id) REFERENCES department(id) ON UPDATE RESTRICT ON DELETE CASCADE
+);
+
+-- table salary, partitioned by range of from_date (see V2__create_salary_partitions.sql)
+-- The primary key includes from_date, as the keys of a partitioned table must include the partition key
+CREATE TABLE salary (
+    employee_id bigint NOT NULL,
+    amount bigint NOT NULL,
+    from_date date NOT NULL,
+    to_date date NOT NULL,
+    CONSTRAINT salary_pkey PRIMARY KEY (employee_id, from_date),
+    CONSTRAINT salary_fkey FOREIGN KEY (employee_id) REFERENCES employee(id) ON UPDATE RESTRICT ON DELETE CASCADE
+) PARTITION BY RANGE (from_date);
+
+-- table title
+CREATE TABLE title (
+    employee_id bigint NOT NULL,
+    title character varying(50) NOT NULL,
+    from_date date NOT NULL,
+    to_date date,
+    CONSTRAINT title_pkey PRIMARY KEY (employee_id, title, from_date),
+    CONSTRAINT title_fkey FOREIGN KEY (employee_id) REFERENCES employee(id) ON UPDATE RESTRICT ON DELETE CASCADE
+);
+
+-- table outbox_event (change events waiting to be relayed, see Change Events)
+CREATE TABLE outbox_event (
+    id bigint NOT NULL GENERATED BY DEFAULT AS IDENTITY,
+    aggregate_type character varying(40) NOT NULL,
+    aggregate_id character varying(40) NOT NULL,
+    event_type character varying(40) NOT NULL,
+    payload text NOT NULL,
+    created_date timestamp with time zone NOT NULL,
+    CONSTRAINT outbox_event_pkey PRIMARY KEY (id)
+);
@@ -0,0 +1,12 @@
+-- Partitions of salary, one per decade of from_date
+-- Queries on a from_date range (the from/to arguments of EmployeeDTO.salaries) only scan the partitions of that
+-- range; the other queries are by employee and probe the index of each partition (a handful of partitions only).
+-- Rows beyond the last decade go to salary_default: add the next decade before it is reached, as attaching a
+-- partition then has to move its rows out of salary_default.
+CREATE TABLE salary_before_1990 PARTITION OF salary FOR VALUES FROM (MINVALUE) TO ('1990-01-01');
+CREATE TABLE salary_1990 PARTITION OF salary FOR VALUES FROM ('1990-01-01') TO ('2000-01-01');
+CREATE TABLE salary_2000 PARTITION OF salary FOR VALUES FROM ('2000-01-01') TO ('2010-01-01');
+CREATE TABLE salary_2010 PARTITION OF salary FOR VALUES FROM ('2010-01-01') TO ('2020-01-01');
+CREATE TABLE salary_2020 PARTITION OF salary FOR VALUES FROM ('2020-01-01') TO ('2030-01-01');
+CREATE TABLE salary_2030 PARTITION OF salary FOR VALUES FROM ('2030-01-01') TO ('2040-01-01');
+CREATE TABLE salary_default PARTITION OF salary DEFAULT;
@@ -0,0 +1,33 @@
+-- Secondary indexes of the access paths of the repositories (see SchemaQueryPlanTest)
+-- The indexes created on salary are created on each of its partitions.
+
+-- partial indexes on the current (open-ended, to_date = '9999-01-01') rows
+-- used by the currentDepartment, currentSalary and currentTitle fields of EmployeeDTO
+-- (salary_current_idx is the (employee_id, to_date) access path, restricted to the only to_date that is queried)
+CREATE INDEX department_employee_current_idx ON department_employee (employee_id, from_date DESC)
+    WHERE to_date = DATE '9999-01-01';
+CREATE INDEX salary_current_idx ON salary (employee_id, from_date DESC)
+    WHERE to_date = DATE '9999-01-01';
+CREATE INDEX title_current_idx ON title (employee_id, from_date DESC)
+    WHERE to_date IS NULL OR to_date = DATE '9999-01-01';
+
+-- range index for the from/to/last arguments of EmployeeDTO.titles
+-- (the primary key of title is (employee_id, title, from_date), so from_date is not a leading column there;
+-- salary needs no extra index because its primary key already starts with (employee_id, from_date))
+CREATE INDEX title_employee_from_date_idx ON title (employee_id, from_date);
+
+-- foreign key of department_employee to department: the primary key starts with employee_id, so without this index
+-- deleting a department (ON DELETE CASCADE) scans the whole table
+CREATE INDEX department_employee_department_idx ON department_employee (department_id);
+
+-- GiST indexes on the validity period [from_date, to_date) for the asOf (point-in-time) queries
+-- btree_gist is needed to combine the scalar key columns with the daterange in one GiST index
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+CREATE INDEX department_employee_department_period_idx ON department_employee
+    USING gist (department_id, daterange(from_date, to_date));
+CREATE INDEX department_employee_period_idx ON department_employee
+    USING gist (employee_id, daterange(from_date, to_date));
+CREATE INDEX salary_period_idx ON salary
+    USING gist (employee_id, daterange(from_date, to_date));
+CREATE INDEX title_period_idx ON title
+    USING gist (employee_id, daterange(from_date, to_date));
@@ -0,0 +1,45 @@
+-- Change feed of the employees (employeesChangedSince, see EmployeeRepository.findChangesAfter)
+-- A change is the position (change_xid, employee id): change_xid is the id of the last transaction that inserted or
+-- updated the employee (pg_current_xact_id, as a bigint), and a deleted employee leaves a tombstone with the id of the
+-- transaction that deleted it. The feed only returns the changes of transactions older than every transaction still
+-- in progress, so a change committed later can never be positioned before a change already returned.
+
+-- change_xid of the existing employees: the transaction of this migration
+ALTER TABLE employee ADD COLUMN change_xid bigint NOT NULL DEFAULT (pg_current_xact_id()::text::bigint);
+
+-- table employee_tombstone (deleted employees)
+CREATE TABLE employee_tombstone (
+    employee_id bigint NOT NULL,
+    change_xid bigint NOT NULL,
+    deleted_date timestamp with time zone DEFAULT now() NOT NULL,
+    CONSTRAINT employee_tombstone_pkey PRIMARY KEY (employee_id)
+);
+
+-- The triggers set the positions, so every write is in the feed: mutations, the bulk loader (COPY) and manual changes
+-- (search_path is the one of the migration, so the functions find their tables whatever the search_path of the caller)
+CREATE FUNCTION employee_set_change_xid() RETURNS trigger LANGUAGE plpgsql SET search_path FROM CURRENT AS $$
+BEGIN
+    NEW.change_xid := pg_current_xact_id()::text::bigint;
+    RETURN NEW;
+END
+$$;
+
+CREATE TRIGGER employee_change_xid BEFORE INSERT OR UPDATE ON employee
+    FOR EACH ROW EXECUTE FUNCTION employee_set_change_xid();
+
+-- An id deleted again after being reused keeps a single tombstone, at its latest position
+CREATE FUNCTION employee_record_tombstone() RETURNS trigger LANGUAGE plpgsql SET search_path FROM CURRENT AS $$
+BEGIN
+    INSERT INTO employee_tombstone (employee_id, change_xid)
+        VALUES (OLD.id, pg_current_xact_id()::text::bigint)
+        ON CONFLICT (employee_id) DO UPDATE SET change_xid = EXCLUDED.change_xid, deleted_date = EXCLUDED.deleted_date;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER employee_tombstone AFTER DELETE ON employee
+    FOR EACH ROW EXECUTE FUNCTION employee_record_tombstone();
+
+-- indexes of the feed: the changes after a position, in the order of the positions
+CREATE INDEX employee_change_idx ON employee (change_xid, id);
+CREATE INDEX employee_tombstone_change_idx ON employee_tombstone (change_xid, employee_id);
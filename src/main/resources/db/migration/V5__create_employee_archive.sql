@@ -0,0 +1,106 @@
+-- Archive tier of the inactive employees (see EmployeeArchiver)
+-- archive_inactive_employees moves a batch of employees that have been inactive for a while, with their histories,
+-- to the *_archive tables, so they no longer weigh on the tables, indexes and scans of the active employees.
+-- The archive tables have the columns of their hot tables and the same primary keys, but no foreign keys: an archived
+-- history row keeps its department even after the department is deleted. They are only read by the queries with
+-- includeArchived: true, by employee id, through their primary keys.
+
+-- table employee_archive
+CREATE TABLE employee_archive (
+    id bigint NOT NULL,
+    birth_date date NOT NULL,
+    first_name character varying(20) NOT NULL,
+    last_name character varying(20),
+    gender character varying(1) NOT NULL,
+    hire_date date NOT NULL,
+    active boolean NOT NULL,
+    created_by bigint NOT NULL,
+    created_date timestamp with time zone NOT NULL,
+    updated_by bigint NOT NULL,
+    updated_date timestamp with time zone NOT NULL,
+    version bigint NOT NULL,
+    archived_date timestamp with time zone DEFAULT now() NOT NULL,
+    CONSTRAINT employee_archive_pkey PRIMARY KEY (id)
+);
+
+-- table department_employee_archive
+CREATE TABLE department_employee_archive (
+    employee_id bigint NOT NULL,
+    department_id character varying(4) NOT NULL,
+    from_date date NOT NULL,
+    to_date date NOT NULL,
+    CONSTRAINT department_employee_archive_pkey PRIMARY KEY (employee_id, department_id)
+);
+
+-- table salary_archive (not partitioned: it is only read by employee)
+CREATE TABLE salary_archive (
+    employee_id bigint NOT NULL,
+    amount bigint NOT NULL,
+    from_date date NOT NULL,
+    to_date date NOT NULL,
+    CONSTRAINT salary_archive_pkey PRIMARY KEY (employee_id, from_date)
+);
+
+-- table title_archive
+CREATE TABLE title_archive (
+    employee_id bigint NOT NULL,
+    title character varying(50) NOT NULL,
+    from_date date NOT NULL,
+    to_date date,
+    CONSTRAINT title_archive_pkey PRIMARY KEY (employee_id, title, from_date)
+);
+
+-- The candidates of the next batch, in the order of the ids; the index only holds the inactive employees, which are
+-- archived, so it stays small
+CREATE INDEX employee_inactive_idx ON employee (id) WHERE NOT active;
+
+-- Archived employees still exist: the delete of an archive batch does not leave tombstones in the change feed
+-- (app.archiving is only set by archive_inactive_employees, for its delete)
+CREATE OR REPLACE FUNCTION employee_record_tombstone() RETURNS trigger LANGUAGE plpgsql SET search_path FROM CURRENT AS $$
+BEGIN
+    IF current_setting('app.archiving', true) = 'on' THEN
+        RETURN NULL;
+    END IF;
+
+    INSERT INTO employee_tombstone (employee_id, change_xid)
+        VALUES (OLD.id, pg_current_xact_id()::text::bigint)
+        ON CONFLICT (employee_id) DO UPDATE SET change_xid = EXCLUDED.change_xid, deleted_date = EXCLUDED.deleted_date;
+    RETURN NULL;
+END
+$$;
+
+-- Move up to batch_size employees inactive since before inactive_before, and their histories, to the archive, and
+-- return their ids. The employees are locked with SKIP LOCKED, so concurrent archivers move disjoint batches, and an
+-- employee being updated is left for a later batch; the update that made it inactive must be older than
+-- inactive_before (updated_date), so a mistaken deactivation can still be undone before the employee is archived.
+-- The histories are copied before the employees are deleted (ON DELETE CASCADE removes them from the hot tables).
+CREATE FUNCTION archive_inactive_employees(inactive_before timestamp with time zone, batch_size integer)
+RETURNS SETOF bigint LANGUAGE plpgsql SET search_path FROM CURRENT AS $$
+DECLARE
+    batch bigint[];
+BEGIN
+    SELECT array_agg(id) INTO batch FROM (
+        SELECT id FROM employee WHERE NOT active AND updated_date < inactive_before
+        ORDER BY id LIMIT batch_size FOR UPDATE SKIP LOCKED) candidates;
+    IF batch IS NULL THEN
+        RETURN;
+    END IF;
+
+    INSERT INTO department_employee_archive (employee_id, department_id, from_date, to_date)
+        SELECT employee_id, department_id, from_date, to_date FROM department_employee WHERE employee_id = ANY (batch);
+    INSERT INTO salary_archive (employee_id, amount, from_date, to_date)
+        SELECT employee_id, amount, from_date, to_date FROM salary WHERE employee_id = ANY (batch);
+    INSERT INTO title_archive (employee_id, title, from_date, to_date)
+        SELECT employee_id, title, from_date, to_date FROM title WHERE employee_id = ANY (batch);
+    INSERT INTO employee_archive (id, birth_date, first_name, last_name, gender, hire_date, active, created_by,
+            created_date, updated_by, updated_date, version)
+        SELECT id, birth_date, first_name, last_name, gender, hire_date, active, created_by, created_date, updated_by,
+            updated_date, version FROM employee WHERE id = ANY (batch);
+
+    PERFORM set_config('app.archiving', 'on', true);
+    DELETE FROM employee WHERE id = ANY (batch);
+    PERFORM set_config('app.archiving', 'off', true);
+
+    RETURN QUERY SELECT unnest(batch);
+END
+$$;
@@ -0,0 +1,25 @@
+-- Tombstones of the archived employees (see V4__create_employee_change_feed.sql and V5__create_employee_archive.sql)
+-- An archived employee is no longer in the hot tables, so the change feed needs a tombstone for it as for a deleted
+-- one, or sync jobs would keep it forever. The kind of a tombstone tells them apart: 'deleted' (deleteEmployee, manual
+-- deletes) or 'archived' (archive_inactive_employees), whose employee can still be read with includeArchived: true.
+
+-- The existing tombstones are all deletes: V5 did not record the archived employees
+ALTER TABLE employee_tombstone ADD COLUMN kind character varying(8) DEFAULT 'deleted' NOT NULL
+    CONSTRAINT employee_tombstone_kind_check CHECK (kind IN ('deleted', 'archived'));
+
+-- The employees archived before this migration get their tombstone now, at the position of this migration
+INSERT INTO employee_tombstone (employee_id, change_xid, kind)
+    SELECT id, pg_current_xact_id()::text::bigint, 'archived' FROM employee_archive
+    ON CONFLICT (employee_id) DO NOTHING;
+
+-- app.archiving is only set by archive_inactive_employees, for its delete
+CREATE OR REPLACE FUNCTION employee_record_tombstone() RETURNS trigger LANGUAGE plpgsql SET search_path FROM CURRENT AS $$
+BEGIN
+    INSERT INTO employee_tombstone (employee_id, change_xid, kind)
+        VALUES (OLD.id, pg_current_xact_id()::text::bigint,
+            CASE WHEN current_setting('app.archiving', true) = 'on' THEN 'archived' ELSE 'deleted' END)
+        ON CONFLICT (employee_id) DO UPDATE
+            SET change_xid = EXCLUDED.change_xid, deleted_date = EXCLUDED.deleted_date, kind = EXCLUDED.kind;
+    RETURN NULL;
+END
+$$;
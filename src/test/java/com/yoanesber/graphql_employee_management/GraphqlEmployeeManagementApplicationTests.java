@@ -3,7 +3,8 @@ package com.yoanesber.graphql_employee_management;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// The migrations are written for PostgreSQL: on the embedded H2 database, Hibernate creates the schema instead
+@SpringBootTest(properties = "spring.flyway.enabled=false")
 class GraphqlEmployeeManagementApplicationTests {
 
 	@Test
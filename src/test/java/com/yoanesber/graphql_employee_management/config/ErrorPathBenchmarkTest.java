@@ -0,0 +1,137 @@
+package com.yoanesber.graphql_employee_management.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.qos.logback.classic.Level;
+import graphql.GraphQLError;
+import graphql.Scalars;
+import graphql.execution.ExecutionStepInfo;
+import graphql.execution.MergedField;
+import graphql.execution.ResultPath;
+import graphql.language.Field;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.DataFetchingEnvironmentImpl;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.yoanesber.graphql_employee_management.exception.ErrorCode;
+import com.yoanesber.graphql_employee_management.exception.NotFoundException;
+
+/*
+ * Benchmark of the not-found error path of a query (e.g. getEmployeeById with an unknown id), from the exception
+ * thrown by the service to the GraphQL error built by GraphQLExceptionConfig, comparing:
+ * - the previous path: IllegalArgumentException thrown by the service, caught by the controller and rethrown
+ *   as a new RuntimeException (two stack traces captured)
+ * - the typed path: a stackless NotFoundException passed through as it is
+ * The exceptions are thrown from a deep call stack, as they are under Spring MVC, Spring GraphQL and graphql-java.
+ * The error logging of GraphQLExceptionConfig is switched off while measuring, so only the exceptions are compared.
+ * The throughput comparison depends on the machine and the JIT, so it is a benchmark (mvn -Pbenchmark test); the
+ * mapping of the typed errors is checked by the default run.
+ */
+
+class ErrorPathBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ErrorPathBenchmarkTest.class);
+
+    private static final int STACK_DEPTH = 150;
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+
+    private static final long MEASURE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final GraphQLExceptionConfig exceptionConfig = new GraphQLExceptionConfig();
+
+    private final DataFetchingEnvironment env = DataFetchingEnvironmentImpl.newDataFetchingEnvironment()
+        .mergedField(MergedField.newMergedField(Field.newField("getEmployeeById").build()).build())
+        .executionStepInfo(ExecutionStepInfo.newExecutionStepInfo()
+            .type(Scalars.GraphQLString)
+            .path(ResultPath.rootPath().segment("getEmployeeById"))
+            .build())
+        .build();
+
+    // Previous path: the service throws, the controller wraps
+    private static void wrappedLookup(long id) {
+        try {
+            throw new IllegalArgumentException("Employee with id " + id + " does not exist");
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    // Typed path: the service throws, the controller passes it through
+    private static void typedLookup(long id) {
+        throw new NotFoundException(ErrorCode.EMPLOYEE_NOT_FOUND, "Employee with id " + id + " does not exist");
+    }
+
+    // Throw from the given depth of nested calls
+    private static void atDepth(int depth, Runnable lookup) {
+        if (depth == 0) {
+            lookup.run();
+        } else {
+            atDepth(depth - 1, lookup);
+        }
+    }
+
+    private GraphQLError resolve(Runnable lookup) {
+        try {
+            atDepth(STACK_DEPTH, lookup);
+            throw new AssertionError("Lookup should fail");
+        } catch (RuntimeException e) {
+            List<GraphQLError> errors = exceptionConfig.resolveToMultipleErrors(e, env);
+            return errors.get(0);
+        }
+    }
+
+    // Errors resolved per second
+    private double throughput(Runnable lookup) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            resolve(lookup);
+        }
+
+        long count = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            resolve(lookup);
+            count++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < MEASURE_NANOS);
+
+        return count * 1e9 / elapsed;
+    }
+
+    @Test
+    void typedNotFoundErrors() {
+        GraphQLError error = resolve(() -> typedLookup(42));
+
+        assertEquals("NOT_FOUND", error.getErrorType().toString());
+        assertEquals("EMPLOYEE_NOT_FOUND", error.getExtensions().get("code"));
+        assertEquals(0, new NotFoundException(ErrorCode.EMPLOYEE_NOT_FOUND, "").getStackTrace().length);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void typedErrorPathThroughput() {
+        ch.qos.logback.classic.Logger configLogger =
+            (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(GraphQLExceptionConfig.class);
+        Level level = configLogger.getLevel();
+        double wrapped;
+        double typed;
+        try {
+            configLogger.setLevel(Level.OFF);
+            wrapped = throughput(() -> wrappedLookup(42));
+            typed = throughput(() -> typedLookup(42));
+        } finally {
+            configLogger.setLevel(level);
+        }
+
+        logger.info("Not-found errors per second (stack depth {}): wrapped RuntimeException={}, stackless NotFoundException={} (x{})",
+            STACK_DEPTH, Math.round(wrapped), Math.round(typed), String.format("%.1f", typed / wrapped));
+        assertTrue(typed > wrapped * 2, "The stackless error path should be much faster");
+    }
+}
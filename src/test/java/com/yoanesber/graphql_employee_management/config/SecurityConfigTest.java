@@ -0,0 +1,83 @@
+package com.yoanesber.graphql_employee_management.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.yoanesber.graphql_employee_management.monitoring.SlowOperationRecorder;
+
+/*
+ * Test of the authorization rules of SecurityConfig on the actuator endpoints, in the application context (H2, the
+ * schema created by Hibernate), with the slowoperations endpoint exposed and every operation recorded:
+ * - without a known API key, GET and DELETE /actuator/slowoperations are rejected with 401, and the recorded
+ *   operations are kept
+ * - with a known API key, they are listed and cleared
+ * - the health endpoint stays open
+ */
+
+@SpringBootTest(properties = {
+    "spring.flyway.enabled=false",
+    "app.api.key=admin-key",
+    "app.slow-operations.sample-rate=1",
+    "management.endpoints.web.exposure.include=health,slowoperations"
+})
+@AutoConfigureMockMvc
+class SecurityConfigTest {
+
+    private static final String API_KEY_HEADER = "X-API-KEY";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SlowOperationRecorder slowOperationRecorder;
+
+    @BeforeEach
+    void recordOperation() throws Exception {
+        slowOperationRecorder.clear();
+        MvcResult result = mockMvc.perform(post("/graphql")
+                .header(API_KEY_HEADER, "admin-key")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"query\": \"{ __typename }\"}"))
+            .andReturn();
+        mockMvc.perform(asyncDispatch(result)).andReturn();
+        assertEquals(1, slowOperationRecorder.getOperations().size());
+    }
+
+    @Test
+    void slowOperationsRequireAnApiKey() throws Exception {
+        assertEquals(401, mockMvc.perform(get("/actuator/slowoperations")).andReturn().getResponse().getStatus());
+        assertEquals(401, mockMvc.perform(delete("/actuator/slowoperations")).andReturn().getResponse().getStatus());
+        assertEquals(401, mockMvc.perform(delete("/actuator/slowoperations").header(API_KEY_HEADER, "other-key"))
+            .andReturn().getResponse().getStatus());
+        assertEquals(1, slowOperationRecorder.getOperations().size());
+    }
+
+    @Test
+    void slowOperationsAreReadAndClearedWithAnApiKey() throws Exception {
+        String operations = mockMvc.perform(get("/actuator/slowoperations").header(API_KEY_HEADER, "admin-key"))
+            .andReturn().getResponse().getContentAsString();
+        assertTrue(operations.contains("__typename"), operations);
+
+        assertEquals(204, mockMvc.perform(delete("/actuator/slowoperations").header(API_KEY_HEADER, "admin-key"))
+            .andReturn().getResponse().getStatus());
+        assertEquals(0, slowOperationRecorder.getOperations().size());
+    }
+
+    @Test
+    void healthIsOpen() throws Exception {
+        assertEquals(200, mockMvc.perform(get("/actuator/health")).andReturn().getResponse().getStatus());
+    }
+}
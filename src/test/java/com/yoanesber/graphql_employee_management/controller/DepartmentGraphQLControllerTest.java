@@ -0,0 +1,125 @@
+package com.yoanesber.graphql_employee_management.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.graphql.GraphQlTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.graphql.test.tester.GraphQlTester;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.yoanesber.graphql_employee_management.config.GraphQLExceptionConfig;
+import com.yoanesber.graphql_employee_management.config.GraphQLScalarConfig;
+import com.yoanesber.graphql_employee_management.dto.DepartmentDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeDTO;
+import com.yoanesber.graphql_employee_management.exception.ErrorCode;
+import com.yoanesber.graphql_employee_management.exception.NotFoundException;
+import com.yoanesber.graphql_employee_management.service.DepartmentService;
+import com.yoanesber.graphql_employee_management.service.EmployeeService;
+
+/*
+ * Test of the employees of the departments: the employees of all departments of a response are loaded with one
+ * service call per date (the asOf of the query, or today), each department getting its own employees.
+ * The exceptions of the service reach GraphQLExceptionConfig as they are thrown: a domain error keeps its
+ * classification and code, an unexpected error is a DataFetchingException.
+ */
+
+@GraphQlTest(DepartmentGraphQLController.class)
+@Import({GraphQLScalarConfig.class, GraphQLExceptionConfig.class})
+class DepartmentGraphQLControllerTest {
+
+    @Autowired
+    private GraphQlTester graphQlTester;
+
+    @MockitoBean
+    private DepartmentService departmentService;
+
+    @MockitoBean
+    private EmployeeService employeeService;
+
+    // d001 has employee 10001, d002 has 10002 and 10003, d003 has none
+    private void givenDepartments() {
+        when(departmentService.getAllDepartments()).thenReturn(List.of("d001", "d002", "d003").stream()
+            .map(id -> {
+                DepartmentDTO department = new DepartmentDTO();
+                department.setId(id);
+                return department;
+            })
+            .toList());
+        when(employeeService.getEmployeesByDepartmentIds(anyCollection(), any(LocalDate.class))).thenReturn(Map.of(
+            "d001", List.of(employee(10001L)),
+            "d002", List.of(employee(10002L), employee(10003L))));
+    }
+
+    private static EmployeeDTO employee(Long id) {
+        EmployeeDTO employee = new EmployeeDTO();
+        employee.setId(id);
+        return employee;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void employeesOfAllDepartmentsAreLoadedWithOneCallPerDate() {
+        givenDepartments();
+
+        GraphQlTester.Response response = graphQlTester.document("""
+                {
+                  today: getAllDepartments { id employees { id } }
+                  past: getAllDepartments(asOf: "1995-06-01") { id employees { id } }
+                }
+                """)
+            .execute();
+
+        response.errors().verify();
+        response.path("today[0].employees[*].id").entityList(Long.class).containsExactly(10001L);
+        response.path("today[1].employees[*].id").entityList(Long.class).containsExactly(10002L, 10003L);
+        response.path("today[2].employees").entityList(Object.class).hasSize(0);
+        response.path("past[1].employees[*].id").entityList(Long.class).containsExactly(10002L, 10003L);
+
+        // One call for the departments of today, and one for those of the asOf date
+        ArgumentCaptor<Collection<String>> ids = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<LocalDate> dates = ArgumentCaptor.forClass(LocalDate.class);
+        verify(employeeService, times(2)).getEmployeesByDepartmentIds(ids.capture(), dates.capture());
+        assertEquals(Set.of(LocalDate.now(), LocalDate.of(1995, 6, 1)), Set.copyOf(dates.getAllValues()));
+        ids.getAllValues().forEach(departmentIds -> assertEquals(Set.of("d001", "d002", "d003"), Set.copyOf(departmentIds)));
+    }
+
+    @Test
+    void domainErrorsKeepTheirClassification() {
+        when(departmentService.getDepartmentById(anyString()))
+            .thenThrow(new NotFoundException(ErrorCode.DEPARTMENT_NOT_FOUND, "Department with id d999 does not exist"));
+
+        graphQlTester.document("{ getDepartmentById(id: \"D999\") { id } }")
+            .execute()
+            .errors()
+            .expect(error -> error.getErrorType().toString().equals("NOT_FOUND")
+                && "DEPARTMENT_NOT_FOUND".equals(error.getExtensions().get("code"))
+                && error.getMessage().equals("Department with id d999 does not exist"))
+            .verify();
+    }
+
+    @Test
+    void unexpectedErrorsAreDataFetchingErrors() {
+        when(departmentService.getAllDepartments()).thenThrow(new IllegalStateException("connection reset"));
+
+        graphQlTester.document("{ getAllDepartments { id } }")
+            .execute()
+            .errors()
+            .expect(error -> error.getErrorType().toString().equals("DataFetchingException")
+                && error.getMessage().equals("connection reset"))
+            .verify();
+    }
+}
@@ -0,0 +1,222 @@
+package com.yoanesber.graphql_employee_management.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Date;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.graphql.GraphQlTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.graphql.test.tester.GraphQlTester;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.yoanesber.graphql_employee_management.config.GraphQLExceptionConfig;
+import com.yoanesber.graphql_employee_management.config.GraphQLScalarConfig;
+import com.yoanesber.graphql_employee_management.dto.DepartmentEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.SalaryEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.TitleEmployeeDTO;
+import com.yoanesber.graphql_employee_management.service.DepartmentEmployeeService;
+import com.yoanesber.graphql_employee_management.service.EmployeeArchiveService;
+import com.yoanesber.graphql_employee_management.service.EmployeeService;
+import com.yoanesber.graphql_employee_management.service.SalaryEmployeeService;
+import com.yoanesber.graphql_employee_management.service.TitleEmployeeService;
+
+/*
+ * Test of the employee lookups by id: getEmployeeById under several aliases and getEmployeesByIds in one document
+ * are loaded with a single service call (one IN query), in the order of the ids, with a NOT_FOUND error for each
+ * id that does not exist. The currentDepartment/currentSalary/currentTitle rows are matched to their employee by id,
+ * and an employee without a current row gets null for that field only. from/to/last are rejected inside a query
+ * with asOf. The archive is only read with includeArchived: true, for the ids missing from the hot tables.
+ */
+
+@GraphQlTest(EmployeeGraphQLController.class)
+@Import({GraphQLScalarConfig.class, GraphQLExceptionConfig.class})
+class EmployeeGraphQLControllerTest {
+
+    @Autowired
+    private GraphQlTester graphQlTester;
+
+    @MockitoBean
+    private EmployeeService employeeService;
+
+    @MockitoBean
+    private DepartmentEmployeeService departmentEmployeeService;
+
+    @MockitoBean
+    private SalaryEmployeeService salaryEmployeeService;
+
+    @MockitoBean
+    private TitleEmployeeService titleEmployeeService;
+
+    @MockitoBean
+    private EmployeeArchiveService employeeArchiveService;
+
+    // Only 10001, 10002 and 10003 exist
+    private void givenEmployees() {
+        when(employeeService.getEmployeesByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().filter(id -> id >= 10001 && id <= 10003)
+                .collect(Collectors.toMap(id -> id, id -> {
+                    EmployeeDTO employee = new EmployeeDTO();
+                    employee.setId(id);
+                    employee.setFirstName("First" + id);
+                    employee.setArchived(false);
+                    return employee;
+                }));
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void aliasedLookupsAreLoadedWithOneCall() {
+        givenEmployees();
+
+        GraphQlTester.Response response = graphQlTester.document("""
+                {
+                  a: getEmployeeById(id: 10003) { id firstName }
+                  b: getEmployeeById(id: 10001) { id }
+                  c: getEmployeeById(id: 99999) { id }
+                  list: getEmployeesByIds(ids: [10002, 99998, 10001]) { id }
+                }
+                """)
+            .execute();
+
+        response.errors().satisfy(errors -> {
+            Map<String, Object> codes = errors.stream()
+                .collect(Collectors.toMap(error -> error.getPath(), error -> error.getExtensions().get("code")));
+            assertEquals(Map.of("c", "EMPLOYEE_NOT_FOUND", "list[1]", "EMPLOYEE_NOT_FOUND"), codes);
+        });
+        response.path("a.firstName").entity(String.class).isEqualTo("First10003");
+        response.path("b.id").entity(Long.class).isEqualTo(10001L);
+        response.path("c").valueIsNull();
+        response.path("list").entityList(Object.class).hasSize(3);
+        response.path("list[0].id").entity(Long.class).isEqualTo(10002L);
+        response.path("list[1]").valueIsNull();
+        response.path("list[2].id").entity(Long.class).isEqualTo(10001L);
+
+        // One service call for all the ids of the document
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(employeeService, times(1)).getEmployeesByIds(ids.capture());
+        assertEquals(Set.of(10001L, 10002L, 10003L, 99998L, 99999L), Set.copyOf(ids.getValue()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void archiveIsOnlyReadWithIncludeArchived() {
+        givenEmployees();
+
+        // 20001 is archived
+        when(employeeArchiveService.getArchivedEmployeesByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().filter(id -> id == 20001)
+                .collect(Collectors.toMap(id -> id, id -> {
+                    EmployeeDTO employee = new EmployeeDTO();
+                    employee.setId(id);
+                    employee.setArchived(true);
+                    return employee;
+                }));
+        });
+
+        // Without includeArchived, the archived employee is not found and the archive is not read
+        graphQlTester.document("{ getEmployeesByIds(ids: [10001, 20001]) { id } }")
+            .execute()
+            .errors().expect(error -> "getEmployeesByIds[1]".equals(error.getPath())).verify()
+            .path("getEmployeesByIds[1]").valueIsNull();
+        verify(employeeArchiveService, never()).getArchivedEmployeesByIds(anyCollection());
+
+        // With includeArchived, only the ids missing from the hot tables are read from the archive
+        GraphQlTester.Response response = graphQlTester.document(
+                "{ getEmployeesByIds(ids: [10001, 20001], includeArchived: true) { id archived } }")
+            .execute();
+        response.path("getEmployeesByIds[0].archived").entity(Boolean.class).isEqualTo(false);
+        response.path("getEmployeesByIds[1].archived").entity(Boolean.class).isEqualTo(true);
+
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(employeeArchiveService, times(1)).getArchivedEmployeesByIds(ids.capture());
+        assertEquals(Set.of(20001L), Set.copyOf(ids.getValue()));
+    }
+
+    @Test
+    void currentRowsAreMatchedById() {
+        givenEmployees();
+
+        // 10002 has no open-ended salary, 10003 no open-ended title
+        Date from = Date.valueOf("2000-01-01");
+        Date open = Date.valueOf("9999-01-01");
+        when(departmentEmployeeService.getCurrentDepartmentsByEmployeeIds(anyCollection())).thenReturn(Map.of(
+            10001L, new DepartmentEmployeeDTO("d001", from, open),
+            10002L, new DepartmentEmployeeDTO("d002", from, open),
+            10003L, new DepartmentEmployeeDTO("d003", from, open)));
+        when(salaryEmployeeService.getCurrentSalariesByEmployeeIds(anyCollection())).thenReturn(Map.of(
+            10001L, new SalaryEmployeeDTO(from, 60001L, open),
+            10003L, new SalaryEmployeeDTO(from, 60003L, open)));
+        when(titleEmployeeService.getCurrentTitlesByEmployeeIds(anyCollection())).thenReturn(Map.of(
+            10001L, new TitleEmployeeDTO("Engineer", from, open),
+            10002L, new TitleEmployeeDTO("Manager", from, open)));
+
+        GraphQlTester.Response response = graphQlTester.document("""
+                {
+                  getEmployeesByIds(ids: [10003, 10002, 10001]) {
+                    id
+                    currentDepartment { departmentId }
+                    currentSalary { amount }
+                    currentTitle { title }
+                  }
+                }
+                """)
+            .execute();
+
+        response.errors().verify();
+        response.path("getEmployeesByIds[0].currentDepartment.departmentId").entity(String.class).isEqualTo("d003");
+        response.path("getEmployeesByIds[0].currentSalary.amount").entity(Long.class).isEqualTo(60003L);
+        response.path("getEmployeesByIds[0].currentTitle").valueIsNull();
+        response.path("getEmployeesByIds[1].currentDepartment.departmentId").entity(String.class).isEqualTo("d002");
+        response.path("getEmployeesByIds[1].currentSalary").valueIsNull();
+        response.path("getEmployeesByIds[1].currentTitle.title").entity(String.class).isEqualTo("Manager");
+        response.path("getEmployeesByIds[2].currentDepartment.departmentId").entity(String.class).isEqualTo("d001");
+        response.path("getEmployeesByIds[2].currentSalary.amount").entity(Long.class).isEqualTo(60001L);
+        response.path("getEmployeesByIds[2].currentTitle.title").entity(String.class).isEqualTo("Engineer");
+
+        // One call per field for all the employees of the response
+        verify(departmentEmployeeService, times(1)).getCurrentDepartmentsByEmployeeIds(anyCollection());
+        verify(salaryEmployeeService, times(1)).getCurrentSalariesByEmployeeIds(anyCollection());
+        verify(titleEmployeeService, times(1)).getCurrentTitlesByEmployeeIds(anyCollection());
+    }
+
+    @Test
+    void historyArgumentsAreRejectedWithAsOf() {
+        givenEmployees();
+
+        graphQlTester.document("{ getEmployeeById(id: 10001, asOf: \"1995-06-01\") { id salaries(last: 1) { amount } } }")
+            .execute()
+            .errors().satisfy(errors -> {
+                assertEquals(1, errors.size());
+                assertEquals("getEmployeeById.salaries", errors.get(0).getPath());
+                assertEquals("INVALID_ARGUMENT", errors.get(0).getExtensions().get("code"));
+            });
+        verify(salaryEmployeeService, never()).getSalariesByEmployeeIdsAsOf(anyCollection(), any());
+        verify(salaryEmployeeService, never()).getSalariesByEmployeeIds(anyCollection(), any(), any(), any());
+    }
+
+    @Test
+    void emptyIdsReturnEmptyList() {
+        givenEmployees();
+
+        graphQlTester.document("{ getEmployeesByIds(ids: []) { id } }")
+            .execute()
+            .path("getEmployeesByIds").entityList(Object.class).hasSize(0);
+    }
+}
@@ -0,0 +1,178 @@
+package com.yoanesber.graphql_employee_management.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Load test of GradientPoolSizeLimiter against a simulated database, comparing the throughput of fixed-size pools
+ * with a pool resized by the limiter, under the same load (many client threads running short queries).
+ *
+ * The simulated database has a number of cores: up to that concurrency a query takes its base service time,
+ * beyond it queries share the cores and also pay a contention penalty (locks, context switches, cache misses),
+ * so both a pool that is too small (idle cores) and one that is too large (contention) reduce the throughput.
+ * It runs real threads for several seconds, so it is a benchmark (mvn -Pbenchmark test); GradientPoolSizeLimiterTest
+ * checks the same comparison deterministically.
+ */
+
+@Tag("benchmark")
+class AdaptivePoolSizingLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptivePoolSizingLoadTest.class);
+
+    private static final int CLIENT_THREADS = 48;
+
+    private static final int DATABASE_CORES = 8;
+
+    private static final long SERVICE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private static final double CONTENTION_PENALTY = 0.05;
+
+    private static final long RUN_NANOS = TimeUnit.SECONDS.toNanos(3);
+
+    private static final long RESIZE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // A connection pool whose size can be changed while it is in use, with the totals of InstrumentedDataSource
+    private static class SimulatedPool {
+        private int size;
+
+        private int inUse;
+
+        private int waiting;
+
+        private final LongAdder acquisitions = new LongAdder();
+
+        private final LongAdder acquireNanos = new LongAdder();
+
+        private final LongAdder usageNanos = new LongAdder();
+
+        SimulatedPool(int size) {
+            this.size = size;
+        }
+
+        synchronized void acquire() throws InterruptedException {
+            long start = System.nanoTime();
+            waiting++;
+            try {
+                while (inUse >= size) {
+                    wait();
+                }
+            } finally {
+                waiting--;
+            }
+            inUse++;
+            acquisitions.increment();
+            acquireNanos.add(System.nanoTime() - start);
+        }
+
+        synchronized void release(long usedNanos) {
+            inUse--;
+            usageNanos.add(usedNanos);
+            notifyAll();
+        }
+
+        synchronized int concurrency() {
+            return inUse;
+        }
+
+        synchronized int waiting() {
+            return waiting;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void resize(int size) {
+            this.size = size;
+            notifyAll();
+        }
+    }
+
+    // Query latency for the given number of concurrent queries
+    private static long queryNanos(int concurrency) {
+        if (concurrency <= DATABASE_CORES) {
+            return SERVICE_NANOS;
+        }
+        double sharing = (double) concurrency / DATABASE_CORES;
+        double contention = 1 + CONTENTION_PENALTY * (concurrency - DATABASE_CORES);
+        return (long) (SERVICE_NANOS * sharing * contention);
+    }
+
+    // Run the load against the pool and return the number of completed queries
+    private static long run(SimulatedPool pool, GradientPoolSizeLimiter limiter) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder completed = new LongAdder();
+        List<Thread> clients = new ArrayList<>();
+
+        for (int i = 0; i < CLIENT_THREADS; i++) {
+            Thread client = new Thread(() -> {
+                while (running.get()) {
+                    try {
+                        pool.acquire();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    LockSupport.parkNanos(queryNanos(pool.concurrency()));
+                    pool.release(System.nanoTime() - start);
+                    completed.increment();
+                }
+            });
+            client.start();
+            clients.add(client);
+        }
+
+        // Resize the pool periodically, as AdaptivePoolSizer does
+        long end = System.nanoTime() + RUN_NANOS;
+        long previousAcquisitions = 0, previousAcquireNanos = 0, previousUsageNanos = 0;
+        long previousNanos = System.nanoTime();
+        while (System.nanoTime() < end) {
+            LockSupport.parkNanos(RESIZE_INTERVAL_NANOS);
+            if (limiter == null) {
+                continue;
+            }
+
+            long now = System.nanoTime();
+            long acquisitions = pool.acquisitions.sum(), acquireNanos = pool.acquireNanos.sum(), usageNanos = pool.usageNanos.sum();
+            pool.resize(limiter.nextSize(pool.size(), new GradientPoolSizeLimiter.Sample(
+                acquisitions - previousAcquisitions, acquireNanos - previousAcquireNanos, usageNanos - previousUsageNanos,
+                pool.waiting(), now - previousNanos)));
+            previousAcquisitions = acquisitions;
+            previousAcquireNanos = acquireNanos;
+            previousUsageNanos = usageNanos;
+            previousNanos = now;
+        }
+
+        running.set(false);
+        for (Thread client : clients) {
+            client.interrupt();
+            client.join();
+        }
+        return completed.sum();
+    }
+
+    @Test
+    void adaptivePoolOutperformsFixedPools() throws InterruptedException {
+        long undersized = run(new SimulatedPool(2), null);
+        long oversized = run(new SimulatedPool(40), null);
+
+        SimulatedPool adaptivePool = new SimulatedPool(2);
+        long adaptive = run(adaptivePool, new GradientPoolSizeLimiter(2, 40, 0.1));
+
+        logger.info("Completed queries in {} s: fixed(2)={}, fixed(40)={}, adaptive={} (final size {})",
+            TimeUnit.NANOSECONDS.toSeconds(RUN_NANOS), undersized, oversized, adaptive, adaptivePool.size());
+
+        assertTrue(adaptive > undersized * 2, "Adaptive pool should use the idle database cores of an undersized pool");
+        assertTrue(adaptive > oversized * 1.2, "Adaptive pool should avoid the contention of an oversized pool");
+    }
+}
@@ -0,0 +1,148 @@
+package com.yoanesber.graphql_employee_management.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Test of GradientPoolSizeLimiter with given samples, on a simulated clock (no threads, no sleeps):
+ * - an idle interval releases one connection, and the size stays within [min-size, max-size]
+ * - waits grow the pool by sqrt(size) while the usage time stays at its baseline, and shrink it when the usage time
+ *   rises with the pool size (gradient), down to half the size
+ * - without waits, the pool shrinks by one connection per interval down to the Little's law estimate plus headroom
+ * - against a simulated database with more clients than cores, the pool settles where the database is busy but not
+ *   contended, and completes more queries than an undersized or an oversized fixed pool
+ */
+
+class GradientPoolSizeLimiterTest {
+
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private static final long USAGE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    // One interval where the given number of connections were in use all the time, each query taking usageNanos,
+    // and every acquisition waited waitNanos
+    private static GradientPoolSizeLimiter.Sample sample(double inUse, long usageNanos, long waitNanos, int threadsAwaiting) {
+        long totalUsage = (long) (inUse * INTERVAL_NANOS);
+        long acquisitions = totalUsage / usageNanos;
+        return new GradientPoolSizeLimiter.Sample(acquisitions, acquisitions * waitNanos, totalUsage, threadsAwaiting,
+            INTERVAL_NANOS);
+    }
+
+    @Test
+    void idleIntervalReleasesOneConnection() {
+        GradientPoolSizeLimiter limiter = new GradientPoolSizeLimiter(2, 20, 0.1);
+        GradientPoolSizeLimiter.Sample idle = new GradientPoolSizeLimiter.Sample(0, 0, 0, 0, INTERVAL_NANOS);
+
+        assertEquals(9, limiter.nextSize(10, idle));
+        assertEquals(2, limiter.nextSize(2, idle));
+    }
+
+    @Test
+    void waitsGrowThePoolBySqrtOfItsSize() {
+        GradientPoolSizeLimiter limiter = new GradientPoolSizeLimiter(2, 20, 0.1);
+
+        // 9 connections busy, callers waiting half the usage time: 9 + sqrt(9)
+        assertEquals(12, limiter.nextSize(9, sample(9, USAGE_NANOS, USAGE_NANOS / 2, 0)));
+
+        // Threads still waiting count even with a short wait, and the size is capped at max-size
+        assertEquals(20, limiter.nextSize(18, sample(18, USAGE_NANOS, 0, 5)));
+
+        // A wait under the threshold (10% of the usage time) is not a reason to grow
+        assertEquals(9, limiter.nextSize(9, sample(9, USAGE_NANOS, USAGE_NANOS / 20, 0)));
+    }
+
+    @Test
+    void risingUsageTimeShrinksThePoolDespiteWaits() {
+        GradientPoolSizeLimiter limiter = new GradientPoolSizeLimiter(2, 40, 0.1);
+
+        // Baseline: 2 ms per query
+        assertEquals(20, limiter.nextSize(16, sample(16, USAGE_NANOS, USAGE_NANOS, 4)));
+
+        // Queries take twice the baseline with more connections (the baseline drifts up 1% per interval):
+        // 20 x 2.02 / 4 + sqrt(20)
+        assertEquals(15, limiter.nextSize(20, sample(20, USAGE_NANOS * 2, USAGE_NANOS, 4)));
+
+        // Queries take 4 times the baseline: the gradient is bounded at 0.5, 30 x 0.5 + sqrt(30)
+        assertEquals(20, limiter.nextSize(30, sample(30, USAGE_NANOS * 4, USAGE_NANOS, 4)));
+    }
+
+    @Test
+    void withoutWaitsThePoolShrinksTowardsLittlesLaw() {
+        GradientPoolSizeLimiter limiter = new GradientPoolSizeLimiter(2, 20, 0.1);
+
+        // 3 connections in use on average: the pool shrinks one connection per interval down to ceil(3 x 1.25)
+        int size = 10;
+        for (int expected : new int[] {9, 8, 7, 6, 5, 4, 4, 4}) {
+            size = limiter.nextSize(size, sample(3, USAGE_NANOS, 0, 0));
+            assertEquals(expected, size);
+        }
+
+        // The estimate never grows the pool by itself
+        assertEquals(4, limiter.nextSize(4, sample(3.9, USAGE_NANOS, 0, 0)));
+    }
+
+    // A database with a number of cores, serving a fixed number of clients that always have a query to run (closed
+    // loop): up to the number of cores a query takes its base time; beyond it, queries share the cores and pay a
+    // contention penalty
+    private static final class SimulatedDatabase {
+        static final int CLIENTS = 48;
+
+        static final int CORES = 8;
+
+        static final double CONTENTION_PENALTY = 0.05;
+
+        static long queryNanos(int concurrency) {
+            if (concurrency <= CORES) {
+                return USAGE_NANOS;
+            }
+            double sharing = (double) concurrency / CORES;
+            double contention = 1 + CONTENTION_PENALTY * (concurrency - CORES);
+            return (long) (USAGE_NANOS * sharing * contention);
+        }
+
+        // What the pool observes during one interval at the given size
+        static GradientPoolSizeLimiter.Sample observe(int poolSize) {
+            int concurrency = Math.min(poolSize, CLIENTS);
+            long queryNanos = queryNanos(concurrency);
+            long acquisitions = concurrency * INTERVAL_NANOS / queryNanos;
+
+            // Each client cycles through waiting for a connection and running its query
+            long cycleNanos = CLIENTS * INTERVAL_NANOS / acquisitions;
+            long waitNanos = cycleNanos - queryNanos;
+            return new GradientPoolSizeLimiter.Sample(acquisitions, acquisitions * waitNanos, concurrency * INTERVAL_NANOS,
+                CLIENTS - concurrency, INTERVAL_NANOS);
+        }
+    }
+
+    // Run the simulated database for the given number of intervals and return the number of completed queries
+    private static long run(int initialSize, GradientPoolSizeLimiter limiter, int intervals, int[] finalSize) {
+        int size = initialSize;
+        long completed = 0;
+        for (int i = 0; i < intervals; i++) {
+            GradientPoolSizeLimiter.Sample sample = SimulatedDatabase.observe(size);
+            completed += sample.acquisitions();
+            if (limiter != null) {
+                size = limiter.nextSize(size, sample);
+            }
+        }
+        finalSize[0] = size;
+        return completed;
+    }
+
+    @Test
+    void adaptivePoolOutperformsFixedPools() {
+        int[] finalSize = new int[1];
+        long undersized = run(2, null, 60, finalSize);
+        long oversized = run(40, null, 60, finalSize);
+        long adaptive = run(2, new GradientPoolSizeLimiter(2, 40, 0.1), 60, finalSize);
+
+        // The pool settles around the cores of the database, neither idle nor contended
+        assertTrue(finalSize[0] >= SimulatedDatabase.CORES && finalSize[0] <= 2 * SimulatedDatabase.CORES,
+            "Final size " + finalSize[0]);
+        assertTrue(adaptive > undersized * 2, "Adaptive pool should use the idle database cores of an undersized pool");
+        assertTrue(adaptive > oversized * 1.2, "Adaptive pool should avoid the contention of an oversized pool");
+    }
+}
@@ -0,0 +1,207 @@
+package com.yoanesber.graphql_employee_management.entity;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Date;
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.ManagedEntity;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.hibernate.proxy.HibernateProxy;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Test of the Hibernate bytecode enhancement of the entities (hibernate-enhance-maven-plugin in pom.xml),
+ * on an in-memory H2 database:
+ * - the entities are enhanced with dirty tracking
+ * - lazy @ManyToOne associations (DepartmentEmployee.department) are loaded without a proxy class
+ * - association management is off: a department reference given to a new DepartmentEmployee is not loaded, and
+ *   a new child is not added to the collections of its employee (the service adds it)
+ * The benchmarks (mvn -Pbenchmark test) log the flush cost with many managed employees, one of them modified per
+ * flush as in updateEmployee, and the heap used per managed employee. They assert no gain: compared with a build
+ * without enhancement, neither improved measurably (the flush time is spent cascading over the cascade = ALL
+ * collections, not comparing snapshots, and the enhancement fields add memory per instance).
+ */
+
+class EntityEnhancementBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityEnhancementBenchmarkTest.class);
+
+    private static final int EMPLOYEES = 5000;
+
+    private static final int FLUSHES = 200;
+
+    private static SessionFactory sessionFactory;
+
+    @BeforeAll
+    static void setUp() {
+        sessionFactory = new Configuration()
+            .addAnnotatedClass(Employee.class)
+            .addAnnotatedClass(Department.class)
+            .addAnnotatedClass(DepartmentEmployee.class)
+            .addAnnotatedClass(SalaryEmployee.class)
+            .addAnnotatedClass(TitleEmployee.class)
+            .setProperty("hibernate.connection.url", "jdbc:h2:mem:enhancement;MODE=PostgreSQL;DB_CLOSE_DELAY=-1")
+            .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+            .buildSessionFactory();
+
+        // Populate one department and a few employees (the benchmarks add the others)
+        sessionFactory.inTransaction(session -> {
+            Department department = new Department();
+            department.setId("d001");
+            department.setDeptName("Marketing");
+            department.setActive(true);
+            department.setCreatedBy(1L);
+            department.setCreatedDate(OffsetDateTime.now());
+            session.persist(department);
+        });
+        populateEmployees(10);
+    }
+
+    // Add employees of the department until there are the given number of them
+    private static void populateEmployees(int count) {
+        sessionFactory.inTransaction(session -> {
+            long existing = session.createSelectionQuery("select count(*) from Employee", Long.class).getSingleResult();
+            Department department = session.getReference(Department.class, "d001");
+
+            for (long i = existing; i < count; i++) {
+                Employee employee = new Employee();
+                employee.setBirthDate(Date.valueOf("1980-01-01"));
+                employee.setFirstName("First" + i);
+                employee.setLastName("Last" + i);
+                employee.setGender("M");
+                employee.setHireDate(Date.valueOf("2000-01-01"));
+                employee.setActiveStatus(true);
+                employee.setCreatedBy(1L);
+                employee.setCreatedDate(OffsetDateTime.now());
+                employee.setUpdatedBy(1L);
+                employee.setUpdatedDate(OffsetDateTime.now());
+                session.persist(employee);
+
+                DepartmentEmployee departmentEmployee = new DepartmentEmployee(employee, department);
+                departmentEmployee.setFromDate(Date.valueOf("2000-01-01"));
+                departmentEmployee.setToDate(Date.valueOf("9999-01-01"));
+                session.persist(departmentEmployee);
+
+                if (i % 500 == 0) {
+                    session.flush();
+                    session.clear();
+                    department = session.getReference(Department.class, "d001");
+                }
+            }
+        });
+    }
+
+    @AfterAll
+    static void tearDown() {
+        sessionFactory.close();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    void entitiesAreEnhanced() {
+        try (Session session = sessionFactory.openSession()) {
+            Employee employee = session
+                .createSelectionQuery("from Employee", Employee.class)
+                .setMaxResults(1)
+                .getSingleResult();
+
+            assertTrue(employee instanceof SelfDirtinessTracker, "Employee should be enhanced with dirty tracking");
+            assertTrue(employee instanceof ManagedEntity, "Employee should be enhanced as a managed entity");
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void flushCostWithManyManagedEmployees() {
+        populateEmployees(EMPLOYEES);
+        sessionFactory.inTransaction(session -> {
+            List<Employee> employees = session.createSelectionQuery("from Employee order by id", Employee.class).getResultList();
+
+            // Modify one employee per flush
+            long start = System.nanoTime();
+            for (int i = 0; i < FLUSHES; i++) {
+                employees.get(i).setFirstName("Updated" + i);
+                session.flush();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            logger.info("Flush with {} managed employees: {} us per flush", employees.size(), elapsed / 1000 / FLUSHES);
+        });
+    }
+
+    @Test
+    @Tag("benchmark")
+    void heapPerManagedEmployee() {
+        populateEmployees(EMPLOYEES);
+        try (Session session = sessionFactory.openSession()) {
+            long before = usedHeap();
+            List<Employee> employees = session.createSelectionQuery("from Employee", Employee.class).getResultList();
+            long after = usedHeap();
+
+            logger.info("Heap per managed employee: {} bytes", (after - before) / employees.size());
+        }
+    }
+
+    @Test
+    void lazyManyToOneWithoutProxy() {
+        try (Session session = sessionFactory.openSession()) {
+            DepartmentEmployee departmentEmployee = session
+                .createSelectionQuery("from DepartmentEmployee", DepartmentEmployee.class)
+                .setMaxResults(1)
+                .getSingleResult();
+            Department department = departmentEmployee.getDepartment();
+
+            assertFalse(department instanceof HibernateProxy, "Lazy department should not be a proxy");
+            assertFalse(Hibernate.isInitialized(department), "Lazy department should not be loaded yet");
+        }
+    }
+
+    @Test
+    void departmentReferenceNotLoadedByNewDepartmentEmployee() {
+        try (Session session = sessionFactory.openSession()) {
+            Employee employee = session
+                .createSelectionQuery("from Employee", Employee.class)
+                .setMaxResults(1)
+                .getSingleResult();
+            Department department = session.getReference(Department.class, "d001");
+
+            new DepartmentEmployee(employee, department);
+
+            assertFalse(Hibernate.isInitialized(department), "Department reference should not be loaded");
+        }
+    }
+
+    @Test
+    void newChildIsNotAddedToTheEmployeeCollections() {
+        Employee employee = new Employee();
+        employee.setId(1L);
+        Department department = new Department();
+        department.setId("d001");
+
+        new DepartmentEmployee(employee, department);
+        new SalaryEmployee(employee, Date.valueOf("2000-01-01"));
+        new TitleEmployee(employee, "Engineer", Date.valueOf("2000-01-01"));
+
+        assertTrue(employee.getDepartments().isEmpty(), "Department employee should not be added by Hibernate");
+        assertTrue(employee.getSalaries().isEmpty(), "Salary should not be added by Hibernate");
+        assertTrue(employee.getTitles().isEmpty(), "Title should not be added by Hibernate");
+    }
+}
@@ -0,0 +1,211 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/*
+ * Test of ApiKeyAuthFilter with the clients of an API keys file: unknown keys are rejected with 401, known ones pass the
+ * name of their client on to the next filters, and a client over its rate or concurrency limit gets 429 with
+ * Retry-After, without affecting the other clients.
+ * An asynchronous request counts as in progress until it completes. The file is reloaded when modified,
+ * keeping the state of unchanged clients, and the token bucket stays exact under contention.
+ */
+
+class ApiKeyAuthFilterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private Path writeKeysFile(String json, Instant modified) throws Exception {
+        Path keysFile = tempDir.resolve("api-keys.json");
+        Files.writeString(keysFile, json);
+        Files.setLastModifiedTime(keysFile, FileTime.from(modified));
+        return keysFile;
+    }
+
+    private ApiKeyRegistry registry(Path keysFile) throws Exception {
+        return new ApiKeyRegistry(new ObjectMapper(), meterRegistry, "", keysFile.toString(), 0, 100, 0);
+    }
+
+    private static MockHttpServletResponse call(ApiKeyAuthFilter filter, String apiKey, HttpServlet servlet) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/graphql");
+        request.setAsyncSupported(true);
+        if (apiKey != null) {
+            request.addHeader("X-API-KEY", apiKey);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(servlet));
+        return response;
+    }
+
+    private static MockHttpServletResponse call(ApiKeyAuthFilter filter, String apiKey) throws Exception {
+        return call(filter, apiKey, new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+            }
+        });
+    }
+
+    private double requests(String client, String outcome) {
+        return meterRegistry.get("api.requests").tag("client", client).tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    void rejectsUnknownKeys() throws Exception {
+        ApiKeyAuthFilter filter = new ApiKeyAuthFilter(registry(writeKeysFile("[{\"name\": \"web\", \"key\": \"web-key\"}]", Instant.now())));
+
+        assertEquals(401, call(filter, null).getStatus());
+        assertEquals(401, call(filter, "other-key").getStatus());
+        assertEquals(200, call(filter, "web-key").getStatus());
+
+        // The client of an accepted request is passed on to the next filters (IdempotencyKeyFilter)
+        List<Object> clientNames = new ArrayList<>();
+        call(filter, "web-key", new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                clientNames.add(request.getAttribute(ApiKeyAuthFilter.CLIENT_NAME_ATTRIBUTE));
+            }
+        });
+        assertEquals(List.of("web"), clientNames);
+
+        // Other endpoints do not require a key
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), response, new MockFilterChain());
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void limitsRatePerClient() throws Exception {
+        ApiKeyAuthFilter filter = new ApiKeyAuthFilter(registry(writeKeysFile("""
+            [{"name": "batch", "key": "batch-key", "requestsPerSecond": 0.5, "burst": 3},
+             {"name": "web", "key": "web-key"}]
+            """, Instant.now())));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, call(filter, "batch-key").getStatus());
+        }
+        MockHttpServletResponse limited = call(filter, "batch-key");
+        assertEquals(429, limited.getStatus());
+        assertEquals("2", limited.getHeader("Retry-After"));
+
+        // The other clients are not affected
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, call(filter, "web-key").getStatus());
+        }
+
+        assertEquals(3, requests("batch", "allowed"));
+        assertEquals(1, requests("batch", "rate_limited"));
+        assertEquals(10, requests("web", "allowed"));
+    }
+
+    @Test
+    void limitsConcurrentRequestsUntilAsyncCompletion() throws Exception {
+        ApiKeyAuthFilter filter = new ApiKeyAuthFilter(registry(writeKeysFile(
+            "[{\"name\": \"export\", \"key\": \"export-key\", \"maxConcurrent\": 1}]", Instant.now())));
+
+        // A request that goes asynchronous, as GraphQL requests do
+        List<HttpServletRequest> started = new ArrayList<>();
+        HttpServlet asyncServlet = new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                request.startAsync();
+                started.add(request);
+            }
+        };
+
+        assertEquals(200, call(filter, "export-key", asyncServlet).getStatus());
+        MockHttpServletResponse limited = call(filter, "export-key");
+        assertEquals(429, limited.getStatus());
+        assertEquals("1", limited.getHeader("Retry-After"));
+        assertEquals(1, meterRegistry.get("api.requests.in.flight").tag("client", "export").gauge().value());
+
+        // Completing the first request frees its slot
+        started.get(0).getAsyncContext().complete();
+        assertEquals(200, call(filter, "export-key").getStatus());
+        assertEquals(1, requests("export", "concurrency_limited"));
+        assertEquals(0, meterRegistry.get("api.requests.in.flight").tag("client", "export").gauge().value());
+    }
+
+    @Test
+    void reloadsModifiedKeysFile() throws Exception {
+        Instant modified = Instant.now().minusSeconds(60);
+        Path keysFile = writeKeysFile("""
+            [{"name": "web", "key": "web-key", "requestsPerSecond": 10},
+             {"name": "batch", "key": "batch-key", "requestsPerSecond": 1}]
+            """, modified);
+        ApiKeyRegistry registry = registry(keysFile);
+        ApiClient web = registry.getClient("web-key");
+
+        // Not modified: nothing changes
+        registry.reloadIfModified();
+        assertSame(web, registry.getClient("web-key"));
+
+        // Modified: the unchanged client is kept, the removed one is unknown, the new one is added
+        writeKeysFile("""
+            [{"name": "web", "key": "web-key", "requestsPerSecond": 10},
+             {"name": "reports", "key": "reports-key", "requestsPerSecond": 2}]
+            """, modified.plusSeconds(10));
+        registry.reloadIfModified();
+        assertSame(web, registry.getClient("web-key"));
+        assertNull(registry.getClient("batch-key"));
+        assertEquals("reports", registry.getClient("reports-key").getName());
+
+        // An invalid file is ignored on reload, but rejected at startup
+        writeKeysFile("[{\"name\": \"web\", \"key\": \"web-key\"}, {\"name\": \"web\", \"key\": \"other-key\"}]", modified.plusSeconds(20));
+        registry.reloadIfModified();
+        assertSame(web, registry.getClient("web-key"));
+        assertThrows(IllegalArgumentException.class, () -> registry(keysFile));
+    }
+
+    @Test
+    void tokenBucketIsExactUnderContention() throws Exception {
+        // A slow refill, so that only the burst is available during the test
+        TokenBucket tokenBucket = new TokenBucket(0.01, 10_000);
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        if (tokenBucket.tryConsume() == 0) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(10_000, allowed.get());
+    }
+}
@@ -0,0 +1,196 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.graphql.execution.DefaultBatchLoaderRegistry;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.server.ServerWebInputException;
+import org.springframework.web.servlet.function.AsyncServerResponse;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/*
+ * Test of BatchGraphQlHttpHandler: a JSON array of operations is answered with their results in order, the
+ * operations share their DataLoaders (an employee requested by several operations is loaded once), and they run
+ * concurrently: 8 operations of 100 ms each take about 100 ms in one batch instead of 800 ms one by one.
+ * A single operation is served as before, batches that are empty or too large are rejected, and the operations
+ * that find the lane full get a SERVER_BUSY error.
+ */
+
+class BatchGraphQlHttpHandlerTest {
+
+    private static final String SCHEMA = """
+        type Query {
+            getEmployeeById(id: ID!): Employee
+            slowLookup(id: ID!): Employee
+        }
+        type Employee { id: ID, firstName: String }
+        """;
+
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final List<HttpMessageConverter<?>> CONVERTERS = List.of(new ByteArrayHttpMessageConverter(),
+        new MappingJackson2HttpMessageConverter());
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Key sets passed to the employee batch loader
+    private final List<Set<String>> loads = new CopyOnWriteArrayList<>();
+
+    private final List<BatchGraphQlHttpHandler> handlers = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        handlers.forEach(BatchGraphQlHttpHandler::close);
+    }
+
+    private BatchGraphQlHttpHandler handler(int maxConcurrency, int threads, int queueCapacity) {
+        DataFetcher<?> byId = env -> env.getDataLoader("employee").load(env.getArgument("id"));
+        DataFetcher<?> slowLookup = env -> {
+            LockSupport.parkNanos(SLOW_NANOS);
+            return Map.of("id", env.getArgument("id"));
+        };
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+            .type("Query", type -> type.dataFetcher("getEmployeeById", byId).dataFetcher("slowLookup", slowLookup))
+            .build();
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), wiring);
+
+        DefaultBatchLoaderRegistry batchLoaderRegistry = new DefaultBatchLoaderRegistry();
+        batchLoaderRegistry.<String, Map<String, Object>>forName("employee").registerMappedBatchLoader((ids, env) ->
+            Mono.fromCallable(() -> {
+                loads.add(Set.copyOf(ids));
+                Map<String, Map<String, Object>> employees = new HashMap<>();
+                ids.forEach(id -> employees.put(id, Map.of("id", id, "firstName", "Employee " + id)));
+                return employees;
+            }));
+        DefaultExecutionGraphQlService service = new DefaultExecutionGraphQlService(GraphQlSource.builder(schema).build());
+        service.addDataLoaderRegistrar(batchLoaderRegistry);
+
+        BatchGraphQlHttpHandler handler = new BatchGraphQlHttpHandler(WebGraphQlHandler.builder(service).build(),
+            objectMapper, new SimpleMeterRegistry(), 20, maxConcurrency, threads, queueCapacity);
+        handlers.add(handler);
+        return handler;
+    }
+
+    // POST a body to the handler, and return the JSON body of its response
+    private JsonNode post(BatchGraphQlHttpHandler handler, String body) throws Exception {
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("POST", "/graphql");
+        servletRequest.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        servletRequest.addHeader("Accept", MediaType.APPLICATION_JSON_VALUE);
+        servletRequest.setContent(body.getBytes(StandardCharsets.UTF_8));
+        servletRequest.setAsyncSupported(true);
+
+        ServerResponse response = handler.handleRequest(ServerRequest.create(servletRequest, CONVERTERS));
+        if (response instanceof AsyncServerResponse asyncResponse) {
+            response = asyncResponse.block();
+        }
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+        response.writeTo(servletRequest, servletResponse, () -> CONVERTERS);
+        assertEquals(200, servletResponse.getStatus());
+        return objectMapper.readTree(servletResponse.getContentAsByteArray());
+    }
+
+    private String batch(String query, int operations) throws Exception {
+        List<Map<String, Object>> batch = new ArrayList<>();
+        for (int i = 0; i < operations; i++) {
+            batch.add(Map.of("query", query, "variables", Map.of("id", String.valueOf(i % 5 + 1))));
+        }
+        return objectMapper.writeValueAsString(batch);
+    }
+
+    @Test
+    void resultsAreInOrderAndDataLoadersAreShared() throws Exception {
+        JsonNode results = post(handler(8, 16, 200),
+            batch("query Employee($id: ID!) { getEmployeeById(id: $id) { id firstName } }", 10));
+
+        assertEquals(10, results.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(String.valueOf(i % 5 + 1), results.get(i).path("data").path("getEmployeeById").path("id").asText());
+        }
+
+        // Each of the 5 employees is loaded once, although each is requested by 2 operations
+        assertEquals(5, loads.stream().mapToInt(Set::size).sum());
+    }
+
+    @Test
+    void operationsRunConcurrently() throws Exception {
+        BatchGraphQlHttpHandler handler = handler(8, 16, 200);
+        String query = "query Slow($id: ID!) { slowLookup(id: $id) { id } }";
+        post(handler, batch(query, 8));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 8; i++) {
+            post(handler, objectMapper.writeValueAsString(Map.of("query", query, "variables", Map.of("id", "1"))));
+        }
+        long oneByOne = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        JsonNode results = post(handler, batch(query, 8));
+        long batched = System.nanoTime() - start;
+
+        assertEquals(8, results.size());
+        assertTrue(batched < oneByOne / 2, "The operations of the batch did not run concurrently: "
+            + TimeUnit.NANOSECONDS.toMillis(oneByOne) + " ms one by one, " + TimeUnit.NANOSECONDS.toMillis(batched)
+            + " ms in one batch");
+    }
+
+    @Test
+    void singleOperationIsServedAsBefore() throws Exception {
+        JsonNode result = post(handler(8, 16, 200),
+            "{\"query\": \"{ getEmployeeById(id: \\\"10001\\\") { firstName } }\"}");
+
+        assertTrue(result.isObject());
+        assertEquals("Employee 10001", result.path("data").path("getEmployeeById").path("firstName").asText());
+    }
+
+    @Test
+    void emptyOrTooLargeBatchesAreRejected() throws Exception {
+        BatchGraphQlHttpHandler handler = handler(8, 16, 200);
+        assertThrows(ServerWebInputException.class, () -> post(handler, "[]"));
+        assertThrows(ServerWebInputException.class, () -> post(handler, batch("{ getEmployeeById(id: 1) { id } }", 21)));
+        assertThrows(ServerWebInputException.class, () -> post(handler, "[{\"query\": \"{ getEmployeeById(id: 1) { id } }\"}, 42]"));
+    }
+
+    @Test
+    void operationsFindingTheLaneFullAreRejected() throws Exception {
+        // One thread and no queue: the first operation runs, the others are rejected
+        JsonNode results = post(handler(8, 1, 0), batch("query Slow($id: ID!) { slowLookup(id: $id) { id } }", 3));
+
+        assertEquals("1", results.get(0).path("data").path("slowLookup").path("id").asText());
+        for (int i = 1; i < 3; i++) {
+            JsonNode error = results.get(i).path("errors").get(0);
+            assertEquals("SERVER_BUSY", error.path("extensions").path("code").asText());
+            assertEquals("batch", error.path("extensions").path("lane").asText());
+        }
+    }
+}
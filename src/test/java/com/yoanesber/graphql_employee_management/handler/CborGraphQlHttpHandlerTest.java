@@ -0,0 +1,251 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import graphql.GraphQL;
+import graphql.scalars.ExtendedScalars;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import graphql.schema.idl.TypeDefinitionRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.webmvc.AbstractGraphQlHttpHandler;
+import org.springframework.graphql.server.webmvc.GraphQlHttpHandler;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.function.AsyncServerResponse;
+import org.springframework.web.servlet.function.ServerRequest;
+import org.springframework.web.servlet.function.ServerResponse;
+
+/*
+ * Test of CborGraphQlHttpHandler, with the schema of the application and a page of 10,000 employees
+ * (scalar fields and current department, salary and title), as returned by getAllEmployees:
+ * - the CBOR response decodes to the same result as the JSON response, with and without string references
+ * - CBOR is smaller than JSON, and string references make it smaller still
+ * - benchmark (mvn -Pbenchmark test) of the size of the result and of its encoding and decoding time in JSON, CBOR,
+ *   and CBOR with string references, logged for each format
+ */
+
+class CborGraphQlHttpHandlerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CborGraphQlHttpHandlerTest.class);
+
+    private static final int EMPLOYEES = 10_000;
+
+    private static final int ITERATIONS = 20;
+
+    private static final String QUERY = """
+        {
+            getAllEmployees {
+                id birthDate firstName lastName gender hireDate activeStatus
+                createdBy createdDate updatedBy updatedDate version
+                currentDepartment { departmentId fromDate toDate }
+                currentSalary { amount fromDate toDate }
+                currentTitle { title fromDate toDate }
+            }
+        }
+        """;
+
+    private static final List<HttpMessageConverter<?>> CONVERTERS = List.of(new ByteArrayHttpMessageConverter(),
+        new MappingJackson2HttpMessageConverter());
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final CBORMapper cborMapper = new CBORMapper();
+
+    private static GraphQLSchema schema;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        TypeDefinitionRegistry registry = new TypeDefinitionRegistry();
+        for (String file : List.of("graphql/department.graphqls", "graphql/employee.graphqls")) {
+            try (InputStream inputStream = new ClassPathResource(file).getInputStream()) {
+                registry.merge(new SchemaParser().parse(inputStream));
+            }
+        }
+
+        List<Map<String, Object>> employees = new ArrayList<>(EMPLOYEES);
+        OffsetDateTime createdDate = OffsetDateTime.of(2024, 3, 1, 9, 30, 0, 0, ZoneOffset.UTC);
+        for (int i = 0; i < EMPLOYEES; i++) {
+            Map<String, Object> employee = new HashMap<>();
+            employee.put("id", 10001L + i);
+            employee.put("birthDate", "1953-09-" + String.format("%02d", i % 28 + 1));
+            employee.put("firstName", "Georgi" + i % 100);
+            employee.put("lastName", "Facello" + i % 1000);
+            employee.put("gender", i % 2 == 0 ? "M" : "F");
+            employee.put("hireDate", "1986-06-" + String.format("%02d", i % 28 + 1));
+            employee.put("activeStatus", true);
+            employee.put("createdBy", 1L);
+            employee.put("createdDate", createdDate.plusSeconds(i));
+            employee.put("updatedBy", 1L);
+            employee.put("updatedDate", createdDate.plusSeconds(2L * i));
+            employee.put("version", (long) i % 5);
+            employee.put("currentDepartment", Map.of("departmentId", "d00" + i % 9, "fromDate", "1986-06-26",
+                "toDate", "9999-01-01"));
+            employee.put("currentSalary", Map.of("amount", 40_000L + i * 7L, "fromDate", "2001-06-22",
+                "toDate", "9999-01-01"));
+            employee.put("currentTitle", Map.of("title", i % 3 == 0 ? "Senior Engineer" : "Staff", "fromDate", "1995-12-03",
+                "toDate", "9999-01-01"));
+            employees.add(employee);
+        }
+
+        DataFetcher<?> getAllEmployees = env -> employees;
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+            .scalar(ExtendedScalars.Date)
+            .scalar(ExtendedScalars.DateTime)
+            .scalar(ExtendedScalars.GraphQLLong)
+            .type("Query", type -> type.dataFetcher("getAllEmployees", getAllEmployees))
+            .build();
+        schema = new SchemaGenerator().makeExecutableSchema(registry, wiring);
+    }
+
+    private static WebGraphQlHandler webGraphQlHandler() {
+        return WebGraphQlHandler.builder(new DefaultExecutionGraphQlService(GraphQlSource.builder(schema).build())).build();
+    }
+
+    // POST the query to a handler, and return the response
+    private static MockHttpServletResponse post(AbstractGraphQlHttpHandler handler, String accept) throws Exception {
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("POST", "/graphql");
+        servletRequest.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        servletRequest.addHeader(HttpHeaders.ACCEPT, accept);
+        servletRequest.setContent(objectMapper.writeValueAsBytes(Map.of("query", QUERY)));
+        servletRequest.setAsyncSupported(true);
+
+        ServerResponse response = handler.handleRequest(ServerRequest.create(servletRequest, CONVERTERS));
+        if (response instanceof AsyncServerResponse asyncResponse) {
+            response = asyncResponse.block();
+        }
+        MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+        response.writeTo(servletRequest, servletResponse, () -> CONVERTERS);
+        assertEquals(200, servletResponse.getStatus());
+        return servletResponse;
+    }
+
+    @Test
+    void acceptsOnlyExplicitCbor() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(MediaType.parseMediaTypes("application/json, application/cbor;q=0.9"));
+        assertTrue(CborGraphQlHttpHandler.accepts(headers));
+
+        headers.setAccept(MediaType.parseMediaTypes("application/json, */*"));
+        assertFalse(CborGraphQlHttpHandler.accepts(headers));
+    }
+
+    @Test
+    void cborResponseDecodesToTheJsonResult() throws Exception {
+        WebGraphQlHandler graphQlHandler = webGraphQlHandler();
+        MockHttpServletResponse json = post(new GraphQlHttpHandler(graphQlHandler), MediaType.APPLICATION_JSON_VALUE);
+        JsonNode expected = objectMapper.readTree(json.getContentAsByteArray());
+        assertEquals(EMPLOYEES, expected.path("data").path("getAllEmployees").size());
+
+        for (boolean stringRefs : List.of(false, true)) {
+            MockHttpServletResponse cbor = post(new CborGraphQlHttpHandler(graphQlHandler, objectMapper, stringRefs),
+                MediaType.APPLICATION_CBOR_VALUE);
+
+            assertEquals(MediaType.APPLICATION_CBOR_VALUE, cbor.getContentType());
+            assertEquals(expected, cborMapper.readTree(cbor.getContentAsByteArray()));
+        }
+    }
+
+    private static ObjectMapper cborStringRefMapper() {
+        return CBORMapper.builder()
+            .enable(CBORGenerator.Feature.STRINGREF)
+            .build();
+    }
+
+    @Test
+    void cborIsSmallerThanJson() throws Exception {
+        Map<String, Object> result = GraphQL.newGraphQL(schema).build().execute(QUERY).toSpecification();
+
+        int json = objectMapper.writeValueAsBytes(result).length;
+        int cbor = cborMapper.writeValueAsBytes(result).length;
+        int cborStringRefs = cborStringRefMapper().writeValueAsBytes(result).length;
+
+        assertTrue(cbor < json, "CBOR is not smaller than JSON");
+        assertTrue(cborStringRefs < cbor, "String references do not make CBOR smaller");
+    }
+
+    @Test
+    @Tag("benchmark")
+    void encodingBenchmark() throws Exception {
+        Map<String, Object> result = GraphQL.newGraphQL(schema).build().execute(QUERY).toSpecification();
+        ObjectMapper cborStringRefMapper = cborStringRefMapper();
+
+        int json = benchmark("JSON", objectMapper, result);
+        int cbor = benchmark("CBOR", cborMapper, result);
+        int cborStringRefs = benchmark("CBOR with string references", cborStringRefMapper, result);
+
+        assertTrue(cbor < json, "CBOR is not smaller than JSON");
+        assertTrue(cborStringRefs < cbor, "String references do not make CBOR smaller");
+    }
+
+    // Log the size of the encoded result and the median time to encode and decode it; return the size
+    private static int benchmark(String format, ObjectMapper mapper, Map<String, Object> result) throws Exception {
+        byte[] encoded = mapper.writeValueAsBytes(result);
+        long[] encodeNanos = new long[ITERATIONS];
+        long[] decodeNanos = new long[ITERATIONS];
+
+        // Warm-up, then measured iterations
+        for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            encoded = mapper.writeValueAsBytes(result);
+            long encodedAt = System.nanoTime();
+            mapper.readTree(encoded);
+            long decodedAt = System.nanoTime();
+            if (i >= 0) {
+                encodeNanos[i] = encodedAt - start;
+                decodeNanos[i] = decodedAt - encodedAt;
+            }
+        }
+
+        logger.info("{} employees in {}: {} bytes ({} gzipped), encode {} ms, decode {} ms", EMPLOYEES, format,
+            encoded.length, gzippedLength(encoded), String.format("%.1f", median(encodeNanos) / 1e6),
+            String.format("%.1f", median(decodeNanos) / 1e6));
+        return encoded.length;
+    }
+
+    private static int gzippedLength(byte[] bytes) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(bytes);
+        }
+        return output.size();
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,266 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+/*
+ * Test of IdempotencyKeyFilter through MockMvc, in front of a stub /graphql endpoint that counts its executions:
+ * - a retry after completion replays the kept response without executing the mutation again
+ * - a duplicate that arrives while the first request is in flight waits for it and replays its response
+ * - a 5xx response, or a GraphQL result with errors and no data or a non-client error, releases the key
+ * - a key reused with a different body is rejected with 422
+ * - queries are never kept
+ * - keys are scoped by the API client set by ApiKeyAuthFilter, and requests without a client are not kept
+ * - at capacity, a request still in flight is never evicted: a new key is rejected with 503 until it completes
+ */
+
+class IdempotencyKeyFilterTest {
+
+    private static final String MUTATION = "{\"query\": \"mutation { deleteEmployee(id: 10001) }\"}";
+
+    private static final String OK_RESULT = "{\"data\": {\"deleteEmployee\": true}}";
+
+    // Stub of the GraphQL endpoint: returns the next response, optionally blocking until released
+    @RestController
+    static class StubGraphQlController {
+        final AtomicInteger executions = new AtomicInteger();
+        final AtomicReference<ResponseEntity<String>> nextResponse = new AtomicReference<>();
+        volatile CountDownLatch entered = new CountDownLatch(0);
+        volatile CountDownLatch release = new CountDownLatch(0);
+
+        @PostMapping(path = "/graphql", produces = MediaType.APPLICATION_JSON_VALUE)
+        ResponseEntity<String> execute(@RequestBody String body) throws InterruptedException {
+            executions.incrementAndGet();
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return nextResponse.get();
+        }
+    }
+
+    private StubGraphQlController controller;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        controller = new StubGraphQlController();
+        controller.nextResponse.set(ResponseEntity.ok(OK_RESULT));
+        mockMvc = mockMvc(100);
+    }
+
+    private MockMvc mockMvc(int maxEntries) {
+        IdempotencyKeyFilter filter = new IdempotencyKeyFilter(new ObjectMapper(), true, maxEntries, Duration.ofHours(1),
+            Duration.ofSeconds(10));
+        return MockMvcBuilders.standaloneSetup(controller).addFilters(filter).build();
+    }
+
+    // A request of the given API client (as authenticated by ApiKeyAuthFilter), or of none
+    private static MockHttpServletRequestBuilder graphql(String client, String key, String body) {
+        MockHttpServletRequestBuilder request = post("/graphql")
+            .header(IdempotencyKeyFilter.IDEMPOTENCY_KEY_HEADER, key)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(body);
+        return client == null ? request : request.requestAttr(ApiKeyAuthFilter.CLIENT_NAME_ATTRIBUTE, client);
+    }
+
+    private MockHttpServletResponse perform(String key, String body) throws Exception {
+        return perform("client", key, body);
+    }
+
+    private MockHttpServletResponse perform(String client, String key, String body) throws Exception {
+        return mockMvc.perform(graphql(client, key, body)).andReturn().getResponse();
+    }
+
+    @Test
+    void retryAfterCompletionIsReplayed() throws Exception {
+        MockHttpServletResponse first = perform("key-1", MUTATION);
+        controller.nextResponse.set(ResponseEntity.ok("{\"data\": {\"deleteEmployee\": false}}"));
+        MockHttpServletResponse retry = perform("key-1", MUTATION);
+
+        assertEquals(1, controller.executions.get());
+        assertEquals(OK_RESULT, first.getContentAsString());
+        assertNull(first.getHeader(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED_HEADER));
+        assertEquals(OK_RESULT, retry.getContentAsString());
+        assertEquals("true", retry.getHeader(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED_HEADER));
+
+        // Another key executes the mutation
+        perform("key-2", MUTATION);
+        assertEquals(2, controller.executions.get());
+    }
+
+    @Test
+    void duplicateInFlightWaitsForTheFirstRequest() throws Exception {
+        controller.entered = new CountDownLatch(1);
+        controller.release = new CountDownLatch(1);
+
+        AtomicReference<MockHttpServletResponse> first = new AtomicReference<>();
+        AtomicReference<MockHttpServletResponse> duplicate = new AtomicReference<>();
+        Thread firstThread = new Thread(() -> first.set(performUnchecked("key-1", MUTATION)));
+        firstThread.start();
+        controller.entered.await(10, TimeUnit.SECONDS);
+
+        // The duplicate waits on the response of the first request (it does not reach the endpoint)
+        Thread duplicateThread = new Thread(() -> duplicate.set(performUnchecked("key-1", MUTATION)));
+        duplicateThread.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (duplicateThread.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.TIMED_WAITING, duplicateThread.getState());
+
+        controller.release.countDown();
+        firstThread.join(10_000);
+        duplicateThread.join(10_000);
+
+        assertEquals(1, controller.executions.get());
+        assertEquals(OK_RESULT, first.get().getContentAsString());
+        assertEquals(OK_RESULT, duplicate.get().getContentAsString());
+        assertEquals("true", duplicate.get().getHeader(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED_HEADER));
+    }
+
+    private MockHttpServletResponse performUnchecked(String key, String body) {
+        try {
+            return perform(key, body);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void serverErrorReleasesTheKey() throws Exception {
+        controller.nextResponse.set(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("{\"error\": \"busy\"}"));
+        assertEquals(503, perform("key-1", MUTATION).getStatus());
+
+        controller.nextResponse.set(ResponseEntity.ok(OK_RESULT));
+        MockHttpServletResponse retry = perform("key-1", MUTATION);
+
+        assertEquals(2, controller.executions.get());
+        assertEquals(OK_RESULT, retry.getContentAsString());
+        assertNull(retry.getHeader(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED_HEADER));
+    }
+
+    @Test
+    void graphQlErrorsWithoutDataReleaseTheKey() throws Exception {
+        // An INTERNAL_ERROR (e.g. a transient database error), with the mutation field resolved to null
+        controller.nextResponse.set(ResponseEntity.ok("{\"errors\": [{\"message\": \"connection reset\", "
+            + "\"extensions\": {\"classification\": \"INTERNAL_ERROR\"}}], \"data\": {\"deleteEmployee\": null}}"));
+        perform("key-1", MUTATION);
+
+        controller.nextResponse.set(ResponseEntity.ok(OK_RESULT));
+        assertEquals(OK_RESULT, perform("key-1", MUTATION).getContentAsString());
+        assertEquals(2, controller.executions.get());
+    }
+
+    @Test
+    void conflictErrorsReleaseTheKey() throws Exception {
+        // A CONFLICT from a concurrent update, next to data of another field of the document
+        controller.nextResponse.set(ResponseEntity.ok("{\"errors\": [{\"message\": \"modified\", \"path\": [\"b\"], "
+            + "\"extensions\": {\"classification\": \"CONFLICT\"}}], \"data\": {\"a\": true, \"b\": null}}"));
+        perform("key-1", MUTATION);
+        perform("key-1", MUTATION);
+
+        assertEquals(2, controller.executions.get());
+    }
+
+    @Test
+    void clientErrorsWithDataAreReplayed() throws Exception {
+        String notFound = "{\"errors\": [{\"message\": \"not found\", \"path\": [\"b\"], "
+            + "\"extensions\": {\"classification\": \"NOT_FOUND\"}}], \"data\": {\"a\": true, \"b\": null}}";
+        controller.nextResponse.set(ResponseEntity.ok(notFound));
+        perform("key-1", MUTATION);
+        MockHttpServletResponse retry = perform("key-1", MUTATION);
+
+        assertEquals(1, controller.executions.get());
+        assertEquals(notFound, retry.getContentAsString());
+    }
+
+    @Test
+    void keyReusedWithDifferentBodyIsRejected() throws Exception {
+        perform("key-1", MUTATION);
+        MockHttpServletResponse reused = perform("key-1", "{\"query\": \"mutation { deleteEmployee(id: 10002) }\"}");
+
+        assertEquals(422, reused.getStatus());
+        assertEquals(1, controller.executions.get());
+    }
+
+    @Test
+    void queriesAreNotKept() throws Exception {
+        String query = "{\"query\": \"{ getEmployeeById(id: 10001) { id } }\"}";
+        perform("key-1", query);
+        perform("key-1", query);
+
+        assertEquals(2, controller.executions.get());
+    }
+
+    @Test
+    void keysAreScopedByClient() throws Exception {
+        perform("client-a", "key-1", MUTATION);
+        perform("client-b", "key-1", MUTATION);
+        assertEquals(2, controller.executions.get());
+
+        // Without an authenticated client, nothing is kept
+        perform(null, "key-1", MUTATION);
+        MockHttpServletResponse anonymous = perform(null, "key-1", MUTATION);
+        assertEquals(4, controller.executions.get());
+        assertNull(anonymous.getHeader(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED_HEADER));
+    }
+
+    @Test
+    void inFlightRequestsAreNotEvictedAtCapacity() throws Exception {
+        mockMvc = mockMvc(1);
+        controller.entered = new CountDownLatch(1);
+        controller.release = new CountDownLatch(1);
+
+        // key-1 fills the store and stays in flight
+        AtomicReference<MockHttpServletResponse> first = new AtomicReference<>();
+        Thread firstThread = new Thread(() -> first.set(performUnchecked("key-1", MUTATION)));
+        firstThread.start();
+        controller.entered.await(10, TimeUnit.SECONDS);
+
+        // A new key is rejected instead of evicting it, and is not executed
+        MockHttpServletResponse rejected = perform("key-2", MUTATION);
+        assertEquals(503, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        assertEquals(1, controller.executions.get());
+
+        // A retry of key-1 still finds it and waits for it, instead of executing the mutation a second time
+        AtomicReference<MockHttpServletResponse> retry = new AtomicReference<>();
+        Thread retryThread = new Thread(() -> retry.set(performUnchecked("key-1", MUTATION)));
+        retryThread.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (retryThread.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        controller.release.countDown();
+        firstThread.join(10_000);
+        retryThread.join(10_000);
+        assertEquals(1, controller.executions.get());
+        assertEquals(OK_RESULT, first.get().getContentAsString());
+        assertEquals("true", retry.get().getHeader(IdempotencyKeyFilter.IDEMPOTENT_REPLAYED_HEADER));
+
+        // Once key-1 has completed, it is evicted for key-2
+        assertEquals(OK_RESULT, perform("key-2", MUTATION).getContentAsString());
+        assertEquals(2, controller.executions.get());
+    }
+}
@@ -0,0 +1,128 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.function.RouterFunctions;
+
+/*
+ * Test of MultipartGraphQlHttpHandler through MockMvc, with a deferred field whose data fetcher completes only when
+ * the test says so:
+ * - the initial part is written and the servlet thread released while the deferred field is still being fetched
+ * - the deferred part follows the initial part once its data fetcher completes, then the stream is closed
+ */
+
+class MultipartGraphQlHttpHandlerTest {
+
+    private static final String SCHEMA = """
+        directive @defer(if: Boolean! = true, label: String) on FRAGMENT_SPREAD | INLINE_FRAGMENT
+        type Query { employee: Employee }
+        type Employee { id: ID firstName: String salaryHistory: String }
+        """;
+
+    private static final String QUERY = "{ employee { id firstName ... @defer { salaryHistory } } }";
+
+    private static final String END_DELIMITER = "\r\n-----\r\n";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private CompletableFuture<String> salaryHistory;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        salaryHistory = new CompletableFuture<>();
+        DataFetcher<?> employee = env -> Map.of("id", "10001", "firstName", "Georgi");
+        DataFetcher<?> deferred = env -> salaryHistory;
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+            .type("Query", type -> type.dataFetcher("employee", employee))
+            .type("Employee", type -> type.dataFetcher("salaryHistory", deferred))
+            .build();
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), wiring);
+
+        WebGraphQlHandler graphQlHandler = WebGraphQlHandler
+            .builder(new DefaultExecutionGraphQlService(GraphQlSource.builder(schema).build()))
+            .interceptor(new IncrementalDeliveryInterceptor())
+            .build();
+        MultipartGraphQlHttpHandler handler = new MultipartGraphQlHttpHandler(graphQlHandler, objectMapper);
+        mockMvc = MockMvcBuilders.routerFunctions(RouterFunctions.route().POST("/graphql", handler::handleRequest).build())
+            .build();
+    }
+
+    private MvcResult perform(String query) throws Exception {
+        return mockMvc.perform(post("/graphql")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.ACCEPT, "multipart/mixed")
+                .content(objectMapper.writeValueAsBytes(Map.of("query", query))))
+            .andReturn();
+    }
+
+    @Test
+    void initialPartIsWrittenBeforeTheDeferredPart() throws Exception {
+        // The request writes the initial part and returns without waiting for the deferred field
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        MvcResult result;
+        try {
+            result = executor.submit(() -> perform(QUERY)).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(result.getRequest().isAsyncStarted());
+
+        MockHttpServletResponse response = result.getResponse();
+        assertTrue(response.getContentType().startsWith("multipart/mixed"));
+        String initial = response.getContentAsString();
+        assertTrue(initial.contains("\"firstName\":\"Georgi\""), initial);
+        assertTrue(initial.contains("\"hasNext\":true"), initial);
+        assertFalse(initial.contains("salaryHistory"), initial);
+        assertFalse(initial.endsWith(END_DELIMITER), initial);
+
+        // The deferred part is written when its data fetcher completes, then the stream is closed
+        salaryHistory.complete("40000, 42000");
+        result.getAsyncResult(10_000);
+
+        String content = response.getContentAsString();
+        assertTrue(content.endsWith(END_DELIMITER), content);
+        assertTrue(content.startsWith(initial), content);
+        String deferred = content.substring(initial.length());
+        assertTrue(deferred.contains("\"salaryHistory\":\"40000, 42000\""), deferred);
+        assertTrue(deferred.contains("\"hasNext\":false"), deferred);
+        assertEquals(2, content.split("\r\n---\r\n", -1).length - 1, content);
+    }
+
+    @Test
+    void requestWithoutDeferIsASinglePart() throws Exception {
+        MvcResult result = perform("{ employee { id } }");
+        result.getAsyncResult(10_000);
+
+        String content = result.getResponse().getContentAsString();
+        assertTrue(content.contains("{\"data\":{\"employee\":{\"id\":\"10001\"}}}"), content);
+        assertTrue(content.endsWith(END_DELIMITER), content);
+        assertEquals(1, content.split("\r\n---\r\n", -1).length - 1, content);
+    }
+}
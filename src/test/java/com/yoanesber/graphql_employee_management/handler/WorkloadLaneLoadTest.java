@@ -0,0 +1,261 @@
+package com.yoanesber.graphql_employee_management.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import graphql.ExecutionResult;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.graphql.execution.DefaultExecutionGraphQlService;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+import org.springframework.http.HttpHeaders;
+import reactor.core.publisher.Mono;
+
+/*
+ * Load test of WorkloadLaneInterceptor against a simulated database with a pool of 10 connections:
+ * point lookups take 2 ms, getAllEmployees takes 100 ms. The p99 latency of the point lookups is measured
+ * alone, then while 32 clients flood getAllEmployees, without and with the lanes.
+ * Without lanes, the heavy queries hold every connection and the lookups queue behind them; with lanes,
+ * the heavy lane holds at most 4 connections and its excess is rejected with SERVER_BUSY, so the lookups keep
+ * their latency. This measurement runs for about 10 s and depends on the machine, so it is a benchmark
+ * (mvn -Pbenchmark test).
+ * The default run checks the same isolation with blocked heavy operations instead of timings (a full heavy lane
+ * rejects the excess right away, and lookups still run in the light lane), and the classification of operations
+ * (heavy fields through fragments, slow history).
+ */
+
+class WorkloadLaneLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkloadLaneLoadTest.class);
+
+    private static final int POOL_SIZE = 10;
+
+    private static final int LIGHT_CLIENTS = 4;
+
+    private static final int HEAVY_CLIENTS = 32;
+
+    private static final long LOOKUP_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private static final long SCAN_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long RUN_NANOS = TimeUnit.SECONDS.toNanos(3);
+
+    private static final String SCHEMA = """
+        type Query {
+            getEmployeeById(id: ID!): Employee
+            getAllEmployees: [Employee]
+            getAllDepartments: [Department]
+            getDepartmentById(id: ID!): Department
+        }
+        type Employee { id: ID }
+        type Department { id: ID, employees: [Employee] }
+        """;
+
+    private static final String LOOKUP = "query Lookup($id: ID!) { getEmployeeById(id: $id) { id } }";
+
+    private static final String SCAN = "query Scan { getAllEmployees { id } }";
+
+    // A query on the simulated database: hold a connection of the pool during the service time
+    private static Object query(Semaphore pool, long serviceNanos) throws InterruptedException {
+        pool.acquire();
+        try {
+            LockSupport.parkNanos(serviceNanos);
+            return Map.of("id", "10001");
+        } finally {
+            pool.release();
+        }
+    }
+
+    private static WebGraphQlHandler handler(Semaphore pool, WebGraphQlInterceptor interceptor) {
+        DataFetcher<?> lookup = env -> query(pool, LOOKUP_NANOS);
+        DataFetcher<?> scan = env -> List.of(query(pool, SCAN_NANOS));
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+            .type("Query", type -> type.dataFetcher("getEmployeeById", lookup).dataFetcher("getAllEmployees", scan))
+            .build();
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), wiring);
+
+        WebGraphQlHandler.Builder builder = WebGraphQlHandler.builder(new DefaultExecutionGraphQlService(GraphQlSource.builder(schema).build()));
+        return interceptor != null ? builder.interceptor(interceptor).build() : builder.build();
+    }
+
+    private static WebGraphQlRequest request(String document, Map<String, Object> variables) {
+        return new WebGraphQlRequest(URI.create("http://localhost/graphql"), new HttpHeaders(), null, null, Map.of(),
+            Map.of("query", document, "variables", variables), String.valueOf(System.nanoTime()), null);
+    }
+
+    private static WorkloadLaneInterceptor lanes() {
+        return new WorkloadLaneInterceptor(new SimpleMeterRegistry(), List.of("getAllEmployees", "employees"),
+            Duration.ofMillis(50), 16, 200, 4, 20);
+    }
+
+    // Run the lookups (and the heavy load) and return the p99 latency of the lookups, in ms
+    private static double lookupP99(WebGraphQlHandler handler, boolean heavyLoad, LongAdder rejected) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> clients = new ArrayList<>();
+
+        for (int i = 0; i < LIGHT_CLIENTS; i++) {
+            clients.add(Thread.ofPlatform().start(() -> {
+                while (running.get()) {
+                    long start = System.nanoTime();
+                    WebGraphQlResponse response = handler.handleRequest(request(LOOKUP, Map.of("id", "10001"))).block();
+                    latencies.add(System.nanoTime() - start);
+                    assertTrue(response.getErrors().isEmpty());
+                }
+            }));
+        }
+        for (int i = 0; heavyLoad && i < HEAVY_CLIENTS; i++) {
+            clients.add(Thread.ofPlatform().start(() -> {
+                while (running.get()) {
+                    WebGraphQlResponse response = handler.handleRequest(request(SCAN, Map.of())).block();
+                    if (!response.getErrors().isEmpty()) {
+                        // Rejected: back off as a client would
+                        assertEquals("SERVER_BUSY", response.getErrors().get(0).getExtensions().get("code"));
+                        rejected.increment();
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+                    }
+                }
+            }));
+        }
+
+        LockSupport.parkNanos(RUN_NANOS);
+        running.set(false);
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        // Skip the warm-up
+        List<Long> sorted = new ArrayList<>(latencies.subList(latencies.size() / 10, latencies.size()));
+        Collections.sort(sorted);
+        return sorted.get((int) (sorted.size() * 0.99)) / 1e6;
+    }
+
+    @Test
+    @Tag("benchmark")
+    void lookupLatencyStaysFlatUnderHeavyLoad() throws InterruptedException {
+        LongAdder rejected = new LongAdder();
+        double alone = lookupP99(handler(new Semaphore(POOL_SIZE, true), null), false, rejected);
+        double shared = lookupP99(handler(new Semaphore(POOL_SIZE, true), null), true, rejected);
+
+        WorkloadLaneInterceptor interceptor = lanes();
+        double isolated;
+        try {
+            isolated = lookupP99(handler(new Semaphore(POOL_SIZE, true), interceptor), true, rejected);
+        } finally {
+            interceptor.destroy();
+        }
+
+        logger.info("Lookup p99: alone={} ms, with heavy load: shared={} ms, lanes={} ms ({} heavy rejected)",
+            String.format("%.1f", alone), String.format("%.1f", shared), String.format("%.1f", isolated), rejected.sum());
+
+        assertTrue(shared > 10 * isolated, "Without lanes, lookups should queue behind the heavy queries");
+        assertTrue(isolated < alone * 3 + 5, "With lanes, the lookup p99 should stay close to its latency alone");
+        assertTrue(rejected.sum() > 0, "The excess of heavy queries should be rejected");
+    }
+
+    @Test
+    void fullHeavyLaneRejectsWithoutBlockingLookups() throws Exception {
+        WorkloadLaneInterceptor interceptor = lanes();
+        AtomicInteger running = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(4);
+        CountDownLatch release = new CountDownLatch(1);
+        WebGraphQlInterceptor.Chain chain = request -> Mono.fromCallable(() -> {
+            if (request.getDocument().equals(SCAN)) {
+                running.incrementAndGet();
+                started.countDown();
+                release.await(10, TimeUnit.SECONDS);
+            }
+            return new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(request.toExecutionInput(),
+                ExecutionResult.newExecutionResult().data(Map.of()).build()));
+        });
+
+        try {
+            // 4 heavy operations hold the threads of the heavy lane, 20 more wait for one
+            List<CompletableFuture<WebGraphQlResponse>> heavy = new ArrayList<>();
+            for (int i = 0; i < 24; i++) {
+                heavy.add(interceptor.intercept(request(SCAN, Map.of()), chain).toFuture());
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            assertEquals(4, running.get());
+
+            // The lane is full: the next one is rejected right away
+            WebGraphQlResponse busy = interceptor.intercept(request(SCAN, Map.of()), chain).block(Duration.ofSeconds(1));
+            assertEquals("SERVER_BUSY", busy.getErrors().get(0).getExtensions().get("code"));
+            assertEquals("heavy", busy.getErrors().get(0).getExtensions().get("lane"));
+
+            // Lookups still run, in the light lane
+            WebGraphQlResponse lookup = interceptor.intercept(request(LOOKUP, Map.of("id", "1")), chain).block(Duration.ofSeconds(10));
+            assertTrue(lookup.getErrors().isEmpty());
+
+            release.countDown();
+            for (CompletableFuture<WebGraphQlResponse> response : heavy) {
+                assertTrue(response.get(10, TimeUnit.SECONDS).getErrors().isEmpty());
+            }
+            assertEquals(24, running.get());
+        } finally {
+            release.countDown();
+            interceptor.destroy();
+        }
+    }
+
+    @Test
+    void classifiesOperations() {
+        WorkloadLaneInterceptor interceptor = lanes();
+        AtomicReference<String> thread = new AtomicReference<>();
+        AtomicReference<Long> delayNanos = new AtomicReference<>(0L);
+        WebGraphQlInterceptor.Chain chain = request -> Mono.fromSupplier(() -> {
+            thread.set(Thread.currentThread().getName());
+            LockSupport.parkNanos(delayNanos.get());
+            return new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(request.toExecutionInput(),
+                ExecutionResult.newExecutionResult().build()));
+        });
+
+        try {
+            interceptor.intercept(request(LOOKUP, Map.of("id", "1")), chain).block();
+            assertTrue(thread.get().startsWith("graphql-light-"));
+
+            // A heavy field selected through a fragment
+            interceptor.intercept(request("{ getDepartmentById(id: 1) { ...members } } fragment members on Department { employees { id } }",
+                Map.of()), chain).block();
+            assertTrue(thread.get().startsWith("graphql-heavy-"));
+
+            // An operation that turns out to be slow moves to the heavy lane
+            String departments = "{ getAllDepartments { id } }";
+            delayNanos.set(TimeUnit.MILLISECONDS.toNanos(80));
+            interceptor.intercept(request(departments, Map.of()), chain).block();
+            assertTrue(thread.get().startsWith("graphql-light-"));
+            interceptor.intercept(request(departments, Map.of()), chain).block();
+            assertTrue(thread.get().startsWith("graphql-heavy-"));
+        } finally {
+            interceptor.destroy();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.yoanesber.graphql_employee_management.loader;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Test of the bulk loader of the employees sample dump files:
+ * - DumpFileParser handles escapes, NULL and several INSERT statements, and streams a generated salaries dump
+ * - EmployeesDumpLoader loads generated dump files into an in-memory H2 database (multi-row INSERTs) in foreign key order,
+ *   restarts the employee identity after the loaded ids, and rolls a file back when one of its rows fails
+ * The rows/s of the parser (on the 2.8M rows of the salaries dump) and of the loader are measured by benchmarks
+ * (mvn -Pbenchmark test); COPY on PostgreSQL is not covered here.
+ */
+
+class EmployeesDumpLoaderTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmployeesDumpLoaderTest.class);
+
+    private static final int EMPLOYEES = 1_000;
+
+    private static final int BENCHMARK_EMPLOYEES = 10_000;
+
+    private static final int SALARY_DUMP_ROWS = 2_844_047;
+
+    private static final String[] DEPARTMENTS = {"d001", "d002", "d003", "d004", "d005", "d006", "d007", "d008", "d009"};
+
+    @TempDir
+    Path dumpDir;
+
+    private JdbcDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:loader" + System.nanoTime() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+
+        // Schema of the migrations, without the partitions and indexes
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE employee (id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, birth_date date NOT NULL,"
+                + " first_name varchar(20) NOT NULL, last_name varchar(20), gender varchar(1) NOT NULL, hire_date date NOT NULL,"
+                + " active boolean NOT NULL, created_by bigint NOT NULL, created_date timestamp with time zone NOT NULL,"
+                + " updated_by bigint NOT NULL, updated_date timestamp with time zone NOT NULL, version bigint NOT NULL)");
+            statement.execute("CREATE TABLE department (id varchar(4) PRIMARY KEY, dept_name varchar(40) NOT NULL, active boolean NOT NULL,"
+                + " created_by bigint NOT NULL, created_date timestamp with time zone NOT NULL, updated_by bigint NOT NULL,"
+                + " updated_date timestamp with time zone NOT NULL, version bigint NOT NULL)");
+            statement.execute("CREATE TABLE department_employee (employee_id bigint NOT NULL REFERENCES employee(id),"
+                + " department_id varchar(255) NOT NULL REFERENCES department(id), from_date date NOT NULL, to_date date NOT NULL,"
+                + " PRIMARY KEY (employee_id, department_id))");
+            statement.execute("CREATE TABLE salary (employee_id bigint NOT NULL REFERENCES employee(id), amount bigint NOT NULL,"
+                + " from_date date NOT NULL, to_date date NOT NULL, PRIMARY KEY (employee_id, from_date))");
+            statement.execute("CREATE TABLE title (employee_id bigint NOT NULL REFERENCES employee(id), title varchar(50) NOT NULL,"
+                + " from_date date NOT NULL, to_date date, PRIMARY KEY (employee_id, title, from_date))");
+        }
+    }
+
+    private EmployeesDumpLoader loader() {
+        return new EmployeesDumpLoader(dataSource, 1000, 5, 0, Duration.ofSeconds(1));
+    }
+
+    // Write a dump file with INSERT statements of 1000 tuples, one tuple per line as in the sample dataset
+    private void writeDump(String fileName, String table, int rows, IntFunction<String> tuple) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(dumpDir.resolve(fileName))) {
+            for (int i = 0; i < rows; i++) {
+                writer.write(i % 1000 == 0 ? "INSERT INTO `" + table + "` VALUES " : ",\n");
+                writer.write(tuple.apply(i));
+                if (i % 1000 == 999 || i == rows - 1) {
+                    writer.write(";\n");
+                }
+            }
+        }
+    }
+
+    private void writeDataset(int employees, String missingDepartment) throws IOException {
+        writeDump("load_departments.dump", "departments", DEPARTMENTS.length,
+            i -> "('" + DEPARTMENTS[i] + "','Department " + i + "')");
+        writeDump("load_employees.dump", "employees", employees,
+            i -> "(" + (10001 + i) + ",'1960-01-01','First" + i + "','Last\\'" + i + "','M','1990-01-01')");
+        writeDump("load_dept_emp.dump", "dept_emp", employees,
+            i -> "(" + (10001 + i) + ",'" + (i == 0 && missingDepartment != null ? missingDepartment : DEPARTMENTS[i % DEPARTMENTS.length])
+                + "','1990-01-01','9999-01-01')");
+        writeDump("load_dept_manager.dump", "dept_manager", 2, i -> "(" + (10001 + i) + ",'d001','1990-01-01','9999-01-01')");
+        writeDump("load_titles.dump", "titles", employees, i -> "(" + (10001 + i) + ",'Engineer','1990-01-01',NULL)");
+        for (int file = 1; file <= 3; file++) {
+            int year = 1990 + file * 3;
+            writeDump("load_salaries" + file + ".dump", "salaries", employees * 3,
+                i -> "(" + (10001 + i / 3) + ",60000,'" + (year + i % 3) + "-01-01','" + (year + i % 3 + 1) + "-01-01')");
+        }
+    }
+
+    private long count(String table) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    @Test
+    void parsesEscapesNullsAndStatements() throws IOException {
+        String dump = "-- MySQL dump\n"
+            + "INSERT INTO `titles` VALUES (10001,'Senior \\'Staff\\'','1986-06-26',NULL),\n"
+            + "(10002, 'It''s', '1996-08-03' , '9999-01-01');\n"
+            + "INSERT INTO `titles` VALUES (10003,'Tab\\tNew\\nLine','1995-12-03','9999-01-01');\n";
+
+        List<String[]> rows = new ArrayList<>();
+        long count = new DumpFileParser(new StringReader(dump), 4).parse(rows::add);
+
+        assertEquals(3, count);
+        assertArrayEquals(new String[] {"10001", "Senior 'Staff'", "1986-06-26", null}, rows.get(0));
+        assertArrayEquals(new String[] {"10002", "It's", "1996-08-03", "9999-01-01"}, rows.get(1));
+        assertArrayEquals(new String[] {"10003", "Tab\tNew\nLine", "1995-12-03", "9999-01-01"}, rows.get(2));
+
+        assertThrows(IOException.class, () -> new DumpFileParser(new StringReader(dump), 3).parse(row -> { }));
+    }
+
+    // A salaries dump of the given number of rows, generated while it is read so that it is never held in memory
+    private static Reader salariesDump(int rows) {
+        return new Reader() {
+            private int next;
+
+            private String pending = "";
+
+            private int offset;
+
+            @Override
+            public int read(char[] buffer, int off, int len) {
+                if (offset == pending.length()) {
+                    if (next == rows) {
+                        return -1;
+                    }
+                    StringBuilder chunk = new StringBuilder(64 * 1024);
+                    while (chunk.length() < 60 * 1024 && next < rows) {
+                        chunk.append(next % 1000 == 0 ? "INSERT INTO `salaries` VALUES " : ",\n")
+                            .append('(').append(10001 + next / 10).append(",60117,'1986-06-26','1987-06-26')");
+                        if (next % 1000 == 999 || next == rows - 1) {
+                            chunk.append(";\n");
+                        }
+                        next++;
+                    }
+                    pending = chunk.toString();
+                    offset = 0;
+                }
+                int count = Math.min(len, pending.length() - offset);
+                pending.getChars(offset, offset + count, buffer, off);
+                offset += count;
+                return count;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Test
+    void parserStreamsGeneratedDump() throws IOException {
+        // Many chunks of the generated dump, with INSERT statements and rows across the chunk boundaries
+        int rows = 100_000;
+
+        assertEquals(rows, new DumpFileParser(salariesDump(rows), 4).parse(row -> { }));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void parserThroughput() throws IOException {
+        long start = System.nanoTime();
+        long count = new DumpFileParser(salariesDump(SALARY_DUMP_ROWS), 4).parse(row -> { });
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        logger.info("Parsed {} salary rows in {} s ({} rows/s)", count, String.format("%.2f", seconds), Math.round(count / seconds));
+        assertEquals(SALARY_DUMP_ROWS, count);
+    }
+
+    @Test
+    void loadsDumpFilesInForeignKeyOrder() throws Exception {
+        writeDataset(EMPLOYEES, null);
+
+        Map<DumpTable, Long> rows = loader().load(dumpDir);
+
+        assertEquals(DEPARTMENTS.length, count("department"));
+        assertEquals(EMPLOYEES, count("employee"));
+        assertEquals(EMPLOYEES, count("department_employee"));
+        assertEquals(EMPLOYEES, count("title"));
+        assertEquals(EMPLOYEES * 9L, count("salary"));
+        assertEquals(EMPLOYEES * 9L, rows.get(DumpTable.SALARY));
+
+        // New employees get ids after the loaded ones
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO employee (birth_date, first_name, gender, hire_date, active, created_by, created_date,"
+                + " updated_by, updated_date, version) VALUES (DATE '1990-01-01', 'New', 'F', DATE '2020-01-01', true, 0,"
+                + " CURRENT_TIMESTAMP, 0, CURRENT_TIMESTAMP, 0)");
+            try (ResultSet resultSet = statement.executeQuery("SELECT MAX(id) FROM employee")) {
+                resultSet.next();
+                assertEquals(10001 + EMPLOYEES, resultSet.getLong(1));
+            }
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void loaderThroughput() throws Exception {
+        writeDataset(BENCHMARK_EMPLOYEES, null);
+
+        long start = System.nanoTime();
+        Map<DumpTable, Long> rows = loader().load(dumpDir);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long total = rows.values().stream().mapToLong(Long::longValue).sum();
+        logger.info("Loaded {} rows into H2 in {} s ({} rows/s)", total, String.format("%.2f", seconds), Math.round(total / seconds));
+        assertEquals(BENCHMARK_EMPLOYEES * 9L, count("salary"));
+    }
+
+    @Test
+    void rollsBackFileWithFailingRow() throws Exception {
+        writeDataset(EMPLOYEES, "d999");
+
+        assertThrows(SQLException.class, () -> loader().load(dumpDir));
+        assertEquals(EMPLOYEES, count("employee"));
+        assertEquals(0, count("department_employee"));
+    }
+}
@@ -0,0 +1,203 @@
+package com.yoanesber.graphql_employee_management.monitoring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import graphql.ExecutionInput;
+import graphql.GraphQL;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import com.yoanesber.graphql_employee_management.datasource.InstrumentedDataSource;
+
+/*
+ * Test of SlowOperationRecorder on a small schema whose data fetchers run SQL through InstrumentedDataSource (H2):
+ * a slow operation is recorded with its field timings, SQL statements and variable shapes, fast operations are not
+ * (unless sampled), and the ring buffer keeps only the last operations.
+ * The overhead of the recorder on fast operations that are not recorded is measured by a benchmark
+ * (mvn -Pbenchmark test), as it depends on the machine and the JIT.
+ */
+
+class SlowOperationRecorderTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowOperationRecorderTest.class);
+
+    // Maximum overhead of the recorder on a fast operation that is not recorded
+    private static final double MAX_OVERHEAD = 0.25;
+
+    private static final String SCHEMA = """
+        type Query {
+            employees(ids: [ID!]!, filter: Filter): [Employee]
+            slow(millis: Int!): Int
+        }
+        input Filter { name: String, active: Boolean }
+        type Employee { id: ID, name: String, salary: Int }
+        """;
+
+    private InstrumentedDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:slow;DB_CLOSE_DELAY=-1");
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("meterRegistry", new SimpleMeterRegistry());
+        dataSource = new InstrumentedDataSource(h2, beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    private void query() {
+        try (Connection connection = dataSource.getConnection();
+            PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+            statement.executeQuery().close();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private GraphQL graphQL(SlowOperationRecorder recorder) {
+        DataFetcher<?> employees = env -> {
+            query();
+            List<String> ids = env.getArgument("ids");
+            return ids.stream().map(id -> Map.of("id", id, "name", "Employee " + id)).toList();
+        };
+        DataFetcher<?> salary = env -> {
+            query();
+            return 60000;
+        };
+        DataFetcher<?> slow = env -> {
+            Thread.sleep(env.<Integer>getArgument("millis"));
+            return 1;
+        };
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+            .type("Query", type -> type.dataFetcher("employees", employees).dataFetcher("slow", slow))
+            .type("Employee", type -> type.dataFetcher("salary", salary))
+            .build();
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), wiring);
+
+        GraphQL.Builder builder = GraphQL.newGraphQL(schema);
+        return recorder != null ? builder.instrumentation(recorder).build() : builder.build();
+    }
+
+    private static ExecutionInput employeesQuery() {
+        Map<String, Object> filter = new LinkedHashMap<>();
+        filter.put("name", "Georgi");
+        filter.put("active", true);
+        return ExecutionInput.newExecutionInput()
+            .query("query Employees($ids: [ID!]!, $filter: Filter) { employees(ids: $ids, filter: $filter) { id name salary } }")
+            .variables(Map.of("ids", List.of("1", "2", "3"), "filter", filter))
+            .build();
+    }
+
+    @Test
+    void recordsSlowOperation() {
+        SlowOperationRecorder recorder = new SlowOperationRecorder(Duration.ofMillis(50), 0, 10);
+        GraphQL graphQL = graphQL(recorder);
+
+        // The first execution loads the classes, and may be slow
+        graphQL.execute(employeesQuery());
+        recorder.clear();
+        graphQL.execute(employeesQuery());
+        assertTrue(recorder.getOperations().isEmpty(), "A fast operation should not be recorded");
+
+        graphQL.execute(ExecutionInput.newExecutionInput()
+            .query("{ slow(millis: 60) employees(ids: [\"1\", \"2\"]) { id salary } }").build());
+
+        List<SlowOperation> operations = recorder.getOperations();
+        assertEquals(1, operations.size());
+        SlowOperation operation = operations.get(0);
+        assertTrue(operation.slow());
+        assertEquals("query slow", operation.operation());
+        assertEquals(16, operation.documentHash().length());
+        assertTrue(operation.durationMillis() >= 60);
+        assertEquals(3, operation.sqlStatements(), "One query for employees and one per salary");
+        assertEquals("slow", operation.fields().get(0).path());
+        assertEquals(2, operation.fields().stream().filter(field -> field.path().equals("employees/salary"))
+            .findFirst().orElseThrow().count());
+        assertFalse(operation.fields().stream().anyMatch(field -> field.path().endsWith("name")), "Property reads are not timed");
+    }
+
+    @Test
+    void recordsSampledOperationWithVariableShapes() {
+        SlowOperationRecorder recorder = new SlowOperationRecorder(Duration.ofSeconds(10), 1, 10);
+
+        graphQL(recorder).execute(employeesQuery());
+
+        SlowOperation operation = recorder.getOperations().get(0);
+        assertFalse(operation.slow());
+        assertEquals(Map.of("ids", "[String] x 3", "filter", "{name: String, active: Boolean}"), Map.copyOf(operation.variables()));
+        assertEquals(4, operation.sqlStatements());
+    }
+
+    @Test
+    void keepsLastOperations() {
+        SlowOperationRecorder recorder = new SlowOperationRecorder(Duration.ZERO, 0, 3);
+        GraphQL graphQL = graphQL(recorder);
+
+        IntStream.range(1, 6).forEach(i -> graphQL.execute("{ slow(millis: " + i + ") }"));
+
+        // The 3 most recent, the most recent first
+        List<SlowOperation> operations = recorder.getOperations();
+        assertEquals(3, operations.size());
+        assertTrue(operations.get(0).durationMillis() >= 5);
+        recorder.clear();
+        assertTrue(recorder.getOperations().isEmpty());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void overheadOnFastOperations() {
+        GraphQL plain = graphQL(null);
+        SlowOperationRecorder recorder = new SlowOperationRecorder(Duration.ofSeconds(1), 0, 100);
+        GraphQL recorded = graphQL(recorder);
+        int executions = 5_000;
+
+        // Alternate the rounds to even out the JIT warm-up
+        long plainNanos = 0;
+        long recordedNanos = 0;
+        for (int round = 0; round < 6; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < executions; i++) {
+                plain.execute(employeesQuery());
+            }
+            long middle = System.nanoTime();
+            for (int i = 0; i < executions; i++) {
+                recorded.execute(employeesQuery());
+            }
+            long end = System.nanoTime();
+            if (round >= 2) {
+                plainNanos += middle - start;
+                recordedNanos += end - middle;
+            }
+        }
+
+        double plainMicros = plainNanos / 1e3 / (4.0 * executions);
+        double recordedMicros = recordedNanos / 1e3 / (4.0 * executions);
+        double overhead = recordedMicros / plainMicros - 1;
+        logger.info("Fast operation: {} us without the recorder, {} us with it ({}%)", String.format("%.1f", plainMicros),
+            String.format("%.1f", recordedMicros), String.format("%+.1f", overhead * 100));
+        assertTrue(recorder.getOperations().isEmpty(), "Fast operations should not be recorded");
+        assertTrue(overhead < MAX_OVERHEAD, "The recorder should not slow down fast operations by more than "
+            + (int) (MAX_OVERHEAD * 100) + "%");
+    }
+}
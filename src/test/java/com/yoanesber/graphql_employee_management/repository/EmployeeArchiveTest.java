@@ -0,0 +1,310 @@
+package com.yoanesber.graphql_employee_management.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.jpa.repository.Query;
+
+/*
+ * Test of the archive tier (V5__create_employee_archive.sql and ArchivedEmployeeRepository) on PostgreSQL, with 20,000
+ * generated employees and their histories, 60% of them inactive:
+ * - the batches move the employees inactive for long enough, with their histories, to the archive tables, and leave the
+ *   active and recently deactivated employees in the hot tables
+ * - an employee locked by a transaction in progress is skipped, and archived by a later batch
+ * - every archived employee gets an 'archived' tombstone in the change feed (V6__record_archived_tombstones.sql)
+ * - once compacted (VACUUM FULL, as a plain VACUUM only makes their space reusable), the hot tables are smaller
+ * - benchmark (mvn -Pbenchmark test) of the size of the hot tables and of the time of two scans of the active employees
+ *   (all employees, and their current salaries) before and after archiving
+ * Each test runs in a new schema of the database of QUERY_PLAN_DB_URL (see SchemaQueryPlanTest), dropped at its end,
+ * and is skipped when QUERY_PLAN_DB_URL is not set.
+ */
+
+@EnabledIfEnvironmentVariable(named = "QUERY_PLAN_DB_URL", matches = ".+")
+class EmployeeArchiveTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmployeeArchiveTest.class);
+
+    private static final String URL = System.getenv("QUERY_PLAN_DB_URL");
+
+    private static final String USERNAME = System.getenv().getOrDefault("QUERY_PLAN_DB_USERNAME", "postgres");
+
+    private static final String PASSWORD = System.getenv().getOrDefault("QUERY_PLAN_DB_PASSWORD", "");
+
+    private static final int EMPLOYEES = 20_000;
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final int ITERATIONS = 20;
+
+    private static final Pattern PARAMETER = Pattern.compile(":(\\w+)");
+
+    private static final String[] HOT_TABLES = {"employee", "department_employee", "salary", "title"};
+
+    // Scans of the active employee traffic: getAllEmployees, and the current salary of every employee
+    private static final Map<String, String> SCANS = Map.of(
+        "all employees", "SELECT * FROM employee ORDER BY id",
+        "current salaries", "SELECT e.id, s.amount FROM employee e JOIN salary s ON s.employee_id = e.id "
+            + "AND s.to_date = DATE '9999-01-01'");
+
+    private String schema;
+
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        schema = "archive_" + System.nanoTime();
+        Flyway.configure().dataSource(URL, USERNAME, PASSWORD).schemas(schema).load().migrate();
+        connection = connect();
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO department (id, dept_name, active, created_by, updated_by) "
+                + "SELECT 'd00' || i, 'Department ' || i, true, 0, 0 FROM generate_series(1, 9) i");
+
+            // 3 out of 5 employees are inactive, deactivated 90 days ago; every 100th of them only today
+            statement.execute("INSERT INTO employee (birth_date, first_name, last_name, gender, hire_date, active, "
+                + "created_by, updated_by, updated_date) "
+                + "SELECT DATE '1960-01-01' + i % 5000, 'First' || i, 'Last' || i, CASE WHEN i % 2 = 0 THEN 'M' ELSE 'F' END, "
+                + "DATE '1985-01-01' + i % 6000, i % 5 >= 3, 0, 0, "
+                + "CASE WHEN i % 5 < 3 AND i % 100 <> 0 THEN now() - interval '90 days' ELSE now() END "
+                + "FROM generate_series(1, " + EMPLOYEES + ") i");
+
+            // One current department, 1 to 15 yearly salaries (the last one current) and one title per employee
+            statement.execute("INSERT INTO department_employee (employee_id, department_id, from_date, to_date) "
+                + "SELECT id, 'd00' || (1 + id % 9), hire_date, DATE '9999-01-01' FROM employee");
+            statement.execute("INSERT INTO salary (employee_id, amount, from_date, to_date) "
+                + "SELECT e.id, 40000 + k * 1000, e.hire_date + k * 365, "
+                + "CASE WHEN k = e.id % 15 THEN DATE '9999-01-01' ELSE e.hire_date + (k + 1) * 365 END "
+                + "FROM employee e CROSS JOIN generate_series(0, 14) k WHERE k <= e.id % 15");
+            statement.execute("INSERT INTO title (employee_id, title, from_date, to_date) "
+                + "SELECT id, 'Engineer', hire_date, NULL FROM employee");
+            statement.execute("VACUUM ANALYZE");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        if (connection != null) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP SCHEMA " + schema + " CASCADE");
+            }
+            connection.close();
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Connection newConnection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+        try (Statement statement = newConnection.createStatement()) {
+            statement.execute("SET search_path TO " + schema + ", public");
+        }
+        return newConnection;
+    }
+
+    @Test
+    void archivesInactiveEmployeesInBatches() throws SQLException {
+        Map<String, Long> rowsBefore = countRows();
+        long archivable = count("SELECT count(*) FROM employee WHERE NOT active AND updated_date < now() - interval '30 days'");
+        Map<String, long[]> sizesBefore = tableSizes();
+
+        try (Connection other = connect()) {
+            // A transaction in progress holds the first archivable employee
+            other.setAutoCommit(false);
+            long locked = count("SELECT min(id) FROM employee WHERE NOT active AND updated_date < now() - interval '30 days'");
+            try (Statement statement = other.createStatement()) {
+                statement.execute("SELECT * FROM employee WHERE id = " + locked + " FOR UPDATE");
+            }
+
+            // The batches archive every other archivable employee, and skip the locked one
+            List<Long> archived = archiveAll();
+            assertEquals(archivable - 1, archived.size());
+            assertFalse(archived.contains(locked));
+
+            // Once the transaction ends, the next batch archives it
+            other.rollback();
+            assertEquals(List.of(locked), archiveAll());
+        }
+
+        // The hot tables only keep the active and recently deactivated employees, the archive has the others
+        assertEquals(0, count("SELECT count(*) FROM employee WHERE NOT active AND updated_date < now() - interval '30 days'"));
+        assertEquals(rowsBefore.get("employee") - archivable, count("SELECT count(*) FROM employee"));
+        assertEquals(archivable, count("SELECT count(*) FROM employee_archive"));
+        Map<String, Long> rowsAfter = countRows();
+        for (String table : HOT_TABLES) {
+            assertEquals(rowsBefore.get(table), rowsAfter.get(table) + count("SELECT count(*) FROM " + table + "_archive"),
+                table + " rows were lost");
+        }
+        assertEquals(0, count("SELECT count(*) FROM salary_archive a JOIN employee e ON e.id = a.employee_id"));
+
+        // The change feed has an 'archived' tombstone for every archived employee, and no deletes
+        assertEquals(archivable, count("SELECT count(*) FROM employee_tombstone t JOIN employee_archive a "
+            + "ON a.id = t.employee_id WHERE t.kind = 'archived'"));
+        assertEquals(archivable, count("SELECT count(*) FROM employee_tombstone"));
+
+        compactHotTables();
+        Map<String, long[]> sizesAfter = tableSizes();
+        for (String table : HOT_TABLES) {
+            assertTrue(sizesAfter.get(table)[0] < sizesBefore.get(table)[0], String.format(
+                "%s is not smaller: %,d bytes before, %,d bytes after", table, sizesBefore.get(table)[0],
+                sizesAfter.get(table)[0]));
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void archivingShrinksTheHotScans() throws SQLException {
+        Map<String, Long> rowsBefore = countRows();
+        Map<String, long[]> sizesBefore = tableSizes();
+        Map<String, Double> scansBefore = timeScans();
+
+        archiveAll();
+        compactHotTables();
+        Map<String, Long> rowsAfter = countRows();
+        Map<String, long[]> sizesAfter = tableSizes();
+        Map<String, Double> scansAfter = timeScans();
+
+        for (String table : HOT_TABLES) {
+            logger.info("{}: {} rows, {} kB before; {} rows, {} kB after (archive: {} kB)", table, rowsBefore.get(table),
+                sizesBefore.get(table)[0] / 1024, rowsAfter.get(table), sizesAfter.get(table)[0] / 1024,
+                sizesAfter.get(table + "_archive")[0] / 1024);
+        }
+        for (String scan : SCANS.keySet()) {
+            logger.info("{}: {} ms before, {} ms after", scan, String.format("%.2f", scansBefore.get(scan)),
+                String.format("%.2f", scansAfter.get(scan)));
+        }
+    }
+
+    // Compact the hot tables after archiving, and refresh the statistics
+    private void compactHotTables() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String table : HOT_TABLES) {
+                statement.execute("VACUUM FULL ANALYZE " + table);
+            }
+            statement.execute("VACUUM ANALYZE");
+        }
+    }
+
+    // Run archive batches until one comes back short, and return the archived ids
+    private List<Long> archiveAll() throws SQLException {
+        Query query = queryOf("archiveInactiveEmployees");
+        List<String> parameters = new ArrayList<>();
+        String sql = jdbcSql(query.value(), parameters);
+        OffsetDateTime inactiveBefore = OffsetDateTime.now().minusDays(30);
+
+        List<Long> archived = new ArrayList<>();
+        int batch;
+        do {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    if (parameters.get(i).equals("inactiveBefore")) {
+                        statement.setObject(i + 1, inactiveBefore);
+                    } else {
+                        statement.setInt(i + 1, BATCH_SIZE);
+                    }
+                }
+                batch = 0;
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        archived.add(resultSet.getLong(1));
+                        batch++;
+                    }
+                }
+            }
+            assertTrue(batch <= BATCH_SIZE);
+        } while (batch == BATCH_SIZE);
+        return archived;
+    }
+
+    // Get the size in bytes and the live rows (statistics) of the hot and archive tables (findTableSizes), by table
+    private Map<String, long[]> tableSizes() throws SQLException {
+        Map<String, long[]> sizes = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery(queryOf("findTableSizes").value())) {
+            while (resultSet.next()) {
+                sizes.put(resultSet.getString("tableName"),
+                    new long[] {resultSet.getLong("bytes"), resultSet.getLong("liveRows")});
+            }
+        }
+        return sizes;
+    }
+
+    // Get the median time of each scan, in milliseconds
+    private Map<String, Double> timeScans() throws SQLException {
+        Map<String, Double> times = new HashMap<>();
+        for (Map.Entry<String, String> scan : SCANS.entrySet()) {
+            long[] nanos = new long[ITERATIONS];
+            // Warm-up, then measured iterations
+            for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+                long start = System.nanoTime();
+                try (Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery(scan.getValue())) {
+                    while (resultSet.next()) {
+                        // Read every row
+                    }
+                }
+                if (i >= 0) {
+                    nanos[i] = System.nanoTime() - start;
+                }
+            }
+            Arrays.sort(nanos);
+            times.put(scan.getKey(), nanos[ITERATIONS / 2] / 1e6);
+        }
+        return times;
+    }
+
+    private Map<String, Long> countRows() throws SQLException {
+        Map<String, Long> rows = new HashMap<>();
+        for (String table : HOT_TABLES) {
+            rows.put(table, count("SELECT count(*) FROM " + table));
+        }
+        return rows;
+    }
+
+    private long count(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static Query queryOf(String methodName) {
+        return Arrays.stream(ArchivedEmployeeRepository.class.getMethods())
+            .filter(method -> method.getName().equals(methodName))
+            .findFirst()
+            .orElseThrow()
+            .getAnnotation(Query.class);
+    }
+
+    // Replace the named parameters of a native query with JDBC parameters, and collect their names in order
+    private static String jdbcSql(String query, List<String> parameters) {
+        Matcher matcher = PARAMETER.matcher(query);
+        StringBuilder sql = new StringBuilder();
+        while (matcher.find()) {
+            parameters.add(matcher.group(1));
+            matcher.appendReplacement(sql, "?");
+        }
+        matcher.appendTail(sql);
+        return sql.toString();
+    }
+}
@@ -0,0 +1,183 @@
+package com.yoanesber.graphql_employee_management.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.jpa.repository.Query;
+
+/*
+ * Test of the change feed of the employees (V4__create_employee_change_feed.sql, V6__record_archived_tombstones.sql and
+ * EmployeeRepository.findChangesAfter)
+ * on PostgreSQL:
+ * - inserts, updates and deletes are returned in the order of their transactions, page by page, each employee once
+ *   at its last change, and deletes as tombstones of kind deleted
+ * - a change of a transaction still in progress is not skipped: the changes committed after it are held back until
+ *   it commits, then returned after it
+ * It runs in a new schema of the database of QUERY_PLAN_DB_URL (see SchemaQueryPlanTest), dropped at the end, and is
+ * skipped when QUERY_PLAN_DB_URL is not set.
+ */
+
+@EnabledIfEnvironmentVariable(named = "QUERY_PLAN_DB_URL", matches = ".+")
+class EmployeeChangeFeedTest {
+
+    private static final String URL = System.getenv("QUERY_PLAN_DB_URL");
+
+    private static final String USERNAME = System.getenv().getOrDefault("QUERY_PLAN_DB_USERNAME", "postgres");
+
+    private static final String PASSWORD = System.getenv().getOrDefault("QUERY_PLAN_DB_PASSWORD", "");
+
+    private static final String SCHEMA = "change_feed_" + System.currentTimeMillis();
+
+    private static final Pattern PARAMETER = Pattern.compile(":(\\w+)");
+
+    // A change of the feed: its position (changeXid, employeeId), and its kind (updated, deleted or archived)
+    private record Change(long changeXid, long employeeId, String kind) {
+    }
+
+    private static Connection connection;
+
+    // findChangesAfter with JDBC parameters, and the names of its parameters in order
+    private static String feedSql;
+
+    private static final List<String> feedParameters = new ArrayList<>();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        Flyway.configure().dataSource(URL, USERNAME, PASSWORD).schemas(SCHEMA).load().migrate();
+        connection = connect();
+
+        Query query = EmployeeRepository.class.getMethod("findChangesAfter", long.class, long.class, int.class)
+            .getAnnotation(Query.class);
+        Matcher matcher = PARAMETER.matcher(query.value());
+        StringBuilder sql = new StringBuilder();
+        while (matcher.find()) {
+            feedParameters.add(matcher.group(1));
+            matcher.appendReplacement(sql, "?");
+        }
+        matcher.appendTail(sql);
+        feedSql = sql.toString();
+    }
+
+    @AfterAll
+    static void tearDown() throws SQLException {
+        if (connection != null) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP SCHEMA " + SCHEMA + " CASCADE");
+            }
+            connection.close();
+        }
+    }
+
+    private static Connection connect() throws SQLException {
+        Connection newConnection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+        try (Statement statement = newConnection.createStatement()) {
+            statement.execute("SET search_path TO " + SCHEMA + ", public");
+        }
+        return newConnection;
+    }
+
+    private static long insertEmployee(Connection on, String firstName) throws SQLException {
+        try (Statement statement = on.createStatement();
+            ResultSet resultSet = statement.executeQuery("INSERT INTO employee (birth_date, first_name, gender, hire_date, "
+                + "created_by, updated_by) VALUES (DATE '1970-01-01', '" + firstName + "', 'F', DATE '1995-01-01', 0, 0) RETURNING id")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static void execute(Connection on, String sql) throws SQLException {
+        try (Statement statement = on.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    // Get the changes after a change (null: from the start)
+    private static List<Change> changesAfter(Change after, int limit) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(feedSql)) {
+            for (int i = 0; i < feedParameters.size(); i++) {
+                switch (feedParameters.get(i)) {
+                    case "changeXid" -> statement.setLong(i + 1, after == null ? 0 : after.changeXid());
+                    case "employeeId" -> statement.setLong(i + 1, after == null ? 0 : after.employeeId());
+                    default -> statement.setInt(i + 1, limit);
+                }
+            }
+
+            List<Change> changes = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    changes.add(new Change(resultSet.getLong("changeXid"), resultSet.getLong("employeeId"),
+                        resultSet.getString("kind")));
+                }
+            }
+            return changes;
+        }
+    }
+
+    // Read the whole feed after a change, with pages of the given size
+    private static List<Change> readFeed(Change after, int pageSize) throws SQLException {
+        List<Change> changes = new ArrayList<>();
+        List<Change> page;
+        while (!(page = changesAfter(after, pageSize)).isEmpty()) {
+            assertTrue(page.size() <= pageSize);
+            changes.addAll(page);
+            after = page.get(page.size() - 1);
+        }
+        return changes;
+    }
+
+    @Test
+    void changesAreReturnedInTransactionOrderWithTombstones() throws SQLException {
+        Change start = last(readFeed(null, 100));
+
+        long a = insertEmployee(connection, "A");
+        long b = insertEmployee(connection, "B");
+        long c = insertEmployee(connection, "C");
+        execute(connection, "UPDATE employee SET first_name = 'A2' WHERE id = " + a);
+        execute(connection, "DELETE FROM employee WHERE id = " + b);
+
+        // Pages of 1: C (insert), A (last change: update), B (tombstone)
+        List<Change> changes = readFeed(start, 1);
+        assertEquals(List.of(c, a, b), changes.stream().map(Change::employeeId).toList());
+        assertEquals(List.of("updated", "updated", "deleted"), changes.stream().map(Change::kind).toList());
+        assertTrue(changes.get(0).changeXid() < changes.get(1).changeXid()
+            && changes.get(1).changeXid() < changes.get(2).changeXid());
+    }
+
+    @Test
+    void changesOfTransactionsInProgressAreNotSkipped() throws SQLException {
+        Change start = last(readFeed(null, 100));
+
+        try (Connection other = connect()) {
+            // A transaction in progress changes X, then Y is inserted and committed
+            other.setAutoCommit(false);
+            long x = insertEmployee(other, "X");
+            long y = insertEmployee(connection, "Y");
+
+            // Y is held back while X may still commit before it
+            assertEquals(List.of(), changesAfter(start, 100));
+
+            // Once X is committed, both are returned, X first
+            other.commit();
+            assertEquals(List.of(x, y), readFeed(start, 100).stream().map(Change::employeeId).toList());
+        }
+    }
+
+    private static Change last(List<Change> changes) {
+        return changes.isEmpty() ? null : changes.get(changes.size() - 1);
+    }
+}
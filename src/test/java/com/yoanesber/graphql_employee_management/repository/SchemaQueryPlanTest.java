@@ -0,0 +1,280 @@
+package com.yoanesber.graphql_employee_management.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.flywaydb.core.Flyway;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.jpa.repository.Query;
+
+import com.yoanesber.graphql_employee_management.entity.ArchivedEmployee;
+import com.yoanesber.graphql_employee_management.entity.Department;
+import com.yoanesber.graphql_employee_management.entity.DepartmentEmployee;
+import com.yoanesber.graphql_employee_management.entity.Employee;
+import com.yoanesber.graphql_employee_management.entity.OutboxEvent;
+import com.yoanesber.graphql_employee_management.entity.SalaryEmployee;
+import com.yoanesber.graphql_employee_management.entity.TitleEmployee;
+
+/*
+ * Test of the Flyway migrations (src/main/resources/db/migration) on PostgreSQL:
+ * - the migrations apply to an empty schema, and Hibernate validates the entities against it (ddl-auto=validate)
+ * - with 20,000 generated employees and their histories (analyzed), the plan (EXPLAIN) of every repository query
+ *   reads the table it filters through an index, never with a sequential scan (empty salary partitions aside)
+ * - a salary query on a from_date range only scans the salary partition of that range
+ * - the change feed of the employees reads the (change_xid, id) indexes
+ * A failed assertion reports the scan of each relation in the plan. It runs in a new schema of the database of
+ * QUERY_PLAN_DB_URL (with QUERY_PLAN_DB_USERNAME and QUERY_PLAN_DB_PASSWORD), dropped at the end, and is skipped when
+ * QUERY_PLAN_DB_URL is not set.
+ * The department queries are not checked: with 9 departments, a sequential scan is the right plan.
+ */
+
+@EnabledIfEnvironmentVariable(named = "QUERY_PLAN_DB_URL", matches = ".+")
+class SchemaQueryPlanTest {
+
+    private static final String URL = System.getenv("QUERY_PLAN_DB_URL");
+
+    private static final String USERNAME = System.getenv().getOrDefault("QUERY_PLAN_DB_USERNAME", "postgres");
+
+    private static final String PASSWORD = System.getenv().getOrDefault("QUERY_PLAN_DB_PASSWORD", "");
+
+    private static final String SCHEMA = "query_plan_" + System.currentTimeMillis();
+
+    private static final String EMPLOYEE_IDS = "101, 2002, 3303, 4404, 5505, 6606, 7707, 8808, 9909, 15010";
+
+    private static final Pattern PARAMETER = Pattern.compile(":(\\w+)");
+
+    // Values of the parameters of the native queries
+    private static final Map<String, String> PARAMETERS = Map.of(
+        "employeeIds", EMPLOYEE_IDS,
+        "asOf", "'1995-06-01'",
+        "from", "'1990-01-01'",
+        "to", "'1995-12-31'",
+        "last", "3",
+        "departmentIds", "'d005', 'd007'",
+        "batchSize", "100",
+        "changeXid", "0",
+        "employeeId", "0",
+        "limit", "100");
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Parent table of each salary partition
+    private static final Map<String, String> partitionParents = new HashMap<>();
+
+    // Tables and partitions without rows (a sequential scan of them costs nothing)
+    private static final Set<String> emptyRelations = new HashSet<>();
+
+    private static Connection connection;
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        Flyway.configure().dataSource(URL, USERNAME, PASSWORD).schemas(SCHEMA).load().migrate();
+
+        connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET search_path TO " + SCHEMA + ", public");
+
+            statement.execute("INSERT INTO department (id, dept_name, active, created_by, updated_by) "
+                + "SELECT 'd00' || i, 'Department ' || i, true, 0, 0 FROM generate_series(1, 9) i");
+            statement.execute("INSERT INTO employee (birth_date, first_name, last_name, gender, hire_date, active, created_by, updated_by) "
+                + "SELECT DATE '1960-01-01' + i % 5000, 'First' || i, 'Last' || i, CASE WHEN i % 2 = 0 THEN 'M' ELSE 'F' END, "
+                + "DATE '1985-01-01' + i % 6000, true, 0, 0 FROM generate_series(1, 20000) i");
+
+            // One current department per employee; every 5th employee moved from another department after a year
+            statement.execute("INSERT INTO department_employee (employee_id, department_id, from_date, to_date) "
+                + "SELECT id, 'd00' || (1 + id % 9), CASE WHEN id % 5 = 0 THEN hire_date + 365 ELSE hire_date END, "
+                + "DATE '9999-01-01' FROM employee");
+            statement.execute("INSERT INTO department_employee (employee_id, department_id, from_date, to_date) "
+                + "SELECT id, 'd00' || (1 + (id + 1) % 9), hire_date, hire_date + 365 FROM employee WHERE id % 5 = 0");
+
+            // 1 to 15 yearly salaries per employee, the last one current
+            statement.execute("INSERT INTO salary (employee_id, amount, from_date, to_date) "
+                + "SELECT e.id, 40000 + k * 1000, e.hire_date + k * 365, "
+                + "CASE WHEN k = e.id % 15 THEN DATE '9999-01-01' ELSE e.hire_date + (k + 1) * 365 END "
+                + "FROM employee e CROSS JOIN generate_series(0, 14) k WHERE k <= e.id % 15");
+
+            // One title per employee, and a promotion after 5 years for every 3rd employee (current title with no to_date)
+            statement.execute("INSERT INTO title (employee_id, title, from_date, to_date) "
+                + "SELECT id, 'Engineer', hire_date, CASE WHEN id % 3 = 0 THEN hire_date + 1825 ELSE DATE '9999-01-01' END FROM employee");
+            statement.execute("INSERT INTO title (employee_id, title, from_date, to_date) "
+                + "SELECT id, 'Senior Engineer', hire_date + 1825, NULL FROM employee WHERE id % 3 = 0");
+
+            statement.execute("INSERT INTO outbox_event (aggregate_type, aggregate_id, event_type, payload, created_date) "
+                + "SELECT 'Employee', i::text, 'UPDATED', '{}', now() FROM generate_series(1, 20000) i");
+            statement.execute("ANALYZE");
+
+            try (ResultSet resultSet = statement.executeQuery(
+                "SELECT inhrelid::regclass::text, inhparent::regclass::text FROM pg_inherits")) {
+                while (resultSet.next()) {
+                    partitionParents.put(resultSet.getString(1), resultSet.getString(2));
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery(
+                "SELECT relname FROM pg_class WHERE relnamespace = '" + SCHEMA + "'::regnamespace AND relkind = 'r' AND relpages = 0")) {
+                while (resultSet.next()) {
+                    emptyRelations.add(resultSet.getString(1));
+                }
+            }
+        }
+    }
+
+    @AfterAll
+    static void tearDown() throws SQLException {
+        if (connection != null) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP SCHEMA " + SCHEMA + " CASCADE");
+            }
+            connection.close();
+        }
+    }
+
+    @Test
+    void hibernateValidatesTheMigratedSchema() {
+        SessionFactory sessionFactory = new Configuration()
+            .addAnnotatedClass(Employee.class)
+            .addAnnotatedClass(Department.class)
+            .addAnnotatedClass(DepartmentEmployee.class)
+            .addAnnotatedClass(SalaryEmployee.class)
+            .addAnnotatedClass(TitleEmployee.class)
+            .addAnnotatedClass(OutboxEvent.class)
+            .addAnnotatedClass(ArchivedEmployee.class)
+            .setProperty("hibernate.connection.url", URL)
+            .setProperty("hibernate.connection.username", USERNAME)
+            .setProperty("hibernate.connection.password", PASSWORD)
+            .setProperty("hibernate.default_schema", SCHEMA)
+            .setProperty("hibernate.hbm2ddl.auto", "validate")
+            .buildSessionFactory();
+        sessionFactory.close();
+    }
+
+    @Test
+    void employeeQueriesUseIndexes() throws Exception {
+        // findAllById (the employee DataLoader, getEmployeesByIds)
+        assertIndexScans("SELECT * FROM employee WHERE id IN (" + EMPLOYEE_IDS + ")", Set.of("employee"));
+
+        // The employees of departments are a large share of all employees: they are joined with a hash join
+        assertIndexScans(nativeQuery(EmployeeRepository.class, "findByDepartmentIdsAsOf"), Set.of("department_employee"));
+        assertIndexScans(nativeQuery(EmployeeRepository.class, "findMembersByDepartmentIdsAsOf"), Set.of("department_employee"));
+    }
+
+    @Test
+    void historyQueriesUseIndexes() throws Exception {
+        // Derived queries: full histories, and from_date ranges
+        for (String table : new String[] {"department_employee", "salary", "title"}) {
+            assertIndexScans("SELECT * FROM " + table + " WHERE employee_id IN (" + EMPLOYEE_IDS + ") "
+                + "ORDER BY employee_id, from_date", Set.of(table));
+        }
+        for (String table : new String[] {"salary", "title"}) {
+            assertIndexScans("SELECT * FROM " + table + " WHERE employee_id IN (" + EMPLOYEE_IDS + ") "
+                + "AND from_date BETWEEN '1990-01-01' AND '1995-12-31' ORDER BY employee_id, from_date", Set.of(table));
+        }
+
+        // Native queries: latest rows of a range, rows as of a date, current rows
+        assertIndexScans(nativeQuery(SalaryEmployeeRepository.class, "findLastByEmployeeIdsAndFromDateBetween"), Set.of("salary"));
+        assertIndexScans(nativeQuery(TitleEmployeeRepository.class, "findLastByEmployeeIdsAndFromDateBetween"), Set.of("title"));
+        assertIndexScans(nativeQuery(DepartmentEmployeeRepository.class, "findByEmployeeIdsAsOf"), Set.of("department_employee"));
+        assertIndexScans(nativeQuery(SalaryEmployeeRepository.class, "findByEmployeeIdsAsOf"), Set.of("salary"));
+        assertIndexScans(nativeQuery(TitleEmployeeRepository.class, "findByEmployeeIdsAsOf"), Set.of("title"));
+        assertIndexScans(nativeQuery(DepartmentEmployeeRepository.class, "findCurrentByEmployeeIds"), Set.of("department_employee"));
+        assertIndexScans(nativeQuery(SalaryEmployeeRepository.class, "findCurrentByEmployeeIds"), Set.of("salary"));
+        assertIndexScans(nativeQuery(TitleEmployeeRepository.class, "findCurrentByEmployeeIds"), Set.of("title"));
+    }
+
+    @Test
+    void salaryRangeQueryOnlyScansItsPartition() throws Exception {
+        Map<String, String> scans = assertIndexScans(
+            nativeQuery(SalaryEmployeeRepository.class, "findLastByEmployeeIdsAndFromDateBetween"), Set.of("salary"));
+        assertEquals(Set.of("salary_1990"), scans.keySet());
+    }
+
+    @Test
+    void outboxRelayUsesThePrimaryKey() throws Exception {
+        // lockNextBatch (FOR UPDATE is left out: EXPLAIN does not lock, and it does not change the scan)
+        String sql = nativeQuery(OutboxEventRepository.class, "lockNextBatch").replace(" FOR UPDATE SKIP LOCKED", "");
+        assertIndexScans(sql, Set.of("outbox_event"));
+    }
+
+    @Test
+    void changeFeedUsesItsIndexes() throws Exception {
+        // findChangesAfter: both branches read the first rows of their (change_xid, id) index (no tombstones here)
+        assertIndexScans(nativeQuery(EmployeeRepository.class, "findChangesAfter"), Set.of("employee", "employee_tombstone"));
+    }
+
+    // Get the native query of a repository method, with the values of its parameters
+    private static String nativeQuery(Class<?> repository, String methodName) {
+        Method method = Arrays.stream(repository.getMethods())
+            .filter(candidate -> candidate.getName().equals(methodName))
+            .findFirst()
+            .orElseThrow();
+        Query query = method.getAnnotation(Query.class);
+        assertNotNull(query, methodName + " has no @Query");
+        assertTrue(query.nativeQuery(), methodName + " is not a native query");
+
+        Matcher matcher = PARAMETER.matcher(query.value());
+        StringBuilder sql = new StringBuilder();
+        while (matcher.find()) {
+            matcher.appendReplacement(sql, Matcher.quoteReplacement(PARAMETERS.get(matcher.group(1))));
+        }
+        matcher.appendTail(sql);
+        return sql.toString();
+    }
+
+    // Check that the given tables are read, through an index (their empty partitions aside);
+    // returns the scan of each relation (partitions included)
+    private static Map<String, String> assertIndexScans(String sql, Set<String> tables) throws Exception {
+        JsonNode plan;
+        try (Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("EXPLAIN (FORMAT JSON) " + sql)) {
+            resultSet.next();
+            plan = objectMapper.readTree(resultSet.getString(1)).get(0).get("Plan");
+        }
+
+        Map<String, String> scans = new LinkedHashMap<>();
+        collectScans(plan, scans);
+
+        for (String table : tables) {
+            assertTrue(scans.keySet().stream().anyMatch(relation -> table.equals(partitionParents.getOrDefault(relation, relation))),
+                table + " is not read by " + sql + ": " + scans);
+        }
+        scans.forEach((relation, scan) -> {
+            if (tables.contains(partitionParents.getOrDefault(relation, relation)) && !emptyRelations.contains(relation)) {
+                assertFalse(scan.contains("Seq Scan"), "Sequential scan of " + relation + " in the plan of " + sql + ": " + scans);
+            }
+        });
+        return scans;
+    }
+
+    private static void collectScans(JsonNode node, Map<String, String> scans) {
+        if (node.has("Relation Name")) {
+            scans.merge(node.get("Relation Name").asText(), node.get("Node Type").asText(), (a, b) -> a + ", " + b);
+        }
+        if (node.has("Plans")) {
+            for (JsonNode child : node.get("Plans")) {
+                collectScans(child, scans);
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationListener;
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationService;
+
+/*
+ * Test of CacheInvalidationServiceImpl with two nodes sharing an in-memory H2 database, where pg_notify is an alias
+ * that captures the messages, handed to the other node as CacheInvalidationSubscriber would:
+ * a committed transaction evicts its keys locally and on the other node with a single message, a rolled back one
+ * evicts nothing, large invalidations are split or turned into a clear, and flush clears every cache.
+ * LISTEN on a real PostgreSQL connection is covered by CacheInvalidationSubscriberTest.
+ */
+
+class CacheInvalidationServiceImplTest {
+
+    // Messages sent through the pg_notify alias
+    private static final List<String> NOTIFICATIONS = new ArrayList<>();
+
+    public static class Notify {
+        public static synchronized String notify(String channel, String payload) {
+            NOTIFICATIONS.add(payload);
+            return "";
+        }
+    }
+
+    // Local cache recording its evictions
+    private static class RecordingCache implements CacheInvalidationListener {
+        private final Set<String> evicted = new LinkedHashSet<>();
+
+        private int clears;
+
+        @Override
+        public void evict(Set<String> keys) {
+            evicted.addAll(keys);
+        }
+
+        @Override
+        public void clear() {
+            clears++;
+        }
+    }
+
+    private TransactionTemplate transactionTemplate;
+
+    private CacheInvalidationServiceImpl nodeA;
+
+    private CacheInvalidationServiceImpl nodeB;
+
+    private RecordingCache cacheA;
+
+    private RecordingCache cacheB;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:invalidation" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE ALIAS pg_notify FOR '" + Notify.class.getName() + ".notify'");
+        }
+        NOTIFICATIONS.clear();
+
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        nodeA = node(dataSource);
+        nodeB = node(dataSource);
+        cacheA = new RecordingCache();
+        cacheB = new RecordingCache();
+        nodeA.addListener(CacheInvalidationService.EMPLOYEE_CACHE, cacheA);
+        nodeB.addListener(CacheInvalidationService.EMPLOYEE_CACHE, cacheB);
+    }
+
+    private static CacheInvalidationServiceImpl node(JdbcDataSource dataSource) {
+        return new CacheInvalidationServiceImpl(new JdbcTemplate(dataSource), new SimpleMeterRegistry(),
+            "jdbc:postgresql://localhost/employees", true, "cache_invalidation", 100);
+    }
+
+    // Deliver the captured messages to both nodes, as the subscriber of each node would
+    private void deliver() {
+        nodeA.receive(NOTIFICATIONS);
+        nodeB.receive(NOTIFICATIONS);
+    }
+
+    @Test
+    void invalidatesCommittedKeysOnEveryNode() {
+        transactionTemplate.executeWithoutResult(status -> {
+            nodeA.invalidate(CacheInvalidationService.EMPLOYEE_CACHE, "10001");
+            nodeA.invalidate(CacheInvalidationService.EMPLOYEE_CACHE, "10002");
+            nodeA.invalidate(CacheInvalidationService.EMPLOYEE_CACHE, "10001");
+            nodeA.invalidate(CacheInvalidationService.DEPARTMENT_CACHE, "d001");
+
+            // Nothing is evicted before the commit
+            assertTrue(cacheA.evicted.isEmpty());
+        });
+
+        // One message for the transaction, evicted locally after the commit
+        assertEquals(1, NOTIFICATIONS.size());
+        assertEquals(Set.of("10001", "10002"), cacheA.evicted);
+        assertTrue(cacheB.evicted.isEmpty());
+
+        // The other node evicts the keys, the sending node skips its own message
+        cacheA.evicted.clear();
+        deliver();
+        assertEquals(Set.of("10001", "10002"), cacheB.evicted);
+        assertTrue(cacheA.evicted.isEmpty());
+    }
+
+    @Test
+    void ignoresRolledBackTransactions() {
+        transactionTemplate.executeWithoutResult(status -> {
+            nodeA.invalidate(CacheInvalidationService.EMPLOYEE_CACHE, "10001");
+            status.setRollbackOnly();
+        });
+
+        assertTrue(NOTIFICATIONS.isEmpty());
+        assertTrue(cacheA.evicted.isEmpty());
+    }
+
+    @Test
+    void requiresTransaction() {
+        assertThrows(IllegalStateException.class, () -> nodeA.invalidate(CacheInvalidationService.EMPLOYEE_CACHE, "10001"));
+    }
+
+    @Test
+    void splitsLargeInvalidationsAndClearsBeyondMaxKeys() {
+        Set<String> keys = IntStream.range(0, 2000).mapToObj(i -> String.valueOf(10001 + i)).collect(Collectors.toSet());
+
+        // Under max keys, split into messages under the NOTIFY limit
+        List<String> payloads = CacheInvalidationServiceImpl.encode("node", Map.of("employee", keys), 5000);
+        assertTrue(payloads.size() > 1);
+        payloads.forEach(payload -> assertTrue(payload.getBytes(StandardCharsets.UTF_8).length < 8000));
+        nodeB.receive(payloads);
+        assertEquals(keys, cacheB.evicted);
+
+        // Beyond max keys, the other nodes clear the cache (the sending node evicts the keys)
+        transactionTemplate.executeWithoutResult(status -> keys.forEach(key ->
+            nodeA.invalidate(CacheInvalidationService.EMPLOYEE_CACHE, key)));
+        assertEquals(1, NOTIFICATIONS.size());
+        deliver();
+        assertEquals(keys, cacheA.evicted);
+        assertEquals(1, cacheB.clears);
+    }
+
+    @Test
+    void flushClearsEveryCache() {
+        RecordingCache departments = new RecordingCache();
+        nodeB.addListener(CacheInvalidationService.DEPARTMENT_CACHE, departments);
+
+        nodeB.flush();
+
+        assertEquals(1, cacheB.clears);
+        assertEquals(1, departments.clears);
+    }
+}
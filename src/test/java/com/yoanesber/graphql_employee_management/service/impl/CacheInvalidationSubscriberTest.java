@@ -0,0 +1,158 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationListener;
+
+/*
+ * Test of CacheInvalidationServiceImpl and CacheInvalidationSubscriber with two nodes on PostgreSQL, each with its
+ * own connections and a subscriber listening on its dedicated connection:
+ * - a committed invalidation on one node evicts the key on the other, a rolled back one sends nothing (the next
+ *   committed invalidation is the first one received)
+ * - when the connection of a subscriber is terminated, it clears its caches, reconnects, clears them again (the
+ *   invalidations sent in between were missed), and receives the invalidations sent after it reconnected
+ * It uses a new channel on the database of QUERY_PLAN_DB_URL (see SchemaQueryPlanTest), and is skipped when
+ * QUERY_PLAN_DB_URL is not set.
+ */
+
+@EnabledIfEnvironmentVariable(named = "QUERY_PLAN_DB_URL", matches = ".+")
+class CacheInvalidationSubscriberTest {
+
+    private static final String URL = System.getenv("QUERY_PLAN_DB_URL");
+
+    private static final String USERNAME = System.getenv().getOrDefault("QUERY_PLAN_DB_USERNAME", "postgres");
+
+    private static final String PASSWORD = System.getenv().getOrDefault("QUERY_PLAN_DB_PASSWORD", "");
+
+    private static final String CACHE = "employee";
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    // Local cache of a node, recording its evictions ("key") and clears ("*") in order
+    private static class RecordingCache implements CacheInvalidationListener {
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+        @Override
+        public void evict(Set<String> keys) {
+            events.addAll(keys);
+        }
+
+        @Override
+        public void clear() {
+            events.add("*");
+        }
+
+        String next() throws InterruptedException {
+            String event = events.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull(event, "No invalidation received");
+            return event;
+        }
+    }
+
+    // A node: its invalidation service, its subscriber and its cache
+    private record Node(CacheInvalidationServiceImpl service, CacheInvalidationSubscriber subscriber,
+        TransactionTemplate transactionTemplate, RecordingCache cache) {
+    }
+
+    private final String channel = "invalidation_" + System.nanoTime();
+
+    private Node nodeA;
+
+    private Node nodeB;
+
+    @BeforeEach
+    void startNodes() throws InterruptedException {
+        nodeA = startNode("a");
+        nodeB = startNode("b");
+    }
+
+    @AfterEach
+    void stopNodes() {
+        nodeA.subscriber().stop();
+        nodeB.subscriber().stop();
+    }
+
+    private Node startNode(String name) throws InterruptedException {
+        // The application name tells the connections of the node apart in pg_stat_activity
+        String url = URL + (URL.contains("?") ? "&" : "?") + "ApplicationName=" + channel + "_" + name;
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, USERNAME, PASSWORD);
+        CacheInvalidationServiceImpl service = new CacheInvalidationServiceImpl(new JdbcTemplate(dataSource),
+            new SimpleMeterRegistry(), url, true, channel, 100);
+        RecordingCache cache = new RecordingCache();
+        service.addListener(CACHE, cache);
+
+        CacheInvalidationSubscriber subscriber = new CacheInvalidationSubscriber(service, url, USERNAME, PASSWORD,
+            channel, Duration.ofSeconds(30), Duration.ofMillis(500));
+        subscriber.start();
+        awaitListening(subscriber);
+        return new Node(service, subscriber, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+            cache);
+    }
+
+    private static void awaitListening(CacheInvalidationSubscriber subscriber) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!subscriber.isListening() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(subscriber.isListening(), "Subscriber is not listening");
+    }
+
+    // Invalidate a key in a transaction of the node, committed or rolled back
+    private static void invalidate(Node node, String key, boolean commit) {
+        node.transactionTemplate().executeWithoutResult(status -> {
+            node.service().invalidate(CACHE, key);
+            if (!commit) {
+                status.setRollbackOnly();
+            }
+        });
+    }
+
+    @Test
+    void committedInvalidationsReachTheOtherNode() throws InterruptedException {
+        invalidate(nodeA, "1", false);
+        invalidate(nodeA, "2", true);
+
+        // The rolled back invalidation was never sent: the committed one comes first
+        assertEquals("2", nodeB.cache().next());
+
+        // The node of the change evicts on commit only, and skips its own message
+        assertEquals("2", nodeA.cache().next());
+        invalidate(nodeB, "3", true);
+        assertEquals("3", nodeA.cache().next());
+        assertEquals("3", nodeB.cache().next());
+        assertTrue(nodeA.cache().events.isEmpty() && nodeB.cache().events.isEmpty());
+    }
+
+    @Test
+    void subscriberFlushesAndReconnectsAfterAConnectionLoss() throws InterruptedException {
+        // Terminate the listening connection of node B
+        new JdbcTemplate(new DriverManagerDataSource(URL, USERNAME, PASSWORD)).query(
+            "SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE application_name = ? AND query LIKE 'LISTEN%'",
+            resultSet -> null, channel + "_b");
+
+        // Cleared when the connection is lost, then again once listening again
+        assertEquals("*", nodeB.cache().next());
+        assertEquals("*", nodeB.cache().next());
+        awaitListening(nodeB.subscriber());
+
+        invalidate(nodeA, "4", true);
+        assertEquals("4", nodeB.cache().next());
+    }
+}
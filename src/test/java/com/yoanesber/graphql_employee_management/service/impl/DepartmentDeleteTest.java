@@ -0,0 +1,145 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.Date;
+import java.time.OffsetDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.yoanesber.graphql_employee_management.dto.DepartmentEmployeeDTO;
+import com.yoanesber.graphql_employee_management.entity.Department;
+import com.yoanesber.graphql_employee_management.entity.DepartmentEmployee;
+import com.yoanesber.graphql_employee_management.entity.Employee;
+import com.yoanesber.graphql_employee_management.repository.DepartmentRepository;
+import com.yoanesber.graphql_employee_management.repository.EmployeeRepository;
+import com.yoanesber.graphql_employee_management.service.OutboxEventService;
+
+/*
+ * Test of deleteDepartment with the employee profile cache, through the services and their JPA repositories on an
+ * in-memory H2 database (the schema is created by Hibernate; the outbox is mocked, and the cache invalidations are
+ * only local): once a department is deleted, the department history of an employee who was in it, read before
+ * and cached with the profile of the employee, no longer lists the department.
+ */
+
+@DataJpaTest(properties = {
+    "spring.flyway.enabled=false",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.datasource.url=jdbc:h2:mem:department_delete;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({EmployeeServiceImpl.class, DepartmentServiceImpl.class, DepartmentEmployeeServiceImpl.class,
+    SalaryEmployeeServiceImpl.class, TitleEmployeeServiceImpl.class, OptimisticRetryTemplate.class,
+    EmployeeProfileCache.class, CacheInvalidationServiceImpl.class, DepartmentDeleteTest.MetricsConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // every call commits in its own transaction
+class DepartmentDeleteTest {
+
+    private static final Date FROM_DATE = Date.valueOf("2000-01-01");
+
+    private static final Date TO_DATE = Date.valueOf("2005-01-01");
+
+    private static final Date OPEN_ENDED = Date.valueOf("9999-01-01");
+
+    @TestConfiguration
+    static class MetricsConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private EmployeeServiceImpl employeeService;
+
+    @Autowired
+    private DepartmentServiceImpl departmentService;
+
+    @Autowired
+    private DepartmentEmployeeServiceImpl departmentEmployeeService;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private OutboxEventService outboxEventService;
+
+    private Long employeeId;
+
+    @BeforeEach
+    void seedEmployee() {
+        employeeRepository.deleteAll();
+        departmentRepository.deleteAll();
+        employeeId = new TransactionTemplate(transactionManager).execute(status -> {
+            Employee employee = new Employee();
+            employee.setBirthDate(Date.valueOf("1980-01-01"));
+            employee.setFirstName("Seed");
+            employee.setGender("F");
+            employee.setHireDate(FROM_DATE);
+            employee.setActiveStatus(true);
+            employee.setCreatedBy(1L);
+            employee.setCreatedDate(OffsetDateTime.now());
+            employee.setUpdatedBy(1L);
+            employee.setUpdatedDate(OffsetDateTime.now());
+
+            // In Marketing, then in Finance
+            DepartmentEmployee marketing = new DepartmentEmployee(employee, department("d001", "Marketing"));
+            marketing.setFromDate(FROM_DATE);
+            marketing.setToDate(TO_DATE);
+            employee.getDepartments().add(marketing);
+
+            DepartmentEmployee finance = new DepartmentEmployee(employee, department("d002", "Finance"));
+            finance.setFromDate(TO_DATE);
+            finance.setToDate(OPEN_ENDED);
+            employee.getDepartments().add(finance);
+
+            return employeeRepository.save(employee).getId();
+        });
+    }
+
+    private Department department(String id, String name) {
+        Department department = new Department();
+        department.setId(id);
+        department.setDeptName(name);
+        department.setActive(true);
+        department.setCreatedBy(1L);
+        department.setCreatedDate(OffsetDateTime.now());
+        return departmentRepository.save(department);
+    }
+
+    private List<String> departmentHistory() {
+        return departmentEmployeeService.getDepartmentsByEmployeeIds(List.of(employeeId)).get(employeeId).stream()
+            .map(DepartmentEmployeeDTO::getDepartmentId)
+            .toList();
+    }
+
+    @Test
+    void deletedDepartmentLeavesTheCachedHistories() {
+        // Read the employee: its profile, with the department history, is cached
+        employeeService.getEmployeeById(employeeId);
+        assertEquals(List.of("d001", "d002"), departmentHistory());
+
+        departmentService.deleteDepartment("d001");
+
+        assertEquals(List.of("d002"), departmentHistory());
+    }
+}
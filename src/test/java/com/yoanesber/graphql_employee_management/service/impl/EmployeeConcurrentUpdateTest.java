@@ -0,0 +1,304 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.sql.Date;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.yoanesber.graphql_employee_management.dto.DepartmentEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.EmployeeUpdateDTO;
+import com.yoanesber.graphql_employee_management.dto.SalaryEmployeeDTO;
+import com.yoanesber.graphql_employee_management.dto.TitleEmployeeDTO;
+import com.yoanesber.graphql_employee_management.entity.Department;
+import com.yoanesber.graphql_employee_management.entity.DepartmentEmployee;
+import com.yoanesber.graphql_employee_management.entity.Employee;
+import com.yoanesber.graphql_employee_management.entity.SalaryEmployee;
+import com.yoanesber.graphql_employee_management.entity.TitleEmployee;
+import com.yoanesber.graphql_employee_management.exception.VersionConflictException;
+import com.yoanesber.graphql_employee_management.repository.DepartmentRepository;
+import com.yoanesber.graphql_employee_management.repository.EmployeeRepository;
+import com.yoanesber.graphql_employee_management.service.CacheInvalidationService;
+import com.yoanesber.graphql_employee_management.service.DepartmentEmployeeService;
+import com.yoanesber.graphql_employee_management.service.OutboxEventService;
+import com.yoanesber.graphql_employee_management.service.SalaryEmployeeService;
+import com.yoanesber.graphql_employee_management.service.TitleEmployeeService;
+
+/*
+ * Test of concurrent updateEmployee calls on one employee, through EmployeeServiceImpl and its JPA repositories on an
+ * in-memory H2 database (the schema is created by Hibernate; the outbox and the cache invalidations are mocked):
+ * - without an expected version and with the retry mode, every update is applied (re-read and re-applied on a
+ *   conflict), and the version counts them all
+ * - with an expected version, the updates based on a stale version fail, and the version only counts the others
+ * - a single update increments the version exactly once, whether its histories change keys or not
+ * - an update leaves the histories and the last name it does not supply as they are
+ * The concurrent updates supply every field, so a retried update overwrites the previous ones on all of them (last
+ * writer wins): the final employee, salary and title are all those of a single update, never a merge.
+ */
+
+@DataJpaTest(properties = {
+    "spring.flyway.enabled=false",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.datasource.url=jdbc:h2:mem:concurrent_update;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+    "app.concurrency.optimistic-retry.enabled=true",
+    "app.concurrency.optimistic-retry.max-attempts=1000",
+    "app.concurrency.optimistic-retry.backoff-ms=1"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({EmployeeServiceImpl.class, DepartmentServiceImpl.class, OptimisticRetryTemplate.class,
+    EmployeeProfileCache.class, EmployeeConcurrentUpdateTest.MetricsConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // every update commits in its own transaction
+class EmployeeConcurrentUpdateTest {
+
+    private static final int THREADS = 4;
+
+    private static final int UPDATES_PER_THREAD = 10;
+
+    private static final Date FROM_DATE = Date.valueOf("2000-01-01");
+
+    private static final Date OPEN_ENDED = Date.valueOf("9999-01-01");
+
+    @TestConfiguration
+    static class MetricsConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private EmployeeServiceImpl employeeService;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private DepartmentEmployeeService departmentEmployeeService;
+
+    @MockitoBean
+    private SalaryEmployeeService salaryEmployeeService;
+
+    @MockitoBean
+    private TitleEmployeeService titleEmployeeService;
+
+    @MockitoBean
+    private OutboxEventService outboxEventService;
+
+    @MockitoBean
+    private CacheInvalidationService cacheInvalidationService;
+
+    private Long employeeId;
+
+    @BeforeEach
+    void seedEmployee() {
+        employeeRepository.deleteAll();
+        employeeId = new TransactionTemplate(transactionManager).execute(status -> {
+            Department department = departmentRepository.findById("d001").orElseGet(() -> {
+                Department created = new Department();
+                created.setId("d001");
+                created.setDeptName("Marketing");
+                created.setActive(true);
+                created.setCreatedBy(1L);
+                created.setCreatedDate(OffsetDateTime.now());
+                return departmentRepository.save(created);
+            });
+
+            Employee employee = new Employee();
+            employee.setBirthDate(Date.valueOf("1980-01-01"));
+            employee.setFirstName("Seed");
+            employee.setGender("F");
+            employee.setHireDate(FROM_DATE);
+            employee.setActiveStatus(true);
+            employee.setCreatedBy(1L);
+            employee.setCreatedDate(OffsetDateTime.now());
+            employee.setUpdatedBy(1L);
+            employee.setUpdatedDate(OffsetDateTime.now());
+
+            DepartmentEmployee departmentEmployee = new DepartmentEmployee(employee, department);
+            departmentEmployee.setFromDate(FROM_DATE);
+            departmentEmployee.setToDate(OPEN_ENDED);
+            employee.getDepartments().add(departmentEmployee);
+
+            SalaryEmployee salary = new SalaryEmployee(employee, FROM_DATE);
+            salary.setAmount(0L);
+            salary.setToDate(OPEN_ENDED);
+            employee.getSalaries().add(salary);
+
+            TitleEmployee title = new TitleEmployee(employee, "Seed", FROM_DATE);
+            title.setToDate(OPEN_ENDED);
+            employee.getTitles().add(title);
+
+            return employeeRepository.save(employee).getId();
+        });
+    }
+
+    // A full replacement of the employee written by one update: its name, salary and title all identify it
+    private static EmployeeUpdateDTO update(int writer, Long version) {
+        EmployeeUpdateDTO update = new EmployeeUpdateDTO();
+        update.setBirthDate(Date.valueOf("1980-01-01"));
+        update.setFirstName("W" + writer);
+        update.setGender("F");
+        update.setHireDate(FROM_DATE);
+        update.setUpdatedBy((long) writer);
+        update.setVersion(version);
+        update.setDepartments(List.of(new DepartmentEmployeeDTO("d001", FROM_DATE, OPEN_ENDED)));
+        update.setSalaries(List.of(new SalaryEmployeeDTO(FROM_DATE, (long) writer, OPEN_ENDED)));
+        update.setTitles(List.of(new TitleEmployeeDTO("Title" + writer, FROM_DATE, OPEN_ENDED)));
+        return update;
+    }
+
+    private long version() {
+        return employeeRepository.findById(employeeId).orElseThrow().getVersion();
+    }
+
+    @Test
+    void singleUpdateIncrementsTheVersionOnce() {
+        long initialVersion = version();
+
+        // New keys: the seed salary and title are replaced
+        EmployeeDTO updated = employeeService.updateEmployee(employeeId, update(1, initialVersion));
+        assertEquals(initialVersion + 1, updated.getVersion());
+        assertEquals(initialVersion + 1, version());
+
+        // Same keys, with other amounts and dates: the rows are updated in place
+        EmployeeUpdateDTO sameKeys = update(1, initialVersion + 1);
+        sameKeys.setSalaries(List.of(new SalaryEmployeeDTO(FROM_DATE, 2L, Date.valueOf("2010-01-01"))));
+        updated = employeeService.updateEmployee(employeeId, sameKeys);
+        assertEquals(initialVersion + 2, updated.getVersion());
+        assertEquals(initialVersion + 2, version());
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<SalaryEmployee> salaries = employeeRepository.findById(employeeId).orElseThrow().getSalaries();
+            assertEquals(1, salaries.size());
+            assertEquals(2L, salaries.get(0).getAmount());
+        });
+    }
+
+    @Test
+    void updateKeepsTheFieldsItDoesNotSupply() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+            employeeRepository.findById(employeeId).orElseThrow().setLastName("Kept"));
+
+        // Only the salaries are supplied
+        EmployeeUpdateDTO salariesOnly = update(7, null);
+        salariesOnly.setDepartments(null);
+        salariesOnly.setTitles(null);
+        employeeService.updateEmployee(employeeId, salariesOnly);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Employee entity = employeeRepository.findById(employeeId).orElseThrow();
+            assertEquals("W7", entity.getFirstName());
+            assertEquals("Kept", entity.getLastName());
+            assertEquals(List.of(7L), entity.getSalaries().stream().map(SalaryEmployee::getAmount).toList());
+            assertEquals(List.of("Seed"), entity.getTitles().stream().map(title -> title.getId().getTitle()).toList());
+            assertEquals(List.of("d001"), entity.getDepartments().stream()
+                .map(department -> department.getId().getDepartmentId()).toList());
+        });
+    }
+
+    // Run the updates from many threads and return the number of them that succeeded
+    private int updateConcurrently(boolean withExpectedVersion) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger successes = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+                        int writer = thread * UPDATES_PER_THREAD + i + 1;
+                        Long version = withExpectedVersion ? employeeRepository.findById(employeeId).orElseThrow().getVersion() : null;
+                        try {
+                            employeeService.updateEmployee(employeeId, update(writer, version));
+                            successes.incrementAndGet();
+                        } catch (OptimisticLockingFailureException | VersionConflictException e) {
+                            // Only expected with a stale expected version
+                            assertTrue(withExpectedVersion, "Conflict without an expected version: " + e.getMessage());
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                // A deadlock would surface as a timeout here
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return successes.get();
+    }
+
+    // Check that the employee is the full replacement of a single update, and return its version
+    private long assertSingleWriter() {
+        EmployeeDTO employee = new TransactionTemplate(transactionManager).execute(status -> {
+            Employee entity = employeeRepository.findById(employeeId).orElseThrow();
+            assertEquals(1, entity.getDepartments().size());
+            assertEquals(1, entity.getSalaries().size());
+            assertEquals(1, entity.getTitles().size());
+
+            String writer = entity.getFirstName().substring(1);
+            assertEquals(Long.valueOf(writer), entity.getUpdatedBy());
+            assertEquals(Long.valueOf(writer), entity.getSalaries().get(0).getAmount());
+            assertEquals("Title" + writer, entity.getTitles().get(0).getId().getTitle());
+            return new EmployeeDTO(entity);
+        });
+        return employee.getVersion();
+    }
+
+    @Test
+    void updatesWithoutExpectedVersionAreAllApplied() throws Exception {
+        long initialVersion = employeeRepository.findById(employeeId).orElseThrow().getVersion();
+
+        int successes = updateConcurrently(false);
+
+        assertEquals(THREADS * UPDATES_PER_THREAD, successes);
+        assertEquals(initialVersion + successes, assertSingleWriter());
+    }
+
+    @Test
+    void updatesWithStaleExpectedVersionFail() throws Exception {
+        long initialVersion = employeeRepository.findById(employeeId).orElseThrow().getVersion();
+
+        int successes = updateConcurrently(true);
+
+        assertTrue(successes > 0 && successes <= THREADS * UPDATES_PER_THREAD);
+        assertEquals(initialVersion + successes, assertSingleWriter());
+    }
+}
@@ -0,0 +1,147 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Test of NearCache: the entries read repeatedly survive a one-off scan of many other keys (where an LRU cache of the
+ * same weight would keep none of them), the total weight stays bounded, a candidate that is not admitted evicts
+ * no entry, and invalidated keys are removed and not stored again by a load that overlapped the invalidation. A skewed workload keeps a hit ratio above 40%.
+ */
+
+class NearCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Read a key, storing it on a miss (as EmployeeProfileCache does)
+    private static void read(NearCache<Long, String> cache, long key, long weight) {
+        if (cache.get(key) == null) {
+            cache.put(key, "employee-" + key, weight, cache.stamp());
+        }
+    }
+
+    @Test
+    void hotEntriesSurviveScan() {
+        NearCache<Long, String> cache = new NearCache<>("employee", 1_000, Long::valueOf, meterRegistry);
+
+        // 500 hot employees, read several times
+        for (int round = 0; round < 5; round++) {
+            for (long key = 0; key < 500; key++) {
+                read(cache, key, 1);
+            }
+        }
+
+        // A one-off scan of 20,000 other employees
+        for (long key = 100_000; key < 120_000; key++) {
+            read(cache, key, 1);
+        }
+
+        int hotHits = 0;
+        for (long key = 0; key < 500; key++) {
+            if (cache.get(key) != null) {
+                hotHits++;
+            }
+        }
+        assertTrue(hotHits >= 490, "Hot entries were evicted by the scan: " + hotHits + " of 500 left");
+        assertTrue(cache.weight() <= 1_000);
+        assertTrue(meterRegistry.get("cache.evictions").tag("cache", "employee").counter().count() >= 19_000);
+    }
+
+    @Test
+    void skewedWorkloadHitRatio() {
+        NearCache<Long, String> cache = new NearCache<>("employee", 20_000, Long::valueOf, meterRegistry);
+        Random random = new Random(42);
+
+        // 300,000 employees, with Zipf-like reads (rank r is read with a probability proportional to 1/r),
+        // weighing 1 plus their number of history rows (5 to 30)
+        int employees = 300_000;
+        double[] cumulative = new double[employees];
+        double total = 0;
+        for (int rank = 0; rank < employees; rank++) {
+            total += 1.0 / (rank + 1);
+            cumulative[rank] = total;
+        }
+
+        for (int i = 0; i < 500_000; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            long key = rank >= 0 ? rank : -rank - 1;
+            read(cache, key, 1 + 5 + key % 26);
+        }
+
+        double hitRatio = meterRegistry.get("cache.hit.ratio").tag("cache", "employee").gauge().value();
+        assertTrue(hitRatio > 0.4, "Hit ratio with a weight of 20,000: " + hitRatio);
+        assertTrue(cache.weight() <= 20_000);
+    }
+
+    @Test
+    void weightIsBounded() {
+        NearCache<Long, String> cache = new NearCache<>("employee", 100, Long::valueOf, meterRegistry);
+        for (long key = 0; key < 1_000; key++) {
+            read(cache, key, 1 + key % 20);
+            assertTrue(cache.weight() <= 100);
+        }
+
+        // An entry heavier than the main space is never stored
+        cache.put(5_000L, "employee-5000", 100, cache.stamp());
+        assertNull(cache.peek(5_000L));
+    }
+
+    @Test
+    void rejectedCandidateEvictsNothing() {
+        // A window of weight 1 and a main space of weight 99, filled by 3 employees of weight 33
+        NearCache<Long, String> cache = new NearCache<>("employee", 100, Long::valueOf, meterRegistry);
+        for (long key = 1; key <= 3; key++) {
+            read(cache, key, 33);
+        }
+
+        // Employees 2 and 3 are read often, employee 1 only once
+        for (int round = 0; round < 5; round++) {
+            read(cache, 2L, 33);
+            read(cache, 3L, 33);
+        }
+
+        // Employee 4 (weight 34) is read more often than employee 1, but less than employee 2, which must also be
+        // evicted to make room for it: it is not admitted, and employee 1 stays
+        cache.get(4L);
+        cache.get(4L);
+        read(cache, 4L, 34);
+
+        assertNull(cache.peek(4L));
+        for (long key = 1; key <= 3; key++) {
+            assertEquals("employee-" + key, cache.peek(key));
+        }
+        assertEquals(99, cache.weight());
+        assertEquals(1, meterRegistry.get("cache.evictions").tag("cache", "employee").counter().count());
+    }
+
+    @Test
+    void invalidationRemovesKeysAndRejectsStaleLoads() {
+        NearCache<Long, String> cache = new NearCache<>("employee", 1_000, Long::valueOf, meterRegistry);
+        read(cache, 1L, 1);
+        read(cache, 2L, 1);
+
+        // A load of employee 3 starts, then employee 1 is updated and invalidated
+        long stamp = cache.stamp();
+        cache.evict(Set.of("1"));
+        cache.put(3L, "employee-3", 1, stamp);
+
+        assertNull(cache.peek(1L));
+        assertEquals("employee-2", cache.peek(2L));
+        assertNull(cache.peek(3L), "A load that overlapped an invalidation must not be stored");
+
+        // A load started after the invalidation is stored
+        read(cache, 3L, 1);
+        assertEquals("employee-3", cache.peek(3L));
+
+        cache.clear();
+        assertNull(cache.peek(2L));
+        assertEquals(0, cache.weight());
+    }
+}
@@ -0,0 +1,63 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+/*
+ * Test of the retry policy of OptimisticRetryTemplate: the attempts are bounded, and only the work without an
+ * expected version is retried. The concurrent updates of a real employee are tested by EmployeeConcurrentUpdateTest.
+ */
+
+class OptimisticRetryTemplateTest {
+
+    // Transaction manager that does nothing, the work touching no database
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+    @Test
+    void retriesAreBoundedAndOnlyForRetryableWork() {
+        OptimisticRetryTemplate template = new OptimisticRetryTemplate(new NoOpTransactionManager(), true, 3, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        // Work that always conflicts is attempted max-attempts times
+        assertThrows(OptimisticLockingFailureException.class, () -> template.execute(true, () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Employee", 10001L);
+        }));
+        assertEquals(3, attempts.get());
+
+        // Work based on an expected version is never retried
+        attempts.set(0);
+        assertThrows(OptimisticLockingFailureException.class, () -> template.execute(false, () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Employee", 10001L);
+        }));
+        assertEquals(1, attempts.get());
+        assertTrue(template.execute(false, () -> true));
+    }
+}
@@ -0,0 +1,246 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.yoanesber.graphql_employee_management.entity.OutboxEvent;
+import com.yoanesber.graphql_employee_management.repository.OutboxEventRepository;
+import com.yoanesber.graphql_employee_management.service.OutboxEventSink;
+
+/*
+ * Test of OutboxEventServiceImpl and OutboxRelay on an in-memory H2 database (PostgreSQL mode), with the outbox_event
+ * table created by its statement of V1__create_tables.sql (the other migrations are PostgreSQL-specific):
+ * - publish requires the transaction of the change, and its event is rolled back with it
+ * - a run relays full batches in id order until a short one or max-batches-per-run, and deletes what it relayed
+ * - a batch the sink fails to take stays in the outbox for the next run
+ * - events locked by another relay (FOR UPDATE SKIP LOCKED) are skipped instead of waited for or sent twice
+ */
+
+@DataJpaTest(properties = {
+    "spring.flyway.enabled=false",
+    "spring.jpa.hibernate.ddl-auto=none",
+    "spring.datasource.url=jdbc:h2:mem:outbox_relay;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({OutboxEventServiceImpl.class, OutboxRelayTest.OutboxConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // every publish and relay commits in its own transaction
+class OutboxRelayTest {
+
+    // Sink keeping the events of one test, that can be made unavailable
+    static class FailingOutboxEventSink implements OutboxEventSink {
+        private final List<OutboxEvent> events = new ArrayList<>();
+
+        private boolean failing;
+
+        @Override
+        public synchronized void send(List<OutboxEvent> batch) {
+            if (failing) {
+                throw new IllegalStateException("sink unavailable");
+            }
+            events.addAll(batch);
+        }
+
+        synchronized List<OutboxEvent> getEvents() {
+            return List.copyOf(events);
+        }
+
+        synchronized void reset() {
+            this.events.clear();
+            this.failing = false;
+        }
+
+        synchronized void setFailing(boolean failing) {
+            this.failing = failing;
+        }
+    }
+
+    @TestConfiguration
+    static class OutboxConfig {
+        @Bean
+        FailingOutboxEventSink outboxEventSink() {
+            return new FailingOutboxEventSink();
+        }
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+
+    @Autowired
+    private OutboxEventServiceImpl outboxEventService;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private FailingOutboxEventSink sink;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void createOutbox() throws IOException {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS outbox_event");
+        jdbcTemplate.execute(outboxEventDdl());
+        sink.reset();
+    }
+
+    // The CREATE TABLE outbox_event statement of the first migration
+    private static String outboxEventDdl() throws IOException {
+        String migration = new ClassPathResource("db/migration/V1__create_tables.sql").getContentAsString(StandardCharsets.UTF_8);
+        Matcher matcher = Pattern.compile("CREATE TABLE outbox_event \\(.*?\\n\\);", Pattern.DOTALL).matcher(migration);
+        if (!matcher.find()) {
+            throw new IllegalStateException("No outbox_event table in V1__create_tables.sql");
+        }
+        return matcher.group();
+    }
+
+    // Publish the events in one transaction, as a mutation does
+    private void publish(int events) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (int i = 1; i <= events; i++) {
+                outboxEventService.publish("Employee", String.valueOf(i), "UPDATED", Map.of("id", i));
+            }
+        });
+    }
+
+    private static List<Long> ids(List<OutboxEvent> events) {
+        return events.stream().map(OutboxEvent::getId).toList();
+    }
+
+    @Test
+    void publishRequiresATransaction() {
+        assertThrows(IllegalTransactionStateException.class,
+            () -> outboxEventService.publish("Employee", "1", "UPDATED", Map.of()));
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    void rolledBackChangeHasNoEvent() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            outboxEventService.publish("Employee", "1", "UPDATED", Map.of("id", 1));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    void drainsTheOutboxInBatches() {
+        publish(25);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        new OutboxRelay(outboxEventService, registry, 10, 10).relay();
+
+        assertEquals(LongStream.rangeClosed(1, 25).boxed().toList(), ids(sink.getEvents()));
+        assertEquals("{\"id\":1}", sink.getEvents().get(0).getPayload());
+        assertEquals(0, outboxEventRepository.count());
+        assertEquals(25, registry.get("outbox.relay.events").counter().count());
+        assertEquals(3, registry.get("outbox.relay.batch.size").summary().count());
+        assertEquals(25, registry.get("outbox.relay.lag").timer().count());
+    }
+
+    @Test
+    void stopsAfterMaxBatchesPerRun() {
+        publish(50);
+        OutboxRelay relay = new OutboxRelay(outboxEventService, new SimpleMeterRegistry(), 10, 2);
+
+        relay.relay();
+        assertEquals(20, sink.getEvents().size());
+        assertEquals(30, outboxEventRepository.count());
+
+        relay.relay();
+        assertEquals(40, sink.getEvents().size());
+        assertEquals(10, outboxEventRepository.count());
+    }
+
+    @Test
+    void keepsFailedBatchesForTheNextRun() {
+        publish(5);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        OutboxRelay relay = new OutboxRelay(outboxEventService, registry, 10, 10);
+
+        // The delete is rolled back with the failed send
+        sink.setFailing(true);
+        relay.relay();
+        assertEquals(0, sink.getEvents().size());
+        assertEquals(5, outboxEventRepository.count());
+        assertEquals(1, registry.get("outbox.relay.failures").counter().count());
+
+        sink.setFailing(false);
+        relay.relay();
+        assertEquals(5, sink.getEvents().size());
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    void eventsLockedByAnotherRelayAreSkipped() throws Exception {
+        publish(5);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // Another relay locks the 2 oldest events and holds them
+            Future<List<Long>> other = executor.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+                List<Long> batch = ids(outboxEventRepository.lockNextBatch(2));
+                locked.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return batch;
+            }));
+            locked.await(10, TimeUnit.SECONDS);
+
+            // This relay gets the others without waiting for the lock
+            List<OutboxEvent> relayed = outboxEventService.relayBatch(10);
+            assertEquals(List.of(3L, 4L, 5L), ids(relayed));
+
+            release.countDown();
+            assertEquals(List.of(1L, 2L), other.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Released without being deleted, they are relayed by the next batch
+        assertEquals(List.of(1L, 2L), ids(outboxEventService.relayBatch(10)));
+        assertEquals(List.of(3L, 4L, 5L, 1L, 2L), ids(sink.getEvents()));
+    }
+}
@@ -0,0 +1,197 @@
+package com.yoanesber.graphql_employee_management.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/*
+ * Test of SingleFlight: concurrent callers of the same key share one load, a batch only loads the keys that are
+ * not in flight, the callers waiting for a failed load load again (once, together), and a key invalidated
+ * during its load is loaded again by the callers that arrive after the invalidation.
+ */
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final SingleFlight<Long, String> flights = new SingleFlight<>("employee", meterRegistry);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    // Key sets passed to the loader
+    private final List<Set<Long>> loads = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // A loader that waits for the latch, then returns "<key>-<number of the load>" for each key
+    private Function<Set<Long>, Map<Long, String>> loader(CountDownLatch latch) {
+        return keys -> {
+            loads.add(keys);
+            int load = loads.size();
+            await(latch);
+            Map<Long, String> values = new HashMap<>();
+            keys.forEach(key -> values.put(key, key + "-" + load));
+            return values;
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Wait until a number of callers are waiting for the loads of others
+    private void awaitShared(double count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (meterRegistry.get("singleflight.shared").counter().count() < count) {
+            assertTrue(System.nanoTime() < deadline, "Callers did not join the flight");
+            Thread.sleep(1);
+        }
+    }
+
+    private void awaitLoads(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (loads.size() < count) {
+            assertTrue(System.nanoTime() < deadline, "The load did not start");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Future<String>> callers = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            callers.add(executor.submit(() -> flights.execute(10001L, loader(latch))));
+        }
+        awaitShared(49);
+        latch.countDown();
+
+        String first = callers.get(0).get();
+        for (Future<String> caller : callers) {
+            assertSame(first, caller.get());
+        }
+        assertEquals(1, loads.size());
+        assertEquals(1, meterRegistry.get("singleflight.loads").counter().count());
+
+        // Once completed, the next call loads again; inside a transaction, the caller always loads itself
+        assertEquals("10001-2", flights.execute(10001L, loader(latch)));
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertEquals("10001-3", flights.execute(10001L, loader(latch)));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    @Test
+    void batchLoadsOnlyTheKeysNotInFlight() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        Future<String> single = executor.submit(() -> flights.execute(1L, loader(latch)));
+        awaitLoads(1);
+
+        // The batch loads 2 and 3, and waits for the load of 1 in progress
+        Future<Map<Long, String>> batch = executor.submit(() -> flights.executeAll(List.of(1L, 2L, 3L, 2L), loader(new CountDownLatch(0))));
+        awaitShared(1);
+        latch.countDown();
+
+        assertEquals(Map.of(1L, "1-1", 2L, "2-2", 3L, "3-2"), batch.get());
+        assertEquals("1-1", single.get());
+        assertEquals(List.of(Set.of(1L), Set.of(2L, 3L)), loads);
+
+        // Keys not returned by the loader are missing from the result
+        assertEquals(Map.of(), flights.executeAll(List.of(4L), keys -> Map.of()));
+    }
+
+    @Test
+    void waitingCallersLoadAgainWhenTheLoadFails() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        CountDownLatch retryLatch = new CountDownLatch(1);
+        Function<Set<Long>, Map<Long, String>> failingOnce = keys -> {
+            if (loads.isEmpty()) {
+                loads.add(keys);
+                await(latch);
+                throw new IllegalStateException("Connection reset");
+            }
+            return loader(retryLatch).apply(keys);
+        };
+
+        Future<String> leader = executor.submit(() -> flights.execute(1L, failingOnce));
+        awaitLoads(1);
+        List<Future<String>> callers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            callers.add(executor.submit(() -> flights.execute(1L, failingOnce)));
+        }
+        awaitShared(10);
+        latch.countDown();
+
+        // The failure is only returned to the caller that loaded; the others share a second load
+        ExecutionException failure = assertThrows(ExecutionException.class, leader::get);
+        assertEquals("Connection reset", failure.getCause().getMessage());
+        awaitShared(19);
+        retryLatch.countDown();
+        for (Future<String> caller : callers) {
+            assertEquals("1-2", caller.get());
+        }
+        assertEquals(2, loads.size());
+
+        // A second failure is returned to the waiting callers
+        CountDownLatch failingLatch = new CountDownLatch(1);
+        Function<Set<Long>, Map<Long, String>> alwaysFailing = keys -> {
+            loads.add(keys);
+            await(failingLatch);
+            throw new IllegalStateException("Database down");
+        };
+        Future<String> failingLeader = executor.submit(() -> flights.execute(2L, alwaysFailing));
+        awaitLoads(3);
+        Future<String> waiting = executor.submit(() -> flights.execute(2L, alwaysFailing));
+        awaitShared(20);
+        failingLatch.countDown();
+        assertThrows(ExecutionException.class, failingLeader::get);
+        assertEquals("Database down", assertThrows(ExecutionException.class, waiting::get).getCause().getMessage());
+    }
+
+    @Test
+    void invalidatedKeyIsLoadedAgainByLaterCallers() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        Future<String> before = executor.submit(() -> flights.execute(1L, loader(latch)));
+        awaitLoads(1);
+        Future<String> joined = executor.submit(() -> flights.execute(1L, loader(latch)));
+        awaitShared(1);
+
+        // A mutation of the employee commits while the first load is in progress
+        flights.evict(Set.of("1"));
+        Future<String> after = executor.submit(() -> flights.execute(1L, loader(latch)));
+        awaitLoads(2);
+        latch.countDown();
+
+        assertEquals("1-1", before.get());
+        assertEquals("1-1", joined.get());
+        assertEquals("1-2", after.get());
+    }
+}